@@ -1277,13 +1277,7 @@ public abstract class AbstractByteBuf extends ByteBuf {
         }
         checkIndex(fromIndex, toIndex - fromIndex);
 
-        for (int i = fromIndex; i < toIndex; i ++) {
-            if (_getByte(i) == value) {
-                return i;
-            }
-        }
-
-        return -1;
+        return ByteBufUtil.firstIndexOf(this, fromIndex, toIndex, value);
     }
 
     private int lastIndexOf(int fromIndex, int toIndex, byte value) {
@@ -1346,6 +1340,19 @@ public abstract class AbstractByteBuf extends ByteBuf {
     }
 
     int forEachByteAsc0(int start, int end, ByteProcessor processor) throws Exception {
+        // Search for the bytes of the most common processors 8 bytes at a time.
+        if (processor == ByteProcessor.FIND_LF) {
+            return ByteBufUtil.firstIndexOf(this, start, end, (byte) '\n');
+        }
+        if (processor == ByteProcessor.FIND_CRLF) {
+            return ByteBufUtil.firstIndexOfAny(this, start, end, (byte) '\r', (byte) '\n');
+        }
+        if (processor == ByteProcessor.FIND_CR) {
+            return ByteBufUtil.firstIndexOf(this, start, end, (byte) '\r');
+        }
+        if (processor == ByteProcessor.FIND_NUL) {
+            return ByteBufUtil.firstIndexOf(this, start, end, (byte) 0);
+        }
         for (; start < end; ++start) {
             if (!processor.process(_getByte(start))) {
                 return start;
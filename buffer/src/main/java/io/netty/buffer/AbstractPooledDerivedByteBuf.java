@@ -43,9 +43,9 @@ abstract class AbstractPooledDerivedByteBuf extends AbstractReferenceCountedByte
         this.recyclerHandle = (Handle<AbstractPooledDerivedByteBuf>) recyclerHandle;
     }
 
-    // Called from within SimpleLeakAwareByteBuf and AdvancedLeakAwareByteBuf.
+    // Called from within SimpleLeakAwareByteBuf, AdvancedLeakAwareByteBuf and ProfiledByteBuf.
     final void parent(ByteBuf newParent) {
-        assert newParent instanceof SimpleLeakAwareByteBuf;
+        assert newParent instanceof SimpleLeakAwareByteBuf || newParent instanceof ProfiledByteBuf;
         parent = newParent;
     }
 
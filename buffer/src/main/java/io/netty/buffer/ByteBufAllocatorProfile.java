@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.StringUtil;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Snapshot of the allocations sampled by a {@link ProfilingByteBufAllocator}. All numbers only include the sampled
+ * allocations, multiply them with {@link #totalAllocations()} divided by {@link #allocations()} to estimate the
+ * numbers of all allocations.
+ */
+public final class ByteBufAllocatorProfile {
+
+    private static final Comparator<CallSite> MOST_ALLOCATIONS_FIRST = new Comparator<CallSite>() {
+        @Override
+        public int compare(CallSite o1, CallSite o2) {
+            return o1.allocations == o2.allocations ? 0 : o1.allocations > o2.allocations ? -1 : 1;
+        }
+    };
+
+    private final long totalAllocations;
+    private final long[] sizeHistogram;
+    private final long[] lifetimeHistogram;
+    private final List<CallSite> callSites;
+
+    ByteBufAllocatorProfile(long totalAllocations, long[] sizeHistogram, long[] lifetimeHistogram,
+                            List<CallSite> callSites) {
+        this.totalAllocations = totalAllocations;
+        this.sizeHistogram = sizeHistogram;
+        this.lifetimeHistogram = lifetimeHistogram;
+        Collections.sort(callSites, MOST_ALLOCATIONS_FIRST);
+        this.callSites = Collections.unmodifiableList(callSites);
+    }
+
+    /**
+     * Returns the number of all allocations, sampled or not, since the profile was started or reset.
+     */
+    public long totalAllocations() {
+        return totalAllocations;
+    }
+
+    /**
+     * Returns the number of sampled allocations.
+     */
+    public long allocations() {
+        return sum(sizeHistogram);
+    }
+
+    /**
+     * Returns the number of sampled allocations whose memory was released again.
+     */
+    public long releases() {
+        return sum(lifetimeHistogram);
+    }
+
+    /**
+     * Returns the histogram of the initial capacities of the sampled allocations. The element at index {@code i}
+     * is the number of allocations with a capacity in {@code [2^(i - 1), 2^i)}.
+     */
+    public long[] sizeHistogram() {
+        return sizeHistogram.clone();
+    }
+
+    /**
+     * Returns the histogram of the time between the sampled allocations and the release of their memory. The element
+     * at index {@code i} is the number of released allocations that lived for {@code [2^(i - 1), 2^i)} nanoseconds.
+     */
+    public long[] lifetimeHistogram() {
+        return lifetimeHistogram.clone();
+    }
+
+    /**
+     * Returns the call sites of the sampled allocations, the one with the most allocations first.
+     */
+    public List<CallSite> callSites() {
+        return callSites;
+    }
+
+    @Override
+    public String toString() {
+        return toString(10);
+    }
+
+    /**
+     * Returns a human readable report which contains the given number of call sites with the most allocations.
+     */
+    public String toString(int maxCallSites) {
+        StringBuilder buf = new StringBuilder(1024);
+        buf.append(StringUtil.simpleClassName(this))
+           .append("(totalAllocations: ").append(totalAllocations)
+           .append(", allocations: ").append(allocations())
+           .append(", releases: ").append(releases()).append(')').append(StringUtil.NEWLINE);
+
+        buf.append("Sizes (bytes):").append(StringUtil.NEWLINE);
+        appendHistogram(buf, sizeHistogram);
+        buf.append("Lifetimes (ns):").append(StringUtil.NEWLINE);
+        appendHistogram(buf, lifetimeHistogram);
+
+        buf.append("Call sites:").append(StringUtil.NEWLINE);
+        for (int i = 0; i < callSites.size() && i < maxCallSites; i++) {
+            buf.append('\t').append(callSites.get(i)).append(StringUtil.NEWLINE);
+        }
+        return buf.toString();
+    }
+
+    private static void appendHistogram(StringBuilder buf, long[] histogram) {
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] != 0) {
+                buf.append("\t[").append(i == 0 ? 0 : 1L << i - 1).append(", ").append(1L << i).append("): ")
+                   .append(histogram[i]).append(StringUtil.NEWLINE);
+            }
+        }
+    }
+
+    private static long sum(long[] histogram) {
+        long sum = 0;
+        for (long value : histogram) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * The sampled allocations of a call site.
+     */
+    public static final class CallSite {
+        private final String site;
+        private final long allocations;
+        private final long allocatedBytes;
+        private final long releases;
+        private final long lifetimeNanos;
+
+        CallSite(String site, long allocations, long allocatedBytes, long releases, long lifetimeNanos) {
+            this.site = site;
+            this.allocations = allocations;
+            this.allocatedBytes = allocatedBytes;
+            this.releases = releases;
+            this.lifetimeNanos = lifetimeNanos;
+        }
+
+        /**
+         * Returns the stack frames that identify the call site.
+         */
+        public String site() {
+            return site;
+        }
+
+        /**
+         * Returns the number of sampled allocations.
+         */
+        public long allocations() {
+            return allocations;
+        }
+
+        /**
+         * Returns the sum of the initial capacities of the sampled allocations.
+         */
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * Returns the number of sampled allocations whose memory was released again.
+         */
+        public long releases() {
+            return releases;
+        }
+
+        /**
+         * Returns the average time between an allocation and the release of its memory, or {@code -1} if no memory
+         * was released yet.
+         */
+        public long averageLifetimeNanos() {
+            return releases == 0 ? -1 : lifetimeNanos / releases;
+        }
+
+        @Override
+        public String toString() {
+            return site + " (allocations: " + allocations + ", allocatedBytes: " + allocatedBytes +
+                    ", releases: " + releases + ", averageLifetimeNanos: " + averageLifetimeNanos() + ')';
+        }
+    }
+}
@@ -23,6 +23,7 @@ import io.netty.util.Recycler.Handle;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.MathUtil;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SWARUtil;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
@@ -209,12 +210,24 @@ public final class ByteBufUtil {
      * Returns the reader index of needle in haystack, or -1 if needle is not in haystack.
      */
     public static int indexOf(ByteBuf needle, ByteBuf haystack) {
-        int attempts = haystack.readableBytes() - needle.readableBytes() + 1;
-        for (int i = 0; i < attempts; i++) {
-            if (equals(needle, needle.readerIndex(),
-                       haystack, haystack.readerIndex() + i,
-                       needle.readableBytes())) {
-                return haystack.readerIndex() + i;
+        final int needleLength = needle.readableBytes();
+        if (needleLength > haystack.readableBytes()) {
+            return -1;
+        }
+        if (needleLength == 0) {
+            return haystack.readerIndex();
+        }
+
+        // Search for the first byte of the needle, which is vectorized, and only compare the rest at its matches.
+        final byte first = needle.getByte(needle.readerIndex());
+        final int lastIndex = haystack.writerIndex() - needleLength;
+        for (int i = haystack.readerIndex(); i <= lastIndex; i++) {
+            i = haystack.indexOf(i, lastIndex + 1, first);
+            if (i == -1) {
+                return -1;
+            }
+            if (equals(needle, needle.readerIndex() + 1, haystack, i + 1, needleLength - 1)) {
+                return i;
             }
         }
         return -1;
@@ -236,6 +249,14 @@ public final class ByteBufUtil {
             return false;
         }
 
+        if (a.hasArray() && b.hasArray()) {
+            return PlatformDependent.equals(a.array(), a.arrayOffset() + aStartIndex,
+                                            b.array(), b.arrayOffset() + bStartIndex, length);
+        }
+        if (a instanceof AbstractByteBuf && b instanceof AbstractByteBuf) {
+            return equals((AbstractByteBuf) a, aStartIndex, (AbstractByteBuf) b, bStartIndex, length);
+        }
+
         final int longCount = length >>> 3;
         final int byteCount = length & 7;
 
@@ -268,6 +289,76 @@ public final class ByteBufUtil {
         return true;
     }
 
+    private static boolean equals(AbstractByteBuf a, int aStartIndex, AbstractByteBuf b, int bStartIndex, int length) {
+        // The bounds were checked already, so avoid the checks of every getLong(...) call.
+        a.ensureAccessible();
+        b.ensureAccessible();
+        // The raw accessors ignore order() so both buffers can always be compared in native byte order.
+        final int longEnd = aStartIndex + (length & ~7);
+        for (; aStartIndex < longEnd; aStartIndex += 8, bStartIndex += 8) {
+            if (getLongNativeOrder(a, aStartIndex) != getLongNativeOrder(b, bStartIndex)) {
+                return false;
+            }
+        }
+        for (final int end = longEnd + (length & 7); aStartIndex < end; aStartIndex++, bStartIndex++) {
+            if (a._getByte(aStartIndex) != b._getByte(bStartIndex)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the first occurrence of {@code value} in {@code [fromIndex, toIndex)} of the buffer, or
+     * {@code -1} if not found. Reads 8 bytes per step, the caller must have checked the bounds.
+     */
+    static int firstIndexOf(AbstractByteBuf buffer, int fromIndex, int toIndex, byte value) {
+        final long pattern = SWARUtil.compilePattern(value);
+        int i = fromIndex;
+        for (final int longEnd = toIndex - 7; i < longEnd; i += 8) {
+            final long result = SWARUtil.applyPattern(getLongNativeOrder(buffer, i), pattern);
+            if (result != 0) {
+                return i + SWARUtil.getIndex(result, PlatformDependent.BIG_ENDIAN_NATIVE_ORDER);
+            }
+        }
+        for (; i < toIndex; i++) {
+            if (buffer._getByte(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first occurrence of either {@code value1} or {@code value2} in
+     * {@code [fromIndex, toIndex)} of the buffer, or {@code -1} if not found. Reads 8 bytes per step, the caller must
+     * have checked the bounds.
+     */
+    static int firstIndexOfAny(AbstractByteBuf buffer, int fromIndex, int toIndex, byte value1, byte value2) {
+        final long pattern1 = SWARUtil.compilePattern(value1);
+        final long pattern2 = SWARUtil.compilePattern(value2);
+        int i = fromIndex;
+        for (final int longEnd = toIndex - 7; i < longEnd; i += 8) {
+            final long word = getLongNativeOrder(buffer, i);
+            final long result = SWARUtil.applyPattern(word, pattern1) | SWARUtil.applyPattern(word, pattern2);
+            if (result != 0) {
+                return i + SWARUtil.getIndex(result, PlatformDependent.BIG_ENDIAN_NATIVE_ORDER);
+            }
+        }
+        for (; i < toIndex; i++) {
+            final byte b = buffer._getByte(i);
+            if (b == value1 || b == value2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long getLongNativeOrder(AbstractByteBuf buffer, int index) {
+        // Unsafe based buffers can read a long in native byte order without swapping the bytes.
+        return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? buffer._getLong(index) : buffer._getLongLE(index);
+    }
+
     /**
      * Returns {@code true} if and only if the two specified buffers are
      * identical to each other as described in {@link ByteBuf#equals(Object)}.
@@ -19,7 +19,6 @@ import io.netty.util.ByteProcessor;
 import io.netty.util.IllegalReferenceCountException;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.EmptyArrays;
-import io.netty.util.internal.RecyclableArrayList;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -49,6 +48,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private static final ByteBuffer EMPTY_NIO_BUFFER = Unpooled.EMPTY_BUFFER.nioBuffer();
     private static final Iterator<ByteBuf> EMPTY_ITERATOR = Collections.<ByteBuf>emptyList().iterator();
+    // offsetBase is moved back to 0 once it exceeds this, so the component offsets of a composite which stays smaller
+    // than 1 GiB never wrap around
+    private static final int OFFSET_BASE_LIMIT = 1 << 30;
 
     private final ByteBufAllocator alloc;
     private final boolean direct;
@@ -56,6 +58,15 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private int componentCount;
     private Component[] components; // resized when needed
+    // index of the first component in the array, moves forward when components are removed from the front
+    private int componentStart;
+    // offset of index 0 of this buffer within the component offsets, moves forward instead of repositioning all the
+    // remaining components when components are removed from the front, and is reset when no component is left or it
+    // exceeds OFFSET_BASE_LIMIT. The offsets are always compared relative to it, so they may still wrap around if the
+    // composite is larger than 1 GiB.
+    private int offsetBase;
+    // weak cache - index of the last accessed component, checked first when looking for a component
+    private int lastAccessedIndex;
 
     private boolean freed;
 
@@ -277,7 +288,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             checkComponentIndex(cIndex);
 
             // No need to consolidate - just add a component to the list.
-            Component c = newComponent(ensureAccessible(buffer), 0);
+            Component c = newComponent(ensureAccessible(buffer), offsetBase);
             int readableBytes = c.length();
 
             addComp(cIndex, c);
@@ -285,7 +296,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             if (readableBytes > 0 && cIndex < componentCount - 1) {
                 updateComponentOffsets(cIndex);
             } else if (cIndex > 0) {
-                c.reposition(components[cIndex - 1].endOffset);
+                c.reposition(comp(cIndex - 1).endOffset);
             }
             if (increaseWriterIndex) {
                 writerIndex += readableBytes;
@@ -365,14 +376,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         try {
             checkComponentIndex(cIndex);
             shiftComps(cIndex, count); // will increase componentCount
-            int nextOffset = cIndex > 0 ? components[cIndex - 1].endOffset : 0;
+            int nextOffset = cIndex > 0 ? comp(cIndex - 1).endOffset : offsetBase;
             for (ci = cIndex; arrOffset < len; arrOffset++, ci++) {
                 ByteBuf b = buffers[arrOffset];
                 if (b == null) {
                     break;
                 }
                 Component c = newComponent(ensureAccessible(b), nextOffset);
-                components[ci] = c;
+                components[componentStart + ci] = c;
                 nextOffset = c.endOffset;
             }
             return this;
@@ -389,7 +400,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 updateComponentOffsets(ci); // only need to do this here for components after the added ones
             }
             if (increaseWriterIndex && ci > cIndex && ci <= componentCount) {
-                writerIndex += components[ci - 1].endOffset - components[cIndex].offset;
+                writerIndex += comp(ci - 1).endOffset - comp(cIndex).offset;
             }
         }
     }
@@ -457,20 +468,20 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
         final CompositeByteBuf from = (CompositeByteBuf) buffer;
         from.checkIndex(ridx, widx - ridx);
-        final Component[] fromComponents = from.components;
+        final int fromBase = from.offsetBase;
         final int compCountBefore = componentCount;
         final int writerIndexBefore = writerIndex;
         try {
-            for (int cidx = from.toComponentIndex0(ridx), newOffset = capacity();; cidx++) {
-                final Component component = fromComponents[cidx];
-                final int compOffset = component.offset;
+            for (int cidx = from.toComponentIndex0(ridx), newOffset = offsetBase + capacity();; cidx++) {
+                final Component component = from.comp(cidx);
+                final int compOffset = component.offset - fromBase;
                 final int fromIdx = Math.max(ridx, compOffset);
-                final int toIdx = Math.min(widx, component.endOffset);
+                final int toIdx = Math.min(widx, component.endOffset - fromBase);
                 final int len = toIdx - fromIdx;
                 if (len > 0) { // skip empty components
                     addComp(componentCount, new Component(
-                            component.srcBuf.retain(), component.srcIdx(fromIdx),
-                            component.buf, component.idx(fromIdx), newOffset, len, null));
+                            component.srcBuf.retain(), component.srcIdx(fromBase + fromIdx),
+                            component.buf, component.idx(fromBase + fromIdx), newOffset, len, null));
                 }
                 if (widx == toIdx) {
                     break;
@@ -491,7 +502,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                     writerIndex = writerIndexBefore;
                 }
                 for (int cidx = componentCount - 1; cidx >= compCountBefore; cidx--) {
-                    components[cidx].free();
+                    comp(cidx).free();
                     removeComp(cidx);
                 }
             }
@@ -560,15 +571,34 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
     }
 
+    private void updateComponentOffsets(int cIndex, int removedBytes) {
+        if (componentCount == 0) {
+            // offsetBase was reset when the last component was removed.
+            return;
+        }
+        if (cIndex == 0) {
+            // The remaining components are still contiguous, so move index 0 of this buffer to the first of them
+            // instead of repositioning every component.
+            offsetBase += removedBytes;
+            if (offsetBase > OFFSET_BASE_LIMIT || offsetBase < 0) {
+                // Rarely done, so the cost is spread over more than 1 GiB of removed bytes.
+                offsetBase = 0;
+                updateComponentOffsets(0);
+            }
+        } else {
+            updateComponentOffsets(cIndex);
+        }
+    }
+
     private void updateComponentOffsets(int cIndex) {
         int size = componentCount;
         if (size <= cIndex) {
             return;
         }
 
-        int nextIndex = cIndex > 0 ? components[cIndex - 1].endOffset : 0;
+        int nextIndex = cIndex > 0 ? comp(cIndex - 1).endOffset : offsetBase;
         for (; cIndex < size; cIndex++) {
-            Component c = components[cIndex];
+            Component c = comp(cIndex);
             c.reposition(nextIndex);
             nextIndex = c.endOffset;
         }
@@ -581,15 +611,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public CompositeByteBuf removeComponent(int cIndex) {
         checkComponentIndex(cIndex);
-        Component comp = components[cIndex];
-        if (lastAccessed == comp) {
-            lastAccessed = null;
-        }
-        comp.free();
+        Component c = comp(cIndex);
+        c.free();
         removeComp(cIndex);
-        if (comp.length() > 0) {
+        if (c.length() > 0) {
             // Only need to call updateComponentOffsets if the length was > 0
-            updateComponentOffsets(cIndex);
+            updateComponentOffsets(cIndex, c.length());
         }
         return this;
     }
@@ -607,22 +634,17 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this;
         }
         int endIndex = cIndex + numComponents;
-        boolean needsUpdate = false;
+        int removedBytes = 0;
         for (int i = cIndex; i < endIndex; ++i) {
-            Component c = components[i];
-            if (c.length() > 0) {
-                needsUpdate = true;
-            }
-            if (lastAccessed == c) {
-                lastAccessed = null;
-            }
+            Component c = comp(i);
+            removedBytes += c.length();
             c.free();
         }
         removeCompRange(cIndex, endIndex);
 
-        if (needsUpdate) {
+        if (removedBytes > 0) {
             // Only need to call updateComponentOffsets if the length was > 0
-            updateComponentOffsets(cIndex);
+            updateComponentOffsets(cIndex, removedBytes);
         }
         return this;
     }
@@ -639,19 +661,19 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return -1;
         }
         for (int i = toComponentIndex0(start), length = end - start; length > 0; i++) {
-            Component c = components[i];
+            Component c = comp(i);
             if (c.offset == c.endOffset) {
                 continue; // empty
             }
             ByteBuf s = c.buf;
-            int localStart = c.idx(start);
-            int localLength = Math.min(length, c.endOffset - start);
+            int localStart = c.idx(offsetBase + start);
+            int localLength = Math.min(length, c.endOffset - offsetBase - start);
             // avoid additional checks in AbstractByteBuf case
             int result = s instanceof AbstractByteBuf
                 ? ((AbstractByteBuf) s).forEachByteAsc0(localStart, localStart + localLength, processor)
                 : s.forEachByte(localStart, localLength, processor);
             if (result != -1) {
-                return result - c.adjustment;
+                return result - c.adjustment - offsetBase;
             }
             start += localLength;
             length -= localLength;
@@ -665,12 +687,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return -1;
         }
         for (int i = toComponentIndex0(rStart), length = 1 + rStart - rEnd; length > 0; i--) {
-            Component c = components[i];
+            Component c = comp(i);
             if (c.offset == c.endOffset) {
                 continue; // empty
             }
             ByteBuf s = c.buf;
-            int localRStart = c.idx(length + rEnd);
+            int localRStart = c.idx(offsetBase + length + rEnd);
             int localLength = Math.min(length, localRStart), localIndex = localRStart - localLength;
             // avoid additional checks in AbstractByteBuf case
             int result = s instanceof AbstractByteBuf
@@ -678,7 +700,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 : s.forEachByteDesc(localIndex, localLength, processor);
 
             if (result != -1) {
-                return result - c.adjustment;
+                return result - c.adjustment - offsetBase;
             }
             length -= localLength;
         }
@@ -697,7 +719,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int componentId = toComponentIndex0(offset);
         int bytesToSlice = length;
         // The first component
-        Component firstC = components[componentId];
+        Component firstC = comp(componentId);
+        offset += offsetBase;
 
         ByteBuf slice = firstC.buf.slice(firstC.idx(offset), Math.min(firstC.endOffset - offset, bytesToSlice));
         bytesToSlice -= slice.readableBytes();
@@ -711,7 +734,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         // Add all the slices until there is nothing more left and then return the List.
         do {
-            Component component = components[++componentId];
+            Component component = comp(++componentId);
             slice = component.buf.slice(component.idx(component.offset), Math.min(component.length(), bytesToSlice));
             bytesToSlice -= slice.readableBytes();
             sliceList.add(slice);
@@ -727,7 +750,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return false;
         }
         for (int i = 0; i < size; i++) {
-           if (!components[i].buf.isDirect()) {
+           if (!comp(i).buf.isDirect()) {
                return false;
            }
         }
@@ -740,7 +763,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return true;
         case 1:
-            return components[0].buf.hasArray();
+            return comp(0).buf.hasArray();
         default:
             return false;
         }
@@ -752,7 +775,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return EmptyArrays.EMPTY_BYTES;
         case 1:
-            return components[0].buf.array();
+            return comp(0).buf.array();
         default:
             throw new UnsupportedOperationException();
         }
@@ -764,8 +787,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return 0;
         case 1:
-            Component c = components[0];
-            return c.idx(c.buf.arrayOffset());
+            Component c = comp(0);
+            return c.idx(offsetBase + c.buf.arrayOffset());
         default:
             throw new UnsupportedOperationException();
         }
@@ -777,7 +800,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return Unpooled.EMPTY_BUFFER.hasMemoryAddress();
         case 1:
-            return components[0].buf.hasMemoryAddress();
+            return comp(0).buf.hasMemoryAddress();
         default:
             return false;
         }
@@ -789,8 +812,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return Unpooled.EMPTY_BUFFER.memoryAddress();
         case 1:
-            Component c = components[0];
-            return c.buf.memoryAddress() + c.adjustment;
+            Component c = comp(0);
+            return c.buf.memoryAddress() + c.idx(offsetBase);
         default:
             throw new UnsupportedOperationException();
         }
@@ -799,7 +822,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     public int capacity() {
         int size = componentCount;
-        return size > 0 ? components[size - 1].endOffset : 0;
+        return size > 0 ? comp(size - 1).endOffset - offsetBase : 0;
     }
 
     @Override
@@ -816,10 +839,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 consolidateIfNeeded();
             }
         } else if (newCapacity < oldCapacity) {
-            lastAccessed = null;
             int i = size - 1;
             for (int bytesToTrim = oldCapacity - newCapacity; i >= 0; i--) {
-                Component c = components[i];
+                Component c = comp(i);
                 final int cLength = c.length();
                 if (bytesToTrim < cLength) {
                     // Trim the last component
@@ -880,24 +902,48 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private int toComponentIndex0(int offset) {
         int size = componentCount;
+        // offsets of the components relative to index 0 of this buffer are c.offset - base and c.endOffset - base
+        final int base = offsetBase;
         if (offset == 0) { // fast-path zero offset
             for (int i = 0; i < size; i++) {
-                if (components[i].endOffset > 0) {
+                if (comp(i).endOffset - base > 0) {
                     return i;
                 }
             }
         }
         if (size <= 2) { // fast-path for 1 and 2 component count
-            return size == 1 || offset < components[0].endOffset ? 0 : 1;
+            return size == 1 || offset < comp(0).endOffset - base ? 0 : 1;
+        }
+        // Check the last accessed component and the next non-empty one first, so sequential access does not need to
+        // search. The cursor does not need to be invalidated as a component only ever contains its own offsets.
+        int i = lastAccessedIndex;
+        if (i < size) {
+            Component c = comp(i);
+            if (offset >= c.offset - base) {
+                if (offset < c.endOffset - base) {
+                    return i;
+                }
+                while (++i < size) {
+                    c = comp(i);
+                    if (offset < c.endOffset - base) {
+                        lastAccessedIndex = i;
+                        return i;
+                    }
+                    if (c.offset != c.endOffset) {
+                        break;
+                    }
+                }
+            }
         }
         for (int low = 0, high = size; low <= high;) {
             int mid = low + high >>> 1;
-            Component c = components[mid];
-            if (offset >= c.endOffset) {
+            Component c = comp(mid);
+            if (offset >= c.endOffset - base) {
                 low = mid + 1;
-            } else if (offset < c.offset) {
+            } else if (offset < c.offset - base) {
                 high = mid - 1;
             } else {
+                lastAccessedIndex = mid;
                 return mid;
             }
         }
@@ -907,26 +953,26 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     public int toByteIndex(int cIndex) {
         checkComponentIndex(cIndex);
-        return components[cIndex].offset;
+        return comp(cIndex).offset - offsetBase;
     }
 
     @Override
     public byte getByte(int index) {
         Component c = findComponent(index);
-        return c.buf.getByte(c.idx(index));
+        return c.buf.getByte(c.idx(offsetBase + index));
     }
 
     @Override
     protected byte _getByte(int index) {
         Component c = findComponent0(index);
-        return c.buf.getByte(c.idx(index));
+        return c.buf.getByte(c.idx(offsetBase + index));
     }
 
     @Override
     protected short _getShort(int index) {
         Component c = findComponent0(index);
-        if (index + 2 <= c.endOffset) {
-            return c.buf.getShort(c.idx(index));
+        if (index + 2 <= c.endOffset - offsetBase) {
+            return c.buf.getShort(c.idx(offsetBase + index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (short) ((_getByte(index) & 0xff) << 8 | _getByte(index + 1) & 0xff);
         } else {
@@ -937,8 +983,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected short _getShortLE(int index) {
         Component c = findComponent0(index);
-        if (index + 2 <= c.endOffset) {
-            return c.buf.getShortLE(c.idx(index));
+        if (index + 2 <= c.endOffset - offsetBase) {
+            return c.buf.getShortLE(c.idx(offsetBase + index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (short) (_getByte(index) & 0xff | (_getByte(index + 1) & 0xff) << 8);
         } else {
@@ -949,8 +995,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getUnsignedMedium(int index) {
         Component c = findComponent0(index);
-        if (index + 3 <= c.endOffset) {
-            return c.buf.getUnsignedMedium(c.idx(index));
+        if (index + 3 <= c.endOffset - offsetBase) {
+            return c.buf.getUnsignedMedium(c.idx(offsetBase + index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getShort(index) & 0xffff) << 8 | _getByte(index + 2) & 0xff;
         } else {
@@ -961,8 +1007,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getUnsignedMediumLE(int index) {
         Component c = findComponent0(index);
-        if (index + 3 <= c.endOffset) {
-            return c.buf.getUnsignedMediumLE(c.idx(index));
+        if (index + 3 <= c.endOffset - offsetBase) {
+            return c.buf.getUnsignedMediumLE(c.idx(offsetBase + index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getShortLE(index) & 0xffff | (_getByte(index + 2) & 0xff) << 16;
         } else {
@@ -973,8 +1019,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getInt(int index) {
         Component c = findComponent0(index);
-        if (index + 4 <= c.endOffset) {
-            return c.buf.getInt(c.idx(index));
+        if (index + 4 <= c.endOffset - offsetBase) {
+            return c.buf.getInt(c.idx(offsetBase + index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getShort(index) & 0xffff) << 16 | _getShort(index + 2) & 0xffff;
         } else {
@@ -985,8 +1031,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getIntLE(int index) {
         Component c = findComponent0(index);
-        if (index + 4 <= c.endOffset) {
-            return c.buf.getIntLE(c.idx(index));
+        if (index + 4 <= c.endOffset - offsetBase) {
+            return c.buf.getIntLE(c.idx(offsetBase + index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getShortLE(index) & 0xffff | (_getShortLE(index + 2) & 0xffff) << 16;
         } else {
@@ -997,8 +1043,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected long _getLong(int index) {
         Component c = findComponent0(index);
-        if (index + 8 <= c.endOffset) {
-            return c.buf.getLong(c.idx(index));
+        if (index + 8 <= c.endOffset - offsetBase) {
+            return c.buf.getLong(c.idx(offsetBase + index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getInt(index) & 0xffffffffL) << 32 | _getInt(index + 4) & 0xffffffffL;
         } else {
@@ -1009,8 +1055,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected long _getLongLE(int index) {
         Component c = findComponent0(index);
-        if (index + 8 <= c.endOffset) {
-            return c.buf.getLongLE(c.idx(index));
+        if (index + 8 <= c.endOffset - offsetBase) {
+            return c.buf.getLongLE(c.idx(offsetBase + index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getIntLE(index) & 0xffffffffL | (_getIntLE(index + 4) & 0xffffffffL) << 32;
         } else {
@@ -1027,9 +1073,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
-            c.buf.getBytes(c.idx(index), dst, dstIndex, localLength);
+            Component c = comp(i);
+            int localLength = Math.min(length, c.endOffset - offsetBase - index);
+            c.buf.getBytes(c.idx(offsetBase + index), dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
             length -= localLength;
@@ -1051,10 +1097,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex0(index);
         try {
             while (length > 0) {
-                Component c = components[i];
-                int localLength = Math.min(length, c.endOffset - index);
+                Component c = comp(i);
+                int localLength = Math.min(length, c.endOffset - offsetBase - index);
                 dst.limit(dst.position() + localLength);
-                c.buf.getBytes(c.idx(index), dst);
+                c.buf.getBytes(c.idx(offsetBase + index), dst);
                 index += localLength;
                 length -= localLength;
                 i ++;
@@ -1074,9 +1120,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
-            c.buf.getBytes(c.idx(index), dst, dstIndex, localLength);
+            Component c = comp(i);
+            int localLength = Math.min(length, c.endOffset - offsetBase - index);
+            c.buf.getBytes(c.idx(offsetBase + index), dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
             length -= localLength;
@@ -1128,9 +1174,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
-            c.buf.getBytes(c.idx(index), out, localLength);
+            Component c = comp(i);
+            int localLength = Math.min(length, c.endOffset - offsetBase - index);
+            c.buf.getBytes(c.idx(offsetBase + index), out, localLength);
             index += localLength;
             length -= localLength;
             i ++;
@@ -1141,14 +1187,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     public CompositeByteBuf setByte(int index, int value) {
         Component c = findComponent(index);
-        c.buf.setByte(c.idx(index), value);
+        c.buf.setByte(c.idx(offsetBase + index), value);
         return this;
     }
 
     @Override
     protected void _setByte(int index, int value) {
         Component c = findComponent0(index);
-        c.buf.setByte(c.idx(index), value);
+        c.buf.setByte(c.idx(offsetBase + index), value);
     }
 
     @Override
@@ -1161,8 +1207,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setShort(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 2 <= c.endOffset) {
-            c.buf.setShort(c.idx(index), value);
+        if (index + 2 <= c.endOffset - offsetBase) {
+            c.buf.setShort(c.idx(offsetBase + index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setByte(index, (byte) (value >>> 8));
             _setByte(index + 1, (byte) value);
@@ -1175,8 +1221,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setShortLE(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 2 <= c.endOffset) {
-            c.buf.setShortLE(c.idx(index), value);
+        if (index + 2 <= c.endOffset - offsetBase) {
+            c.buf.setShortLE(c.idx(offsetBase + index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setByte(index, (byte) value);
             _setByte(index + 1, (byte) (value >>> 8));
@@ -1196,8 +1242,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setMedium(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 3 <= c.endOffset) {
-            c.buf.setMedium(c.idx(index), value);
+        if (index + 3 <= c.endOffset - offsetBase) {
+            c.buf.setMedium(c.idx(offsetBase + index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShort(index, (short) (value >> 8));
             _setByte(index + 2, (byte) value);
@@ -1210,8 +1256,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setMediumLE(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 3 <= c.endOffset) {
-            c.buf.setMediumLE(c.idx(index), value);
+        if (index + 3 <= c.endOffset - offsetBase) {
+            c.buf.setMediumLE(c.idx(offsetBase + index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShortLE(index, (short) value);
             _setByte(index + 2, (byte) (value >>> 16));
@@ -1231,8 +1277,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setInt(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 4 <= c.endOffset) {
-            c.buf.setInt(c.idx(index), value);
+        if (index + 4 <= c.endOffset - offsetBase) {
+            c.buf.setInt(c.idx(offsetBase + index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShort(index, (short) (value >>> 16));
             _setShort(index + 2, (short) value);
@@ -1245,8 +1291,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setIntLE(int index, int value) {
         Component c = findComponent0(index);
-        if (index + 4 <= c.endOffset) {
-            c.buf.setIntLE(c.idx(index), value);
+        if (index + 4 <= c.endOffset - offsetBase) {
+            c.buf.setIntLE(c.idx(offsetBase + index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShortLE(index, (short) value);
             _setShortLE(index + 2, (short) (value >>> 16));
@@ -1266,8 +1312,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setLong(int index, long value) {
         Component c = findComponent0(index);
-        if (index + 8 <= c.endOffset) {
-            c.buf.setLong(c.idx(index), value);
+        if (index + 8 <= c.endOffset - offsetBase) {
+            c.buf.setLong(c.idx(offsetBase + index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setInt(index, (int) (value >>> 32));
             _setInt(index + 4, (int) value);
@@ -1280,8 +1326,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setLongLE(int index, long value) {
         Component c = findComponent0(index);
-        if (index + 8 <= c.endOffset) {
-            c.buf.setLongLE(c.idx(index), value);
+        if (index + 8 <= c.endOffset - offsetBase) {
+            c.buf.setLongLE(c.idx(offsetBase + index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setIntLE(index, (int) value);
             _setIntLE(index + 4, (int) (value >>> 32));
@@ -1300,9 +1346,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
-            c.buf.setBytes(c.idx(index), src, srcIndex, localLength);
+            Component c = comp(i);
+            int localLength = Math.min(length, c.endOffset - offsetBase - index);
+            c.buf.setBytes(c.idx(offsetBase + index), src, srcIndex, localLength);
             index += localLength;
             srcIndex += localLength;
             length -= localLength;
@@ -1324,10 +1370,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex0(index);
         try {
             while (length > 0) {
-                Component c = components[i];
-                int localLength = Math.min(length, c.endOffset - index);
+                Component c = comp(i);
+                int localLength = Math.min(length, c.endOffset - offsetBase - index);
                 src.limit(src.position() + localLength);
-                c.buf.setBytes(c.idx(index), src);
+                c.buf.setBytes(c.idx(offsetBase + index), src);
                 index += localLength;
                 length -= localLength;
                 i ++;
@@ -1347,9 +1393,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
-            c.buf.setBytes(c.idx(index), src, srcIndex, localLength);
+            Component c = comp(i);
+            int localLength = Math.min(length, c.endOffset - offsetBase - index);
+            c.buf.setBytes(c.idx(offsetBase + index), src, srcIndex, localLength);
             index += localLength;
             srcIndex += localLength;
             length -= localLength;
@@ -1368,14 +1414,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex0(index);
         int readBytes = 0;
         do {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = comp(i);
+            int localLength = Math.min(length, c.endOffset - offsetBase - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
                 continue;
             }
-            int localReadBytes = c.buf.setBytes(c.idx(index), in, localLength);
+            int localReadBytes = c.buf.setBytes(c.idx(offsetBase + index), in, localLength);
             if (localReadBytes < 0) {
                 if (readBytes == 0) {
                     return -1;
@@ -1405,14 +1451,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex0(index);
         int readBytes = 0;
         do {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = comp(i);
+            int localLength = Math.min(length, c.endOffset - offsetBase - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
                 continue;
             }
-            int localReadBytes = c.buf.setBytes(c.idx(index), in, localLength);
+            int localReadBytes = c.buf.setBytes(c.idx(offsetBase + index), in, localLength);
 
             if (localReadBytes == 0) {
                 break;
@@ -1447,14 +1493,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex0(index);
         int readBytes = 0;
         do {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
+            Component c = comp(i);
+            int localLength = Math.min(length, c.endOffset - offsetBase - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
                 continue;
             }
-            int localReadBytes = c.buf.setBytes(c.idx(index), in, position + readBytes, localLength);
+            int localReadBytes = c.buf.setBytes(c.idx(offsetBase + index), in, position + readBytes, localLength);
 
             if (localReadBytes == 0) {
                 break;
@@ -1494,9 +1540,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = componentId;
 
         while (length > 0) {
-            Component c = components[i];
-            int localLength = Math.min(length, c.endOffset - index);
-            c.buf.getBytes(c.idx(index), dst, dstIndex, localLength);
+            Component c = comp(i);
+            int localLength = Math.min(length, c.endOffset - offsetBase - index);
+            c.buf.getBytes(c.idx(offsetBase + index), dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
             length -= localLength;
@@ -1514,7 +1560,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public ByteBuf component(int cIndex) {
         checkComponentIndex(cIndex);
-        return components[cIndex].duplicate();
+        return comp(cIndex).duplicate();
     }
 
     /**
@@ -1535,7 +1581,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public ByteBuf internalComponent(int cIndex) {
         checkComponentIndex(cIndex);
-        return components[cIndex].slice();
+        return comp(cIndex).slice();
     }
 
     /**
@@ -1548,42 +1594,13 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         return findComponent(offset).slice();
     }
 
-    // weak cache - check it first when looking for component
-    private Component lastAccessed;
-
     private Component findComponent(int offset) {
-        Component la = lastAccessed;
-        if (la != null && offset >= la.offset && offset < la.endOffset) {
-           ensureAccessible();
-           return la;
-        }
         checkIndex(offset);
-        return findIt(offset);
+        return comp(toComponentIndex0(offset));
     }
 
     private Component findComponent0(int offset) {
-        Component la = lastAccessed;
-        if (la != null && offset >= la.offset && offset < la.endOffset) {
-           return la;
-        }
-        return findIt(offset);
-    }
-
-    private Component findIt(int offset) {
-        for (int low = 0, high = componentCount; low <= high;) {
-            int mid = low + high >>> 1;
-            Component c = components[mid];
-            if (offset >= c.endOffset) {
-                low = mid + 1;
-            } else if (offset < c.offset) {
-                high = mid - 1;
-            } else {
-                lastAccessed = c;
-                return c;
-            }
-        }
-
-        throw new Error("should not reach here");
+        return comp(toComponentIndex0(offset));
     }
 
     @Override
@@ -1593,11 +1610,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return 1;
         case 1:
-            return components[0].buf.nioBufferCount();
+            return comp(0).buf.nioBufferCount();
         default:
             int count = 0;
             for (int i = 0; i < size; i++) {
-                count += components[i].buf.nioBufferCount();
+                count += comp(i).buf.nioBufferCount();
             }
             return count;
         }
@@ -1609,7 +1626,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return EMPTY_NIO_BUFFER;
         case 1:
-            return components[0].internalNioBuffer(index, length);
+            return comp(0).internalNioBuffer(offsetBase + index, length);
         default:
             throw new UnsupportedOperationException();
         }
@@ -1623,10 +1640,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         case 0:
             return EMPTY_NIO_BUFFER;
         case 1:
-            Component c = components[0];
+            Component c = comp(0);
             ByteBuf buf = c.buf;
             if (buf.nioBufferCount() == 1) {
-                return buf.nioBuffer(c.idx(index), length);
+                return buf.nioBuffer(c.idx(offsetBase + index), length);
             }
         }
 
@@ -1652,32 +1669,40 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return new ByteBuffer[] { EMPTY_NIO_BUFFER };
         }
 
-        RecyclableArrayList buffers = RecyclableArrayList.newInstance(componentCount);
-        try {
-            int i = toComponentIndex0(index);
-            while (length > 0) {
-                Component c = components[i];
-                ByteBuf s = c.buf;
-                int localLength = Math.min(length, c.endOffset - index);
-                switch (s.nioBufferCount()) {
-                case 0:
-                    throw new UnsupportedOperationException();
-                case 1:
-                    buffers.add(s.nioBuffer(c.idx(index), localLength));
-                    break;
-                default:
-                    Collections.addAll(buffers, s.nioBuffers(c.idx(index), localLength));
+        // Fill the array directly instead of collecting the buffers in a list first. In the common case every
+        // component has a single buffer, so the array has the exact size and is the only allocation besides the
+        // buffers themselves.
+        int i = toComponentIndex0(index);
+        final int lastIndex = toComponentIndex0(index + length - 1);
+        ByteBuffer[] buffers = new ByteBuffer[lastIndex - i + 1];
+        int count = 0;
+        while (length > 0) {
+            Component c = comp(i);
+            ByteBuf s = c.buf;
+            int localLength = Math.min(length, c.endOffset - offsetBase - index);
+            switch (s.nioBufferCount()) {
+            case 0:
+                throw new UnsupportedOperationException();
+            case 1:
+                buffers[count++] = s.nioBuffer(c.idx(offsetBase + index), localLength);
+                break;
+            default:
+                ByteBuffer[] nioBuffers = s.nioBuffers(c.idx(offsetBase + index), localLength);
+                // Keep room for one buffer of each of the remaining components.
+                int newLength = count + nioBuffers.length + lastIndex - i;
+                if (newLength > buffers.length) {
+                    buffers = Arrays.copyOf(buffers, newLength);
                 }
-
-                index += localLength;
-                length -= localLength;
-                i ++;
+                System.arraycopy(nioBuffers, 0, buffers, count, nioBuffers.length);
+                count += nioBuffers.length;
             }
 
-            return buffers.toArray(new ByteBuffer[0]);
-        } finally {
-            buffers.recycle();
+            index += localLength;
+            length -= localLength;
+            i ++;
         }
+
+        return count == buffers.length ? buffers : Arrays.copyOf(buffers, count);
     }
 
     /**
@@ -1707,16 +1732,15 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
 
         final int endCIndex = cIndex + numComponents;
-        final int startOffset = cIndex != 0 ? components[cIndex].offset : 0;
-        final int capacity = components[endCIndex - 1].endOffset - startOffset;
+        final int startOffset = cIndex != 0 ? comp(cIndex).offset : offsetBase;
+        final int capacity = comp(endCIndex - 1).endOffset - startOffset;
         final ByteBuf consolidated = allocBuffer(capacity);
 
         for (int i = cIndex; i < endCIndex; i ++) {
-            components[i].transferTo(consolidated);
+            comp(i).transferTo(consolidated);
         }
-        lastAccessed = null;
         removeCompRange(cIndex + 1, endCIndex);
-        components[cIndex] = newComponent(consolidated, 0);
+        components[componentStart + cIndex] = newComponent(consolidated, startOffset);
         if (cIndex != 0 || numComponents != componentCount) {
             updateComponentOffsets(cIndex);
         }
@@ -1736,9 +1760,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int writerIndex = writerIndex();
         if (readerIndex == writerIndex && writerIndex == capacity()) {
             for (int i = 0, size = componentCount; i < size; i++) {
-                components[i].free();
+                comp(i).free();
             }
-            lastAccessed = null;
             clearComps();
             setIndex(0, 0);
             adjustMarkers(readerIndex);
@@ -1749,8 +1772,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int firstComponentId = 0;
         Component c = null;
         for (int size = componentCount; firstComponentId < size; firstComponentId++) {
-            c = components[firstComponentId];
-            if (c.endOffset > readerIndex) {
+            c = comp(firstComponentId);
+            if (c.endOffset - offsetBase > readerIndex) {
                 break;
             }
             c.free();
@@ -1758,15 +1781,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         if (firstComponentId == 0) {
             return this; // Nothing to discard
         }
-        Component la = lastAccessed;
-        if (la != null && la.endOffset <= readerIndex) {
-            lastAccessed = null;
-        }
+        int offset = c.offset - offsetBase;
         removeCompRange(0, firstComponentId);
 
         // Update indexes and markers.
-        int offset = c.offset;
-        updateComponentOffsets(0);
+        updateComponentOffsets(0, offset);
         setIndex(readerIndex - offset, writerIndex - offset);
         adjustMarkers(offset);
         return this;
@@ -1784,9 +1803,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int writerIndex = writerIndex();
         if (readerIndex == writerIndex && writerIndex == capacity()) {
             for (int i = 0, size = componentCount; i < size; i++) {
-                components[i].free();
+                comp(i).free();
             }
-            lastAccessed = null;
             clearComps();
             setIndex(0, 0);
             adjustMarkers(readerIndex);
@@ -1796,34 +1814,27 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int firstComponentId = 0;
         Component c = null;
         for (int size = componentCount; firstComponentId < size; firstComponentId++) {
-            c = components[firstComponentId];
-            if (c.endOffset > readerIndex) {
+            c = comp(firstComponentId);
+            if (c.endOffset - offsetBase > readerIndex) {
                 break;
             }
             c.free();
         }
 
         // Replace the first readable component with a new slice.
-        int trimmedBytes = readerIndex - c.offset;
-        c.offset = 0;
-        c.endOffset -= readerIndex;
-        c.srcAdjustment += readerIndex;
-        c.adjustment += readerIndex;
+        int trimmedBytes = offsetBase + readerIndex - c.offset;
+        c.offset = offsetBase + readerIndex;
         ByteBuf slice = c.slice;
         if (slice != null) {
             // We must replace the cached slice with a derived one to ensure that
             // it can later be released properly in the case of PooledSlicedByteBuf.
             c.slice = slice.slice(trimmedBytes, c.length());
         }
-        Component la = lastAccessed;
-        if (la != null && la.endOffset <= readerIndex) {
-            lastAccessed = null;
-        }
 
         removeCompRange(0, firstComponentId);
 
         // Update indexes and markers.
-        updateComponentOffsets(0);
+        updateComponentOffsets(0, readerIndex);
         setIndex(0, writerIndex - readerIndex);
         adjustMarkers(readerIndex);
         return this;
@@ -2215,7 +2226,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // We're not using foreach to avoid creating an iterator.
         // see https://github.com/netty/netty/issues/2642
         for (int i = 0, size = componentCount; i < size; i++) {
-            components[i].free();
+            comp(i).free();
         }
     }
 
@@ -2247,7 +2258,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 throw new NoSuchElementException();
             }
             try {
-                return components[index++].slice();
+                return comp(index++).slice();
             } catch (IndexOutOfBoundsException e) {
                 throw new ConcurrentModificationException();
             }
@@ -2261,6 +2272,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     // Component array manipulation - range checking omitted
 
+    private Component comp(int i) {
+        return components[componentStart + i];
+    }
+
     private void clearComps() {
         removeCompRange(0, componentCount);
     }
@@ -2273,44 +2288,53 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         if (from >= to) {
             return;
         }
-        final int size = componentCount;
+        final int start = componentStart, size = componentCount;
         assert from >= 0 && to <= size;
-        if (to < size) {
-            System.arraycopy(components, to, components, from, size - to);
-        }
         int newSize = size - to + from;
-        for (int i = newSize; i < size; i++) {
-            components[i] = null;
+        if (from == 0) {
+            // Just move the start, the room in front is reused once the end of the array is reached
+            Arrays.fill(components, start, start + to, null);
+            componentStart = newSize == 0 ? 0 : start + to;
+            lastAccessedIndex = Math.max(0, lastAccessedIndex - to);
+            if (newSize == 0) {
+                offsetBase = 0;
+            }
+        } else {
+            if (to < size) {
+                System.arraycopy(components, start + to, components, start + from, size - to);
+            }
+            Arrays.fill(components, start + newSize, start + size, null);
         }
         componentCount = newSize;
     }
 
     private void addComp(int i, Component c) {
         shiftComps(i, 1);
-        components[i] = c;
+        components[componentStart + i] = c;
     }
 
     private void shiftComps(int i, int count) {
-        final int size = componentCount, newSize = size + count;
+        final Component[] arr = components;
+        final int start = componentStart, size = componentCount, newSize = size + count;
         assert i >= 0 && i <= size && count > 0;
-        if (newSize > components.length) {
-            // grow the array
-            int newArrSize = Math.max(size + (size >> 1), newSize);
-            Component[] newArr;
-            if (i == size) {
-                newArr = Arrays.copyOf(components, newArrSize, Component[].class);
-            } else {
-                newArr = new Component[newArrSize];
-                if (i > 0) {
-                    System.arraycopy(components, 0, newArr, 0, i);
-                }
-                if (i < size) {
-                    System.arraycopy(components, i, newArr, i + count, size - i);
-                }
+        if (start + newSize > arr.length) {
+            // Move the components to the front of the array if the room left by the components removed from there
+            // is at least half of their number, so the copy is paid for by these removals. Otherwise grow the array.
+            Component[] newArr = newSize <= arr.length && start >= size >> 1 ? arr
+                    : new Component[Math.max(size + (size >> 1), newSize)];
+            if (i > 0) {
+                System.arraycopy(arr, start, newArr, 0, i);
+            }
+            if (i < size) {
+                System.arraycopy(arr, start + i, newArr, i + count, size - i);
+            }
+            if (newArr == arr && start + size > newSize) {
+                Arrays.fill(arr, Math.max(start, newSize), start + size, null);
             }
             components = newArr;
+            componentStart = 0;
         } else if (i < size) {
-            System.arraycopy(components, i, components, i + count, size - i);
+            System.arraycopy(arr, start + i, arr, start + i + count, size - i);
         }
         componentCount = newSize;
     }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only {@link ByteBuf} which contains the content of a file that is mapped into memory via
+ * {@link FileChannel#map(FileChannel.MapMode, long, long)}. In contrast to reading the file into a buffer there is no
+ * copy of the content, and in contrast to a {@code FileRegion} the content can be processed by handlers like
+ * {@code SslHandler} or added to a {@link CompositeByteBuf}.
+ * <p>
+ * The mapping is removed as soon as the buffer is released, use {@link MappedFileCache} to share the mapping of a
+ * file between many requests.
+ */
+public final class MappedFileByteBuf extends ReadOnlyByteBufferBuf {
+
+    private final MappedByteBuffer mapped;
+    private final File file;
+    private final long lastModified;
+
+    private MappedFileByteBuf(MappedByteBuffer mapped, File file, long lastModified) {
+        super(UnpooledByteBufAllocator.DEFAULT, mapped);
+        this.mapped = mapped;
+        this.file = file;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Maps the whole content of the given file into memory.
+     *
+     * @throws IllegalArgumentException if the file is larger than {@link Integer#MAX_VALUE} bytes.
+     */
+    public static MappedFileByteBuf map(File file) throws IOException {
+        ObjectUtil.checkNotNull(file, "file");
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // Query the modification time before mapping, so a concurrent modification is detected by the cache.
+            long lastModified = file.lastModified();
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("file: " + file + " (expected: size <= " + Integer.MAX_VALUE +
+                        ", was: " + length + ')');
+            }
+            // The mapping stays valid after the channel is closed.
+            return new MappedFileByteBuf(channel.map(FileChannel.MapMode.READ_ONLY, 0, length), file, lastModified);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the file which is mapped.
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Returns the modification time of the file at the time it was mapped.
+     */
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    protected void deallocate() {
+        // Unmap the file directly instead of waiting for the GC to collect the buffer.
+        PlatformDependent.freeDirectBuffer(mapped);
+    }
+
+    @Override
+    public MappedFileByteBuf retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public MappedFileByteBuf retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.ObjectUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of {@link MappedFileByteBuf}s, so a frequently requested file is only mapped once and shared by all requests
+ * instead of being read or mapped for every request.
+ * <p>
+ * The mappings are reference-counted: {@link #acquire(File)} returns a retained duplicate which must be released
+ * when done, and the file is only unmapped when the mapping was evicted from the cache and all duplicates were
+ * released. Mappings are evicted in least recently used order when the maximum number of entries or bytes is
+ * exceeded, and are replaced when the modification time or the size of the file changed.
+ */
+public final class MappedFileCache {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    // Guarded by this, in access order so the eldest entry is the least recently used one.
+    private final Map<String, MappedFileByteBuf> mappings =
+            new LinkedHashMap<String, MappedFileByteBuf>(16, 0.75f, true);
+    private long mappedBytes;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries the maximum number of files which stay mapped.
+     * @param maxBytes the maximum number of bytes which stay mapped, larger files are not cached at all.
+     */
+    public MappedFileCache(int maxEntries, long maxBytes) {
+        this.maxEntries = ObjectUtil.checkPositive(maxEntries, "maxEntries");
+        this.maxBytes = ObjectUtil.checkPositive(maxBytes, "maxBytes");
+    }
+
+    /**
+     * Returns a read-only buffer with the whole content of the file, which must be released when done. The file is
+     * only mapped if it is not cached already or was modified since it was mapped.
+     *
+     * @throws IllegalArgumentException if the file is larger than {@link Integer#MAX_VALUE} bytes.
+     */
+    public ByteBuf acquire(File file) throws IOException {
+        ObjectUtil.checkNotNull(file, "file");
+        String key = file.getAbsolutePath();
+        synchronized (this) {
+            MappedFileByteBuf mapping = mappings.get(key);
+            if (mapping != null) {
+                if (isCurrent(mapping, file)) {
+                    return mapping.retainedDuplicate();
+                }
+                remove(key);
+            }
+        }
+
+        // Map the file without holding the lock as it may block on the file system.
+        MappedFileByteBuf mapping = MappedFileByteBuf.map(file);
+        if (mapping.capacity() > maxBytes) {
+            // Too large to be cached, so the caller owns the mapping.
+            return mapping;
+        }
+        synchronized (this) {
+            MappedFileByteBuf existing = mappings.get(key);
+            if (existing != null && existing.lastModified() >= mapping.lastModified()) {
+                // The file was mapped concurrently, use that mapping instead.
+                ByteBuf duplicate = existing.retainedDuplicate();
+                mapping.release();
+                return duplicate;
+            }
+            if (existing != null) {
+                remove(key);
+            }
+            mappings.put(key, mapping);
+            mappedBytes += mapping.capacity();
+            evict();
+            return mapping.retainedDuplicate();
+        }
+    }
+
+    /**
+     * Removes the mapping of the given file from the cache. The file is unmapped once all buffers which were
+     * acquired for it were released.
+     */
+    public synchronized void invalidate(File file) {
+        remove(file.getAbsolutePath());
+    }
+
+    /**
+     * Removes all mappings from the cache.
+     */
+    public synchronized void clear() {
+        for (MappedFileByteBuf mapping : mappings.values()) {
+            mapping.release();
+        }
+        mappings.clear();
+        mappedBytes = 0;
+    }
+
+    /**
+     * Returns the number of files which are cached.
+     */
+    public synchronized int size() {
+        return mappings.size();
+    }
+
+    /**
+     * Returns the number of bytes of all files which are cached.
+     */
+    public synchronized long mappedBytes() {
+        return mappedBytes;
+    }
+
+    private static boolean isCurrent(MappedFileByteBuf mapping, File file) {
+        return mapping.lastModified() == file.lastModified() && mapping.capacity() == file.length();
+    }
+
+    private void remove(String key) {
+        MappedFileByteBuf mapping = mappings.remove(key);
+        if (mapping != null) {
+            mappedBytes -= mapping.capacity();
+            mapping.release();
+        }
+    }
+
+    private void evict() {
+        Iterator<MappedFileByteBuf> i = mappings.values().iterator();
+        // Never evict the most recently used mapping, which is the last one.
+        while ((mappings.size() > maxEntries || mappedBytes > maxBytes) && mappings.size() > 1) {
+            MappedFileByteBuf mapping = i.next();
+            i.remove();
+            mappedBytes -= mapping.capacity();
+            mapping.release();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MappedFileCache(entries: " + mappings.size() + '/' + maxEntries +
+                ", bytes: " + mappedBytes + '/' + maxBytes + ')';
+    }
+}
@@ -16,41 +16,47 @@
 
 package io.netty.buffer;
 
+import io.netty.util.internal.DirectMemoryMapper;
+import io.netty.util.internal.DirectMemoryPurger;
 import io.netty.util.internal.LongCounter;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
-import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+import static io.netty.buffer.PoolChunk.isSubpage;
 import static java.lang.Math.max;
 
-abstract class PoolArena<T> implements PoolArenaMetric {
+abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
     static final boolean HAS_UNSAFE = PlatformDependent.hasUnsafe();
 
+    // The time constant with which past lock acquisitions fade out of the load of an arena.
+    private static final long LOAD_DECAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAGAZINE_TRIM_INTERVAL_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(PooledByteBufAllocator.DEFAULT_MAGAZINE_TRIM_INTERVAL_MILLIS);
+
     enum SizeClass {
-        Tiny,
         Small,
         Normal
     }
 
-    static final int numTinySubpagePools = 512 >>> 4;
-
     final PooledByteBufAllocator parent;
 
-    private final int maxOrder;
-    final int pageSize;
-    final int pageShifts;
-    final int chunkSize;
-    final int subpageOverflowMask;
     final int numSmallSubpagePools;
     final int directMemoryCacheAlignment;
     final int directMemoryCacheAlignmentMask;
-    private final PoolSubpage<T>[] tinySubpagePools;
     private final PoolSubpage<T>[] smallSubpagePools;
 
     private final PoolChunkList<T> q050;
@@ -62,45 +68,56 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     private final List<PoolChunkListMetric> chunkListMetrics;
 
+    // Magazines shared by all threads, indexed by sizeIdx and created lazily. null if disabled.
+    private final AtomicReferenceArray<PoolMagazine<T>> magazines;
+    // When the magazines were trimmed the last time. All threads share it, so a magazine is only trimmed once per
+    // interval no matter how many thread caches are trimmed meanwhile.
+    private final AtomicLong lastMagazineTrimNanos = new AtomicLong(System.nanoTime());
+
     // Metrics for allocations and deallocations
     private long allocationsNormal;
-    // We need to use the LongCounter here as this is not guarded via synchronized block.
-    private final LongCounter allocationsTiny = PlatformDependent.newLongCounter();
+    // We need to use the LongCounter here as this is not guarded by the arena lock.
     private final LongCounter allocationsSmall = PlatformDependent.newLongCounter();
     private final LongCounter allocationsHuge = PlatformDependent.newLongCounter();
     private final LongCounter activeBytesHuge = PlatformDependent.newLongCounter();
 
-    private long deallocationsTiny;
     private long deallocationsSmall;
     private long deallocationsNormal;
 
-    // We need to use the LongCounter here as this is not guarded via synchronized block.
+    // We need to use the LongCounter here as this is not guarded by the arena lock.
     private final LongCounter deallocationsHuge = PlatformDependent.newLongCounter();
 
     // Number of thread caches backed by this arena.
     final AtomicInteger numThreadCaches = new AtomicInteger();
 
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Incremented by every decay() call, guarded by the lock.
+    int decayEpoch;
+
+    // Metrics for the arena lock.
+    // We need to use the LongCounter here as these are read without holding the lock when choosing an arena.
+    private final LongCounter lockAcquisitions = PlatformDependent.newLongCounter();
+    private final LongCounter contendedLockAcquisitions = PlatformDependent.newLongCounter();
+    private final LongCounter threadCacheMigrations = PlatformDependent.newLongCounter();
+
+    // Exponentially decayed lock acquisition rates used by load(long).
+    private final AtomicReference<LoadSample> loadSample =
+            new AtomicReference<LoadSample>(new LoadSample(System.nanoTime(), 0, 0, 0));
+
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
     protected PoolArena(PooledByteBufAllocator parent, int pageSize,
-          int maxOrder, int pageShifts, int chunkSize, int cacheAlignment) {
+          int pageShifts, int chunkSize, int cacheAlignment) {
+        super(pageSize, pageShifts, chunkSize, cacheAlignment);
         this.parent = parent;
-        this.pageSize = pageSize;
-        this.maxOrder = maxOrder;
-        this.pageShifts = pageShifts;
-        this.chunkSize = chunkSize;
         directMemoryCacheAlignment = cacheAlignment;
         directMemoryCacheAlignmentMask = cacheAlignment - 1;
-        subpageOverflowMask = ~(pageSize - 1);
-        tinySubpagePools = newSubpagePoolArray(numTinySubpagePools);
-        for (int i = 0; i < tinySubpagePools.length; i ++) {
-            tinySubpagePools[i] = newSubpagePoolHead(pageSize);
-        }
 
-        numSmallSubpagePools = pageShifts - 9;
+        numSmallSubpagePools = nSubpages;
         smallSubpagePools = newSubpagePoolArray(numSmallSubpagePools);
         for (int i = 0; i < smallSubpagePools.length; i ++) {
-            smallSubpagePools[i] = newSubpagePoolHead(pageSize);
+            smallSubpagePools[i] = newSubpagePoolHead();
         }
 
         q100 = new PoolChunkList<T>(this, null, 100, Integer.MAX_VALUE, chunkSize);
@@ -125,10 +142,73 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         metrics.add(q075);
         metrics.add(q100);
         chunkListMetrics = Collections.unmodifiableList(metrics);
+
+        magazines = newMagazines(parent);
     }
 
-    private PoolSubpage<T> newSubpagePoolHead(int pageSize) {
-        PoolSubpage<T> head = new PoolSubpage<T>(pageSize);
+    private AtomicReferenceArray<PoolMagazine<T>> newMagazines(PooledByteBufAllocator parent) {
+        // Only use magazines if thread caching is enabled at all, as a cache size of 0 is how users opt out of it.
+        if (parent == null || PooledByteBufAllocator.DEFAULT_MAGAZINE_SIZE == 0
+                || parent.smallCacheSize == 0 && parent.normalCacheSize == 0) {
+            return null;
+        }
+        // Cover the same sizes as PoolThreadCache does.
+        int max = Math.min(chunkSize, PooledByteBufAllocator.DEFAULT_MAX_CACHED_BUFFER_CAPACITY);
+        int numSizes = numSmallSubpagePools;
+        while (numSizes < nSizes && sizeIdx2size(numSizes) <= max) {
+            numSizes++;
+        }
+        return new AtomicReferenceArray<PoolMagazine<T>>(numSizes);
+    }
+
+    private PoolMagazine<T> magazine(int sizeIdx, boolean create) {
+        AtomicReferenceArray<PoolMagazine<T>> magazines = this.magazines;
+        if (magazines == null || sizeIdx >= magazines.length()) {
+            return null;
+        }
+        PoolMagazine<T> magazine = magazines.get(sizeIdx);
+        if (magazine == null && create) {
+            magazine = new PoolMagazine<T>(PooledByteBufAllocator.DEFAULT_NUM_MAGAZINE_STRIPES,
+                    PooledByteBufAllocator.DEFAULT_MAGAZINE_SIZE);
+            if (!magazines.compareAndSet(sizeIdx, null, magazine)) {
+                magazine = magazines.get(sizeIdx);
+            }
+        }
+        return magazine;
+    }
+
+    /**
+     * Give the memory that is kept in magazines which were not used since their previous trim back to the chunks.
+     * Unless {@code force} is {@code true}, this is only done if the magazines were not trimmed within the last
+     * {@code io.netty.allocator.magazineTrimIntervalMillis}, as it is done whenever any thread cache is trimmed.
+     */
+    void trimMagazines(boolean force) {
+        AtomicReferenceArray<PoolMagazine<T>> magazines = this.magazines;
+        if (magazines == null) {
+            return;
+        }
+        long last = lastMagazineTrimNanos.get();
+        long nanoTime = System.nanoTime();
+        if (!force && nanoTime - last < MAGAZINE_TRIM_INTERVAL_NANOS ||
+                !lastMagazineTrimNanos.compareAndSet(last, nanoTime)) {
+            // Not due yet, or another thread is trimming right now.
+            return;
+        }
+        for (int sizeIdx = 0; sizeIdx < magazines.length(); sizeIdx++) {
+            PoolMagazine<T> magazine = magazines.get(sizeIdx);
+            if (magazine != null) {
+                magazine.trim(this, sizeIdx2size(sizeIdx));
+            }
+        }
+    }
+
+    private boolean allocateFromMagazine(PoolThreadCache cache, PooledByteBuf<T> buf, int reqCapacity, int sizeIdx) {
+        PoolMagazine<T> magazine = magazine(sizeIdx, false);
+        return magazine != null && magazine.allocate(buf, reqCapacity, cache);
+    }
+
+    private PoolSubpage<T> newSubpagePoolHead() {
+        PoolSubpage<T> head = new PoolSubpage<T>();
         head.prev = head;
         head.next = head;
         return head;
@@ -141,118 +221,109 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     abstract boolean isDirect();
 
+    /**
+     * Returns the NUMA node whose memory backs this arena or {@code -1} if the arena is not bound to a node.
+     */
+    int numaNode() {
+        return -1;
+    }
+
     PooledByteBuf<T> allocate(PoolThreadCache cache, int reqCapacity, int maxCapacity) {
         PooledByteBuf<T> buf = newByteBuf(maxCapacity);
         allocate(cache, buf, reqCapacity);
         return buf;
     }
 
-    static int tinyIdx(int normCapacity) {
-        return normCapacity >>> 4;
-    }
+    private void allocate(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity) {
+        final int sizeIdx = size2SizeIdx(reqCapacity);
 
-    static int smallIdx(int normCapacity) {
-        int tableIdx = 0;
-        int i = normCapacity >>> 10;
-        while (i != 0) {
-            i >>>= 1;
-            tableIdx ++;
+        if (sizeIdx <= smallMaxSizeIdx) {
+            tcacheAllocateSmall(cache, buf, reqCapacity, sizeIdx);
+        } else if (sizeIdx < nSizes) {
+            tcacheAllocateNormal(cache, buf, reqCapacity, sizeIdx);
+        } else {
+            int normCapacity = directMemoryCacheAlignment > 0
+                    ? normalizeSize(reqCapacity) : reqCapacity;
+            // Huge allocations are never served via the cache so just call allocateHuge
+            allocateHuge(buf, normCapacity);
         }
-        return tableIdx;
     }
 
-    // capacity < pageSize
-    boolean isTinyOrSmall(int normCapacity) {
-        return (normCapacity & subpageOverflowMask) == 0;
-    }
+    private void tcacheAllocateSmall(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity,
+                                     final int sizeIdx) {
 
-    // normCapacity < 512
-    static boolean isTiny(int normCapacity) {
-        return (normCapacity & 0xFFFFFE00) == 0;
-    }
+        if (cache.allocateSmall(this, buf, reqCapacity, sizeIdx) ||
+                allocateFromMagazine(cache, buf, reqCapacity, sizeIdx)) {
+            // was able to allocate out of the cache so move on
+            return;
+        }
 
-    private void allocate(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity) {
-        final int normCapacity = normalizeCapacity(reqCapacity);
-        if (isTinyOrSmall(normCapacity)) { // capacity < pageSize
-            int tableIdx;
-            PoolSubpage<T>[] table;
-            boolean tiny = isTiny(normCapacity);
-            if (tiny) { // < 512
-                if (cache.allocateTiny(this, buf, reqCapacity, normCapacity)) {
-                    // was able to allocate out of the cache so move on
-                    return;
-                }
-                tableIdx = tinyIdx(normCapacity);
-                table = tinySubpagePools;
-            } else {
-                if (cache.allocateSmall(this, buf, reqCapacity, normCapacity)) {
-                    // was able to allocate out of the cache so move on
-                    return;
-                }
-                tableIdx = smallIdx(normCapacity);
-                table = smallSubpagePools;
+        /**
+         * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
+         * {@link PoolChunk#free(long, int, ByteBuffer)} may modify the doubly linked list as well.
+         */
+        final PoolSubpage<T> head = smallSubpagePools[sizeIdx];
+        final boolean needsNormalAllocation;
+        synchronized (head) {
+            final PoolSubpage<T> s = head.next;
+            needsNormalAllocation = s == head;
+            if (!needsNormalAllocation) {
+                assert s.doNotDestroy && s.elemSize == sizeIdx2size(sizeIdx);
+                long handle = s.allocate();
+                assert handle >= 0;
+                s.chunk.initBufWithSubpage(buf, null, handle, reqCapacity, cache);
             }
+        }
 
-            final PoolSubpage<T> head = table[tableIdx];
-
-            /**
-             * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
-             * {@link PoolChunk#free(long)} may modify the doubly linked list as well.
-             */
-            synchronized (head) {
-                final PoolSubpage<T> s = head.next;
-                if (s != head) {
-                    assert s.doNotDestroy && s.elemSize == normCapacity;
-                    long handle = s.allocate();
-                    assert handle >= 0;
-                    s.chunk.initBufWithSubpage(buf, null, handle, reqCapacity);
-                    incTinySmallAllocation(tiny);
-                    return;
-                }
-            }
-            synchronized (this) {
-                allocateNormal(buf, reqCapacity, normCapacity);
+        if (needsNormalAllocation) {
+            boolean contended = lockForAllocation();
+            try {
+                allocateNormal(buf, reqCapacity, sizeIdx, cache);
+            } finally {
+                unlock();
             }
+            cache.recordArenaLock(this, contended);
+        }
 
-            incTinySmallAllocation(tiny);
+        incSmallAllocation();
+    }
+
+    private void tcacheAllocateNormal(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity,
+                                      final int sizeIdx) {
+        if (cache.allocateNormal(this, buf, reqCapacity, sizeIdx) ||
+                allocateFromMagazine(cache, buf, reqCapacity, sizeIdx)) {
+            // was able to allocate out of the cache so move on
             return;
         }
-        if (normCapacity <= chunkSize) {
-            if (cache.allocateNormal(this, buf, reqCapacity, normCapacity)) {
-                // was able to allocate out of the cache so move on
-                return;
-            }
-            synchronized (this) {
-                allocateNormal(buf, reqCapacity, normCapacity);
-                ++allocationsNormal;
-            }
-        } else {
-            // Huge allocations are never served via the cache so just call allocateHuge
-            allocateHuge(buf, reqCapacity);
+        boolean contended = lockForAllocation();
+        try {
+            allocateNormal(buf, reqCapacity, sizeIdx, cache);
+            ++allocationsNormal;
+        } finally {
+            unlock();
         }
+        cache.recordArenaLock(this, contended);
     }
 
-    // Method must be called inside synchronized(this) { ... } block
-    private void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int normCapacity) {
-        if (q050.allocate(buf, reqCapacity, normCapacity) || q025.allocate(buf, reqCapacity, normCapacity) ||
-            q000.allocate(buf, reqCapacity, normCapacity) || qInit.allocate(buf, reqCapacity, normCapacity) ||
-            q075.allocate(buf, reqCapacity, normCapacity)) {
+    // Method must be called while holding the lock of this arena.
+    private void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int sizeIdx, PoolThreadCache threadCache) {
+        if (q050.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+            q025.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+            q000.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+            qInit.allocate(buf, reqCapacity, sizeIdx, threadCache) ||
+            q075.allocate(buf, reqCapacity, sizeIdx, threadCache)) {
             return;
         }
 
         // Add a new chunk.
-        PoolChunk<T> c = newChunk(pageSize, maxOrder, pageShifts, chunkSize);
-        boolean success = c.allocate(buf, reqCapacity, normCapacity);
+        PoolChunk<T> c = newChunk(pageSize, nPSizes, pageShifts, chunkSize);
+        boolean success = c.allocate(buf, reqCapacity, sizeIdx, threadCache);
         assert success;
         qInit.add(c);
     }
 
-    private void incTinySmallAllocation(boolean tiny) {
-        if (tiny) {
-            allocationsTiny.increment();
-        } else {
-            allocationsSmall.increment();
-        }
+    private void incSmallAllocation() {
+        allocationsSmall.increment();
     }
 
     private void allocateHuge(PooledByteBuf<T> buf, int reqCapacity) {
@@ -269,26 +340,32 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             activeBytesHuge.add(-size);
             deallocationsHuge.increment();
         } else {
-            SizeClass sizeClass = sizeClass(normCapacity);
+            SizeClass sizeClass = sizeClass(handle);
             if (cache != null && cache.add(this, chunk, nioBuffer, handle, normCapacity, sizeClass)) {
                 // cached so not free it.
                 return;
             }
+            if (magazines != null) {
+                PoolMagazine<T> magazine = magazine(size2SizeIdx(normCapacity), true);
+                if (magazine != null && magazine.offer(chunk, nioBuffer, handle)) {
+                    // shared with other threads so not free it.
+                    return;
+                }
+            }
 
-            freeChunk(chunk, handle, sizeClass, nioBuffer, false);
+            freeChunk(chunk, handle, normCapacity, sizeClass, nioBuffer, false);
         }
     }
 
-    private SizeClass sizeClass(int normCapacity) {
-        if (!isTinyOrSmall(normCapacity)) {
-            return SizeClass.Normal;
-        }
-        return isTiny(normCapacity) ? SizeClass.Tiny : SizeClass.Small;
+    private static SizeClass sizeClass(long handle) {
+        return isSubpage(handle) ? SizeClass.Small : SizeClass.Normal;
     }
 
-    void freeChunk(PoolChunk<T> chunk, long handle, SizeClass sizeClass, ByteBuffer nioBuffer, boolean finalizer) {
+    void freeChunk(PoolChunk<T> chunk, long handle, int normCapacity, SizeClass sizeClass, ByteBuffer nioBuffer,
+                   boolean finalizer) {
         final boolean destroyChunk;
-        synchronized (this) {
+        lockForAllocation();
+        try {
             // We only call this if freeChunk is not called because of the PoolThreadCache finalizer as otherwise this
             // may fail due lazy class-loading in for example tomcat.
             if (!finalizer) {
@@ -299,82 +376,144 @@ abstract class PoolArena<T> implements PoolArenaMetric {
                     case Small:
                         ++deallocationsSmall;
                         break;
-                    case Tiny:
-                        ++deallocationsTiny;
-                        break;
                     default:
                         throw new Error();
                 }
             }
-            destroyChunk = !chunk.parent.free(chunk, handle, nioBuffer);
+            destroyChunk = !chunk.parent.free(chunk, handle, normCapacity, nioBuffer) && !deferDestroy(chunk);
+        } finally {
+            unlock();
         }
         if (destroyChunk) {
-            // destroyChunk not need to be called while holding the synchronized lock.
+            // destroyChunk not need to be called while holding the lock.
             destroyChunk(chunk);
         }
     }
 
-    PoolSubpage<T> findSubpagePoolHead(int elemSize) {
-        int tableIdx;
-        PoolSubpage<T>[] table;
-        if (isTiny(elemSize)) { // < 512
-            tableIdx = elemSize >>> 4;
-            table = tinySubpagePools;
-        } else {
-            tableIdx = 0;
-            elemSize >>>= 10;
-            while (elemSize != 0) {
-                elemSize >>>= 1;
-                tableIdx ++;
-            }
-            table = smallSubpagePools;
+    /**
+     * Returns {@code true} if the chunk is purged right now, in which case it is destroyed by {@link #decay()} once
+     * the purge is done.
+     */
+    private static boolean deferDestroy(PoolChunk<?> chunk) {
+        if (chunk.purging) {
+            chunk.destroyAfterPurge = true;
+            return true;
         }
-
-        return table[tableIdx];
+        return false;
     }
 
-    int normalizeCapacity(int reqCapacity) {
-        checkPositiveOrZero(reqCapacity, "reqCapacity");
+    PoolSubpage<T> findSubpagePoolHead(int sizeIdx) {
+        return smallSubpagePools[sizeIdx];
+    }
 
-        if (reqCapacity >= chunkSize) {
-            return directMemoryCacheAlignment == 0 ? reqCapacity : alignCapacity(reqCapacity);
+    /**
+     * Acquire the lock of this arena for an allocation or deallocation and return {@code true} if another thread
+     * was holding it at the time.
+     */
+    private boolean lockForAllocation() {
+        boolean contended = !lock.tryLock();
+        if (contended) {
+            lock.lock();
+            contendedLockAcquisitions.increment();
         }
+        lockAcquisitions.increment();
+        return contended;
+    }
 
-        if (!isTiny(reqCapacity)) { // >= 512
-            // Doubled
-
-            int normalizedCapacity = reqCapacity;
-            normalizedCapacity --;
-            normalizedCapacity |= normalizedCapacity >>>  1;
-            normalizedCapacity |= normalizedCapacity >>>  2;
-            normalizedCapacity |= normalizedCapacity >>>  4;
-            normalizedCapacity |= normalizedCapacity >>>  8;
-            normalizedCapacity |= normalizedCapacity >>> 16;
-            normalizedCapacity ++;
-
-            if (normalizedCapacity < 0) {
-                normalizedCapacity >>>= 1;
+    /**
+     * Give the free memory of chunks that were not used since the previous call back to the operating system.
+     * Chunks that are completely free are destroyed instead if the memory of this arena can not be purged.
+     */
+    void decay() {
+        // Memory that is kept in magazines can not be purged, so give back what was not used lately first.
+        trimMagazines(true);
+
+        List<PoolChunk<T>> chunks = null;
+        boolean canPurge;
+        lock();
+        try {
+            int epoch = decayEpoch++;
+            canPurge = canPurge();
+            chunks = qInit.decay(epoch, canPurge, chunks);
+            chunks = q000.decay(epoch, canPurge, chunks);
+            chunks = q025.decay(epoch, canPurge, chunks);
+            chunks = q050.decay(epoch, canPurge, chunks);
+            chunks = q075.decay(epoch, canPurge, chunks);
+        } finally {
+            unlock();
+        }
+        if (chunks == null) {
+            return;
+        }
+        for (PoolChunk<T> chunk : chunks) {
+            if (!canPurge) {
+                // destroyChunk not need to be called while holding the lock.
+                destroyChunk(chunk);
+                continue;
+            }
+            // Purging may take a while, so it is done without holding the lock. The chunk is not used meanwhile.
+            int purged = chunk.purge();
+            boolean destroy;
+            lock();
+            try {
+                destroy = chunk.finishPurge(purged);
+            } finally {
+                unlock();
+            }
+            if (destroy) {
+                destroyChunk(chunk);
             }
-            assert directMemoryCacheAlignment == 0 || (normalizedCapacity & directMemoryCacheAlignmentMask) == 0;
-
-            return normalizedCapacity;
         }
+    }
 
-        if (directMemoryCacheAlignment > 0) {
-            return alignCapacity(reqCapacity);
+    /**
+     * Returns the current load of this arena: the rate of lock acquisitions per second, which is the rate of
+     * allocations and deallocations that were not served by a cache, plus the rate of contended lock acquisitions.
+     * Both rates are decayed exponentially, so activity that happened a while ago does not count against an arena that
+     * became idle since then.
+     */
+    double load(long nanoTime) {
+        // Does not take the lock, so choosing an arena does not add to the contention of the arenas it looks at.
+        LoadSample sample = loadSample.get();
+        long elapsed = nanoTime - sample.nanoTime;
+        if (elapsed <= 0) {
+            return sample.rate;
         }
+        long acquisitions = lockAcquisitions.value();
+        long contended = contendedLockAcquisitions.value();
+        double weight = Math.exp(-(double) elapsed / LOAD_DECAY_NANOS);
+        double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+        double rate = sample.rate * weight + (1 - weight) *
+                ((acquisitions - sample.lockAcquisitions + contended - sample.contendedLockAcquisitions) / seconds);
+        // If another thread updated the sample meanwhile its rate is as recent as ours, so a failed CAS is fine.
+        loadSample.compareAndSet(sample, new LoadSample(nanoTime, acquisitions, contended, rate));
+        return rate;
+    }
 
-        // Quantum-spaced
-        if ((reqCapacity & 15) == 0) {
-            return reqCapacity;
+    private static final class LoadSample {
+        final long nanoTime;
+        final long lockAcquisitions;
+        final long contendedLockAcquisitions;
+        final double rate;
+
+        LoadSample(long nanoTime, long lockAcquisitions, long contendedLockAcquisitions, double rate) {
+            this.nanoTime = nanoTime;
+            this.lockAcquisitions = lockAcquisitions;
+            this.contendedLockAcquisitions = contendedLockAcquisitions;
+            this.rate = rate;
         }
+    }
 
-        return (reqCapacity & ~15) + 16;
+    void lock() {
+        lock.lock();
     }
 
-    int alignCapacity(int reqCapacity) {
-        int delta = reqCapacity & directMemoryCacheAlignmentMask;
-        return delta == 0 ? reqCapacity : reqCapacity + directMemoryCacheAlignment - delta;
+    void unlock() {
+        lock.unlock();
+    }
+
+    void incThreadCacheMigrations() {
+        threadCacheMigrations.increment();
     }
 
     void reallocate(PooledByteBuf<T> buf, int newCapacity, boolean freeOldMemory) {
@@ -412,9 +551,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return numThreadCaches.get();
     }
 
+    @Deprecated
     @Override
     public int numTinySubpages() {
-        return tinySubpagePools.length;
+        return 0;
     }
 
     @Override
@@ -427,9 +567,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return chunkListMetrics.size();
     }
 
+    @Deprecated
     @Override
     public List<PoolSubpageMetric> tinySubpages() {
-        return subPageMetricList(tinySubpagePools);
+        return Collections.emptyList();
     }
 
     @Override
@@ -463,15 +604,19 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     @Override
     public long numAllocations() {
         final long allocsNormal;
-        synchronized (this) {
+        lock();
+        try {
             allocsNormal = allocationsNormal;
+        } finally {
+            unlock();
         }
-        return allocationsTiny.value() + allocationsSmall.value() + allocsNormal + allocationsHuge.value();
+        return allocationsSmall.value() + allocsNormal + allocationsHuge.value();
     }
 
+    @Deprecated
     @Override
     public long numTinyAllocations() {
-        return allocationsTiny.value();
+        return 0;
     }
 
     @Override
@@ -480,32 +625,51 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     }
 
     @Override
-    public synchronized long numNormalAllocations() {
-        return allocationsNormal;
+    public long numNormalAllocations() {
+        lock();
+        try {
+            return allocationsNormal;
+        } finally {
+            unlock();
+        }
     }
 
     @Override
     public long numDeallocations() {
         final long deallocs;
-        synchronized (this) {
-            deallocs = deallocationsTiny + deallocationsSmall + deallocationsNormal;
+        lock();
+        try {
+            deallocs = deallocationsSmall + deallocationsNormal;
+        } finally {
+            unlock();
         }
         return deallocs + deallocationsHuge.value();
     }
 
+    @Deprecated
     @Override
-    public synchronized long numTinyDeallocations() {
-        return deallocationsTiny;
+    public long numTinyDeallocations() {
+        return 0;
     }
 
     @Override
-    public synchronized long numSmallDeallocations() {
-        return deallocationsSmall;
+    public long numSmallDeallocations() {
+        lock();
+        try {
+            return deallocationsSmall;
+        } finally {
+            unlock();
+        }
     }
 
     @Override
-    public synchronized long numNormalDeallocations() {
-        return deallocationsNormal;
+    public long numNormalDeallocations() {
+        lock();
+        try {
+            return deallocationsNormal;
+        } finally {
+            unlock();
+        }
     }
 
     @Override
@@ -520,17 +684,21 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     @Override
     public  long numActiveAllocations() {
-        long val = allocationsTiny.value() + allocationsSmall.value() + allocationsHuge.value()
+        long val = allocationsSmall.value() + allocationsHuge.value()
                 - deallocationsHuge.value();
-        synchronized (this) {
-            val += allocationsNormal - (deallocationsTiny + deallocationsSmall + deallocationsNormal);
+        lock();
+        try {
+            val += allocationsNormal - (deallocationsSmall + deallocationsNormal);
+        } finally {
+            unlock();
         }
         return max(val, 0);
     }
 
+    @Deprecated
     @Override
     public long numActiveTinyAllocations() {
-        return max(numTinyAllocations() - numTinyDeallocations(), 0);
+        return 0;
     }
 
     @Override
@@ -541,8 +709,11 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     @Override
     public long numActiveNormalAllocations() {
         final long val;
-        synchronized (this) {
+        lock();
+        try {
             val = allocationsNormal - deallocationsNormal;
+        } finally {
+            unlock();
         }
         return max(val, 0);
     }
@@ -555,24 +726,79 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     @Override
     public long numActiveBytes() {
         long val = activeBytesHuge.value();
-        synchronized (this) {
+        lock();
+        try {
             for (int i = 0; i < chunkListMetrics.size(); i++) {
                 for (PoolChunkMetric m: chunkListMetrics.get(i)) {
                     val += m.chunkSize();
                 }
             }
+        } finally {
+            unlock();
         }
         return max(0, val);
     }
 
-    protected abstract PoolChunk<T> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize);
+    @Override
+    public long numPurgedBytes() {
+        lock();
+        try {
+            return qInit.purgedBytes() + q000.purgedBytes() + q025.purgedBytes() + q050.purgedBytes() +
+                    q075.purgedBytes() + q100.purgedBytes();
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public long numResidentBytes() {
+        return max(0, numActiveBytes() - numPurgedBytes());
+    }
+
+    @Override
+    public long numLockAcquisitions() {
+        return lockAcquisitions.value();
+    }
+
+    @Override
+    public long numContendedLockAcquisitions() {
+        return contendedLockAcquisitions.value();
+    }
+
+    @Override
+    public long numThreadCacheMigrations() {
+        return threadCacheMigrations.value();
+    }
+
+    protected abstract PoolChunk<T> newChunk(int pageSize, int maxPageIdx, int pageShifts, int chunkSize);
     protected abstract PoolChunk<T> newUnpooledChunk(int capacity);
     protected abstract PooledByteBuf<T> newByteBuf(int maxCapacity);
     protected abstract void memoryCopy(T src, int srcOffset, T dst, int dstOffset, int length);
     protected abstract void destroyChunk(PoolChunk<T> chunk);
 
+    /**
+     * Returns {@code true} if the memory of this arena can be given back to the operating system without
+     * destroying the chunk it belongs to.
+     */
+    abstract boolean canPurge();
+
+    /**
+     * Give the memory of the given range of the chunk back to the operating system while keeping it usable and return
+     * the number of bytes that were actually given back.
+     */
+    abstract int purge(PoolChunk<T> chunk, int offset, int length);
+
     @Override
-    public synchronized String toString() {
+    public String toString() {
+        lock();
+        try {
+            return toString0();
+        } finally {
+            unlock();
+        }
+    }
+
+    private String toString0() {
         StringBuilder buf = new StringBuilder()
             .append("Chunk(s) at 0~25%:")
             .append(StringUtil.NEWLINE)
@@ -598,10 +824,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             .append(StringUtil.NEWLINE)
             .append(q100)
             .append(StringUtil.NEWLINE)
-            .append("tiny subpages:");
-        appendPoolSubPages(buf, tinySubpagePools);
-        buf.append(StringUtil.NEWLINE)
-           .append("small subpages:");
+            .append("small subpages:");
         appendPoolSubPages(buf, smallSubpagePools);
         buf.append(StringUtil.NEWLINE);
 
@@ -634,12 +857,21 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         try {
             super.finalize();
         } finally {
+            clearMagazines();
             destroyPoolSubPages(smallSubpagePools);
-            destroyPoolSubPages(tinySubpagePools);
             destroyPoolChunkLists(qInit, q000, q025, q050, q075, q100);
         }
     }
 
+    private void clearMagazines() {
+        // All chunks are destroyed anyway, so just drop the references.
+        if (magazines != null) {
+            for (int sizeIdx = 0; sizeIdx < magazines.length(); sizeIdx++) {
+                magazines.set(sizeIdx, null);
+            }
+        }
+    }
+
     private static void destroyPoolSubPages(PoolSubpage<?>[] pages) {
         for (PoolSubpage<?> page : pages) {
             page.destroy();
@@ -654,9 +886,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     static final class HeapArena extends PoolArena<byte[]> {
 
-        HeapArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
-                int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
-            super(parent, pageSize, maxOrder, pageShifts, chunkSize,
+        HeapArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
+                int chunkSize, int directMemoryCacheAlignment) {
+            super(parent, pageSize, pageShifts, chunkSize,
                     directMemoryCacheAlignment);
         }
 
@@ -670,8 +902,8 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
 
         @Override
-        protected PoolChunk<byte[]> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize) {
-            return new PoolChunk<byte[]>(this, newByteArray(chunkSize), pageSize, maxOrder, pageShifts, chunkSize, 0);
+        protected PoolChunk<byte[]> newChunk(int pageSize, int maxPageIdx, int pageShifts, int chunkSize) {
+            return new PoolChunk<byte[]>(this, newByteArray(chunkSize), pageSize, pageShifts, chunkSize, maxPageIdx, 0);
         }
 
         @Override
@@ -684,6 +916,16 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             // Rely on GC.
         }
 
+        @Override
+        boolean canPurge() {
+            return false;
+        }
+
+        @Override
+        int purge(PoolChunk<byte[]> chunk, int offset, int length) {
+            return 0;
+        }
+
         @Override
         protected PooledByteBuf<byte[]> newByteBuf(int maxCapacity) {
             return HAS_UNSAFE ? PooledUnsafeHeapByteBuf.newUnsafeInstance(maxCapacity)
@@ -702,10 +944,23 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     static final class DirectArena extends PoolArena<ByteBuffer> {
 
-        DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
-                int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
-            super(parent, pageSize, maxOrder, pageShifts, chunkSize,
+        private static final InternalLogger logger = InternalLoggerFactory.getInstance(DirectArena.class);
+        private static final AtomicBoolean MISSING_MAPPER_LOGGED = new AtomicBoolean();
+
+        private final int index;
+        // Resolved when a chunk is allocated until a mapper was registered, written while holding the lock.
+        private volatile DirectMemoryMapper chunkMapper;
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
+                int chunkSize, int directMemoryCacheAlignment) {
+            this(parent, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment, 0);
+        }
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int pageShifts,
+                int chunkSize, int directMemoryCacheAlignment, int index) {
+            super(parent, pageSize, pageShifts, chunkSize,
                     directMemoryCacheAlignment);
+            this.index = index;
         }
 
         @Override
@@ -713,6 +968,39 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             return true;
         }
 
+        @Override
+        int numaNode() {
+            if (!PooledByteBufAllocator.DEFAULT_NUMA_AWARE || parent == null) {
+                return -1;
+            }
+            DirectMemoryMapper mapper = DirectMemoryMapper.get();
+            // Spread the arenas evenly over all nodes.
+            return mapper == null ? -1 : index % mapper.numaNodes();
+        }
+
+        /**
+         * Returns the {@link DirectMemoryMapper} used to allocate the memory of pooled chunks or {@code null} if
+         * chunks are allocated as usual. As the mapper is registered by a native transport once its library was
+         * loaded, this is retried for every new chunk until a mapper is available.
+         */
+        private DirectMemoryMapper chunkMapper() {
+            DirectMemoryMapper mapper = chunkMapper;
+            if (mapper == null) {
+                boolean mapChunks = PooledByteBufAllocator.DEFAULT_HUGE_PAGE_CHUNKS ||
+                        PooledByteBufAllocator.DEFAULT_NUMA_AWARE;
+                if (mapChunks && parent != null && directMemoryCacheAlignment == 0 && HAS_UNSAFE) {
+                    mapper = DirectMemoryMapper.get();
+                    if (mapper != null) {
+                        chunkMapper = mapper;
+                    } else if (MISSING_MAPPER_LOGGED.compareAndSet(false, true)) {
+                        logger.info("Huge page or NUMA aware chunks were requested but no native transport was " +
+                                "loaded yet, chunks are allocated as usual until one is loaded.");
+                    }
+                }
+            }
+            return mapper;
+        }
+
         // mark as package-private, only for unit test
         int offsetCacheLine(ByteBuffer memory) {
             // We can only calculate the offset if Unsafe is present as otherwise directBufferAddress(...) will
@@ -726,17 +1014,25 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
 
         @Override
-        protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxOrder,
+        protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxPageIdx,
                 int pageShifts, int chunkSize) {
+            DirectMemoryMapper mapper = chunkMapper();
+            if (mapper != null) {
+                PoolChunk<ByteBuffer> chunk = new PoolChunk<ByteBuffer>(this,
+                        mapper.map(chunkSize, PooledByteBufAllocator.DEFAULT_HUGE_PAGE_CHUNKS, numaNode()),
+                        pageSize, pageShifts, chunkSize, maxPageIdx, 0);
+                chunk.mapped = true;
+                return chunk;
+            }
             if (directMemoryCacheAlignment == 0) {
                 return new PoolChunk<ByteBuffer>(this,
-                        allocateDirect(chunkSize), pageSize, maxOrder,
-                        pageShifts, chunkSize, 0);
+                        allocateDirect(chunkSize), pageSize, pageShifts,
+                        chunkSize, maxPageIdx, 0);
             }
             final ByteBuffer memory = allocateDirect(chunkSize
                     + directMemoryCacheAlignment);
             return new PoolChunk<ByteBuffer>(this, memory, pageSize,
-                    maxOrder, pageShifts, chunkSize,
+                    pageShifts, chunkSize, maxPageIdx,
                     offsetCacheLine(memory));
         }
 
@@ -759,13 +1055,28 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
         @Override
         protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
-            if (PlatformDependent.useDirectBufferNoCleaner()) {
+            if (chunk.mapped) {
+                chunkMapper.unmap(chunk.memory);
+            } else if (PlatformDependent.useDirectBufferNoCleaner()) {
                 PlatformDependent.freeDirectNoCleaner(chunk.memory);
             } else {
                 PlatformDependent.freeDirectBuffer(chunk.memory);
             }
         }
 
+        @Override
+        boolean canPurge() {
+            // Purging is done via madvise(...) by the native transports, which need the memory address.
+            return HAS_UNSAFE && DirectMemoryPurger.get() != null;
+        }
+
+        @Override
+        int purge(PoolChunk<ByteBuffer> chunk, int offset, int length) {
+            DirectMemoryPurger purger = DirectMemoryPurger.get();
+            return purger == null ? 0 : (int) purger.purge(
+                    PlatformDependent.directBufferAddress(chunk.memory) + chunk.offset + offset, length);
+        }
+
         @Override
         protected PooledByteBuf<ByteBuffer> newByteBuf(int maxCapacity) {
             if (HAS_UNSAFE) {
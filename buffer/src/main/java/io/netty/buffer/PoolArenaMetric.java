@@ -21,7 +21,7 @@ import java.util.List;
 /**
  * Expose metrics for an arena.
  */
-public interface PoolArenaMetric {
+public interface PoolArenaMetric extends SizeClassesMetric {
 
     /**
      * Returns the number of thread caches backed by this arena.
@@ -30,7 +30,10 @@ public interface PoolArenaMetric {
 
     /**
      * Returns the number of tiny sub-pages for the arena.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     int numTinySubpages();
 
     /**
@@ -45,7 +48,10 @@ public interface PoolArenaMetric {
 
     /**
      * Returns an unmodifiable {@link List} which holds {@link PoolSubpageMetric}s for tiny sub-pages.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     List<PoolSubpageMetric> tinySubpages();
 
     /**
@@ -65,7 +71,10 @@ public interface PoolArenaMetric {
 
     /**
      * Return the number of tiny allocations done via the arena.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     long numTinyAllocations();
 
     /**
@@ -90,7 +99,10 @@ public interface PoolArenaMetric {
 
     /**
      * Return the number of tiny deallocations done via the arena.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     long numTinyDeallocations();
 
     /**
@@ -115,7 +127,10 @@ public interface PoolArenaMetric {
 
     /**
      * Return the number of currently active tiny allocations.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     long numActiveTinyAllocations();
 
     /**
@@ -137,4 +152,32 @@ public interface PoolArenaMetric {
      * Return the number of active bytes that are currently allocated by the arena.
      */
     long numActiveBytes();
+
+    /**
+     * Return the number of active bytes of the arena that are currently backed by physical memory, which is
+     * {@link #numActiveBytes()} minus {@link #numPurgedBytes()}.
+     */
+    long numResidentBytes();
+
+    /**
+     * Return the number of bytes of the arena that were given back to the operating system while idle and were not
+     * used again since then.
+     */
+    long numPurgedBytes();
+
+    /**
+     * Return the number of times the lock of the arena was acquired to allocate or deallocate memory.
+     */
+    long numLockAcquisitions();
+
+    /**
+     * Return the number of times the lock of the arena was already held by another thread when trying to acquire it
+     * for an allocation or deallocation.
+     */
+    long numContendedLockAcquisitions();
+
+    /**
+     * Return the number of times a thread cache was moved away from this arena because it was contended.
+     */
+    long numThreadCacheMigrations();
 }
@@ -75,7 +75,8 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         this.prevList = prevList;
     }
 
-    boolean allocate(PooledByteBuf<T> buf, int reqCapacity, int normCapacity) {
+    boolean allocate(PooledByteBuf<T> buf, int reqCapacity, int sizeIdx, PoolThreadCache threadCache) {
+        int normCapacity = arena.sizeIdx2size(sizeIdx);
         if (normCapacity > maxCapacity) {
             // Either this PoolChunkList is empty or the requested capacity is larger then the capacity which can
             // be handled by the PoolChunks that are contained in this PoolChunkList.
@@ -83,7 +84,7 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         }
 
         for (PoolChunk<T> cur = head; cur != null; cur = cur.next) {
-            if (cur.allocate(buf, reqCapacity, normCapacity)) {
+            if (!cur.purging && cur.allocate(buf, reqCapacity, sizeIdx, threadCache)) {
                 if (cur.usage() >= maxUsage) {
                     remove(cur);
                     nextList.add(cur);
@@ -94,8 +95,8 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         return false;
     }
 
-    boolean free(PoolChunk<T> chunk, long handle, ByteBuffer nioBuffer) {
-        chunk.free(handle, nioBuffer);
+    boolean free(PoolChunk<T> chunk, long handle, int normCapacity, ByteBuffer nioBuffer) {
+        chunk.free(handle, normCapacity, nioBuffer);
         if (chunk.usage() < minUsage) {
             remove(chunk);
             // Move the PoolChunk down the PoolChunkList linked-list.
@@ -187,7 +188,8 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
 
     @Override
     public Iterator<PoolChunkMetric> iterator() {
-        synchronized (arena) {
+        arena.lock();
+        try {
             if (head == null) {
                 return EMPTY_METRICS;
             }
@@ -200,13 +202,16 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
                 }
             }
             return metrics.iterator();
+        } finally {
+            arena.unlock();
         }
     }
 
     @Override
     public String toString() {
         StringBuilder buf = new StringBuilder();
-        synchronized (arena) {
+        arena.lock();
+        try {
             if (head == null) {
                 return "none";
             }
@@ -219,10 +224,44 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
                 }
                 buf.append(StringUtil.NEWLINE);
             }
+        } finally {
+            arena.unlock();
         }
         return buf.toString();
     }
 
+    /**
+     * Find the chunks that were not used since the given decay epoch began. If the memory of the arena can be purged
+     * the free runs of those chunks are collected via {@link PoolChunk#startPurge(int)}, otherwise chunks that are
+     * completely free are removed. The chunks are added to {@code chunks}, which is created if needed and returned.
+     */
+    List<PoolChunk<T>> decay(int epoch, boolean canPurge, List<PoolChunk<T>> chunks) {
+        for (PoolChunk<T> cur = head; cur != null;) {
+            PoolChunk<T> next = cur.next;
+            if (cur.isIdle(epoch) && (canPurge || cur.isFree())) {
+                if (canPurge) {
+                    cur.startPurge(epoch);
+                } else {
+                    remove(cur);
+                }
+                if (chunks == null) {
+                    chunks = new ArrayList<PoolChunk<T>>();
+                }
+                chunks.add(cur);
+            }
+            cur = next;
+        }
+        return chunks;
+    }
+
+    long purgedBytes() {
+        long purged = 0;
+        for (PoolChunk<T> cur = head; cur != null; cur = cur.next) {
+            purged += cur.purgedBytes();
+        }
+        return purged;
+    }
+
     void destroy(PoolArena<T> arena) {
         PoolChunk<T> chunk = head;
         while (chunk != null) {
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static io.netty.buffer.PoolChunk.isSubpage;
+
+/**
+ * A lock-free store of recently freed memory of a single size class that is shared by all threads using a
+ * {@link PoolArena}. It sits between {@link PoolThreadCache} and the arena: memory that can not be put into the
+ * thread cache of the freeing thread is kept here, and threads that miss their own cache (or have none) can take it
+ * without acquiring the lock of the arena.
+ *
+ * The slots are split into stripes and each thread starts its search in the stripe selected by its id, so threads
+ * mostly operate on different cache lines. A search only visits the own stripe and the one after it, which bounds
+ * the cost of a miss before falling back to the arena.
+ *
+ * Memory that sits in a magazine keeps its chunk in use, so it is given back to the arena by {@link #trim(PoolArena,
+ * int)} if nobody took memory out of the magazine since the previous trim. The arena trims its magazines at most once
+ * per interval, so a magazine that is used regularly by any of the threads of the arena is kept.
+ */
+final class PoolMagazine<T> {
+
+    private final AtomicReferenceArray<Entry<T>> slots;
+    private final int stripeMask;
+    private final int stripeShift;
+    private final int searchLength;
+
+    // Set when memory was taken out of this magazine since the last trim. Only written if not set yet, so allocating
+    // threads do not write to the same cache line all the time.
+    private volatile boolean used;
+
+    PoolMagazine(int numStripes, int stripeSize) {
+        assert numStripes > 0 && (numStripes & numStripes - 1) == 0;
+        assert stripeSize > 0 && (stripeSize & stripeSize - 1) == 0;
+        slots = new AtomicReferenceArray<Entry<T>>(numStripes * stripeSize);
+        stripeMask = numStripes - 1;
+        stripeShift = Integer.numberOfTrailingZeros(stripeSize);
+        searchLength = Math.min(2, numStripes) * stripeSize;
+    }
+
+    private int firstSlot() {
+        return ((int) Thread.currentThread().getId() & stripeMask) << stripeShift;
+    }
+
+    /**
+     * Store the given memory in this magazine if there is a free slot.
+     */
+    boolean offer(PoolChunk<T> chunk, ByteBuffer nioBuffer, long handle) {
+        final int mask = slots.length() - 1;
+        final int first = firstSlot();
+        Entry<T> entry = null;
+        for (int i = 0; i < searchLength; i++) {
+            int idx = first + i & mask;
+            if (slots.get(idx) == null) {
+                if (entry == null) {
+                    entry = newEntry(chunk, nioBuffer, handle);
+                }
+                if (slots.compareAndSet(idx, null, entry)) {
+                    return true;
+                }
+            }
+        }
+        if (entry != null) {
+            entry.recycle();
+        }
+        return false;
+    }
+
+    /**
+     * Take memory out of this magazine and use it to init the given {@link PooledByteBuf}.
+     */
+    boolean allocate(PooledByteBuf<T> buf, int reqCapacity, PoolThreadCache threadCache) {
+        final int mask = slots.length() - 1;
+        final int first = firstSlot();
+        for (int i = 0; i < searchLength; i++) {
+            int idx = first + i & mask;
+            Entry<T> entry = slots.get(idx);
+            if (entry != null && slots.compareAndSet(idx, entry, null)) {
+                entry.chunk.initBuf(buf, entry.nioBuffer, entry.handle, reqCapacity, threadCache);
+                entry.recycle();
+                if (!used) {
+                    used = true;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Give all memory of this magazine back to the arena if none was taken out of it since the previous call.
+     * Must not be called while holding the lock of the arena.
+     */
+    void trim(PoolArena<T> arena, int normCapacity) {
+        if (used) {
+            used = false;
+            return;
+        }
+        for (int i = 0; i < slots.length(); i++) {
+            Entry<T> entry = slots.getAndSet(i, null);
+            if (entry != null) {
+                PoolArena.SizeClass sizeClass = isSubpage(entry.handle) ?
+                        PoolArena.SizeClass.Small : PoolArena.SizeClass.Normal;
+                arena.freeChunk(entry.chunk, entry.handle, normCapacity, sizeClass, entry.nioBuffer, false);
+                entry.recycle();
+            }
+        }
+    }
+
+    static final class Entry<T> {
+        final Handle<Entry<?>> recyclerHandle;
+        PoolChunk<T> chunk;
+        ByteBuffer nioBuffer;
+        long handle = -1;
+
+        Entry(Handle<Entry<?>> recyclerHandle) {
+            this.recyclerHandle = recyclerHandle;
+        }
+
+        void recycle() {
+            chunk = null;
+            nioBuffer = null;
+            handle = -1;
+            recyclerHandle.recycle(this);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T> newEntry(PoolChunk<T> chunk, ByteBuffer nioBuffer, long handle) {
+        Entry<T> entry = RECYCLER.get();
+        entry.chunk = chunk;
+        entry.nioBuffer = nioBuffer;
+        entry.handle = handle;
+        return entry;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final Recycler<Entry> RECYCLER = new Recycler<Entry>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        protected Entry newObject(Handle<Entry> handle) {
+            return new Entry(handle);
+        }
+    };
+}
@@ -22,6 +22,9 @@ import io.netty.util.NettyRuntime;
 import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.internal.DirectMemoryMapper;
+import io.netty.util.internal.MathUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
@@ -29,10 +32,12 @@ import io.netty.util.internal.ThreadExecutorMap;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public class PooledByteBufAllocator extends AbstractByteBufAllocator implements ByteBufAllocatorMetricProvider {
@@ -46,9 +51,17 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     private static final int DEFAULT_TINY_CACHE_SIZE;
     private static final int DEFAULT_SMALL_CACHE_SIZE;
     private static final int DEFAULT_NORMAL_CACHE_SIZE;
-    private static final int DEFAULT_MAX_CACHED_BUFFER_CAPACITY;
+    static final int DEFAULT_MAX_CACHED_BUFFER_CAPACITY;
     private static final int DEFAULT_CACHE_TRIM_INTERVAL;
     private static final long DEFAULT_CACHE_TRIM_INTERVAL_MILLIS;
+    private static final int DEFAULT_ARENA_REBALANCE_INTERVAL;
+    private static final int DEFAULT_ARENA_REBALANCE_CONTENTION_RATIO;
+    static final int DEFAULT_MAGAZINE_SIZE;
+    static final int DEFAULT_NUM_MAGAZINE_STRIPES;
+    static final long DEFAULT_MAGAZINE_TRIM_INTERVAL_MILLIS;
+    private static final long DEFAULT_PURGE_INTERVAL_MILLIS;
+    static final boolean DEFAULT_HUGE_PAGE_CHUNKS;
+    static final boolean DEFAULT_NUMA_AWARE;
     private static final boolean DEFAULT_USE_CACHE_FOR_ALL_THREADS;
     private static final int DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT;
     static final int DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK;
@@ -91,7 +104,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         /*
          * We use 2 * available processors by default to reduce contention as we use 2 * available processors for the
          * number of EventLoops in NIO and EPOLL as well. If we choose a smaller number we will run into hot spots as
-         * allocation and de-allocation needs to be synchronized on the PoolArena.
+         * allocation and de-allocation needs to hold the lock of the PoolArena.
          *
          * See https://github.com/netty/netty/issues/3888.
          */
@@ -127,6 +140,36 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         DEFAULT_CACHE_TRIM_INTERVAL_MILLIS = SystemPropertyUtil.getLong(
                 "io.netty.allocation.cacheTrimIntervalMillis", 0);
 
+        // the number of arena lock acquisitions of a thread after which we check if it should move to another arena
+        DEFAULT_ARENA_REBALANCE_INTERVAL = Math.max(0, SystemPropertyUtil.getInt(
+                "io.netty.allocator.arenaRebalanceInterval", 1024));
+
+        // the percentage of contended arena lock acquisitions in an interval that will make a thread move
+        DEFAULT_ARENA_REBALANCE_CONTENTION_RATIO = Math.min(100, Math.max(1, SystemPropertyUtil.getInt(
+                "io.netty.allocator.arenaRebalanceContentionRatio", 10)));
+
+        // the number of freed buffers per size class and stripe that are shared between all threads of an arena
+        int magazineSize = SystemPropertyUtil.getInt("io.netty.allocator.magazineSize", 8);
+        DEFAULT_MAGAZINE_SIZE = magazineSize > 0 ? MathUtil.safeFindNextPositivePowerOfTwo(magazineSize) : 0;
+        DEFAULT_NUM_MAGAZINE_STRIPES = MathUtil.safeFindNextPositivePowerOfTwo(Math.max(1, SystemPropertyUtil.getInt(
+                "io.netty.allocator.numMagazineStripes", Math.min(NettyRuntime.availableProcessors(), 16))));
+
+        // the minimum interval between two trims of the magazines of an arena by thread cache trims, so memory is only
+        // taken out of a magazine which no thread used for that long
+        DEFAULT_MAGAZINE_TRIM_INTERVAL_MILLIS = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.magazineTrimIntervalMillis", 1000));
+
+        // the interval after which memory of chunks that were not used since the last run is given back to the
+        // operating system, 0 disables purging
+        DEFAULT_PURGE_INTERVAL_MILLIS = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.purgeIntervalMillis", 0));
+
+        // map the chunks of direct arenas backed by transparent huge pages, needs a native transport
+        DEFAULT_HUGE_PAGE_CHUNKS = SystemPropertyUtil.getBoolean("io.netty.allocator.hugePageChunks", false);
+
+        // bind direct arenas to NUMA nodes and let threads use the arenas of their node, needs a native transport
+        DEFAULT_NUMA_AWARE = SystemPropertyUtil.getBoolean("io.netty.allocator.numaAware", false);
+
         DEFAULT_USE_CACHE_FOR_ALL_THREADS = SystemPropertyUtil.getBoolean(
                 "io.netty.allocator.useCacheForAllThreads", true);
 
@@ -158,6 +201,16 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             logger.debug("-Dio.netty.allocator.maxCachedBufferCapacity: {}", DEFAULT_MAX_CACHED_BUFFER_CAPACITY);
             logger.debug("-Dio.netty.allocator.cacheTrimInterval: {}", DEFAULT_CACHE_TRIM_INTERVAL);
             logger.debug("-Dio.netty.allocator.cacheTrimIntervalMillis: {}", DEFAULT_CACHE_TRIM_INTERVAL_MILLIS);
+            logger.debug("-Dio.netty.allocator.arenaRebalanceInterval: {}", DEFAULT_ARENA_REBALANCE_INTERVAL);
+            logger.debug("-Dio.netty.allocator.arenaRebalanceContentionRatio: {}",
+                    DEFAULT_ARENA_REBALANCE_CONTENTION_RATIO);
+            logger.debug("-Dio.netty.allocator.magazineSize: {}", DEFAULT_MAGAZINE_SIZE);
+            logger.debug("-Dio.netty.allocator.numMagazineStripes: {}", DEFAULT_NUM_MAGAZINE_STRIPES);
+            logger.debug("-Dio.netty.allocator.magazineTrimIntervalMillis: {}",
+                    DEFAULT_MAGAZINE_TRIM_INTERVAL_MILLIS);
+            logger.debug("-Dio.netty.allocator.purgeIntervalMillis: {}", DEFAULT_PURGE_INTERVAL_MILLIS);
+            logger.debug("-Dio.netty.allocator.hugePageChunks: {}", DEFAULT_HUGE_PAGE_CHUNKS);
+            logger.debug("-Dio.netty.allocator.numaAware: {}", DEFAULT_NUMA_AWARE);
             logger.debug("-Dio.netty.allocator.useCacheForAllThreads: {}", DEFAULT_USE_CACHE_FOR_ALL_THREADS);
             logger.debug("-Dio.netty.allocator.maxCachedByteBuffersPerChunk: {}",
                     DEFAULT_MAX_CACHED_BYTEBUFFERS_PER_CHUNK);
@@ -169,9 +222,8 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
     private final PoolArena<byte[]>[] heapArenas;
     private final PoolArena<ByteBuffer>[] directArenas;
-    private final int tinyCacheSize;
-    private final int smallCacheSize;
-    private final int normalCacheSize;
+    final int smallCacheSize;
+    final int normalCacheSize;
     private final List<PoolArenaMetric> heapArenaMetrics;
     private final List<PoolArenaMetric> directArenaMetrics;
     private final PoolThreadLocalCache threadCache;
@@ -194,40 +246,67 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
     /**
      * @deprecated use
-     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, int, boolean)}
+     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, boolean)}
      */
     @Deprecated
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder) {
         this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
-                DEFAULT_TINY_CACHE_SIZE, DEFAULT_SMALL_CACHE_SIZE, DEFAULT_NORMAL_CACHE_SIZE);
+                DEFAULT_SMALL_CACHE_SIZE, DEFAULT_NORMAL_CACHE_SIZE,
+                DEFAULT_USE_CACHE_FOR_ALL_THREADS, DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT);
     }
 
     /**
      * @deprecated use
-     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, int, boolean)}
+     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, boolean)}
      */
     @Deprecated
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int tinyCacheSize, int smallCacheSize, int normalCacheSize) {
-        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder, tinyCacheSize, smallCacheSize,
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder, smallCacheSize,
                 normalCacheSize, DEFAULT_USE_CACHE_FOR_ALL_THREADS, DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT);
     }
 
+    /**
+     * @deprecated use
+     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, boolean)}
+     */
+    @Deprecated
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena,
                                   int nDirectArena, int pageSize, int maxOrder, int tinyCacheSize,
                                   int smallCacheSize, int normalCacheSize,
                                   boolean useCacheForAllThreads) {
         this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
-                tinyCacheSize, smallCacheSize, normalCacheSize,
+                smallCacheSize, normalCacheSize,
+                useCacheForAllThreads);
+    }
+
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena,
+                                  int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                smallCacheSize, normalCacheSize,
                 useCacheForAllThreads, DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT);
     }
 
+    /**
+     * @deprecated use
+     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int, boolean, int)}
+     */
+    @Deprecated
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int tinyCacheSize, int smallCacheSize, int normalCacheSize,
                                   boolean useCacheForAllThreads, int directMemoryCacheAlignment) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment);
+    }
+
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment) {
         super(preferDirect);
         threadCache = new PoolThreadLocalCache(useCacheForAllThreads);
-        this.tinyCacheSize = tinyCacheSize;
         this.smallCacheSize = smallCacheSize;
         this.normalCacheSize = normalCacheSize;
         chunkSize = validateAndCalculateChunkSize(pageSize, maxOrder);
@@ -252,7 +331,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(heapArenas.length);
             for (int i = 0; i < heapArenas.length; i ++) {
                 PoolArena.HeapArena arena = new PoolArena.HeapArena(this,
-                        pageSize, maxOrder, pageShifts, chunkSize,
+                        pageSize, pageShifts, chunkSize,
                         directMemoryCacheAlignment);
                 heapArenas[i] = arena;
                 metrics.add(arena);
@@ -268,7 +347,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(directArenas.length);
             for (int i = 0; i < directArenas.length; i ++) {
                 PoolArena.DirectArena arena = new PoolArena.DirectArena(
-                        this, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment);
+                        this, pageSize, pageShifts, chunkSize, directMemoryCacheAlignment, i);
                 directArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -278,6 +357,37 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             directArenaMetrics = Collections.emptyList();
         }
         metric = new PooledByteBufAllocatorMetric(this);
+
+        if (DEFAULT_PURGE_INTERVAL_MILLIS > 0) {
+            PurgeTask task = new PurgeTask(this);
+            task.future = GlobalEventExecutor.INSTANCE.scheduleAtFixedRate(task,
+                    DEFAULT_PURGE_INTERVAL_MILLIS, DEFAULT_PURGE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Periodically calls {@link #decay()} without keeping the allocator reachable.
+     */
+    private static final class PurgeTask implements Runnable {
+        private final WeakReference<PooledByteBufAllocator> allocatorRef;
+        volatile Future<?> future;
+
+        PurgeTask(PooledByteBufAllocator allocator) {
+            allocatorRef = new WeakReference<PooledByteBufAllocator>(allocator);
+        }
+
+        @Override
+        public void run() {
+            PooledByteBufAllocator allocator = allocatorRef.get();
+            if (allocator == null) {
+                Future<?> future = this.future;
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return;
+            }
+            allocator.decay();
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -393,7 +503,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
     /**
      * Default tiny cache size - System Property: io.netty.allocator.tinyCacheSize - default 512
+     *
+     * @deprecated Tiny caches have been merged into small caches.
      */
+    @Deprecated
     public static int defaultTinyCacheSize() {
         return DEFAULT_TINY_CACHE_SIZE;
     }
@@ -450,14 +563,15 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
         @Override
         protected synchronized PoolThreadCache initialValue() {
-            final PoolArena<byte[]> heapArena = leastUsedArena(heapArenas);
-            final PoolArena<ByteBuffer> directArena = leastUsedArena(directArenas);
+            final PoolArena<byte[]> heapArena = leastUsedArena(heapArenas, -1);
+            final PoolArena<ByteBuffer> directArena = leastUsedArena(directArenas, currentNumaNode());
 
             final Thread current = Thread.currentThread();
             if (useCacheForAllThreads || current instanceof FastThreadLocalThread) {
                 final PoolThreadCache cache = new PoolThreadCache(
-                        heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize,
-                        DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL);
+                        heapArena, directArena, smallCacheSize, normalCacheSize,
+                        DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL,
+                        DEFAULT_ARENA_REBALANCE_INTERVAL, DEFAULT_ARENA_REBALANCE_CONTENTION_RATIO);
 
                 if (DEFAULT_CACHE_TRIM_INTERVAL_MILLIS > 0) {
                     final EventExecutor executor = ThreadExecutorMap.currentExecutor();
@@ -469,7 +583,8 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                 return cache;
             }
             // No caching so just use 0 as sizes.
-            return new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0, 0);
+            return new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0,
+                    DEFAULT_ARENA_REBALANCE_INTERVAL, DEFAULT_ARENA_REBALANCE_CONTENTION_RATIO);
         }
 
         @Override
@@ -477,7 +592,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             threadCache.free(false);
         }
 
-        private <T> PoolArena<T> leastUsedArena(PoolArena<T>[] arenas) {
+        /**
+         * Returns the arena backing the fewest thread caches, preferring the ones bound to the given NUMA node.
+         */
+        private <T> PoolArena<T> leastUsedArena(PoolArena<T>[] arenas, int numaNode) {
             if (arenas == null || arenas.length == 0) {
                 return null;
             }
@@ -485,7 +603,13 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             PoolArena<T> minArena = arenas[0];
             for (int i = 1; i < arenas.length; i++) {
                 PoolArena<T> arena = arenas[i];
-                if (arena.numThreadCaches.get() < minArena.numThreadCaches.get()) {
+                boolean local = numaNode >= 0 && arena.numaNode() == numaNode;
+                boolean minLocal = numaNode >= 0 && minArena.numaNode() == numaNode;
+                if (local != minLocal) {
+                    if (local) {
+                        minArena = arena;
+                    }
+                } else if (arena.numThreadCaches.get() < minArena.numThreadCaches.get()) {
                     minArena = arena;
                 }
             }
@@ -494,6 +618,49 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         }
     }
 
+    /**
+     * Returns the NUMA node the current thread runs on if direct arenas are bound to nodes, {@code -1} otherwise.
+     */
+    private static int currentNumaNode() {
+        if (!DEFAULT_NUMA_AWARE) {
+            return -1;
+        }
+        DirectMemoryMapper mapper = DirectMemoryMapper.get();
+        return mapper == null ? -1 : mapper.currentNumaNode();
+    }
+
+    PoolArena<byte[]> leastContendedHeapArena(PoolArena<byte[]> current) {
+        return leastContendedArena(heapArenas, current);
+    }
+
+    PoolArena<ByteBuffer> leastContendedDirectArena(PoolArena<ByteBuffer> current) {
+        return leastContendedArena(directArenas, current);
+    }
+
+    /**
+     * Returns the arena with the lowest {@linkplain PoolArena#load(long) load} among the ones that are bound to the
+     * same NUMA node and are not backing more thread caches than {@code current}, or {@code current} itself if no
+     * arena is less loaded.
+     */
+    private static <T> PoolArena<T> leastContendedArena(PoolArena<T>[] arenas, PoolArena<T> current) {
+        final int numThreadCaches = current.numThreadCaches.get();
+        final long nanoTime = System.nanoTime();
+        PoolArena<T> minArena = current;
+        double minLoad = current.load(nanoTime);
+        for (PoolArena<T> arena : arenas) {
+            if (arena == current || arena.numaNode() != current.numaNode() ||
+                    arena.numThreadCaches.get() > numThreadCaches) {
+                continue;
+            }
+            double load = arena.load(nanoTime);
+            if (load < minLoad) {
+                minArena = arena;
+                minLoad = load;
+            }
+        }
+        return minArena;
+    }
+
     @Override
     public PooledByteBufAllocatorMetric metric() {
         return metric;
@@ -562,11 +729,11 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     /**
      * Return the size of the tiny cache.
      *
-     * @deprecated use {@link PooledByteBufAllocatorMetric#tinyCacheSize()}.
+     * @deprecated Tiny caches have been merged into small caches.
      */
     @Deprecated
     public int tinyCacheSize() {
-        return tinyCacheSize;
+        return 0;
     }
 
     /**
@@ -607,6 +774,46 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         return usedMemory(directArenas);
     }
 
+    final long residentDirectMemory() {
+        if (directArenas == null) {
+            return -1;
+        }
+        long resident = 0;
+        for (PoolArena<?> arena : directArenas) {
+            resident += arena.numResidentBytes();
+        }
+        return resident;
+    }
+
+    final long purgedDirectMemory() {
+        if (directArenas == null) {
+            return -1;
+        }
+        long purged = 0;
+        for (PoolArena<?> arena : directArenas) {
+            purged += arena.numPurgedBytes();
+        }
+        return purged;
+    }
+
+    /**
+     * Give memory of all arenas that was not used since the previous call back to the operating system.
+     *
+     * @see PoolArena#decay()
+     */
+    final void decay() {
+        decay(heapArenas);
+        decay(directArenas);
+    }
+
+    private static void decay(PoolArena<?>[] arenas) {
+        if (arenas != null) {
+            for (PoolArena<?> arena : arenas) {
+                arena.decay();
+            }
+        }
+    }
+
     private static long usedMemory(PoolArena<?>[] arenas) {
         if (arenas == null) {
             return -1;
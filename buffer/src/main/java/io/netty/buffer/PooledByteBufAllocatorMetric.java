@@ -68,7 +68,10 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
 
     /**
      * Return the size of the tiny cache.
+     *
+     * @deprecated Tiny caches have been merged into small caches.
      */
+    @Deprecated
     public int tinyCacheSize() {
         return allocator.tinyCacheSize();
     }
@@ -104,6 +107,23 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
         return allocator.usedDirectMemory();
     }
 
+    /**
+     * Return the number of bytes of direct memory used by this allocator that is currently backed by physical memory,
+     * which is {@link #usedDirectMemory()} minus {@link #purgedDirectMemory()}.
+     */
+    public long residentDirectMemory() {
+        return allocator.residentDirectMemory();
+    }
+
+    /**
+     * Return the number of bytes of direct memory used by this allocator that were given back to the operating
+     * system while idle. This is only supported if a native transport is loaded, otherwise idle chunks are released
+     * instead.
+     */
+    public long purgedDirectMemory() {
+        return allocator.purgedDirectMemory();
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(256);
@@ -112,7 +132,6 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
                 .append("; usedDirectMemory: ").append(usedDirectMemory())
                 .append("; numHeapArenas: ").append(numHeapArenas())
                 .append("; numDirectArenas: ").append(numDirectArenas())
-                .append("; tinyCacheSize: ").append(tinyCacheSize())
                 .append("; smallCacheSize: ").append(smallCacheSize())
                 .append("; normalCacheSize: ").append(normalCacheSize())
                 .append("; numThreadLocalCaches: ").append(numThreadLocalCaches())
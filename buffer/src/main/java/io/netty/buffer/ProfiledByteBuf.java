@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * Wraps a {@link ByteBuf} that was sampled by a {@link ProfilingByteBufAllocator} to notice when its memory is
+ * released.
+ */
+final class ProfiledByteBuf extends WrappedByteBuf {
+
+    private final ProfilingByteBufAllocator.Sample sample;
+
+    ProfiledByteBuf(ByteBuf buf, ProfilingByteBufAllocator.Sample sample) {
+        super(buf);
+        this.sample = sample;
+    }
+
+    @Override
+    public ByteBuf slice() {
+        return new ProfiledByteBuf(super.slice(), sample);
+    }
+
+    @Override
+    public ByteBuf slice(int index, int length) {
+        return new ProfiledByteBuf(super.slice(index, length), sample);
+    }
+
+    @Override
+    public ByteBuf duplicate() {
+        return new ProfiledByteBuf(super.duplicate(), sample);
+    }
+
+    @Override
+    public ByteBuf readSlice(int length) {
+        return new ProfiledByteBuf(super.readSlice(length), sample);
+    }
+
+    @Override
+    public ByteBuf asReadOnly() {
+        return new ProfiledByteBuf(super.asReadOnly(), sample);
+    }
+
+    @Override
+    public ByteBuf retainedSlice() {
+        return derived(super.retainedSlice());
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        return derived(super.retainedSlice(index, length));
+    }
+
+    @Override
+    public ByteBuf retainedDuplicate() {
+        return derived(super.retainedDuplicate());
+    }
+
+    @Override
+    public ByteBuf readRetainedSlice(int length) {
+        return derived(super.readRetainedSlice(length));
+    }
+
+    @Override
+    public ByteBuf order(ByteOrder endianness) {
+        if (order() == endianness) {
+            return this;
+        }
+        return new ProfiledByteBuf(super.order(endianness), sample);
+    }
+
+    @Override
+    public boolean release() {
+        if (super.release()) {
+            sample.released();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        if (super.release(decrement)) {
+            sample.released();
+            return true;
+        }
+        return false;
+    }
+
+    @SuppressWarnings("deprecation")
+    private ByteBuf derived(ByteBuf derived) {
+        // Leak detection wraps the derived buffer again, so look through these wrappers to find out whether the
+        // buffer underneath has its own reference count.
+        ByteBuf unwrapped = derived;
+        while (unwrapped instanceof SwappedByteBuf || unwrapped instanceof SimpleLeakAwareByteBuf ||
+                unwrapped instanceof SimpleLeakAwareCompositeByteBuf) {
+            unwrapped = unwrapped.unwrap();
+        }
+        if (unwrapped instanceof AbstractPooledDerivedByteBuf) {
+            // The derived buffer has its own reference count and releases its parent once it is deallocated, so let
+            // it release this buffer instead.
+            ((AbstractPooledDerivedByteBuf) unwrapped).parent(this);
+            return derived;
+        }
+        // The derived buffer shares the reference count.
+        return new ProfiledByteBuf(derived, sample);
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link ByteBufAllocator} which wraps another {@link ByteBufAllocator} and profiles a random sample of its
+ * allocations. For every sampled allocation the capacity, the call site and the time until the memory is released
+ * are recorded, which can be used to find the code that drives the growth of the pool and to size the caches of the
+ * {@link PooledByteBufAllocator}.
+ * <p>
+ * The samples are kept in a reservoir of a fixed size, so the memory that is used by the profile is bounded and every
+ * allocation of the current window has the same chance to be in it, no matter if it happened in a burst or not. A
+ * window starts when this instance is created or {@link #reset()} is called, and the collected data of the current
+ * window can be obtained at any time via {@link #profile()}.
+ */
+public final class ProfilingByteBufAllocator implements ByteBufAllocator {
+
+    private static final int DEFAULT_RESERVOIR_SIZE = 1024;
+    private static final int DEFAULT_CALL_SITE_DEPTH = 2;
+
+    private final ByteBufAllocator allocator;
+    private final int reservoirSize;
+    private final int callSiteDepth;
+    private volatile Reservoir reservoir;
+
+    /**
+     * Creates a new instance which keeps up to 1024 samples.
+     */
+    public ProfilingByteBufAllocator(ByteBufAllocator allocator) {
+        this(allocator, DEFAULT_RESERVOIR_SIZE, DEFAULT_CALL_SITE_DEPTH);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param allocator         the {@link ByteBufAllocator} to profile.
+     * @param reservoirSize     the maximum number of allocations that are sampled per window.
+     * @param callSiteDepth     the number of stack frames, starting at the caller of this allocator, that identify
+     *                          the call site of an allocation.
+     */
+    public ProfilingByteBufAllocator(ByteBufAllocator allocator, int reservoirSize, int callSiteDepth) {
+        this.allocator = ObjectUtil.checkNotNull(allocator, "allocator");
+        this.reservoirSize = ObjectUtil.checkPositive(reservoirSize, "reservoirSize");
+        this.callSiteDepth = ObjectUtil.checkPositive(callSiteDepth, "callSiteDepth");
+        reservoir = new Reservoir(reservoirSize);
+    }
+
+    /**
+     * Returns the {@link ByteBufAllocator} that is profiled.
+     */
+    public ByteBufAllocator allocator() {
+        return allocator;
+    }
+
+    /**
+     * Returns a snapshot of the data collected since this instance was created or {@link #reset()} was called last.
+     */
+    public ByteBufAllocatorProfile profile() {
+        return reservoir.snapshot();
+    }
+
+    /**
+     * Discard all data collected so far and start a new window.
+     */
+    public void reset() {
+        reservoir = new Reservoir(reservoirSize);
+    }
+
+    @Override
+    public ByteBuf buffer() {
+        return sample(allocator.buffer());
+    }
+
+    @Override
+    public ByteBuf buffer(int initialCapacity) {
+        return sample(allocator.buffer(initialCapacity));
+    }
+
+    @Override
+    public ByteBuf buffer(int initialCapacity, int maxCapacity) {
+        return sample(allocator.buffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public ByteBuf ioBuffer() {
+        return sample(allocator.ioBuffer());
+    }
+
+    @Override
+    public ByteBuf ioBuffer(int initialCapacity) {
+        return sample(allocator.ioBuffer(initialCapacity));
+    }
+
+    @Override
+    public ByteBuf ioBuffer(int initialCapacity, int maxCapacity) {
+        return sample(allocator.ioBuffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public ByteBuf heapBuffer() {
+        return sample(allocator.heapBuffer());
+    }
+
+    @Override
+    public ByteBuf heapBuffer(int initialCapacity) {
+        return sample(allocator.heapBuffer(initialCapacity));
+    }
+
+    @Override
+    public ByteBuf heapBuffer(int initialCapacity, int maxCapacity) {
+        return sample(allocator.heapBuffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public ByteBuf directBuffer() {
+        return sample(allocator.directBuffer());
+    }
+
+    @Override
+    public ByteBuf directBuffer(int initialCapacity) {
+        return sample(allocator.directBuffer(initialCapacity));
+    }
+
+    @Override
+    public ByteBuf directBuffer(int initialCapacity, int maxCapacity) {
+        return sample(allocator.directBuffer(initialCapacity, maxCapacity));
+    }
+
+    // Composite buffers do not allocate memory themselves so these are not sampled.
+
+    @Override
+    public CompositeByteBuf compositeBuffer() {
+        return allocator.compositeBuffer();
+    }
+
+    @Override
+    public CompositeByteBuf compositeBuffer(int maxNumComponents) {
+        return allocator.compositeBuffer(maxNumComponents);
+    }
+
+    @Override
+    public CompositeByteBuf compositeHeapBuffer() {
+        return allocator.compositeHeapBuffer();
+    }
+
+    @Override
+    public CompositeByteBuf compositeHeapBuffer(int maxNumComponents) {
+        return allocator.compositeHeapBuffer(maxNumComponents);
+    }
+
+    @Override
+    public CompositeByteBuf compositeDirectBuffer() {
+        return allocator.compositeDirectBuffer();
+    }
+
+    @Override
+    public CompositeByteBuf compositeDirectBuffer(int maxNumComponents) {
+        return allocator.compositeDirectBuffer(maxNumComponents);
+    }
+
+    @Override
+    public boolean isDirectBufferPooled() {
+        return allocator.isDirectBufferPooled();
+    }
+
+    @Override
+    public int calculateNewCapacity(int minNewCapacity, int maxCapacity) {
+        return allocator.calculateNewCapacity(minNewCapacity, maxCapacity);
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(allocator: " + allocator + ", reservoirSize: " +
+                reservoirSize + ')';
+    }
+
+    private ByteBuf sample(ByteBuf buf) {
+        Reservoir reservoir = this.reservoir;
+        int slot = reservoir.nextSlot();
+        if (slot < 0) {
+            return buf;
+        }
+        Sample sample = new Sample(callSite(callSiteDepth), buf.capacity());
+        reservoir.set(slot, sample);
+        return new ProfiledByteBuf(buf, sample);
+    }
+
+    /**
+     * Returns the frames of the current stack that called into this allocator.
+     */
+    private static String callSite(int depth) {
+        StackTraceElement[] trace = new Throwable().getStackTrace();
+        String className = ProfilingByteBufAllocator.class.getName();
+        int i = 0;
+        while (i < trace.length && !trace[i].getClassName().equals(className)) {
+            i++;
+        }
+        while (i < trace.length && trace[i].getClassName().equals(className)) {
+            i++;
+        }
+        if (i == trace.length) {
+            return "<unknown>";
+        }
+        StringBuilder buf = new StringBuilder(64 * depth);
+        buf.append(trace[i]);
+        for (int end = Math.min(trace.length, i + depth); ++i < end;) {
+            buf.append(" <- ").append(trace[i]);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns the index of the bucket of a histogram that contains the values in {@code [2^(index - 1), 2^index)}.
+     */
+    static int bucket(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * A sampled allocation.
+     */
+    static final class Sample {
+        private final String callSite;
+        private final int capacity;
+        private final long allocationTime = System.nanoTime();
+        private volatile long lifetimeNanos = -1;
+
+        Sample(String callSite, int capacity) {
+            this.callSite = callSite;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Must be called once the memory of the sampled allocation was released.
+         */
+        void released() {
+            lifetimeNanos = Math.max(0, System.nanoTime() - allocationTime);
+        }
+    }
+
+    /**
+     * A reservoir of samples which is filled via Algorithm L from Li, "Reservoir-Sampling Algorithms of Time
+     * Complexity O(n(1 + log(N/n)))", so most allocations only increment a counter and compare it with the index of
+     * the next allocation that is sampled.
+     */
+    private static final class Reservoir {
+        private final AtomicReferenceArray<Sample> samples;
+        private final AtomicLong allocations = new AtomicLong();
+        // The index of the next allocation that replaces a sample once the reservoir is full.
+        private volatile long nextIndex;
+        // Guarded by this.
+        private double w;
+
+        Reservoir(int size) {
+            samples = new AtomicReferenceArray<Sample>(size);
+            w = Math.exp(Math.log(random()) / size);
+            nextIndex = nextIndex(size - 1);
+        }
+
+        /**
+         * Counts an allocation and returns the slot of the reservoir its sample must be stored in, or {@code -1} if it
+         * is not sampled.
+         */
+        int nextSlot() {
+            long index = allocations.getAndIncrement();
+            if (index < samples.length()) {
+                return (int) index;
+            }
+            if (index < nextIndex) {
+                return -1;
+            }
+            synchronized (this) {
+                if (index < nextIndex) {
+                    // Another allocation that was counted at the same time took this turn.
+                    return -1;
+                }
+                w *= Math.exp(Math.log(random()) / samples.length());
+                nextIndex = nextIndex(index);
+            }
+            return PlatformDependent.threadLocalRandom().nextInt(samples.length());
+        }
+
+        void set(int slot, Sample sample) {
+            samples.set(slot, sample);
+        }
+
+        private long nextIndex(long index) {
+            long next = index + 1 + (long) Math.floor(Math.log(random()) / Math.log(1 - w));
+            return next < 0 ? Long.MAX_VALUE : next;
+        }
+
+        private static double random() {
+            // In (0, 1] so the logarithm is defined.
+            return 1 - PlatformDependent.threadLocalRandom().nextDouble();
+        }
+
+        ByteBufAllocatorProfile snapshot() {
+            long[] sizeHistogram = new long[Integer.SIZE + 1];
+            long[] lifetimeHistogram = new long[Long.SIZE + 1];
+            // allocations, allocatedBytes, releases and lifetimeNanos by call site.
+            Map<String, long[]> callSites = new HashMap<String, long[]>();
+            for (int i = 0; i < samples.length(); i++) {
+                Sample sample = samples.get(i);
+                if (sample == null) {
+                    continue;
+                }
+                long[] callSite = callSites.get(sample.callSite);
+                if (callSite == null) {
+                    callSite = new long[4];
+                    callSites.put(sample.callSite, callSite);
+                }
+                callSite[0]++;
+                callSite[1] += sample.capacity;
+                sizeHistogram[bucket(sample.capacity)]++;
+                long lifetimeNanos = sample.lifetimeNanos;
+                if (lifetimeNanos >= 0) {
+                    callSite[2]++;
+                    callSite[3] += lifetimeNanos;
+                    lifetimeHistogram[bucket(lifetimeNanos)]++;
+                }
+            }
+            List<ByteBufAllocatorProfile.CallSite> sites =
+                    new ArrayList<ByteBufAllocatorProfile.CallSite>(callSites.size());
+            for (Map.Entry<String, long[]> e : callSites.entrySet()) {
+                long[] v = e.getValue();
+                sites.add(new ByteBufAllocatorProfile.CallSite(e.getKey(), v[0], v[1], v[2], v[3]));
+            }
+            return new ByteBufAllocatorProfile(allocations.get(), sizeHistogram, lifetimeHistogram, sites);
+        }
+    }
+}
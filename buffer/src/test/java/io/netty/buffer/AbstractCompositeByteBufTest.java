@@ -15,6 +15,7 @@
  */
 package io.netty.buffer;
 
+import io.netty.util.ByteProcessor;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.PlatformDependent;
 import org.junit.Assume;
@@ -1463,6 +1464,179 @@ public abstract class AbstractCompositeByteBufTest extends AbstractByteBufTest {
         assertTrue(buf.release());
     }
 
+    @Test
+    public void testSequentialAccessManyComponents() {
+        CompositeByteBuf cbuf = compositeBuffer(Integer.MAX_VALUE);
+        for (int i = 0; i < 256; i++) {
+            cbuf.addComponent(true, buffer().writeByte(i));
+            cbuf.addComponent(true, EMPTY_BUFFER);
+        }
+        for (int i = 0; i < 256; i++) {
+            assertEquals((byte) i, cbuf.getByte(i));
+        }
+        for (int i = 255; i >= 0; i--) {
+            assertEquals((byte) i, cbuf.getByte(i));
+        }
+
+        // Removing components must not leave the cached component index pointing to a wrong component.
+        assertEquals(10, cbuf.getByte(10));
+        cbuf.removeComponents(0, 10).writerIndex(256 - 5);
+        assertEquals(256 - 5, cbuf.capacity());
+        assertEquals(10, cbuf.getByte(5));
+        assertEquals(11, cbuf.getByte(6));
+        cbuf.skipBytes(100).discardReadComponents();
+        for (int i = 0; i < cbuf.readableBytes(); i++) {
+            assertEquals((byte) (i + 105), cbuf.getByte(i));
+        }
+        assertTrue(cbuf.release());
+    }
+
+    @Test
+    public void testNioBuffersNestedComposite() {
+        CompositeByteBuf nested = compositeBuffer();
+        nested.addComponents(true, wrappedBuffer(new byte[] { 2 }), wrappedBuffer(new byte[] { 3, 4 }));
+        CompositeByteBuf cbuf = compositeBuffer();
+        cbuf.addComponents(true, wrappedBuffer(new byte[] { 1 }), nested, EMPTY_BUFFER,
+                wrappedBuffer(new byte[] { 5 }));
+
+        ByteBuffer[] nioBuffers = cbuf.nioBuffers(0, 5);
+        // The empty component is included as well.
+        assertEquals(5, nioBuffers.length);
+        byte expected = 1;
+        for (ByteBuffer nioBuffer : nioBuffers) {
+            while (nioBuffer.hasRemaining()) {
+                assertEquals(expected++, nioBuffer.get());
+            }
+        }
+        assertEquals(6, expected);
+
+        nioBuffers = cbuf.nioBuffers(2, 2);
+        assertEquals(1, nioBuffers.length);
+        assertEquals(3, nioBuffers[0].get());
+        assertEquals(4, nioBuffers[0].get());
+        assertFalse(nioBuffers[0].hasRemaining());
+        assertTrue(cbuf.release());
+    }
+
+    @Test
+    public void testDiscardFromFrontManyComponents() {
+        CompositeByteBuf cbuf = compositeBuffer(Integer.MAX_VALUE);
+        int written = 0;
+        int read = 0;
+        for (int i = 0; i < 1000; i++) {
+            cbuf.addComponent(true, wrappedBuffer(new byte[] { (byte) written++, (byte) written++ }));
+            cbuf.addComponent(true, wrappedBuffer(new byte[] { (byte) written++ }));
+            assertEquals((byte) read++, cbuf.readByte());
+            assertEquals((byte) read++, cbuf.readByte());
+            if (i % 2 == 0) {
+                cbuf.discardReadComponents();
+            } else {
+                cbuf.discardReadBytes();
+                assertEquals(0, cbuf.readerIndex());
+            }
+            assertEquals(written - read, cbuf.readableBytes());
+            assertEquals(cbuf.writerIndex(), cbuf.capacity());
+            assertEquals(0, cbuf.toByteIndex(0));
+        }
+        cbuf.discardReadBytes();
+        for (int i = 0; i < cbuf.readableBytes(); i++) {
+            assertEquals((byte) (read + i), cbuf.getByte(i));
+        }
+        int offset = 0;
+        for (int i = 0; i < cbuf.numComponents(); i++) {
+            assertEquals(offset, cbuf.toByteIndex(i));
+            assertEquals(i, cbuf.toComponentIndex(offset));
+            offset += cbuf.internalComponent(i).readableBytes();
+        }
+        assertEquals(cbuf.capacity(), offset);
+
+        // Adding and removing components at the front still moves the following components.
+        cbuf.addComponent(true, 0, wrappedBuffer(new byte[] { 1, 2 }));
+        assertEquals(1, cbuf.getByte(0));
+        assertEquals((byte) read, cbuf.getByte(2));
+        assertEquals(2, cbuf.toByteIndex(1));
+        cbuf.removeComponent(0).writerIndex(written - read);
+        assertEquals((byte) read, cbuf.getByte(0));
+
+        int readable = cbuf.readableBytes();
+        ByteBuffer[] nioBuffers = cbuf.nioBuffers();
+        for (ByteBuffer nioBuffer : nioBuffers) {
+            while (nioBuffer.hasRemaining()) {
+                assertEquals((byte) read++, nioBuffer.get());
+                readable--;
+            }
+        }
+        assertEquals(0, readable);
+        cbuf.consolidate();
+        assertEquals(1, cbuf.numComponents());
+        assertEquals((byte) (written - 1), cbuf.getByte(cbuf.writerIndex() - 1));
+        assertTrue(cbuf.release());
+    }
+
+    @Test
+    public void testDiscardMoreThanMaxIntBytes() {
+        byte[] bytes = new byte[1 << 20];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        CompositeByteBuf cbuf = compositeBuffer(Integer.MAX_VALUE);
+        cbuf.addComponents(true, wrappedBuffer(bytes), wrappedBuffer(bytes));
+        // 4 GiB are discarded in total while only three components exist at a time.
+        for (int i = 0; i < 4096; i++) {
+            cbuf.addComponent(true, wrappedBuffer(bytes));
+            cbuf.skipBytes(bytes.length - 1).readByte();
+            cbuf.discardReadComponents();
+            assertEquals(2, cbuf.numComponents());
+            assertEquals(bytes.length * 2, cbuf.capacity());
+            assertEquals(bytes.length, cbuf.toByteIndex(1));
+            assertEquals(1, cbuf.toComponentIndex(bytes.length + 7));
+            assertEquals(7, cbuf.getByte(bytes.length + 7));
+            assertEquals(0x01020304, cbuf.getInt(bytes.length * 2 - 256 + 1));
+        }
+        assertTrue(cbuf.release());
+    }
+
+    @Test
+    public void testComponentOffsetsWrapAround() {
+        final int mib = 1 << 20;
+        byte[] bytes = new byte[mib];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        ByteBuf shared = wrappedBuffer(bytes);
+        CompositeByteBuf cbuf = compositeBuffer(Integer.MAX_VALUE);
+        cbuf.addComponent(true, shared.retainedSlice());
+        // Discard just less than 1 GiB from the front, which is not enough to move index 0 back to offset 0.
+        for (int i = 0; i < 1023; i++) {
+            cbuf.addComponent(true, shared.retainedSlice());
+            cbuf.skipBytes(mib).discardReadComponents();
+        }
+        // The offsets of the components beyond 1025 MiB wrap around.
+        for (int i = 0; i < 1100; i++) {
+            cbuf.addComponent(true, shared.retainedSlice());
+        }
+        assertEquals(1101 * mib, cbuf.capacity());
+
+        int wrap = 1025 * mib;
+        for (int index = wrap - 3; index < wrap + 3; index++) {
+            assertEquals((byte) index, cbuf.getByte(index));
+        }
+        assertEquals(1025, cbuf.toComponentIndex(wrap));
+        assertEquals(wrap, cbuf.toByteIndex(1025));
+        assertEquals(0xfeff0001, cbuf.getInt(wrap - 2));
+        assertEquals(wrap + 1, cbuf.forEachByte(wrap - 8, 16, new ByteProcessor.IndexOfProcessor((byte) 1)));
+        assertEquals(wrap + 2, cbuf.indexOf(wrap - 8, wrap + 8, (byte) 2));
+
+        // Once all components are gone the offsets start at 0 again.
+        cbuf.skipBytes(cbuf.readableBytes()).discardReadComponents();
+        assertEquals(0, cbuf.numComponents());
+        cbuf.addComponent(true, shared.retainedSlice());
+        assertEquals(0, cbuf.toByteIndex(0));
+        assertEquals((byte) 7, cbuf.getByte(7));
+        assertTrue(cbuf.release());
+        assertTrue(shared.release());
+    }
+
     @Test
     public void testDiscardSomeReadBytesCorrectlyUpdatesLastAccessed() {
         testDiscardCorrectlyUpdatesLastAccessed(true);
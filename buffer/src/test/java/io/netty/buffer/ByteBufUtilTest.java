@@ -16,6 +16,7 @@
 package io.netty.buffer;
 
 import io.netty.util.AsciiString;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.junit.Test;
 
@@ -134,6 +135,68 @@ public class ByteBufUtilTest {
                 -1));
     }
 
+    @Test
+    public void equalsDirectAndHeapBuffers() {
+        byte[] bytes = new byte[43];
+        new Random().nextBytes(bytes);
+        ByteBuf heap = Unpooled.wrappedBuffer(bytes);
+        ByteBuf direct = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+        ByteBuf swapped = Unpooled.directBuffer(bytes.length).order(ByteOrder.LITTLE_ENDIAN).writeBytes(bytes);
+        try {
+            for (int length = 0; length <= bytes.length; length++) {
+                assertTrue(ByteBufUtil.equals(heap, 0, direct, 0, length));
+                assertTrue(ByteBufUtil.equals(direct, 0, swapped, 0, length));
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                direct.setByte(i, ~bytes[i]);
+                assertFalse(ByteBufUtil.equals(heap, 0, direct, 0, bytes.length));
+                assertFalse(ByteBufUtil.equals(swapped, 0, direct, 0, bytes.length));
+                direct.setByte(i, bytes[i]);
+            }
+        } finally {
+            direct.release();
+            swapped.release();
+        }
+    }
+
+    @Test
+    public void indexOfByteAtEveryPosition() {
+        ByteBuf heap = Unpooled.buffer(37).writeZero(37);
+        ByteBuf direct = Unpooled.directBuffer(37).writeZero(37);
+        try {
+            for (ByteBuf buffer : new ByteBuf[] { heap, direct }) {
+                for (int i = 0; i < buffer.capacity(); i++) {
+                    buffer.setByte(i, '\n');
+                    for (int from = 0; from <= i; from++) {
+                        assertEquals(i, buffer.indexOf(from, buffer.capacity(), (byte) '\n'));
+                        assertEquals(i, buffer.forEachByte(from, buffer.capacity() - from, ByteProcessor.FIND_LF));
+                        assertEquals(i, buffer.forEachByte(from, buffer.capacity() - from, ByteProcessor.FIND_CRLF));
+                    }
+                    assertEquals(-1, buffer.indexOf(i + 1, buffer.capacity(), (byte) '\n'));
+                    assertEquals(-1, buffer.indexOf(0, i, (byte) '\n'));
+                    buffer.setByte(i, 0);
+                }
+                // Bytes that only differ in the highest bit must not match.
+                buffer.setByte(3, 0x8a);
+                assertEquals(-1, buffer.indexOf(0, buffer.capacity(), (byte) '\n'));
+                assertEquals(3, buffer.indexOf(0, buffer.capacity(), (byte) 0x8a));
+            }
+        } finally {
+            direct.release();
+        }
+    }
+
+    @Test
+    public void indexOfNeedle() {
+        ByteBuf haystack = Unpooled.copiedBuffer("abcabcabd--abcabd", CharsetUtil.US_ASCII);
+        assertEquals(3, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abcabd", CharsetUtil.US_ASCII), haystack));
+        assertEquals(8, ByteBufUtil.indexOf(Unpooled.copiedBuffer("d", CharsetUtil.US_ASCII), haystack));
+        assertEquals(0, ByteBufUtil.indexOf(Unpooled.EMPTY_BUFFER, haystack));
+        assertEquals(-1, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abe", CharsetUtil.US_ASCII), haystack));
+        haystack.readerIndex(4);
+        assertEquals(11, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abcabd", CharsetUtil.US_ASCII), haystack));
+    }
+
     @SuppressWarnings("deprecation")
     @Test
     public void writeShortBE() {
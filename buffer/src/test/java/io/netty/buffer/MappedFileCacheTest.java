@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.PlatformDependent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+public class MappedFileCacheTest {
+
+    private File file1;
+    private File file2;
+
+    @Before
+    public void setUp() throws IOException {
+        file1 = File.createTempFile("netty-test", "tmp");
+        file2 = File.createTempFile("netty-test", "tmp");
+    }
+
+    @After
+    public void tearDown() {
+        file1.delete();
+        file2.delete();
+    }
+
+    @Test
+    public void testMap() throws IOException {
+        byte[] bytes = write(file1, 1024);
+        MappedFileByteBuf buf = MappedFileByteBuf.map(file1);
+        try {
+            assertTrue(buf.isReadOnly());
+            assertTrue(buf.isDirect());
+            assertSame(file1, buf.file());
+            assertEquals(file1.lastModified(), buf.lastModified());
+            assertEquals(Unpooled.wrappedBuffer(bytes), buf);
+        } finally {
+            assertTrue(buf.release());
+        }
+    }
+
+    @Test
+    public void testMapEmptyFile() throws IOException {
+        MappedFileByteBuf buf = MappedFileByteBuf.map(file1);
+        assertEquals(0, buf.readableBytes());
+        assertTrue(buf.release());
+    }
+
+    @Test
+    public void testAcquireSharesMapping() throws IOException {
+        byte[] bytes = write(file1, 1024);
+        MappedFileCache cache = new MappedFileCache(4, 1024 * 1024);
+        ByteBuf buf1 = cache.acquire(file1);
+        ByteBuf buf2 = cache.acquire(file1);
+        try {
+            assertEquals(1, cache.size());
+            assertEquals(1024, cache.mappedBytes());
+            assertSame(buf1.unwrap(), buf2.unwrap());
+            assertEquals(Unpooled.wrappedBuffer(bytes), buf1);
+            assertEquals(Unpooled.wrappedBuffer(bytes), buf2);
+
+            // Reading one buffer must not change the indices of the other one.
+            buf1.skipBytes(512);
+            assertEquals(1024, buf2.readableBytes());
+        } finally {
+            buf1.release();
+            buf2.release();
+        }
+        assertEquals(1, buf1.refCnt());
+        cache.clear();
+        assertEquals(0, buf1.refCnt());
+        assertEquals(0, cache.mappedBytes());
+    }
+
+    @Test
+    public void testReleasedAfterEviction() throws IOException {
+        write(file1, 1024);
+        write(file2, 1024);
+        MappedFileCache cache = new MappedFileCache(1, 1024 * 1024);
+        ByteBuf buf1 = cache.acquire(file1);
+        ByteBuf buf2 = cache.acquire(file2);
+        assertEquals(1, cache.size());
+
+        // The evicted mapping must stay accessible until the buffer is released.
+        assertEquals(1, buf1.refCnt());
+        buf1.getByte(1023);
+        assertTrue(buf1.release());
+
+        assertFalse(buf2.release());
+        cache.clear();
+        assertEquals(0, buf2.refCnt());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws IOException {
+        write(file1, 1024);
+        write(file2, 1024);
+        File file3 = File.createTempFile("netty-test", "tmp");
+        try {
+            write(file3, 1024);
+            MappedFileCache cache = new MappedFileCache(4, 2048);
+            cache.acquire(file1).release();
+            ByteBuf buf2 = cache.acquire(file2);
+            cache.acquire(file1).release();
+            cache.acquire(file3).release();
+
+            // file2 was used least recently, so it must have been evicted.
+            assertEquals(2, cache.size());
+            assertEquals(2048, cache.mappedBytes());
+            assertTrue(buf2.release());
+            cache.clear();
+        } finally {
+            file3.delete();
+        }
+    }
+
+    @Test
+    public void testRemapModifiedFile() throws IOException {
+        // Windows does not allow to modify a file while it is mapped.
+        assumeFalse(PlatformDependent.isWindows());
+        write(file1, 1024);
+        MappedFileCache cache = new MappedFileCache(4, 1024 * 1024);
+        ByteBuf buf1 = cache.acquire(file1);
+
+        byte[] bytes = write(file1, 2048);
+        assertTrue(file1.setLastModified(file1.lastModified() + 1000));
+        ByteBuf buf2 = cache.acquire(file1);
+        try {
+            assertNotSame(buf1.unwrap(), buf2.unwrap());
+            assertEquals(Unpooled.wrappedBuffer(bytes), buf2);
+            assertEquals(1, cache.size());
+            assertEquals(2048, cache.mappedBytes());
+        } finally {
+            assertTrue(buf1.release());
+            buf2.release();
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void testFileLargerThanCacheIsNotCached() throws IOException {
+        write(file1, 1024);
+        MappedFileCache cache = new MappedFileCache(4, 512);
+        ByteBuf buf = cache.acquire(file1);
+        assertEquals(0, cache.size());
+        assertTrue(buf.release());
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        write(file1, 1024);
+        MappedFileCache cache = new MappedFileCache(4, 1024 * 1024);
+        ByteBuf buf = cache.acquire(file1);
+        cache.invalidate(file1);
+        assertEquals(0, cache.size());
+        assertTrue(buf.release());
+    }
+
+    private static byte[] write(File file, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        PlatformDependent.threadLocalRandom().nextBytes(bytes);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return bytes;
+    }
+}
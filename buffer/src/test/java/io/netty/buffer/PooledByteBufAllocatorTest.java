@@ -18,6 +18,7 @@ package io.netty.buffer;
 
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.internal.DirectMemoryPurger;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 import org.junit.Assume;
@@ -29,6 +30,7 @@ import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.LockSupport;
 
@@ -36,6 +38,7 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<PooledByteBufAllocator> {
@@ -121,7 +124,6 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
                 /*nDirectArena=*/ 1,
                 /*pageSize=*/8192,
                 /*maxOrder=*/ 11,
-                /*tinyCacheSize=*/ 0,
                 /*smallCacheSize=*/ 0,
                 /*normalCacheSize=*/ 0,
                 /*useCacheForAllThreads=*/ false);
@@ -218,7 +220,9 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         ByteBuf buffer = allocator.heapBuffer(1);
         try {
             PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
-            PoolSubpageMetric subpageMetric = metric.tinySubpages().get(0);
+            assertTrue(metric.tinySubpages().isEmpty());
+            PoolSubpageMetric subpageMetric = metric.smallSubpages().get(0);
+            assertEquals(16, subpageMetric.elementSize());
             assertEquals(1, subpageMetric.maxNumElements() - subpageMetric.numAvailable());
         } finally {
             buffer.release();
@@ -231,10 +235,9 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         // Huge allocation
         testAllocNotNull(allocator, allocator.metric().chunkSize() + 1);
         // Normal allocation
-        testAllocNotNull(allocator, 1024);
+        testAllocNotNull(allocator, 1024 * 40);
         // Small allocation
         testAllocNotNull(allocator, 512);
-        // Tiny allocation
         testAllocNotNull(allocator, 1);
     }
 
@@ -274,6 +277,285 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         assertFalse(lists.get(5).iterator().hasNext());
     }
 
+    @Test
+    public void testMagazineUsedWithoutThreadCache() {
+        assertFalse(Thread.currentThread() instanceof FastThreadLocalThread);
+
+        // The current thread will not get a thread cache as it is no FastThreadLocalThread.
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 256, 64, false);
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+
+        assertTrue(allocator.heapBuffer(1024).release());
+        assertTrue(allocator.heapBuffer(1024).release());
+        assertTrue(allocator.heapBuffer(8192 * 4).release());
+        assertTrue(allocator.heapBuffer(8192 * 4).release());
+
+        // The second allocation of each size is served by the magazine of the arena.
+        assertEquals(1, metric.numSmallAllocations());
+        assertEquals(1, metric.numNormalAllocations());
+        assertEquals(0, metric.numDeallocations());
+        // The arena lock was only needed to allocate a run for each size.
+        assertEquals(2, metric.numLockAcquisitions());
+    }
+
+    @Test
+    public void testMagazineReleasedOnDecay() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 256, 64, false);
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+        int chunkSize = allocator.metric().chunkSize();
+
+        // The memory is kept in the magazine of the arena.
+        assertTrue(allocator.heapBuffer(8192 * 4).release());
+        assertEquals(0, metric.numDeallocations());
+        assertEquals(chunkSize, allocator.metric().usedHeapMemory());
+
+        // Nobody took it out of the magazine, so it is given back to its chunk which is released afterwards.
+        allocator.decay();
+        assertEquals(1, metric.numDeallocations());
+        allocator.decay();
+        assertEquals(0, allocator.metric().usedHeapMemory());
+    }
+
+    @Test
+    public void testMagazineKeptWhileUsed() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 256, 64, false);
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+
+        assertTrue(allocator.heapBuffer(8192 * 4).release());
+        assertTrue(allocator.heapBuffer(8192 * 4).release());
+        // The magazine was used since it was created, so the memory stays in it.
+        allocator.decay();
+        assertEquals(0, metric.numDeallocations());
+        allocator.decay();
+        assertEquals(1, metric.numDeallocations());
+    }
+
+    @Test
+    public void testMagazineTrimmedOncePerInterval() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 256, 64, false);
+        PoolArena<byte[]> arena = (PoolArena<byte[]>) allocator.metric().heapArenas().get(0);
+
+        assertTrue(allocator.heapBuffer(8192 * 4).release());
+        // Every thread cache trim tries to trim the magazines, but the arena only does it once per interval.
+        for (int i = 0; i < 16; i++) {
+            arena.trimMagazines(false);
+        }
+        assertEquals(0, arena.numDeallocations());
+
+        allocator.decay();
+        assertEquals(1, arena.numDeallocations());
+    }
+
+    @Test
+    public void testArenaLockMetric() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 0, 0, false);
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+        assertEquals(0, metric.numLockAcquisitions());
+
+        assertTrue(allocator.heapBuffer(8192 * 4).release());
+        // One acquisition for the allocation and one for the deallocation.
+        assertEquals(2, metric.numLockAcquisitions());
+        assertEquals(0, metric.numContendedLockAcquisitions());
+        assertEquals(0, metric.numThreadCacheMigrations());
+    }
+
+    @Test
+    public void testDecayReleasesIdleChunk() {
+        // Heap memory can not be purged so chunks that are completely free are released instead.
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 0, 0, false);
+        PoolArenaMetric metric = allocator.metric().heapArenas().get(0);
+        int chunkSize = allocator.metric().chunkSize();
+
+        ByteBuf buffer = allocator.heapBuffer(8192 * 4);
+        allocator.decay();
+        allocator.decay();
+        // The chunk is still used.
+        assertEquals(chunkSize, allocator.metric().usedHeapMemory());
+
+        assertTrue(buffer.release());
+        assertEquals(chunkSize, allocator.metric().usedHeapMemory());
+        allocator.decay();
+        // The chunk was used since the previous decay so is kept.
+        assertEquals(chunkSize, allocator.metric().usedHeapMemory());
+        allocator.decay();
+        assertEquals(0, allocator.metric().usedHeapMemory());
+        assertEquals(0, metric.numPurgedBytes());
+        assertEquals(0, metric.numResidentBytes());
+    }
+
+    @Test
+    public void testResidentMemoryWithoutPurge() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, false);
+        PooledByteBufAllocatorMetric metric = allocator.metric();
+
+        ByteBuf buffer = allocator.directBuffer(8192 * 4);
+        allocator.decay();
+        allocator.decay();
+        assertEquals(metric.usedDirectMemory(), metric.residentDirectMemory() + metric.purgedDirectMemory());
+        assertTrue(buffer.release());
+    }
+
+    @Test(timeout = 30000)
+    public void testPurgeWithoutHoldingArenaLock() throws Exception {
+        Assume.assumeTrue(PlatformDependent.hasUnsafe());
+        // Do not replace the purger of a native transport, this one does not purge anything.
+        Assume.assumeTrue(DirectMemoryPurger.get() == null);
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 0, 1, 8192, 11, 0, 0, false);
+        final PoolArena<?> arena = (PoolArena<?>) allocator.metric().directArenas().get(0);
+        final AtomicLong purged = new AtomicLong();
+        final AtomicBoolean lockHeld = new AtomicBoolean();
+        DirectMemoryPurger.register(new DirectMemoryPurger() {
+            @Override
+            public long purge(long address, long length) {
+                Thread locker = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        arena.lock();
+                        arena.unlock();
+                    }
+                });
+                locker.start();
+                try {
+                    locker.join(10000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (locker.isAlive()) {
+                    lockHeld.set(true);
+                }
+                // Only whole pages are purged.
+                long pages = length - 4096;
+                purged.addAndGet(pages);
+                return pages;
+            }
+        });
+
+        ByteBuf used = allocator.directBuffer(8192 * 4);
+        assertTrue(allocator.directBuffer(8192 * 4).release());
+        allocator.decay();
+        allocator.decay();
+
+        assertFalse(lockHeld.get());
+        assertTrue(purged.get() > 0);
+        assertEquals(purged.get(), arena.numPurgedBytes());
+        assertTrue(used.release());
+    }
+
+    @Test(timeout = 30000)
+    public void testThreadCacheMovesAwayFromContendedArena() throws Exception {
+        final PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 2, 0, 8192, 11, 0, 0, false);
+        final PoolThreadCache cache = allocator.threadCache();
+        final PoolArena<byte[]> arena = cache.heapArena;
+        final Thread current = Thread.currentThread();
+        final int contendedAllocations = 128;
+
+        for (int i = 0; i < 1024; i++) {
+            Thread holder = null;
+            if (i < contendedAllocations) {
+                // Hold the arena lock until the current thread blocks on it while allocating.
+                final AtomicBoolean locked = new AtomicBoolean();
+                holder = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        arena.lock();
+                        try {
+                            locked.set(true);
+                            while (current.getState() != Thread.State.WAITING) {
+                                Thread.yield();
+                            }
+                        } finally {
+                            arena.unlock();
+                        }
+                    }
+                });
+                holder.start();
+                while (!locked.get()) {
+                    Thread.yield();
+                }
+            }
+            assertTrue(allocator.heapBuffer(8192 * 4).release());
+            if (holder != null) {
+                holder.join();
+            }
+        }
+
+        assertEquals(contendedAllocations, arena.numContendedLockAcquisitions());
+        assertEquals(1, arena.numThreadCacheMigrations());
+        assertEquals(0, arena.numThreadCaches());
+        assertTrue(cache.heapArena != arena);
+        assertEquals(1, cache.heapArena.numThreadCaches());
+    }
+
+    @Test
+    public void testThreadCacheNotMovedAfterFree() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 2, 0, 8192, 11, 0, 0, false);
+        PoolThreadCache cache = allocator.threadCache();
+        PoolArena<byte[]> arena = cache.heapArena;
+        cache.free(false);
+        assertEquals(0, arena.numThreadCaches());
+
+        for (int i = 0; i < 1024; i++) {
+            cache.recordArenaLock(arena, true);
+        }
+        // The freed cache does not count for any arena anymore.
+        assertSame(arena, cache.heapArena);
+        assertEquals(0, allocator.metric().heapArenas().get(0).numThreadCaches());
+        assertEquals(0, allocator.metric().heapArenas().get(1).numThreadCaches());
+    }
+
+    @Test(timeout = 5000)
+    public void testArenaLoadWithoutLock() throws Exception {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 1, 0, 8192, 11, 0, 0, false);
+        final PoolArena<byte[]> arena = allocator.threadCache().heapArena;
+        assertTrue(allocator.heapBuffer(8192 * 4).release());
+
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                arena.lock();
+                try {
+                    locked.countDown();
+                    done.await();
+                } catch (InterruptedException ignore) {
+                    // Just unlock.
+                } finally {
+                    arena.unlock();
+                }
+            }
+        });
+        holder.start();
+        locked.await();
+        try {
+            // Choosing an arena must not wait for the arenas it looks at.
+            assertTrue(arena.load(System.nanoTime()) > 0);
+        } finally {
+            done.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void testArenaLoadDecays() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(false, 2, 0, 8192, 11, 0, 0, false);
+        PoolArena<byte[]> busy = allocator.threadCache().heapArena;
+        PoolArena<byte[]> idle = (PoolArena<byte[]>) allocator.metric().heapArenas().get(0);
+        if (idle == busy) {
+            idle = (PoolArena<byte[]>) allocator.metric().heapArenas().get(1);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue(allocator.heapBuffer(8192 * 4).release());
+        }
+
+        long nanoTime = System.nanoTime();
+        double load = busy.load(nanoTime);
+        assertTrue(load > 0);
+        assertEquals(0, idle.load(nanoTime), 0);
+        // Allocations that happened a while ago do not count anymore.
+        assertTrue(busy.load(nanoTime + MILLISECONDS.toNanos(30000)) < load / 1000);
+    }
+
     @Test (timeout = 4000)
     public void testThreadCacheDestroyedByThreadCleaner() throws InterruptedException {
         testThreadCacheDestroyed(false);
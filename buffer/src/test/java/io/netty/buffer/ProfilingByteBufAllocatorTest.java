@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import io.netty.util.ResourceLeakDetector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProfilingByteBufAllocatorTest {
+
+    @Test
+    public void testSizeHistogram() {
+        ProfilingByteBufAllocator allocator = new ProfilingByteBufAllocator(UnpooledByteBufAllocator.DEFAULT, 16, 1);
+        assertTrue(allocator.heapBuffer(1).release());
+        assertTrue(allocator.heapBuffer(1000).release());
+        assertTrue(allocator.directBuffer(1024).release());
+
+        ByteBufAllocatorProfile profile = allocator.profile();
+        assertEquals(3, profile.totalAllocations());
+        assertEquals(3, profile.allocations());
+        assertEquals(3, profile.releases());
+        long[] sizes = profile.sizeHistogram();
+        assertEquals(1, sizes[1]);
+        assertEquals(1, sizes[10]);
+        assertEquals(1, sizes[11]);
+    }
+
+    @Test
+    public void testCallSites() {
+        ProfilingByteBufAllocator allocator = new ProfilingByteBufAllocator(UnpooledByteBufAllocator.DEFAULT, 16, 1);
+        ByteBuf buffer = allocator.buffer(16);
+        for (int i = 0; i < 2; i++) {
+            allocateAndRelease(allocator);
+        }
+
+        ByteBufAllocatorProfile.CallSite site = allocator.profile().callSites().get(0);
+        assertTrue(site.site(), site.site().contains("allocateAndRelease"));
+        assertEquals(2, site.allocations());
+        assertEquals(64, site.allocatedBytes());
+        assertEquals(2, site.releases());
+
+        site = allocator.profile().callSites().get(1);
+        assertTrue(site.site(), site.site().contains("testCallSites"));
+        assertEquals(0, site.releases());
+        assertEquals(-1, site.averageLifetimeNanos());
+        assertTrue(buffer.release());
+        assertEquals(1, allocator.profile().callSites().get(1).releases());
+    }
+
+    private static void allocateAndRelease(ByteBufAllocator allocator) {
+        assertTrue(allocator.buffer(32).release());
+    }
+
+    @Test
+    public void testReservoirIsBounded() {
+        ProfilingByteBufAllocator allocator = new ProfilingByteBufAllocator(UnpooledByteBufAllocator.DEFAULT, 8, 1);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(allocator.buffer(16).release());
+        }
+
+        ByteBufAllocatorProfile profile = allocator.profile();
+        assertEquals(10000, profile.totalAllocations());
+        assertEquals(8, profile.allocations());
+        assertEquals(8, profile.releases());
+    }
+
+    @Test
+    public void testReservoirIsUniformOverBursts() {
+        ProfilingByteBufAllocator allocator = new ProfilingByteBufAllocator(UnpooledByteBufAllocator.DEFAULT, 256, 1);
+        // Two bursts of the same size, so each of them should end up with about half of the samples.
+        for (int i = 0; i < 20000; i++) {
+            assertTrue(allocator.buffer(i < 10000 ? 16 : 1024).release());
+        }
+
+        ByteBufAllocatorProfile profile = allocator.profile();
+        assertEquals(256, profile.allocations());
+        long[] sizes = profile.sizeHistogram();
+        assertEquals(256, sizes[5] + sizes[11]);
+        assertTrue(String.valueOf(sizes[5]), sizes[5] > 64 && sizes[5] < 192);
+    }
+
+    @Test
+    public void testReleaseOfDerivedBuffers() {
+        ProfilingByteBufAllocator allocator = new ProfilingByteBufAllocator(
+                new PooledByteBufAllocator(false, 1, 1, 8192, 11, 0, 0, false), 16, 1);
+        ByteBuf buffer = allocator.buffer(16);
+        ByteBuf slice = buffer.retainedSlice();
+        ByteBuf duplicate = buffer.retainedDuplicate();
+        assertFalse(buffer.release());
+        // The pooled slice has its own reference count but the memory is still used by the duplicate.
+        assertTrue(slice.release());
+        assertEquals(0, allocator.profile().releases());
+        assertTrue(duplicate.release());
+        assertEquals(1, allocator.profile().releases());
+    }
+
+    @Test
+    public void testReleaseOfLeakAwareDerivedBuffers() {
+        ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+        try {
+            ProfilingByteBufAllocator allocator = new ProfilingByteBufAllocator(
+                    new PooledByteBufAllocator(false, 1, 1, 8192, 11, 0, 0, false), 16, 1);
+            ByteBuf buffer = allocator.buffer(16);
+            ByteBuf slice = buffer.retainedSlice();
+            ByteBuf duplicate = buffer.retainedDuplicate();
+            assertTrue(slice.release());
+            assertTrue(duplicate.release());
+            assertEquals(0, allocator.profile().releases());
+            assertTrue(buffer.release());
+            assertEquals(1, allocator.profile().releases());
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
+    @Test
+    public void testReset() {
+        ProfilingByteBufAllocator allocator = new ProfilingByteBufAllocator(UnpooledByteBufAllocator.DEFAULT, 16, 1);
+        ByteBuf buffer = allocator.buffer();
+        allocator.reset();
+        assertTrue(buffer.release());
+
+        ByteBufAllocatorProfile profile = allocator.profile();
+        assertEquals(0, profile.allocations());
+        assertEquals(0, profile.releases());
+        assertTrue(profile.callSites().isEmpty());
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded cache of compressed HTTP content which can be shared by several {@link HttpContentCompressor}s, so
+ * responses with identical content, like the same JavaScript bundle or JSON schema, are only compressed once.
+ * <p>
+ * Only responses which are written as a whole, like a {@link FullHttpResponse}, are cached. The compressed content
+ * is looked up by the content encoding, the compression options, the content length and either the strong
+ * {@code ETag} of the response or, if there is no strong {@code ETag}, a SHA-256 hash of the content. An {@code ETag}
+ * must therefore identify the content uniquely among all responses which share a cache, for example because it is
+ * derived from a hash of the content. Handlers with different compression options, like another compression level,
+ * Brotli quality or {@code zstd} dictionary, can share a cache without being served each other's content.
+ * <p>
+ * Precompressed {@code .br}, {@code .gz} and {@code .zst} siblings of static files can be added via
+ * {@link #addPrecompressedSiblings(File, String, ByteBufAllocator)}, so matching responses are served from the
+ * cache without compressing them first, whatever the compression options of the handler are.
+ * <p>
+ * The least recently used entries are evicted once the total size of the cached content exceeds the maximum size.
+ * The cached content is held in reference-counted buffers which are released on eviction. This class is
+ * thread-safe.
+ */
+public final class HttpContentCompressionCache {
+
+    private static final FastThreadLocal<MessageDigest> SHA256 = new FastThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() throws Exception {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new InternalError("SHA-256 not supported on this platform - Outdated?");
+            }
+        }
+    };
+
+    private static final String[][] PRECOMPRESSED_SUFFIXES = {
+            { ".br", "br" },
+            { ".gz", "gzip" },
+            { ".zst", "zstd" },
+    };
+
+    private final long maxSize;
+    private final Map<Key, ByteBuf> entries = new LinkedHashMap<Key, ByteBuf>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize the maximum total size of the cached compressed content in bytes
+     */
+    public HttpContentCompressionCache(long maxSize) {
+        this.maxSize = ObjectUtil.checkPositive(maxSize, "maxSize");
+    }
+
+    /**
+     * Returns the maximum total size of the cached compressed content in bytes.
+     */
+    public long maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the total size of the cached compressed content in bytes.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of cached entries.
+     */
+    public synchronized int entries() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all entries from this cache.
+     */
+    public synchronized void clear() {
+        for (ByteBuf content : entries.values()) {
+            content.release();
+        }
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Adds the precompressed siblings of the specified file to this cache: {@code file.br}, {@code file.gz} and
+     * {@code file.zst} are used as the content of the {@code br}, {@code gzip} and {@code zstd} encodings if they
+     * exist. The siblings are trusted to contain the compressed content of {@code file}.
+     *
+     * @param file  the uncompressed file
+     * @param etag  the {@code ETag} of the responses which contain the content of {@code file}, or {@code null} if
+     *              the responses should be matched by a hash of their content
+     * @param alloc the allocator of the buffers which hold the compressed content
+     * @return the number of siblings that were added
+     */
+    public int addPrecompressedSiblings(File file, String etag, ByteBufAllocator alloc) throws IOException {
+        ObjectUtil.checkNotNull(file, "file");
+        ObjectUtil.checkNotNull(alloc, "alloc");
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        long contentLength = file.length();
+        String id = isStrongETag(etag) ? etag : hash(file);
+
+        int added = 0;
+        for (String[] suffix : PRECOMPRESSED_SUFFIXES) {
+            File sibling = new File(file.getPath() + suffix[0]);
+            if (sibling.isFile()) {
+                put(new Key(id, contentLength, suffix[1]), read(sibling, alloc));
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Returns the key of the compressed {@code content} of the specified response.
+     *
+     * @param options    the description of the compression options, like the compression level
+     * @param dictionary the dictionary the content is compressed with, which is compared by identity, or
+     *                   {@code null}
+     */
+    static Key key(HttpResponse response, ByteBuf content, String contentEncoding, String options,
+                   Object dictionary) {
+        String etag = response.headers().get(HttpHeaderNames.ETAG);
+        String id = isStrongETag(etag) ? etag : hash(content);
+        return new Key(id, content.readableBytes(), contentEncoding, options, dictionary);
+    }
+
+    /**
+     * Returns a retained duplicate of the cached content, or {@code null} if there is no entry for {@code key}.
+     * Precompressed content is returned if there is no content which was compressed with the options of {@code key}.
+     */
+    synchronized ByteBuf get(Key key) {
+        ByteBuf content = entries.get(key);
+        if (content == null && key.options != null) {
+            content = entries.get(key.withoutOptions());
+        }
+        return content != null ? content.retainedDuplicate() : null;
+    }
+
+    /**
+     * Adds the specified content to this cache, which takes over the ownership of {@code content}.
+     */
+    synchronized void put(Key key, ByteBuf content) {
+        int length = content.readableBytes();
+        if (length > maxSize) {
+            content.release();
+            return;
+        }
+        ByteBuf old = entries.put(key, content);
+        if (old != null) {
+            size -= old.readableBytes();
+            old.release();
+        }
+        size += length;
+
+        Iterator<ByteBuf> i = entries.values().iterator();
+        while (size > maxSize) {
+            ByteBuf eldest = i.next();
+            i.remove();
+            size -= eldest.readableBytes();
+            eldest.release();
+        }
+    }
+
+    private static boolean isStrongETag(String etag) {
+        // Weak ETags only denote semantically equivalent content, see https://tools.ietf.org/html/rfc7232#section-2.3
+        return etag != null && !etag.isEmpty() && !etag.startsWith("W/");
+    }
+
+    private static String hash(ByteBuf content) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        if (content.hasArray()) {
+            digest.update(content.array(), content.arrayOffset() + content.readerIndex(), content.readableBytes());
+        } else {
+            digest.update(content.nioBuffer());
+        }
+        return "sha256:" + StringUtil.toHexString(digest.digest());
+    }
+
+    private static String hash(File file) throws IOException {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return "sha256:" + StringUtil.toHexString(digest.digest());
+    }
+
+    private static ByteBuf read(File file, ByteBufAllocator alloc) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("file too large: " + file.getPath());
+            }
+            ByteBuf content = alloc.buffer((int) length);
+            boolean success = false;
+            try {
+                FileChannel channel = raf.getChannel();
+                while (content.writerIndex() < length) {
+                    if (content.writeBytes(channel, content.writerIndex(), (int) length - content.writerIndex()) < 0) {
+                        throw new IOException("unexpected end of file: " + file.getPath());
+                    }
+                }
+                success = true;
+                return content;
+            } finally {
+                if (!success) {
+                    content.release();
+                }
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    static final class Key {
+        private final String id;
+        private final long contentLength;
+        private final String contentEncoding;
+        // null for precompressed content, which matches any options.
+        private final String options;
+        private final Object dictionary;
+
+        /**
+         * Creates the key of precompressed content.
+         */
+        Key(String id, long contentLength, String contentEncoding) {
+            this(id, contentLength, contentEncoding, null, null);
+        }
+
+        Key(String id, long contentLength, String contentEncoding, String options, Object dictionary) {
+            this.id = id;
+            this.contentLength = contentLength;
+            this.contentEncoding = contentEncoding;
+            this.options = options;
+            this.dictionary = dictionary;
+        }
+
+        Key withoutOptions() {
+            return new Key(id, contentLength, contentEncoding);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = (id.hashCode() * 31 + (int) (contentLength ^ contentLength >>> 32)) * 31 +
+                    contentEncoding.hashCode();
+            hash = hash * 31 + (options != null ? options.hashCode() : 0);
+            return hash * 31 + System.identityHashCode(dictionary);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return contentLength == other.contentLength && id.equals(other.id) &&
+                    contentEncoding.equals(other.contentEncoding) &&
+                    (options != null ? options.equals(other.options) : other.options == null) &&
+                    dictionary == other.dictionary;
+        }
+
+        @Override
+        public String toString() {
+            return id + ", " + contentLength + ", " + contentEncoding + (options != null ? ", " + options : "") +
+                    (dictionary != null ? ", dictionary" : "");
+        }
+    }
+}
@@ -15,24 +15,44 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.BrotliEncoder;
+import io.netty.handler.codec.compression.BrotliOptions;
+import io.netty.handler.codec.compression.CompressionOptions;
+import io.netty.handler.codec.compression.DeflateOptions;
+import io.netty.handler.codec.compression.GzipOptions;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.compression.ZstdEncoder;
+import io.netty.handler.codec.compression.ZstdOptions;
+import io.netty.util.ReferenceCountUtil;
 
 /**
  * Compresses an {@link HttpMessage} and an {@link HttpContent} in {@code gzip} or
  * {@code deflate} encoding while respecting the {@code "Accept-Encoding"} header.
+ * The {@code br} and {@code zstd} encodings can be enabled via {@link StandardCompressionOptions#brotli()} and
+ * {@link StandardCompressionOptions#zstd()}. The compressed content of identical responses can be shared via a
+ * {@link HttpContentCompressionCache}.
  * If there is no matching encoding, no compression is done.  For more
  * information on how this handler modifies the message, please refer to
  * {@link HttpContentEncoder}.
  */
 public class HttpContentCompressor extends HttpContentEncoder {
 
-    private final int compressionLevel;
-    private final int windowBits;
-    private final int memLevel;
+    private final GzipOptions gzipOptions;
+    private final DeflateOptions deflateOptions;
+    private final ZstdOptions zstdOptions;
+    private final BrotliOptions brotliOptions;
     private final int contentSizeThreshold;
+    private final HttpContentCompressionCache cache;
     private ChannelHandlerContext ctx;
 
     /**
@@ -103,27 +123,90 @@ public class HttpContentCompressor extends HttpContentEncoder {
      *        number. {@code 0} will enable compression for all responses.
      */
     public HttpContentCompressor(int compressionLevel, int windowBits, int memLevel, int contentSizeThreshold) {
-        if (compressionLevel < 0 || compressionLevel > 9) {
-            throw new IllegalArgumentException(
-                    "compressionLevel: " + compressionLevel +
-                    " (expected: 0-9)");
-        }
-        if (windowBits < 9 || windowBits > 15) {
-            throw new IllegalArgumentException(
-                    "windowBits: " + windowBits + " (expected: 9-15)");
-        }
-        if (memLevel < 1 || memLevel > 9) {
-            throw new IllegalArgumentException(
-                    "memLevel: " + memLevel + " (expected: 1-9)");
+        this.contentSizeThreshold = checkContentSizeThreshold(contentSizeThreshold);
+        gzipOptions = StandardCompressionOptions.gzip(compressionLevel, windowBits, memLevel);
+        deflateOptions = StandardCompressionOptions.deflate(compressionLevel, windowBits, memLevel);
+        zstdOptions = null;
+        brotliOptions = null;
+        cache = null;
+    }
+
+    /**
+     * Creates a new handler which supports the encodings of the specified {@link CompressionOptions}. If no
+     * {@link CompressionOptions} are specified, {@code br}, {@code gzip} and {@code deflate} with their default
+     * options are supported.
+     *
+     * @param contentSizeThreshold
+     *        The response body is compressed when the size of the response
+     *        body exceeds the threshold. The value should be a non negative
+     *        number. {@code 0} will enable compression for all responses.
+     * @param compressionOptions
+     *        The {@link CompressionOptions} created via {@link StandardCompressionOptions}. The {@code br}
+     *        encoding is ignored if {@link Brotli#isAvailable()} returns {@code false}, and the {@code zstd}
+     *        encoding is ignored if {@link Zstd#isAvailable()} returns {@code false}.
+     */
+    public HttpContentCompressor(int contentSizeThreshold, CompressionOptions... compressionOptions) {
+        this(null, contentSizeThreshold, compressionOptions);
+    }
+
+    /**
+     * Creates a new handler which supports the encodings of the specified {@link CompressionOptions} and looks up
+     * the compressed content of full responses in the specified {@link HttpContentCompressionCache} before
+     * compressing it. If no {@link CompressionOptions} are specified, {@code br}, {@code gzip} and {@code deflate}
+     * with their default options are supported.
+     *
+     * @param cache
+     *        The cache of compressed content, which is usually shared by all handlers, or {@code null} to
+     *        compress all responses.
+     * @param contentSizeThreshold
+     *        The response body is compressed when the size of the response
+     *        body exceeds the threshold. The value should be a non negative
+     *        number. {@code 0} will enable compression for all responses.
+     * @param compressionOptions
+     *        The {@link CompressionOptions} created via {@link StandardCompressionOptions}. The {@code br}
+     *        encoding is ignored if {@link Brotli#isAvailable()} returns {@code false}, and the {@code zstd}
+     *        encoding is ignored if {@link Zstd#isAvailable()} returns {@code false}.
+     */
+    public HttpContentCompressor(HttpContentCompressionCache cache, int contentSizeThreshold,
+                                 CompressionOptions... compressionOptions) {
+        this.cache = cache;
+        this.contentSizeThreshold = checkContentSizeThreshold(contentSizeThreshold);
+        GzipOptions gzipOptions = null;
+        DeflateOptions deflateOptions = null;
+        ZstdOptions zstdOptions = null;
+        BrotliOptions brotliOptions = null;
+        if (compressionOptions == null || compressionOptions.length == 0) {
+            gzipOptions = StandardCompressionOptions.gzip();
+            deflateOptions = StandardCompressionOptions.deflate();
+            brotliOptions = StandardCompressionOptions.brotli();
+        } else {
+            for (CompressionOptions options : compressionOptions) {
+                if (options instanceof GzipOptions) {
+                    gzipOptions = (GzipOptions) options;
+                } else if (options instanceof DeflateOptions) {
+                    deflateOptions = (DeflateOptions) options;
+                } else if (options instanceof ZstdOptions) {
+                    zstdOptions = (ZstdOptions) options;
+                } else if (options instanceof BrotliOptions) {
+                    brotliOptions = (BrotliOptions) options;
+                } else {
+                    throw new IllegalArgumentException("Unsupported " + CompressionOptions.class.getSimpleName() +
+                            ": " + options);
+                }
+            }
         }
+        this.gzipOptions = gzipOptions;
+        this.deflateOptions = deflateOptions;
+        this.zstdOptions = zstdOptions;
+        this.brotliOptions = brotliOptions;
+    }
+
+    private static int checkContentSizeThreshold(int contentSizeThreshold) {
         if (contentSizeThreshold < 0) {
             throw new IllegalArgumentException(
                     "contentSizeThreshold: " + contentSizeThreshold + " (expected: non negative number)");
         }
-        this.compressionLevel = compressionLevel;
-        this.windowBits = windowBits;
-        this.memLevel = memLevel;
-        this.contentSizeThreshold = contentSizeThreshold;
+        return contentSizeThreshold;
     }
 
     @Override
@@ -147,28 +230,182 @@ public class HttpContentCompressor extends HttpContentEncoder {
             return null;
         }
 
-        ZlibWrapper wrapper = determineWrapper(acceptEncoding);
-        if (wrapper == null) {
+        String targetContentEncoding = determineEncoding(acceptEncoding);
+        if (targetContentEncoding == null) {
             return null;
         }
 
-        String targetContentEncoding;
-        switch (wrapper) {
-        case GZIP:
-            targetContentEncoding = "gzip";
-            break;
-        case ZLIB:
-            targetContentEncoding = "deflate";
-            break;
-        default:
+        if (cache != null && headers instanceof LastHttpContent) {
+            return cachedResult(headers, ((HttpContent) headers).content(), targetContentEncoding);
+        }
+        return new Result(targetContentEncoding, newEmbeddedChannel(newEncoder(headers, targetContentEncoding)));
+    }
+
+    private ChannelHandler newEncoder(HttpResponse headers, String targetContentEncoding) {
+        ChannelHandler encoder;
+        if ("gzip".equals(targetContentEncoding)) {
+            encoder = ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP, gzipOptions.compressionLevel(),
+                    gzipOptions.windowBits(), gzipOptions.memLevel());
+        } else if ("deflate".equals(targetContentEncoding)) {
+            encoder = ZlibCodecFactory.newZlibEncoder(ZlibWrapper.ZLIB, deflateOptions.compressionLevel(),
+                    deflateOptions.windowBits(), deflateOptions.memLevel());
+        } else if ("br".equals(targetContentEncoding)) {
+            encoder = new BrotliEncoder(brotliOptions.forContentType(
+                    headers.headers().get(HttpHeaderNames.CONTENT_TYPE)));
+        } else if ("zstd".equals(targetContentEncoding)) {
+            encoder = new ZstdEncoder(zstdOptions.compressionLevel(), zstdOptions.blockSize(),
+                    zstdOptions.dictionary());
+        } else {
             throw new Error();
         }
+        return encoder;
+    }
+
+    /**
+     * Returns a description of the options {@link #newEncoder(HttpResponse, String)} uses for the specified
+     * response, so content which was compressed with different options is cached separately.
+     */
+    private String encoderOptions(HttpResponse headers, String targetContentEncoding) {
+        if ("gzip".equals(targetContentEncoding) || "deflate".equals(targetContentEncoding)) {
+            DeflateOptions options = "gzip".equals(targetContentEncoding) ? gzipOptions : deflateOptions;
+            return "level=" + options.compressionLevel() + ", windowBits=" + options.windowBits() +
+                    ", memLevel=" + options.memLevel();
+        }
+        if ("br".equals(targetContentEncoding)) {
+            BrotliOptions options = brotliOptions.forContentType(headers.headers().get(HttpHeaderNames.CONTENT_TYPE));
+            return "quality=" + options.quality() + ", window=" + options.window();
+        }
+        if ("zstd".equals(targetContentEncoding)) {
+            return "level=" + zstdOptions.compressionLevel() + ", blockSize=" + zstdOptions.blockSize();
+        }
+        throw new Error();
+    }
+
+    private EmbeddedChannel newEmbeddedChannel(ChannelHandler handler) {
+        return new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
+                ctx.channel().config(), handler);
+    }
+
+    private Result cachedResult(HttpResponse headers, ByteBuf content, String targetContentEncoding) {
+        HttpContentCompressionCache.Key key = HttpContentCompressionCache.key(headers, content, targetContentEncoding,
+                encoderOptions(headers, targetContentEncoding),
+                "zstd".equals(targetContentEncoding) ? zstdOptions.dictionary() : null);
+        ByteBuf compressed = cache.get(key);
+        if (compressed == null) {
+            compressed = compress(newEncoder(headers, targetContentEncoding), content);
+            cache.put(key, compressed.retainedDuplicate());
+        }
+        return new Result(targetContentEncoding, newEmbeddedChannel(new CompressedContentWriter(compressed)));
+    }
+
+    private ByteBuf compress(ChannelHandler encoder, ByteBuf content) {
+        EmbeddedChannel channel = newEmbeddedChannel(encoder);
+        try {
+            channel.writeOutbound(content.retainedDuplicate());
+            channel.finish();
+            int length = 0;
+            for (Object msg : channel.outboundMessages()) {
+                length += ((ByteBuf) msg).readableBytes();
+            }
+            ByteBuf compressed = ctx.alloc().buffer(length);
+            for (;;) {
+                ByteBuf buf = channel.readOutbound();
+                if (buf == null) {
+                    break;
+                }
+                compressed.writeBytes(buf);
+                buf.release();
+            }
+            return compressed;
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * Returns the content encoding to use for the given {@code "Accept-Encoding"} header, or {@code null} if the
+     * content should not be compressed. Only the encodings this handler was configured with are considered, if the
+     * client accepts several of them with the same preference {@code br} is preferred over {@code zstd},
+     * {@code zstd} over {@code gzip} and {@code gzip} over {@code deflate}.
+     * <p>
+     * If only {@code gzip} and {@code deflate} are usable the decision is delegated to
+     * {@link #determineWrapper(String)}.
+     */
+    @SuppressWarnings("FloatingPointEquality")
+    protected String determineEncoding(String acceptEncoding) {
+        boolean br = brotliOptions != null && Brotli.isAvailable();
+        boolean zstd = zstdOptions != null && Zstd.isAvailable();
+        if (!br && !zstd && gzipOptions != null && deflateOptions != null) {
+            ZlibWrapper wrapper = determineWrapper(acceptEncoding);
+            if (wrapper == null) {
+                return null;
+            }
+            switch (wrapper) {
+            case GZIP:
+                return "gzip";
+            case ZLIB:
+                return "deflate";
+            default:
+                throw new Error();
+            }
+        }
+
+        float starQ = -1.0f;
+        float brQ = -1.0f;
+        float zstdQ = -1.0f;
+        float gzipQ = -1.0f;
+        float deflateQ = -1.0f;
+        for (String encoding : acceptEncoding.split(",")) {
+            float q = 1.0f;
+            int equalsPos = encoding.indexOf('=');
+            if (equalsPos != -1) {
+                try {
+                    q = Float.parseFloat(encoding.substring(equalsPos + 1));
+                } catch (NumberFormatException e) {
+                    // Ignore encoding
+                    q = 0.0f;
+                }
+            }
+            if (encoding.contains("*")) {
+                starQ = q;
+            } else if (encoding.contains("br") && q > brQ) {
+                brQ = q;
+            } else if (encoding.contains("zstd") && q > zstdQ) {
+                zstdQ = q;
+            } else if (encoding.contains("gzip") && q > gzipQ) {
+                gzipQ = q;
+            } else if (encoding.contains("deflate") && q > deflateQ) {
+                deflateQ = q;
+            }
+        }
 
-        return new Result(
-                targetContentEncoding,
-                new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
-                        ctx.channel().config(), ZlibCodecFactory.newZlibEncoder(
-                        wrapper, compressionLevel, windowBits, memLevel)));
+        float maxQ = Math.max(Math.max(br ? brQ : -1.0f, zstd ? zstdQ : -1.0f),
+                Math.max(gzipOptions != null ? gzipQ : -1.0f, deflateOptions != null ? deflateQ : -1.0f));
+        if (maxQ > 0.0f) {
+            if (br && brQ == maxQ) {
+                return "br";
+            }
+            if (zstd && zstdQ == maxQ) {
+                return "zstd";
+            }
+            return gzipOptions != null && gzipQ == maxQ ? "gzip" : "deflate";
+        }
+        if (starQ > 0.0f) {
+            // Use one of the encodings that was not explicitly listed.
+            if (br && brQ == -1.0f) {
+                return "br";
+            }
+            if (zstd && zstdQ == -1.0f) {
+                return "zstd";
+            }
+            if (gzipOptions != null && gzipQ == -1.0f) {
+                return "gzip";
+            }
+            if (deflateOptions != null && deflateQ == -1.0f) {
+                return "deflate";
+            }
+        }
+        return null;
     }
 
     @SuppressWarnings("FloatingPointEquality")
@@ -212,4 +449,40 @@ public class HttpContentCompressor extends HttpContentEncoder {
         }
         return null;
     }
+
+    /**
+     * Writes the compressed content of a {@link HttpContentCompressionCache} entry instead of the content that is
+     * written to it.
+     */
+    private static final class CompressedContentWriter extends ChannelOutboundHandlerAdapter {
+        private ByteBuf compressed;
+
+        CompressedContentWriter(ByteBuf compressed) {
+            this.compressed = compressed;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ReferenceCountUtil.release(msg);
+            promise.setSuccess();
+        }
+
+        @Override
+        public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+            ByteBuf compressed = this.compressed;
+            if (compressed != null) {
+                this.compressed = null;
+                ctx.writeAndFlush(compressed);
+            }
+            ctx.close(promise);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            if (compressed != null) {
+                compressed.release();
+                compressed = null;
+            }
+        }
+    }
 }
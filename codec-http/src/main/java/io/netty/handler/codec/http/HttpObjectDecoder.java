@@ -25,7 +25,6 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DecoderResult;
 import io.netty.handler.codec.PrematureChannelClosureException;
 import io.netty.handler.codec.TooLongFrameException;
-import io.netty.util.ByteProcessor;
 import io.netty.util.internal.AppendableCharSequence;
 
 import java.util.List;
@@ -777,7 +776,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         return 0;
     }
 
-    private static class HeaderParser implements ByteProcessor {
+    private static class HeaderParser {
         private final AppendableCharSequence seq;
         private final int maxLength;
         private int size;
@@ -788,14 +787,36 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         }
 
         public AppendableCharSequence parse(ByteBuf buffer) {
-            final int oldSize = size;
+            final int readerIndex = buffer.readerIndex();
+            final int writerIndex = buffer.writerIndex();
             seq.reset();
-            int i = buffer.forEachByte(this);
-            if (i == -1) {
-                size = oldSize;
+            // Find the end of the line first, which is done 8 bytes at a time, and only then copy the line.
+            final int lfIndex = buffer.indexOf(readerIndex, writerIndex, HttpConstants.LF);
+            if (lfIndex == -1) {
+                if (size + writerIndex - readerIndex > maxLength) {
+                    // CRs are not counted, so only fail if the line is too long without them.
+                    int size = this.size;
+                    for (int i = readerIndex; i < writerIndex; i++) {
+                        if (buffer.getByte(i) != HttpConstants.CR && ++ size > maxLength) {
+                            throw newException(maxLength);
+                        }
+                    }
+                }
                 return null;
             }
-            buffer.readerIndex(i + 1);
+
+            int size = this.size;
+            for (int i = readerIndex; i < lfIndex; i++) {
+                char nextByte = (char) (buffer.getByte(i) & 0xFF);
+                if (nextByte != HttpConstants.CR) {
+                    if (++ size > maxLength) {
+                        throw newException(maxLength);
+                    }
+                    seq.append(nextByte);
+                }
+            }
+            this.size = size;
+            buffer.readerIndex(lfIndex + 1);
             return seq;
         }
 
@@ -803,24 +824,6 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
             size = 0;
         }
 
-        @Override
-        public boolean process(byte value) throws Exception {
-            char nextByte = (char) (value & 0xFF);
-            if (nextByte == HttpConstants.CR) {
-                return true;
-            }
-            if (nextByte == HttpConstants.LF) {
-                return false;
-            }
-
-            if (++ size > maxLength) {
-                throw newException(maxLength);
-            }
-
-            seq.append(nextByte);
-            return true;
-        }
-
         protected TooLongFrameException newException(int maxLength) {
             return new TooLongFrameException("HTTP header is larger than " + maxLength + " bytes.");
         }
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.CompressionOptions;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class HttpContentCompressionCacheTest {
+
+    private static final String CONTENT = "Hello, World! Hello, World! Hello, World!";
+
+    private final HttpContentCompressionCache cache = new HttpContentCompressionCache(1024);
+
+    @After
+    public void tearDown() {
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCacheHitByContentHash() {
+        EmbeddedChannel ch = newCompressor();
+        ByteBuf first = writeResponse(ch, CONTENT, null);
+        assertEquals(1, cache.entries());
+        assertEquals(first.readableBytes(), cache.size());
+
+        ByteBuf second = writeResponse(ch, CONTENT, null);
+        assertEquals(1, cache.entries());
+        assertEquals(first, second);
+        assertEquals(CONTENT, decompress(second));
+
+        ByteBuf third = writeResponse(ch, CONTENT + '!', null);
+        assertEquals(2, cache.entries());
+        assertEquals(CONTENT + '!', decompress(third));
+
+        first.release();
+        second.release();
+        third.release();
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testCacheHitByETag() {
+        EmbeddedChannel ch = newCompressor();
+        ByteBuf first = writeResponse(ch, CONTENT, "\"1\"");
+        // The ETag must identify the content, so different content with the same ETag is served from the cache.
+        ByteBuf second = writeResponse(ch, CONTENT.toUpperCase(), "\"1\"");
+        assertEquals(1, cache.entries());
+        assertEquals(CONTENT, decompress(second));
+
+        first.release();
+        second.release();
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testWeakETagIgnored() {
+        EmbeddedChannel ch = newCompressor();
+        ByteBuf first = writeResponse(ch, CONTENT, "W/\"1\"");
+        ByteBuf second = writeResponse(ch, CONTENT.toUpperCase(), "W/\"1\"");
+        assertEquals(2, cache.entries());
+        assertEquals(CONTENT, decompress(first));
+        assertEquals(CONTENT.toUpperCase(), decompress(second));
+
+        first.release();
+        second.release();
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testDifferentOptionsNotShared() {
+        EmbeddedChannel fast = newCompressor(StandardCompressionOptions.gzip(1, 15, 8));
+        EmbeddedChannel best = newCompressor(StandardCompressionOptions.gzip(9, 15, 8));
+        ByteBuf first = writeResponse(fast, CONTENT, "\"1\"");
+        ByteBuf second = writeResponse(best, CONTENT, "\"1\"");
+        assertEquals(2, cache.entries());
+        ByteBuf third = writeResponse(best, CONTENT, "\"1\"");
+        assertEquals(2, cache.entries());
+        assertEquals(second, third);
+        assertEquals(CONTENT, decompress(first));
+        assertEquals(CONTENT, decompress(second));
+
+        first.release();
+        second.release();
+        third.release();
+        assertFalse(fast.finish());
+        assertFalse(best.finish());
+    }
+
+    @Test
+    public void testPrecompressedSiblings() throws IOException {
+        File file = File.createTempFile("netty-", ".js");
+        File gzFile = new File(file.getPath() + ".gz");
+        try {
+            write(file, CONTENT.getBytes(CharsetUtil.US_ASCII));
+            // The siblings are trusted, so it is served even if it is not valid gzip.
+            byte[] precompressed = "precompressed".getBytes(CharsetUtil.US_ASCII);
+            write(gzFile, precompressed);
+
+            assertEquals(1, cache.addPrecompressedSiblings(file, null, UnpooledByteBufAllocator.DEFAULT));
+            assertEquals(1, cache.addPrecompressedSiblings(file, "\"1\"", UnpooledByteBufAllocator.DEFAULT));
+            assertEquals(2, cache.entries());
+
+            // Precompressed content is served whatever the options of the handler are.
+            EmbeddedChannel ch = newCompressor(StandardCompressionOptions.gzip(1, 15, 8));
+            ByteBuf byHash = writeResponse(ch, CONTENT, null);
+            ByteBuf byETag = writeResponse(ch, CONTENT.replace('H', 'J'), "\"1\"");
+            assertEquals(Unpooled.wrappedBuffer(precompressed), byHash);
+            assertEquals(Unpooled.wrappedBuffer(precompressed), byETag);
+            assertEquals(2, cache.entries());
+
+            byHash.release();
+            byETag.release();
+            assertFalse(ch.finish());
+        } finally {
+            file.delete();
+            gzFile.delete();
+        }
+    }
+
+    @Test
+    public void testLruEviction() {
+        HttpContentCompressionCache cache = new HttpContentCompressionCache(10);
+        HttpContentCompressionCache.Key a = new HttpContentCompressionCache.Key("a", 1, "gzip");
+        HttpContentCompressionCache.Key b = new HttpContentCompressionCache.Key("b", 1, "gzip");
+        HttpContentCompressionCache.Key c = new HttpContentCompressionCache.Key("c", 1, "gzip");
+        ByteBuf bufA = Unpooled.buffer().writeInt(1);
+        ByteBuf bufB = Unpooled.buffer().writeInt(2);
+        ByteBuf bufC = Unpooled.buffer().writeInt(3);
+
+        cache.put(a, bufA);
+        cache.put(b, bufB);
+        cache.get(a).release();
+        cache.put(c, bufC);
+
+        // b was the least recently used entry.
+        assertEquals(0, bufB.refCnt());
+        assertNull(cache.get(b));
+        assertEquals(8, cache.size());
+        ByteBuf cached = cache.get(a);
+        assertEquals(1, cached.readInt());
+        cached.release();
+        assertEquals(2, bufA.refCnt() + bufC.refCnt());
+
+        // Content which is larger than the cache is not added.
+        ByteBuf large = Unpooled.buffer().writeZero(11);
+        cache.put(new HttpContentCompressionCache.Key("d", 1, "gzip"), large);
+        assertEquals(0, large.refCnt());
+        assertEquals(2, cache.entries());
+
+        cache.clear();
+        assertEquals(0, bufA.refCnt());
+        assertEquals(0, bufC.refCnt());
+    }
+
+    private EmbeddedChannel newCompressor() {
+        return newCompressor(StandardCompressionOptions.gzip());
+    }
+
+    private EmbeddedChannel newCompressor(CompressionOptions options) {
+        return new EmbeddedChannel(new HttpContentCompressor(cache, 0, options));
+    }
+
+    /**
+     * Writes a full response and returns its compressed content.
+     */
+    private static ByteBuf writeResponse(EmbeddedChannel ch, String content, String etag) {
+        FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        req.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+        assertTrue(ch.writeInbound(req));
+        ((FullHttpRequest) ch.readInbound()).release();
+
+        FullHttpResponse res = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII));
+        HttpUtil.setContentLength(res, res.content().readableBytes());
+        if (etag != null) {
+            res.headers().set(HttpHeaderNames.ETAG, etag);
+        }
+        assertTrue(ch.writeOutbound(res));
+
+        HttpResponse encoded = ch.readOutbound();
+        assertEquals("gzip", encoded.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        ByteBuf compressed = Unpooled.buffer();
+        for (;;) {
+            HttpContent c = ch.readOutbound();
+            compressed.writeBytes(c.content());
+            c.release();
+            if (c instanceof LastHttpContent) {
+                break;
+            }
+        }
+        assertEquals(compressed.readableBytes(), HttpUtil.getContentLength(encoded));
+        return compressed;
+    }
+
+    private static String decompress(ByteBuf compressed) {
+        EmbeddedChannel decoder = new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(ZlibWrapper.GZIP));
+        decoder.writeInbound(compressed.retainedDuplicate());
+        ByteBuf decompressed = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = decoder.readInbound();
+            if (buf == null) {
+                break;
+            }
+            decompressed.writeBytes(buf);
+            buf.release();
+        }
+        decoder.finishAndReleaseAll();
+        String s = decompressed.toString(CharsetUtil.US_ASCII);
+        decompressed.release();
+        return s;
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -15,14 +15,22 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.DecoderResult;
 import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.BrotliDecoder;
+import io.netty.handler.codec.compression.BrotliOptions;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.compression.ZstdDecoder;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
+import org.junit.Assume;
 import org.junit.Test;
 
 import static io.netty.handler.codec.http.HttpHeadersTestUtils.of;
@@ -71,6 +79,150 @@ public class HttpContentCompressorTest {
         }
     }
 
+    @Test
+    public void testDetermineEncodingWithZstd() throws Exception {
+        Assume.assumeTrue(Zstd.isAvailable());
+        HttpContentCompressor compressor = new HttpContentCompressor(0, StandardCompressionOptions.gzip(),
+                StandardCompressionOptions.deflate(), StandardCompressionOptions.zstd());
+
+        String[] tests = {
+            // Accept-Encoding -> Content-Encoding
+            "", null,
+            "*", "zstd",
+            "*;q=0.0", null,
+            "gzip", "gzip",
+            "gzip, deflate, zstd", "zstd",
+            "gzip, zstd;q=0.5", "gzip",
+            "gzip;q=0.5, zstd;q=0.8", "zstd",
+            "zstd;q=0, *", "gzip",
+            "zstd;q=0, gzip;q=0, *;q=0.5", "deflate",
+        };
+        for (int i = 0; i < tests.length; i += 2) {
+            assertEquals(tests[i + 1], compressor.determineEncoding(tests[i]));
+        }
+
+        // Only the configured encodings are used.
+        compressor = new HttpContentCompressor(0, StandardCompressionOptions.zstd());
+        assertEquals("zstd", compressor.determineEncoding("gzip, zstd;q=0.1"));
+        assertNull(compressor.determineEncoding("gzip, deflate"));
+    }
+
+    @Test
+    public void testZstdContent() throws Exception {
+        Assume.assumeTrue(Zstd.isAvailable());
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor(0, StandardCompressionOptions.zstd()));
+        HttpRequest request = newRequest();
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "zstd");
+        ch.writeInbound(request);
+
+        ch.writeOutbound(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        ch.writeOutbound(new DefaultHttpContent(Unpooled.copiedBuffer("Hello, ", CharsetUtil.US_ASCII)));
+        ch.writeOutbound(new DefaultLastHttpContent(Unpooled.copiedBuffer("World", CharsetUtil.US_ASCII)));
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res, is(not(instanceOf(HttpContent.class))));
+        assertEquals("zstd", res.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new ZstdDecoder());
+        HttpContent chunk;
+        while ((chunk = ch.readOutbound()) != null) {
+            decoder.writeInbound(chunk.content());
+        }
+        assertTrue(decoder.finish());
+        StringBuilder decompressed = new StringBuilder();
+        ByteBuf buf;
+        while ((buf = decoder.readInbound()) != null) {
+            decompressed.append(buf.toString(CharsetUtil.US_ASCII));
+            buf.release();
+        }
+        assertEquals("Hello, World", decompressed.toString());
+    }
+
+    @Test
+    public void testDetermineEncodingWithBrotli() throws Exception {
+        Assume.assumeTrue(Brotli.isAvailable());
+        HttpContentCompressor compressor = new HttpContentCompressor(0, StandardCompressionOptions.gzip(),
+                StandardCompressionOptions.deflate(), StandardCompressionOptions.brotli());
+
+        String[] tests = {
+            // Accept-Encoding -> Content-Encoding
+            "", null,
+            "*", "br",
+            "gzip", "gzip",
+            "gzip, deflate, br", "br",
+            "br, gzip", "br",
+            "gzip, br;q=0.5", "gzip",
+            "gzip;q=0.5, br;q=0.8", "br",
+            "br;q=0, *", "gzip",
+            "zstd, deflate", "deflate",
+        };
+        for (int i = 0; i < tests.length; i += 2) {
+            assertEquals(tests[i + 1], compressor.determineEncoding(tests[i]));
+        }
+
+        // br is preferred over zstd.
+        compressor = new HttpContentCompressor(0, StandardCompressionOptions.zstd(),
+                StandardCompressionOptions.brotli());
+        assertEquals("br", compressor.determineEncoding("zstd, br"));
+        assertNull(compressor.determineEncoding("gzip, deflate"));
+    }
+
+    @Test
+    public void testBrotliOptionsForContentType() {
+        BrotliOptions options = StandardCompressionOptions.brotli(4, 22)
+                .withContentType("text/css", 11, 22)
+                .withContentType("image/*", 1, 18);
+
+        assertSame(options, options.forContentType(null));
+        assertSame(options, options.forContentType("application/json"));
+        assertEquals(11, options.forContentType("text/css").quality());
+        assertEquals(11, options.forContentType("Text/CSS; charset=UTF-8").quality());
+        assertEquals(4, options.forContentType("text/html").quality());
+        assertEquals(1, options.forContentType("image/svg+xml").quality());
+        assertEquals(18, options.forContentType("image/svg+xml").window());
+
+        try {
+            options.withContentType("text/html", 12, 22);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBrotliContent() throws Exception {
+        Assume.assumeTrue(Brotli.isAvailable());
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor(0,
+                StandardCompressionOptions.brotli().withContentType("text/plain", 11, 22)));
+        HttpRequest request = newRequest();
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip, br");
+        ch.writeInbound(request);
+
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+        ch.writeOutbound(response);
+        ch.writeOutbound(new DefaultHttpContent(Unpooled.copiedBuffer("Hello, ", CharsetUtil.US_ASCII)));
+        ch.writeOutbound(new DefaultLastHttpContent(Unpooled.copiedBuffer("World", CharsetUtil.US_ASCII)));
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res, is(not(instanceOf(HttpContent.class))));
+        assertEquals("br", res.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new BrotliDecoder());
+        HttpContent chunk;
+        while ((chunk = ch.readOutbound()) != null) {
+            decoder.writeInbound(chunk.content());
+        }
+        decoder.finish();
+        StringBuilder decompressed = new StringBuilder();
+        ByteBuf buf;
+        while ((buf = decoder.readInbound()) != null) {
+            decompressed.append(buf.toString(CharsetUtil.US_ASCII));
+            buf.release();
+        }
+        assertEquals("Hello, World", decompressed.toString());
+    }
+
     @Test
     public void testSplitContent() throws Exception {
         EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor());
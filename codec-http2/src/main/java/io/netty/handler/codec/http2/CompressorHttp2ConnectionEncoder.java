@@ -17,26 +17,45 @@ package io.netty.handler.codec.http2;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.BrotliEncoder;
+import io.netty.handler.codec.compression.BrotliOptions;
+import io.netty.handler.codec.compression.CompressionOptions;
+import io.netty.handler.codec.compression.DeflateOptions;
+import io.netty.handler.codec.compression.GzipOptions;
+import io.netty.handler.codec.compression.StandardCompressionOptions;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.compression.ZstdEncoder;
+import io.netty.handler.codec.compression.ZstdOptions;
 import io.netty.util.concurrent.PromiseCombiner;
 import io.netty.util.internal.UnstableApi;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_ENCODING;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpHeaderValues.BR;
 import static io.netty.handler.codec.http.HttpHeaderValues.DEFLATE;
 import static io.netty.handler.codec.http.HttpHeaderValues.GZIP;
 import static io.netty.handler.codec.http.HttpHeaderValues.IDENTITY;
 import static io.netty.handler.codec.http.HttpHeaderValues.X_DEFLATE;
 import static io.netty.handler.codec.http.HttpHeaderValues.X_GZIP;
+import static io.netty.handler.codec.http.HttpHeaderValues.ZSTD;
 
 /**
  * A decorating HTTP2 encoder that will compress data frames according to the {@code content-encoding} header for each
  * stream. The compression provided by this class will be applied to the data for the entire stream.
+ * <p>
+ * By default only the {@code gzip} and {@code deflate} encodings are supported. The {@code br} encoding, which
+ * needs {@link Brotli#isAvailable()}, and the {@code zstd} encoding, which needs {@link Zstd#isAvailable()}, can be
+ * enabled via {@link #CompressorHttp2ConnectionEncoder(Http2ConnectionEncoder, CompressionOptions...)}. The
+ * {@code br} quality and window can depend on the {@code content-type} of the stream, see {@link BrotliOptions}.
  */
 @UnstableApi
 public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionEncoder {
@@ -44,9 +63,10 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
     public static final int DEFAULT_WINDOW_BITS = 15;
     public static final int DEFAULT_MEM_LEVEL = 8;
 
-    private final int compressionLevel;
-    private final int windowBits;
-    private final int memLevel;
+    private final GzipOptions gzipOptions;
+    private final DeflateOptions deflateOptions;
+    private final ZstdOptions zstdOptions;
+    private final BrotliOptions brotliOptions;
     private final Http2Connection.PropertyKey propertyKey;
 
     public CompressorHttp2ConnectionEncoder(Http2ConnectionEncoder delegate) {
@@ -55,19 +75,40 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
 
     public CompressorHttp2ConnectionEncoder(Http2ConnectionEncoder delegate, int compressionLevel, int windowBits,
                                             int memLevel) {
+        this(delegate, StandardCompressionOptions.gzip(compressionLevel, windowBits, memLevel),
+                StandardCompressionOptions.deflate(compressionLevel, windowBits, memLevel));
+    }
+
+    /**
+     * Create a new instance which only compresses the data of streams which use one of the encodings of the
+     * specified {@link CompressionOptions}.
+     *
+     * @param compressionOptions the {@link CompressionOptions} created via {@link StandardCompressionOptions}.
+     */
+    public CompressorHttp2ConnectionEncoder(Http2ConnectionEncoder delegate, CompressionOptions... compressionOptions) {
         super(delegate);
-        if (compressionLevel < 0 || compressionLevel > 9) {
-            throw new IllegalArgumentException("compressionLevel: " + compressionLevel + " (expected: 0-9)");
-        }
-        if (windowBits < 9 || windowBits > 15) {
-            throw new IllegalArgumentException("windowBits: " + windowBits + " (expected: 9-15)");
-        }
-        if (memLevel < 1 || memLevel > 9) {
-            throw new IllegalArgumentException("memLevel: " + memLevel + " (expected: 1-9)");
+        GzipOptions gzipOptions = null;
+        DeflateOptions deflateOptions = null;
+        ZstdOptions zstdOptions = null;
+        BrotliOptions brotliOptions = null;
+        for (CompressionOptions options : compressionOptions) {
+            if (options instanceof GzipOptions) {
+                gzipOptions = (GzipOptions) options;
+            } else if (options instanceof DeflateOptions) {
+                deflateOptions = (DeflateOptions) options;
+            } else if (options instanceof ZstdOptions) {
+                zstdOptions = (ZstdOptions) options;
+            } else if (options instanceof BrotliOptions) {
+                brotliOptions = (BrotliOptions) options;
+            } else {
+                throw new IllegalArgumentException("Unsupported " + CompressionOptions.class.getSimpleName() +
+                        ": " + options);
+            }
         }
-        this.compressionLevel = compressionLevel;
-        this.windowBits = windowBits;
-        this.memLevel = memLevel;
+        this.gzipOptions = gzipOptions;
+        this.deflateOptions = deflateOptions;
+        this.zstdOptions = zstdOptions;
+        this.brotliOptions = brotliOptions;
 
         propertyKey = connection().newKey();
         connection().addListener(new Http2ConnectionAdapter() {
@@ -192,16 +233,49 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
      */
     protected EmbeddedChannel newContentCompressor(ChannelHandlerContext ctx, CharSequence contentEncoding)
             throws Http2Exception {
-        if (GZIP.contentEqualsIgnoreCase(contentEncoding) || X_GZIP.contentEqualsIgnoreCase(contentEncoding)) {
-            return newCompressionChannel(ctx, ZlibWrapper.GZIP);
+        if (gzipOptions != null &&
+                (GZIP.contentEqualsIgnoreCase(contentEncoding) || X_GZIP.contentEqualsIgnoreCase(contentEncoding))) {
+            return newCompressionChannel(ctx, ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP,
+                    gzipOptions.compressionLevel(), gzipOptions.windowBits(), gzipOptions.memLevel()));
         }
-        if (DEFLATE.contentEqualsIgnoreCase(contentEncoding) || X_DEFLATE.contentEqualsIgnoreCase(contentEncoding)) {
-            return newCompressionChannel(ctx, ZlibWrapper.ZLIB);
+        if (deflateOptions != null && (DEFLATE.contentEqualsIgnoreCase(contentEncoding) ||
+                X_DEFLATE.contentEqualsIgnoreCase(contentEncoding))) {
+            return newCompressionChannel(ctx, ZlibCodecFactory.newZlibEncoder(ZlibWrapper.ZLIB,
+                    deflateOptions.compressionLevel(), deflateOptions.windowBits(), deflateOptions.memLevel()));
+        }
+        if (zstdOptions != null && ZSTD.contentEqualsIgnoreCase(contentEncoding) && Zstd.isAvailable()) {
+            return newCompressionChannel(ctx, new ZstdEncoder(zstdOptions.compressionLevel(),
+                    zstdOptions.blockSize(), zstdOptions.dictionary()));
+        }
+        if (brotliOptions != null && BR.contentEqualsIgnoreCase(contentEncoding) && Brotli.isAvailable()) {
+            return newCompressionChannel(ctx, new BrotliEncoder(brotliOptions));
         }
         // 'identity' or unsupported
         return null;
     }
 
+    /**
+     * Returns a new {@link EmbeddedChannel} that encodes the HTTP2 message content encoded in the specified
+     * {@code contentEncoding}. The default implementation uses the {@link BrotliOptions} for the specified
+     * {@code contentType} for the {@code br} encoding, and delegates to
+     * {@link #newContentCompressor(ChannelHandlerContext, CharSequence)} otherwise.
+     *
+     * @param ctx the context.
+     * @param contentEncoding the value of the {@code content-encoding} header
+     * @param contentType the value of the {@code content-type} header, or {@code null} if it is not set
+     * @return a new {@link ByteToMessageDecoder} if the specified encoding is supported. {@code null} otherwise
+     * (alternatively, you can throw a {@link Http2Exception} to block unknown encoding).
+     * @throws Http2Exception If the specified encoding is not not supported and warrants an exception
+     */
+    protected EmbeddedChannel newContentCompressor(ChannelHandlerContext ctx, CharSequence contentEncoding,
+                                                   CharSequence contentType) throws Http2Exception {
+        if (brotliOptions != null && contentType != null && BR.contentEqualsIgnoreCase(contentEncoding) &&
+                Brotli.isAvailable()) {
+            return newCompressionChannel(ctx, new BrotliEncoder(brotliOptions.forContentType(contentType)));
+        }
+        return newContentCompressor(ctx, contentEncoding);
+    }
+
     /**
      * Returns the expected content encoding of the decoded content. Returning {@code contentEncoding} is the default
      * behavior, which is the case for most compressors.
@@ -217,12 +291,11 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
     /**
      * Generate a new instance of an {@link EmbeddedChannel} capable of compressing data
      * @param ctx the context.
-     * @param wrapper Defines what type of encoder should be used
+     * @param encoder the encoder which compresses the data
      */
-    private EmbeddedChannel newCompressionChannel(final ChannelHandlerContext ctx, ZlibWrapper wrapper) {
+    private static EmbeddedChannel newCompressionChannel(final ChannelHandlerContext ctx, ChannelHandler encoder) {
         return new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
-                ctx.channel().config(), ZlibCodecFactory.newZlibEncoder(wrapper, compressionLevel, windowBits,
-                memLevel));
+                ctx.channel().config(), encoder);
     }
 
     /**
@@ -245,7 +318,7 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
         if (encoding == null) {
             encoding = IDENTITY;
         }
-        final EmbeddedChannel compressor = newContentCompressor(ctx, encoding);
+        final EmbeddedChannel compressor = newContentCompressor(ctx, encoding, headers.get(CONTENT_TYPE));
         if (compressor != null) {
             CharSequence targetContentEncoding = getTargetContentEncoding(encoding);
             if (IDENTITY.contentEqualsIgnoreCase(targetContentEncoding)) {
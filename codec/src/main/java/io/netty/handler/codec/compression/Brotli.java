@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * Tells if the <a href="https://github.com/hyperxpro/Brotli4j">Brotli4j</a> library, which is used by
+ * {@link BrotliEncoder} and {@link BrotliDecoder}, can be used.
+ */
+public final class Brotli {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Brotli.class);
+    private static final Throwable cause;
+
+    static {
+        Throwable t = null;
+        try {
+            Brotli4jLoader.ensureAvailability();
+        } catch (Throwable e) {
+            t = e;
+            logger.debug("Brotli4j not available, will be unable to use the brotli codecs", e);
+        }
+        cause = t;
+    }
+
+    /**
+     * Returns {@code true} if and only if Brotli4j is on the classpath and its native library could be loaded.
+     */
+    public static boolean isAvailable() {
+        return cause == null;
+    }
+
+    /**
+     * Ensure that Brotli4j can be used.
+     *
+     * @throws UnsatisfiedLinkError if Brotli4j is not available
+     */
+    public static void ensureAvailability() {
+        if (cause != null) {
+            throw (Error) new UnsatisfiedLinkError(
+                    "failed to load the required native library").initCause(cause);
+        }
+    }
+
+    /**
+     * Returns the cause of unavailability of Brotli4j, or {@code null} if it is available.
+     */
+    public static Throwable cause() {
+        return cause;
+    }
+
+    private Brotli() { }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+final class BrotliConstants {
+
+    /**
+     * Default quality, which is a good trade-off between the compression ratio and speed for content which is
+     * compressed on the fly.
+     */
+    static final int DEFAULT_QUALITY = 4;
+
+    /**
+     * Qualities.
+     */
+    static final int MIN_QUALITY = 0;
+    static final int MAX_QUALITY = 11;
+
+    /**
+     * Base two logarithms of the size of the sliding window.
+     */
+    static final int MIN_WINDOW = 10;
+    static final int MAX_WINDOW = 24;
+    static final int DEFAULT_WINDOW = 22;
+
+    /**
+     * Default size of the buffer in which compressed data is passed to the decoder.
+     */
+    static final int DEFAULT_INPUT_BUFFER_SIZE = 8192;
+
+    private BrotliConstants() { }
+}
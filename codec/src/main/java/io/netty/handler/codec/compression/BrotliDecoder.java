@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.aayushatharva.brotli4j.decoder.DecoderJNI;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.internal.ObjectUtil;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static io.netty.handler.codec.compression.BrotliConstants.DEFAULT_INPUT_BUFFER_SIZE;
+
+/**
+ * Decompresses a {@link ByteBuf} encoded with the <a href="https://tools.ietf.org/html/rfc7932">Brotli</a> format.
+ * <p>
+ * The data is decompressed as it arrives, so the content of the stream is passed on before the whole stream was
+ * received. Any data which follows the end of the stream is discarded.
+ * <p>
+ * This decoder requires the <a href="https://github.com/hyperxpro/Brotli4j">Brotli4j</a> library, see
+ * {@link Brotli#isAvailable()}.
+ */
+public final class BrotliDecoder extends ByteToMessageDecoder {
+
+    private final int inputBufferSize;
+
+    /**
+     * The Brotli decoder, which holds the state of the stream. {@code null} once the stream was finished.
+     */
+    private DecoderJNI.Wrapper decoder;
+
+    private boolean finished;
+
+    private boolean corrupted;
+
+    /**
+     * Creates a new Brotli decoder which passes the compressed data to Brotli in chunks of up to 8 KB.
+     */
+    public BrotliDecoder() {
+        this(DEFAULT_INPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new Brotli decoder.
+     *
+     * @param inputBufferSize the size of the chunks in which the compressed data is passed to Brotli
+     */
+    public BrotliDecoder(int inputBufferSize) {
+        Brotli.ensureAvailability();
+        this.inputBufferSize = ObjectUtil.checkPositive(inputBufferSize, "inputBufferSize");
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (finished || corrupted) {
+            in.skipBytes(in.readableBytes());
+            return;
+        }
+        for (;;) {
+            switch (decoder.getStatus()) {
+            case DONE:
+                if (decoder.hasOutput()) {
+                    out.add(pull(ctx.alloc()));
+                }
+                finished = true;
+                destroy();
+                in.skipBytes(in.readableBytes());
+                return;
+            case OK:
+                decoder.push(0);
+                break;
+            case NEEDS_MORE_INPUT:
+                if (decoder.hasOutput()) {
+                    out.add(pull(ctx.alloc()));
+                }
+                if (!in.isReadable()) {
+                    return;
+                }
+                ByteBuffer input = decoder.getInputBuffer();
+                input.clear();
+                int length = Math.min(in.readableBytes(), input.remaining());
+                input.limit(length);
+                in.readBytes(input);
+                decoder.push(length);
+                break;
+            case NEEDS_MORE_OUTPUT:
+                out.add(pull(ctx.alloc()));
+                break;
+            default:
+                corrupted = true;
+                in.skipBytes(in.readableBytes());
+                throw new DecompressionException("Brotli stream corrupted");
+            }
+        }
+    }
+
+    private ByteBuf pull(ByteBufAllocator alloc) {
+        ByteBuffer output = decoder.pull();
+        ByteBuf buf = alloc.buffer(output.remaining());
+        buf.writeBytes(output);
+        return buf;
+    }
+
+    private void destroy() {
+        if (decoder != null) {
+            decoder.destroy();
+            decoder = null;
+        }
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        decoder = new DecoderJNI.Wrapper(inputBufferSize);
+        super.handlerAdded(ctx);
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        try {
+            destroy();
+        } finally {
+            super.handlerRemoved0(ctx);
+        }
+    }
+}
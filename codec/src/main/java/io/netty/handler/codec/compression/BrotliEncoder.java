@@ -0,0 +1,284 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.aayushatharva.brotli4j.encoder.BrotliEncoderChannel;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.handler.codec.compression.BrotliConstants.DEFAULT_QUALITY;
+import static io.netty.handler.codec.compression.BrotliConstants.DEFAULT_WINDOW;
+
+/**
+ * Compresses a {@link ByteBuf} using the <a href="https://tools.ietf.org/html/rfc7932">Brotli</a> format.
+ * <p>
+ * All data written to the channel is compressed as one Brotli stream, so matches are found across message
+ * boundaries. Every {@link ChannelHandlerContext#flush()} flushes the data compressed so far, so the remote peer is
+ * able to decompress everything that was flushed without waiting for the end of the stream. The stream is finished
+ * once {@link #close()} is called or the channel is closed.
+ * <p>
+ * This encoder requires the <a href="https://github.com/hyperxpro/Brotli4j">Brotli4j</a> library, see
+ * {@link Brotli#isAvailable()}.
+ */
+public final class BrotliEncoder extends MessageToByteEncoder<ByteBuf> {
+
+    private final int quality;
+    private final int window;
+
+    /**
+     * The Brotli encoder, which writes the compressed data to {@link #out}.
+     */
+    private BrotliEncoderChannel encoderChannel;
+
+    /**
+     * The buffer the compressed data is written to, or {@code null} if the data should be discarded.
+     */
+    private ByteBuf out;
+
+    /**
+     * Indicates if data was compressed since the last flush.
+     */
+    private boolean pendingFlush;
+
+    /**
+     * Indicates if the compressed stream has been finished.
+     */
+    private volatile boolean finished;
+
+    /**
+     * Used to interact with its {@link ChannelPipeline} and other handlers.
+     */
+    private volatile ChannelHandlerContext ctx;
+
+    /**
+     * Creates a new Brotli encoder with the default quality ({@code 4}) and window ({@code 22}).
+     */
+    public BrotliEncoder() {
+        this(DEFAULT_QUALITY, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Creates a new Brotli encoder with the specified quality and window.
+     *
+     * @param quality {@code 0} yields the fastest compression and {@code 11} yields the best compression
+     * @param window  the base two logarithm of the size of the sliding window, {@code 10} to {@code 24}
+     */
+    public BrotliEncoder(int quality, int window) {
+        Brotli.ensureAvailability();
+        this.quality = BrotliOptions.checkQuality(quality);
+        this.window = BrotliOptions.checkWindow(window);
+    }
+
+    /**
+     * Creates a new Brotli encoder with the quality and window of the specified {@link BrotliOptions}.
+     */
+    public BrotliEncoder(BrotliOptions options) {
+        this(options.quality(), options.window());
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
+        if (finished) {
+            out.writeBytes(in);
+            return;
+        }
+        if (in.isReadable()) {
+            ByteBuffer src = in.nioBuffer();
+            int position = src.position();
+            this.out = out;
+            try {
+                encoderChannel.write(src);
+            } catch (IOException e) {
+                throw new CompressionException(e);
+            } finally {
+                this.out = null;
+            }
+            in.skipBytes(src.position() - position);
+            pendingFlush = true;
+        }
+    }
+
+    @Override
+    public void flush(final ChannelHandlerContext ctx) throws Exception {
+        if (pendingFlush && !finished) {
+            pendingFlush = false;
+            ByteBuf buf = ctx.alloc().ioBuffer();
+            out = buf;
+            try {
+                encoderChannel.flush();
+            } catch (Throwable cause) {
+                buf.release();
+                throw new EncoderException(cause);
+            } finally {
+                out = null;
+            }
+            if (buf.isReadable()) {
+                ctx.write(buf);
+            } else {
+                buf.release();
+            }
+        }
+        ctx.flush();
+    }
+
+    private ChannelFuture finishEncode(final ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (finished) {
+            promise.setSuccess();
+            return promise;
+        }
+        finished = true;
+        pendingFlush = false;
+
+        final ByteBuf footer = ctx.alloc().ioBuffer();
+        out = footer;
+        try {
+            encoderChannel.close();
+        } catch (Throwable cause) {
+            footer.release();
+            promise.setFailure(cause);
+            return promise;
+        } finally {
+            out = null;
+        }
+        return ctx.writeAndFlush(footer, promise);
+    }
+
+    /**
+     * Returns {@code true} if and only if the compressed stream has been finished.
+     */
+    public boolean isClosed() {
+        return finished;
+    }
+
+    /**
+     * Close this {@link BrotliEncoder} and so finish the encoding.
+     *
+     * The returned {@link ChannelFuture} will be notified once the operation completes.
+     */
+    public ChannelFuture close() {
+        return close(ctx().newPromise());
+    }
+
+    /**
+     * Close this {@link BrotliEncoder} and so finish the encoding.
+     * The given {@link ChannelFuture} will be notified once the operation
+     * completes and will also be returned.
+     */
+    public ChannelFuture close(final ChannelPromise promise) {
+        ChannelHandlerContext ctx = ctx();
+        EventExecutor executor = ctx.executor();
+        if (executor.inEventLoop()) {
+            return finishEncode(ctx, promise);
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ChannelFuture f = finishEncode(ctx(), promise);
+                    f.addListener(new ChannelPromiseNotifier(promise));
+                }
+            });
+            return promise;
+        }
+    }
+
+    @Override
+    public void close(final ChannelHandlerContext ctx, final ChannelPromise promise) throws Exception {
+        ChannelFuture f = finishEncode(ctx, ctx.newPromise());
+        f.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                ctx.close(promise);
+            }
+        });
+
+        if (!f.isDone()) {
+            // Ensure the channel is closed even if the write operation completes in time.
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ctx.close(promise);
+                }
+            }, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    private ChannelHandlerContext ctx() {
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx == null) {
+            throw new IllegalStateException("not added to a pipeline");
+        }
+        return ctx;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        Encoder.Parameters parameters = new Encoder.Parameters().setQuality(quality).setWindow(window);
+        encoderChannel = new BrotliEncoderChannel(new Sink(), parameters);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        if (encoderChannel != null) {
+            if (!finished) {
+                // Release the native resources, the remaining compressed data is discarded.
+                encoderChannel.close();
+            }
+            encoderChannel = null;
+        }
+    }
+
+    /**
+     * Receives the compressed data from {@link #encoderChannel}.
+     */
+    private final class Sink implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            if (out != null) {
+                out.writeBytes(src);
+            } else {
+                src.position(src.limit());
+            }
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // NOOP
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static io.netty.handler.codec.compression.BrotliConstants.MAX_QUALITY;
+import static io.netty.handler.codec.compression.BrotliConstants.MAX_WINDOW;
+import static io.netty.handler.codec.compression.BrotliConstants.MIN_QUALITY;
+import static io.netty.handler.codec.compression.BrotliConstants.MIN_WINDOW;
+
+/**
+ * {@link CompressionOptions} for the <a href="https://tools.ietf.org/html/rfc7932">Brotli</a> format, see
+ * {@link StandardCompressionOptions#brotli()}.
+ * <p>
+ * Different settings can be used depending on the type of the compressed content, for example a high quality for
+ * static text assets and a low quality for dynamically generated content:
+ * <pre>
+ * {@link BrotliOptions} options = {@link StandardCompressionOptions}.brotli(4, 22)
+ *         .withContentType("text/css", 11, 22)
+ *         .withContentType("application/javascript", 11, 22)
+ *         .withContentType("image/*", 1, 18);
+ * </pre>
+ * Instances are immutable.
+ */
+public final class BrotliOptions implements CompressionOptions {
+
+    private final int quality;
+    private final int window;
+    private final Map<String, BrotliOptions> contentTypeOptions;
+
+    BrotliOptions(int quality, int window) {
+        this(quality, window, Collections.<String, BrotliOptions>emptyMap());
+    }
+
+    private BrotliOptions(int quality, int window, Map<String, BrotliOptions> contentTypeOptions) {
+        this.quality = checkQuality(quality);
+        this.window = checkWindow(window);
+        this.contentTypeOptions = contentTypeOptions;
+    }
+
+    /**
+     * Returns the quality, {@code 0} yields the fastest compression and {@code 11} yields the best compression.
+     */
+    public int quality() {
+        return quality;
+    }
+
+    /**
+     * Returns the base two logarithm of the size of the sliding window.
+     */
+    public int window() {
+        return window;
+    }
+
+    /**
+     * Returns a copy of these options which uses the specified quality and window for content of the specified type.
+     *
+     * @param contentType the media type, for example {@code "text/html"}, or all subtypes of a type, for example
+     *                    {@code "text/*"}. Parameters like {@code charset} are ignored.
+     * @param quality     {@code 0} yields the fastest compression and {@code 11} yields the best compression
+     * @param window      the base two logarithm of the size of the sliding window, {@code 10} to {@code 24}
+     */
+    public BrotliOptions withContentType(String contentType, int quality, int window) {
+        Map<String, BrotliOptions> contentTypeOptions = new HashMap<String, BrotliOptions>(this.contentTypeOptions);
+        contentTypeOptions.put(mediaType(contentType), new BrotliOptions(quality, window));
+        return new BrotliOptions(this.quality, this.window, Collections.unmodifiableMap(contentTypeOptions));
+    }
+
+    /**
+     * Returns the options to use for content of the specified type. An exact match of the media type is preferred
+     * over a match of all subtypes. If there is no match, or {@code contentType} is {@code null}, this instance is
+     * returned.
+     *
+     * @param contentType the value of the {@code Content-Type} header, or {@code null} if it is unknown
+     */
+    public BrotliOptions forContentType(CharSequence contentType) {
+        if (contentType == null || contentTypeOptions.isEmpty()) {
+            return this;
+        }
+        String mediaType = mediaType(contentType);
+        BrotliOptions options = contentTypeOptions.get(mediaType);
+        if (options == null) {
+            int slashIndex = mediaType.indexOf('/');
+            if (slashIndex != -1) {
+                options = contentTypeOptions.get(mediaType.substring(0, slashIndex + 1) + '*');
+            }
+        }
+        return options != null ? options : this;
+    }
+
+    private static String mediaType(CharSequence contentType) {
+        String mediaType = contentType.toString();
+        int semicolonIndex = mediaType.indexOf(';');
+        if (semicolonIndex != -1) {
+            mediaType = mediaType.substring(0, semicolonIndex);
+        }
+        return mediaType.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static int checkQuality(int quality) {
+        if (quality < MIN_QUALITY || quality > MAX_QUALITY) {
+            throw new IllegalArgumentException(String.format(
+                    "quality: %d (expected: %d-%d)", quality, MIN_QUALITY, MAX_QUALITY));
+        }
+        return quality;
+    }
+
+    static int checkWindow(int window) {
+        if (window < MIN_WINDOW || window > MAX_WINDOW) {
+            throw new IllegalArgumentException(String.format(
+                    "window: %d (expected: %d-%d)", window, MIN_WINDOW, MAX_WINDOW));
+        }
+        return window;
+    }
+}
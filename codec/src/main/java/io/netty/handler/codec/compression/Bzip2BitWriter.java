@@ -95,6 +95,29 @@ final class Bzip2BitWriter {
         writeBits(out, 32, value);
     }
 
+    /**
+     * Writes a block which was written to the input {@link ByteBuf} by another writer to the output {@link ByteBuf},
+     * followed by the bits that are still buffered by the other writer.
+     * @param in The bytes written by {@code source}
+     * @param source The writer which wrote the block
+     */
+    void writeBlock(ByteBuf out, ByteBuf in, Bzip2BitWriter source) {
+        if (bitCount == 0) {
+            out.writeBytes(in);
+        } else {
+            while (in.readableBytes() >= 4) {
+                writeInt(out, in.readInt());
+            }
+            while (in.isReadable()) {
+                writeBits(out, 8, in.readUnsignedByte());
+            }
+        }
+        final int sourceBitCount = source.bitCount;
+        if (sourceBitCount > 0) {
+            writeBits(out, sourceBitCount, source.bitBuffer >>> 64 - sourceBitCount);
+        }
+    }
+
     /**
      * Writes any remaining bits to the output {@link ByteBuf},
      * zero padding to a whole byte as required.
@@ -25,6 +25,7 @@ import io.netty.channel.ChannelPromiseNotifier;
 import io.netty.handler.codec.MessageToByteEncoder;
 import io.netty.util.concurrent.EventExecutor;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import static io.netty.handler.codec.compression.Bzip2Constants.*;
@@ -33,6 +34,10 @@ import static io.netty.handler.codec.compression.Bzip2Constants.*;
  * Compresses a {@link ByteBuf} using the Bzip2 algorithm.
  *
  * See <a href="http://en.wikipedia.org/wiki/Bzip2">Bzip2</a>.
+ * <p>
+ * The blocks of a stream are compressed independently of each other, so they can be compressed on the threads of
+ * an {@link Executor} instead of the event loop, see {@link #Bzip2Encoder(int, Executor, int)}. The blocks are
+ * still written in order as a single bzip2 stream.
  */
 public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
     /**
@@ -77,6 +82,26 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
      */
     private volatile ChannelHandlerContext ctx;
 
+    /**
+     * The {@link Executor} which compresses the blocks, or {@code null} to compress them on the event loop.
+     */
+    private final Executor executor;
+
+    /**
+     * The maximum number of blocks which are compressed or wait to be written at the same time.
+     */
+    private final int maxPendingBlocks;
+
+    /**
+     * Compresses the blocks on the {@link #executor} and writes them in order.
+     */
+    private BlockQueue blockQueue;
+
+    /**
+     * The block which is filled with data when compressing on the {@link #executor}.
+     */
+    private ParallelBlock parallelBlock;
+
     /**
      * Creates a new bzip2 encoder with the maximum (900,000 byte) block size.
      */
@@ -92,11 +117,73 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
      *        but give better compression ratios. {@code 9} will usually be the best value to use.
      */
     public Bzip2Encoder(final int blockSizeMultiplier) {
+        this(blockSizeMultiplier, null, 1);
+    }
+
+    /**
+     * Creates a new bzip2 encoder which compresses the blocks on the threads of the given {@link Executor}, so
+     * large payloads are compressed in parallel and the event loop is free to serve other channels meanwhile.
+     * @param blockSizeMultiplier
+     *        The Bzip2 block size as a multiple of 100,000 bytes (minimum {@code 1}, maximum {@code 9}).
+     * @param executor
+     *        The {@link Executor} to compress the blocks with, or {@code null} to compress them on the event loop.
+     *        It should use a bounded number of threads and may be shared by many channels. Blocks which are
+     *        rejected by it are compressed on the event loop.
+     * @param maxPendingBlocks
+     *        The maximum number of blocks of this channel which are compressed or wait to be written at the same
+     *        time. The channel is not writable while this limit is reached.
+     */
+    public Bzip2Encoder(final int blockSizeMultiplier, Executor executor, int maxPendingBlocks) {
         if (blockSizeMultiplier < MIN_BLOCK_SIZE || blockSizeMultiplier > MAX_BLOCK_SIZE) {
             throw new IllegalArgumentException(
                     "blockSizeMultiplier: " + blockSizeMultiplier + " (expected: 1-9)");
         }
         streamBlockSize = blockSizeMultiplier * BASE_BLOCK_SIZE;
+        this.executor = executor;
+        this.maxPendingBlocks = ParallelCompressionQueue.checkMaxPendingBlocks(maxPendingBlocks);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (blockQueue == null || finished || !acceptOutboundMessage(msg)) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+
+        final ByteBuf in = (ByteBuf) msg;
+        try {
+            if (currentState == State.INIT) {
+                final ByteBuf header = ctx.alloc().buffer(4);
+                writeHeader(header);
+                ctx.write(header);
+                currentState = State.WRITE_DATA;
+            }
+            while (in.isReadable()) {
+                ParallelBlock block = parallelBlock;
+                if (block == null) {
+                    block = parallelBlock = new ParallelBlock(streamBlockSize);
+                }
+                final Bzip2BlockCompressor blockCompressor = block.compressor;
+                final int length = Math.min(in.readableBytes(), blockCompressor.availableSize());
+                in.skipBytes(blockCompressor.write(in, in.readerIndex(), length));
+                if (blockCompressor.isFull()) {
+                    parallelBlock = null;
+                    blockQueue.submit(block);
+                }
+            }
+        } finally {
+            in.release();
+        }
+        blockQueue.addPromise(promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (blockQueue != null) {
+            blockQueue.flush();
+        } else {
+            ctx.flush();
+        }
     }
 
     @Override
@@ -109,9 +196,7 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
         for (;;) {
             switch (currentState) {
                 case INIT:
-                    out.ensureWritable(4);
-                    out.writeMedium(MAGIC_NUMBER);
-                    out.writeByte('0' + streamBlockSize / BASE_BLOCK_SIZE);
+                    writeHeader(out);
                     currentState = State.INIT_BLOCK;
                     // fall through
                 case INIT_BLOCK:
@@ -145,6 +230,20 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
         }
     }
 
+    private void writeHeader(ByteBuf out) {
+        out.ensureWritable(4);
+        out.writeMedium(MAGIC_NUMBER);
+        out.writeByte('0' + streamBlockSize / BASE_BLOCK_SIZE);
+    }
+
+    private void writeFooter(ByteBuf out) {
+        final Bzip2BitWriter writer = this.writer;
+        writer.writeBits(out, 24, END_OF_STREAM_MAGIC_1);
+        writer.writeBits(out, 24, END_OF_STREAM_MAGIC_2);
+        writer.writeInt(out, streamCRC);
+        writer.flush(out);
+    }
+
     /**
      * Close current block and update {@link #streamCRC}.
      */
@@ -223,16 +322,21 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
         }
         finished = true;
 
+        if (blockQueue != null) {
+            final ParallelBlock block = parallelBlock;
+            parallelBlock = null;
+            if (block != null && !block.compressor.isEmpty()) {
+                blockQueue.submit(block);
+            }
+            // The footer is written once all the blocks were written.
+            blockQueue.close(promise);
+            return promise;
+        }
+
         final ByteBuf footer = ctx.alloc().buffer();
         closeBlock(footer);
-
-        final int streamCRC = this.streamCRC;
-        final Bzip2BitWriter writer = this.writer;
         try {
-            writer.writeBits(footer, 24, END_OF_STREAM_MAGIC_1);
-            writer.writeBits(footer, 24, END_OF_STREAM_MAGIC_2);
-            writer.writeInt(footer, streamCRC);
-            writer.flush(footer);
+            writeFooter(footer);
         } finally {
             blockCompressor = null;
         }
@@ -250,5 +354,95 @@ public class Bzip2Encoder extends MessageToByteEncoder<ByteBuf> {
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         this.ctx = ctx;
+        if (executor != null) {
+            blockQueue = new BlockQueue(ctx);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        if (blockQueue != null) {
+            blockQueue.destroy();
+            blockQueue = null;
+        }
+        parallelBlock = null;
+    }
+
+    /**
+     * A block which is compressed on the {@link #executor}. Each block uses its own {@link Bzip2BitWriter}, the
+     * bits it wrote are appended to the stream by {@link Bzip2BitWriter#writeBlock(ByteBuf, ByteBuf, Bzip2BitWriter)}.
+     */
+    private static final class ParallelBlock {
+        final Bzip2BitWriter writer = new Bzip2BitWriter();
+        final Bzip2BlockCompressor compressor;
+        ByteBuf compressed;
+
+        ParallelBlock(int blockSize) {
+            compressor = new Bzip2BlockCompressor(writer, blockSize);
+        }
+    }
+
+    private final class BlockQueue extends ParallelCompressionQueue<ParallelBlock, ParallelBlock> {
+        private final ChannelHandlerContext ctx;
+
+        BlockQueue(ChannelHandlerContext ctx) {
+            super(ctx, executor, maxPendingBlocks);
+            this.ctx = ctx;
+        }
+
+        @Override
+        protected ParallelBlock compress(ParallelBlock block) {
+            final ByteBuf out = ctx.alloc().buffer();
+            boolean success = false;
+            try {
+                block.compressor.close(out);
+                success = true;
+            } finally {
+                if (!success) {
+                    out.release();
+                }
+            }
+            block.compressed = out;
+            return block;
+        }
+
+        @Override
+        protected ByteBuf output(ParallelBlock block) {
+            final ByteBuf compressed = block.compressed;
+            block.compressed = null;
+            final ByteBuf out = ctx.alloc().buffer(compressed.readableBytes() + 8);
+            try {
+                writer.writeBlock(out, compressed, block.writer);
+            } finally {
+                compressed.release();
+            }
+            final int blockCRC = block.compressor.crc();
+            streamCRC = (streamCRC << 1 | streamCRC >>> 31) ^ blockCRC;
+            return out;
+        }
+
+        @Override
+        protected ByteBuf trailer() {
+            final ByteBuf footer = ctx.alloc().buffer(16);
+            if (currentState == State.INIT) {
+                writeHeader(footer);
+            }
+            writeFooter(footer);
+            return footer;
+        }
+
+        @Override
+        protected void release(ParallelBlock block) {
+            // The block holds no resources until it was compressed.
+        }
+
+        @Override
+        protected void releaseCompressed(ParallelBlock block) {
+            if (block.compressed != null) {
+                block.compressed.release();
+                block.compressed = null;
+            }
+        }
     }
 }
@@ -17,6 +17,7 @@ package io.netty.handler.codec.compression;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.internal.EmptyArrays;
 
 import java.util.List;
 import java.util.zip.CRC32;
@@ -26,6 +27,10 @@ import java.util.zip.Inflater;
 
 /**
  * Decompress a {@link ByteBuf} using the inflate algorithm.
+ * <p>
+ * On JDK 11 and later direct buffers are decompressed without copying them into a byte array first, and the
+ * decompressed data is written to direct buffers as well. The {@link Inflater} is reused by other decoders of the same
+ * event loop once this decoder is removed.
  */
 public class JdkZlibDecoder extends ZlibDecoder {
     private static final int FHCRC = 0x02;
@@ -35,6 +40,7 @@ public class JdkZlibDecoder extends ZlibDecoder {
     private static final int FRESERVED = 0xE0;
 
     private Inflater inflater;
+    private boolean nowrap;
     private final byte[] dictionary;
 
     // GZIP related
@@ -100,15 +106,14 @@ public class JdkZlibDecoder extends ZlibDecoder {
         this.decompressConcatenated = decompressConcatenated;
         switch (wrapper) {
             case GZIP:
-                inflater = new Inflater(true);
+                nowrap = true;
                 crc = ByteBufChecksum.wrapChecksum(new CRC32());
                 break;
             case NONE:
-                inflater = new Inflater(true);
+                nowrap = true;
                 crc = null;
                 break;
             case ZLIB:
-                inflater = new Inflater();
                 crc = null;
                 break;
             case ZLIB_OR_NONE:
@@ -146,11 +151,14 @@ public class JdkZlibDecoder extends ZlibDecoder {
                 return;
             }
 
-            boolean nowrap = !looksLikeZlib(in.getShort(in.readerIndex()));
-            inflater = new Inflater(nowrap);
+            nowrap = !looksLikeZlib(in.getShort(in.readerIndex()));
             decideZlibOrNone = false;
         }
 
+        if (inflater == null) {
+            inflater = JdkZlibUtil.newInflater(nowrap);
+        }
+
         if (crc != null) {
             switch (gzipState) {
                 case FOOTER_START:
@@ -169,26 +177,37 @@ public class JdkZlibDecoder extends ZlibDecoder {
             readableBytes = in.readableBytes();
         }
 
+        boolean byteBufferInput = false;
         if (in.hasArray()) {
             inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), readableBytes);
+        } else if (JdkZlibUtil.isByteBufferSupported() && in.nioBufferCount() == 1) {
+            JdkZlibUtil.setInput(inflater, in.internalNioBuffer(in.readerIndex(), readableBytes));
+            byteBufferInput = true;
         } else {
             byte[] array = new byte[readableBytes];
             in.getBytes(in.readerIndex(), array);
             inflater.setInput(array);
         }
 
-        ByteBuf decompressed = ctx.alloc().heapBuffer(inflater.getRemaining() << 1);
+        // Keep the decompressed data off-heap as well if the input is, so it does not need to be copied again.
+        ByteBuf decompressed = byteBufferInput ? ctx.alloc().directBuffer(inflater.getRemaining() << 1)
+                : ctx.alloc().heapBuffer(inflater.getRemaining() << 1);
         try {
             boolean readFooter = false;
             while (!inflater.needsInput()) {
-                byte[] outArray = decompressed.array();
                 int writerIndex = decompressed.writerIndex();
-                int outIndex = decompressed.arrayOffset() + writerIndex;
-                int outputLength = inflater.inflate(outArray, outIndex, decompressed.writableBytes());
+                int outputLength;
+                if (decompressed.hasArray()) {
+                    outputLength = inflater.inflate(decompressed.array(), decompressed.arrayOffset() + writerIndex,
+                            decompressed.writableBytes());
+                } else {
+                    outputLength = JdkZlibUtil.inflate(
+                            inflater, decompressed.internalNioBuffer(writerIndex, decompressed.writableBytes()));
+                }
                 if (outputLength > 0) {
                     decompressed.writerIndex(writerIndex + outputLength);
                     if (crc != null) {
-                        crc.update(outArray, outIndex, outputLength);
+                        crc.update(decompressed, writerIndex, outputLength);
                     }
                 } else {
                     if (inflater.needsDictionary()) {
@@ -213,6 +232,11 @@ public class JdkZlibDecoder extends ZlibDecoder {
             }
 
             in.skipBytes(readableBytes - inflater.getRemaining());
+            if (byteBufferInput) {
+                // Do not keep a reference to the buffer as it may be released before the next call, the remaining
+                // bytes are passed again by then.
+                inflater.setInput(EmptyArrays.EMPTY_BYTES);
+            }
 
             if (readFooter) {
                 gzipState = GzipState.FOOTER_START;
@@ -242,7 +266,8 @@ public class JdkZlibDecoder extends ZlibDecoder {
     protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
         super.handlerRemoved0(ctx);
         if (inflater != null) {
-            inflater.end();
+            JdkZlibUtil.release(inflater, nowrap);
+            inflater = null;
         }
     }
 
@@ -22,6 +22,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.ChannelPromiseNotifier;
 import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.EmptyArrays;
 
 import java.util.concurrent.TimeUnit;
 import java.util.zip.CRC32;
@@ -29,18 +30,24 @@ import java.util.zip.Deflater;
 
 /**
  * Compresses a {@link ByteBuf} using the deflate algorithm.
+ * <p>
+ * On JDK 11 and later direct buffers are compressed without copying them into a byte array first, and the
+ * compressed data is written to direct buffers as well. The {@link Deflater} is obtained when the encoder is added to
+ * the pipeline and is reused by other encoders of the same event loop once this encoder is finished or removed.
  */
 public class JdkZlibEncoder extends ZlibEncoder {
 
     private final ZlibWrapper wrapper;
-    private final Deflater deflater;
+    private final int compressionLevel;
+    private final byte[] dictionary;
+    private Deflater deflater;
     private volatile boolean finished;
     private volatile ChannelHandlerContext ctx;
 
     /*
      * GZIP support
      */
-    private final CRC32 crc = new CRC32();
+    private final ByteBufChecksum crc = ByteBufChecksum.wrapChecksum(new CRC32());
     private static final byte[] gzipHeader = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
     private boolean writeHeader = true;
 
@@ -105,7 +112,8 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         this.wrapper = wrapper;
-        deflater = new Deflater(compressionLevel, wrapper != ZlibWrapper.ZLIB);
+        this.compressionLevel = compressionLevel;
+        dictionary = null;
     }
 
     /**
@@ -146,8 +154,8 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         wrapper = ZlibWrapper.ZLIB;
-        deflater = new Deflater(compressionLevel);
-        deflater.setDictionary(dictionary);
+        this.compressionLevel = compressionLevel;
+        this.dictionary = dictionary.clone();
     }
 
     @Override
@@ -199,20 +207,6 @@ public class JdkZlibEncoder extends ZlibEncoder {
             return;
         }
 
-        int offset;
-        byte[] inAry;
-        if (uncompressed.hasArray()) {
-            // if it is backed by an array we not need to to do a copy at all
-            inAry = uncompressed.array();
-            offset = uncompressed.arrayOffset() + uncompressed.readerIndex();
-            // skip all bytes as we will consume all of them
-            uncompressed.skipBytes(len);
-        } else {
-            inAry = new byte[len];
-            uncompressed.readBytes(inAry);
-            offset = 0;
-        }
-
         if (writeHeader) {
             writeHeader = false;
             if (wrapper == ZlibWrapper.GZIP) {
@@ -220,11 +214,26 @@ public class JdkZlibEncoder extends ZlibEncoder {
             }
         }
 
+        int readerIndex = uncompressed.readerIndex();
         if (wrapper == ZlibWrapper.GZIP) {
-            crc.update(inAry, offset, len);
+            crc.update(uncompressed, readerIndex, len);
+        }
+
+        boolean byteBufferInput = false;
+        if (uncompressed.hasArray()) {
+            // if it is backed by an array we not need to to do a copy at all
+            deflater.setInput(uncompressed.array(), uncompressed.arrayOffset() + readerIndex, len);
+        } else if (JdkZlibUtil.isByteBufferSupported() && uncompressed.nioBufferCount() == 1) {
+            JdkZlibUtil.setInput(deflater, uncompressed.internalNioBuffer(readerIndex, len));
+            byteBufferInput = true;
+        } else {
+            byte[] inAry = new byte[len];
+            uncompressed.getBytes(readerIndex, inAry);
+            deflater.setInput(inAry);
         }
+        // skip all bytes as we will consume all of them
+        uncompressed.skipBytes(len);
 
-        deflater.setInput(inAry, offset, len);
         for (;;) {
             deflate(out);
             if (deflater.needsInput()) {
@@ -238,6 +247,10 @@ public class JdkZlibEncoder extends ZlibEncoder {
                 }
             }
         }
+        if (byteBufferInput) {
+            // Do not keep a reference to the buffer as it may be released before the next call.
+            deflater.setInput(EmptyArrays.EMPTY_BYTES);
+        }
     }
 
     @Override
@@ -256,6 +269,10 @@ public class JdkZlibEncoder extends ZlibEncoder {
                     // no op
             }
         }
+        if (!msg.hasArray() && JdkZlibUtil.isByteBufferSupported()) {
+            // Keep the compressed data off-heap as well, so it does not need to be copied before it is written.
+            return ctx.alloc().directBuffer(sizeEstimate);
+        }
         return ctx.alloc().heapBuffer(sizeEstimate);
     }
 
@@ -287,6 +304,11 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         finished = true;
+        if (deflater == null) {
+            // Removed from the pipeline, so the deflater was already released and nothing can be written anymore.
+            promise.setSuccess();
+            return promise;
+        }
         ByteBuf footer = ctx.alloc().heapBuffer();
         if (writeHeader && wrapper == ZlibWrapper.GZIP) {
             // Write the GZIP header first if not written yet. (i.e. user wrote nothing.)
@@ -316,7 +338,7 @@ public class JdkZlibEncoder extends ZlibEncoder {
             footer.writeByte(uncBytes >>> 16);
             footer.writeByte(uncBytes >>> 24);
         }
-        deflater.end();
+        releaseDeflater();
         return ctx.writeAndFlush(footer, promise);
     }
 
@@ -324,14 +346,36 @@ public class JdkZlibEncoder extends ZlibEncoder {
         int numBytes;
         do {
             int writerIndex = out.writerIndex();
-            numBytes = deflater.deflate(
-                    out.array(), out.arrayOffset() + writerIndex, out.writableBytes(), Deflater.SYNC_FLUSH);
+            if (out.hasArray()) {
+                numBytes = deflater.deflate(
+                        out.array(), out.arrayOffset() + writerIndex, out.writableBytes(), Deflater.SYNC_FLUSH);
+            } else {
+                numBytes = JdkZlibUtil.deflate(
+                        deflater, out.internalNioBuffer(writerIndex, out.writableBytes()), Deflater.SYNC_FLUSH);
+            }
             out.writerIndex(writerIndex + numBytes);
         } while (numBytes > 0);
     }
 
+    private void releaseDeflater() {
+        if (deflater != null) {
+            JdkZlibUtil.release(deflater, compressionLevel, wrapper != ZlibWrapper.ZLIB);
+            deflater = null;
+        }
+    }
+
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         this.ctx = ctx;
+        deflater = JdkZlibUtil.newDeflater(compressionLevel, wrapper != ZlibWrapper.ZLIB);
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        releaseDeflater();
     }
 }
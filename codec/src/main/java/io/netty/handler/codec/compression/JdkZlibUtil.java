@@ -0,0 +1,264 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Utility methods used by {@link JdkZlibEncoder} and {@link JdkZlibDecoder}.
+ * <p>
+ * Since JDK 11 {@link Deflater} and {@link Inflater} are able to work on {@link ByteBuffer}s, so direct
+ * {@link ByteBuf}s no longer need to be copied into byte arrays. The methods are invoked reflectively as netty still
+ * supports older JDKs.
+ * <p>
+ * Creating a {@link Deflater} or {@link Inflater} allocates the native zlib state, so instances are pooled per event
+ * loop and reused once they were {@link Deflater#reset() reset}.
+ */
+final class JdkZlibUtil {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(JdkZlibUtil.class);
+
+    private static final Method DEFLATER_SET_INPUT_METHOD;
+    private static final Method DEFLATER_DEFLATE_METHOD;
+    private static final Method INFLATER_SET_INPUT_METHOD;
+    private static final Method INFLATER_INFLATE_METHOD;
+
+    /**
+     * The maximum number of instances which are pooled per event loop for each configuration.
+     */
+    private static final int MAX_POOLED;
+
+    private static final FastThreadLocal<Pool> POOL = new FastThreadLocal<Pool>() {
+        @Override
+        protected Pool initialValue() {
+            return new Pool();
+        }
+
+        @Override
+        protected void onRemoval(Pool pool) {
+            pool.end();
+        }
+    };
+
+    static {
+        Method deflaterSetInput = null;
+        Method deflaterDeflate = null;
+        Method inflaterSetInput = null;
+        Method inflaterInflate = null;
+        if (PlatformDependent.javaVersion() >= 11) {
+            try {
+                deflaterSetInput = Deflater.class.getMethod("setInput", ByteBuffer.class);
+                deflaterDeflate = Deflater.class.getMethod("deflate", ByteBuffer.class, int.class);
+                inflaterSetInput = Inflater.class.getMethod("setInput", ByteBuffer.class);
+                inflaterInflate = Inflater.class.getMethod("inflate", ByteBuffer.class);
+            } catch (Throwable cause) {
+                logger.debug("Failed to find the ByteBuffer methods of Deflater and Inflater", cause);
+                deflaterSetInput = null;
+                deflaterDeflate = null;
+                inflaterSetInput = null;
+                inflaterInflate = null;
+            }
+        }
+        DEFLATER_SET_INPUT_METHOD = deflaterSetInput;
+        DEFLATER_DEFLATE_METHOD = deflaterDeflate;
+        INFLATER_SET_INPUT_METHOD = inflaterSetInput;
+        INFLATER_INFLATE_METHOD = inflaterInflate;
+
+        MAX_POOLED = Math.max(0, SystemPropertyUtil.getInt("io.netty.jdkZlib.maxPooled", 4));
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.jdkZlib.maxPooled: {}", MAX_POOLED);
+            logger.debug("java.util.zip ByteBuffer support: {}", DEFLATER_SET_INPUT_METHOD != null);
+        }
+    }
+
+    private JdkZlibUtil() {
+    }
+
+    /**
+     * Returns {@code true} if the {@link ByteBuffer} methods of {@link Deflater} and {@link Inflater} are usable.
+     */
+    static boolean isByteBufferSupported() {
+        return DEFLATER_SET_INPUT_METHOD != null;
+    }
+
+    static void setInput(Deflater deflater, ByteBuffer input) {
+        invoke(DEFLATER_SET_INPUT_METHOD, deflater, input);
+    }
+
+    static int deflate(Deflater deflater, ByteBuffer output, int flush) {
+        return (Integer) invoke(DEFLATER_DEFLATE_METHOD, deflater, output, flush);
+    }
+
+    static void setInput(Inflater inflater, ByteBuffer input) {
+        invoke(INFLATER_SET_INPUT_METHOD, inflater, input);
+    }
+
+    static int inflate(Inflater inflater, ByteBuffer output) throws DataFormatException {
+        try {
+            return (Integer) INFLATER_INFLATE_METHOD.invoke(inflater, output);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof DataFormatException) {
+                throw (DataFormatException) e.getCause();
+            }
+            PlatformDependent.throwException(e.getCause());
+            return 0;
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            PlatformDependent.throwException(e.getCause());
+            return null;
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a pooled {@link Deflater} of the current event loop or a new one.
+     */
+    static Deflater newDeflater(int compressionLevel, boolean nowrap) {
+        Pool pool = pool();
+        if (pool != null) {
+            Deflater deflater = pool.deflaters(compressionLevel, nowrap).poll();
+            if (deflater != null) {
+                return deflater;
+            }
+        }
+        return new Deflater(compressionLevel, nowrap);
+    }
+
+    /**
+     * Returns a {@link Deflater} obtained from {@link #newDeflater(int, boolean)} to the pool of the current event
+     * loop, or ends it if the pool is full.
+     */
+    static void release(Deflater deflater, int compressionLevel, boolean nowrap) {
+        Pool pool = pool();
+        if (pool != null) {
+            ArrayDeque<Deflater> deflaters = pool.deflaters(compressionLevel, nowrap);
+            if (deflaters.size() < MAX_POOLED) {
+                deflater.reset();
+                deflaters.push(deflater);
+                return;
+            }
+        }
+        deflater.end();
+    }
+
+    /**
+     * Returns a pooled {@link Inflater} of the current event loop or a new one.
+     */
+    static Inflater newInflater(boolean nowrap) {
+        Pool pool = pool();
+        if (pool != null) {
+            Inflater inflater = pool.inflaters(nowrap).poll();
+            if (inflater != null) {
+                return inflater;
+            }
+        }
+        return new Inflater(nowrap);
+    }
+
+    /**
+     * Returns an {@link Inflater} obtained from {@link #newInflater(boolean)} to the pool of the current event loop,
+     * or ends it if the pool is full.
+     */
+    static void release(Inflater inflater, boolean nowrap) {
+        Pool pool = pool();
+        if (pool != null) {
+            ArrayDeque<Inflater> inflaters = pool.inflaters(nowrap);
+            if (inflaters.size() < MAX_POOLED) {
+                inflater.reset();
+                inflaters.push(inflater);
+                return;
+            }
+        }
+        inflater.end();
+    }
+
+    /**
+     * Returns the pool of the current thread, or {@code null} if instances must not be pooled as the thread does not
+     * clean up its {@link FastThreadLocal}s when it terminates, so the native memory would only be freed by the GC.
+     */
+    private static Pool pool() {
+        if (MAX_POOLED == 0 || !FastThreadLocalThread.willCleanupFastThreadLocals(Thread.currentThread())) {
+            return null;
+        }
+        return POOL.get();
+    }
+
+    private static final class Pool {
+        // Indexed by compression level, with and without the zlib wrapper.
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<Deflater>[] deflaters = new ArrayDeque[20];
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<Inflater>[] inflaters = new ArrayDeque[2];
+
+        ArrayDeque<Deflater> deflaters(int compressionLevel, boolean nowrap) {
+            int index = compressionLevel << 1 | (nowrap ? 1 : 0);
+            ArrayDeque<Deflater> deflaters = this.deflaters[index];
+            if (deflaters == null) {
+                deflaters = this.deflaters[index] = new ArrayDeque<Deflater>(MAX_POOLED);
+            }
+            return deflaters;
+        }
+
+        ArrayDeque<Inflater> inflaters(boolean nowrap) {
+            int index = nowrap ? 1 : 0;
+            ArrayDeque<Inflater> inflaters = this.inflaters[index];
+            if (inflaters == null) {
+                inflaters = this.inflaters[index] = new ArrayDeque<Inflater>(MAX_POOLED);
+            }
+            return inflaters;
+        }
+
+        void end() {
+            for (ArrayDeque<Deflater> deflaters : this.deflaters) {
+                if (deflaters != null) {
+                    for (Deflater deflater : deflaters) {
+                        deflater.end();
+                    }
+                    deflaters.clear();
+                }
+            }
+            for (ArrayDeque<Inflater> inflaters : this.inflaters) {
+                if (inflaters != null) {
+                    for (Inflater inflater : inflaters) {
+                        inflater.end();
+                    }
+                    inflaters.clear();
+                }
+            }
+        }
+    }
+}
@@ -33,6 +33,7 @@ import net.jpountz.lz4.LZ4Exception;
 import net.jpountz.lz4.LZ4Factory;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.Checksum;
 
@@ -65,6 +66,9 @@ import static io.netty.handler.codec.compression.Lz4Constants.TOKEN_OFFSET;
  *  * Magic * Token *  Compressed *  Decompressed *  Checksum *  +  *  LZ4 compressed *
  *  *       *       *    length   *     length    *           *     *      block      *
  *  * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *     * * * * * * * * * *
+ *
+ * Every block is compressed independently, so the blocks can be compressed on the threads of an {@link Executor}
+ * instead of the event loop, see {@link #Lz4FrameEncoder(LZ4Factory, boolean, int, Checksum, int, Executor, int)}.
  */
 public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
     static final int DEFAULT_MAX_ENCODE_SIZE = Integer.MAX_VALUE;
@@ -106,6 +110,21 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
      */
     private volatile ChannelHandlerContext ctx;
 
+    /**
+     * The {@link Executor} which compresses the blocks, or {@code null} to compress them on the event loop.
+     */
+    private final Executor executor;
+
+    /**
+     * The maximum number of blocks which are compressed or wait to be written at the same time.
+     */
+    private final int maxPendingBlocks;
+
+    /**
+     * Compresses the blocks on the {@link #executor} and writes them in order.
+     */
+    private BlockQueue blockQueue;
+
     /**
      * Creates the fastest LZ4 encoder with default block size (64 KB)
      * and xxhash hashing for Java, based on Yann Collet's work available at
@@ -158,6 +177,31 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
          */
     public Lz4FrameEncoder(LZ4Factory factory, boolean highCompressor, int blockSize,
                            Checksum checksum, int maxEncodeSize) {
+        this(factory, highCompressor, blockSize, checksum, maxEncodeSize, null, 1);
+    }
+
+    /**
+     * Creates a new customizable LZ4 encoder which compresses the blocks on the threads of the given
+     * {@link Executor}, so large payloads are compressed in parallel and the event loop is free to serve other
+     * channels meanwhile.
+     *
+     * @param factory          user customizable {@link LZ4Factory} instance
+     *                         which may be JNI bindings to the original C implementation, a pure Java implementation
+     *                         or a Java implementation that uses the {@link sun.misc.Unsafe}
+     * @param highCompressor   if {@code true} codec will use compressor which requires more memory
+     *                         and is slower but compresses more efficiently
+     * @param blockSize        the maximum number of bytes to try to compress at once,
+     *                         must be >= 64 and <= 32 M
+     * @param checksum         the {@link Checksum} instance to use to check data for integrity
+     * @param maxEncodeSize    the maximum size for an encode (compressed) buffer
+     * @param executor         the {@link Executor} to compress the blocks with, or {@code null} to compress them on
+     *                         the event loop. It should use a bounded number of threads and may be shared by many
+     *                         channels. Blocks which are rejected by it are compressed on the event loop.
+     * @param maxPendingBlocks the maximum number of blocks of this channel which are compressed or wait to be
+     *                         written at the same time. The channel is not writable while this limit is reached.
+     */
+    public Lz4FrameEncoder(LZ4Factory factory, boolean highCompressor, int blockSize,
+                           Checksum checksum, int maxEncodeSize, Executor executor, int maxPendingBlocks) {
         if (factory == null) {
             throw new NullPointerException("factory");
         }
@@ -171,6 +215,8 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         compressionLevel = compressionLevel(blockSize);
         this.blockSize = blockSize;
         this.maxEncodeSize = ObjectUtil.checkPositive(maxEncodeSize, "maxEncodeSize");
+        this.executor = executor;
+        this.maxPendingBlocks = ParallelCompressionQueue.checkMaxPendingBlocks(maxPendingBlocks);
         finished = false;
     }
 
@@ -259,14 +305,25 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
     }
 
     private void flushBufferedData(ByteBuf out) {
-        int flushableBytes = buffer.readableBytes();
-        if (flushableBytes == 0) {
+        if (!buffer.isReadable()) {
             return;
         }
+        compressBlock(buffer, checksum(buffer), out);
+        buffer.clear();
+    }
+
+    private int checksum(ByteBuf buffer) {
         checksum.reset();
-        checksum.update(buffer, buffer.readerIndex(), flushableBytes);
-        final int check = (int) checksum.getValue();
+        checksum.update(buffer, buffer.readerIndex(), buffer.readableBytes());
+        return (int) checksum.getValue();
+    }
 
+    /**
+     * Compresses the readable bytes of {@code buffer} as one block. Only uses immutable state, so it may be called
+     * from any thread.
+     */
+    private void compressBlock(ByteBuf buffer, int check, ByteBuf out) {
+        final int flushableBytes = buffer.readableBytes();
         final int bufSize = compressor.maxCompressedLength(flushableBytes) + HEADER_LENGTH;
         out.ensureWritable(bufSize);
         final int idx = out.writerIndex();
@@ -284,7 +341,7 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         if (compressedLength >= flushableBytes) {
             blockType = BLOCK_TYPE_NON_COMPRESSED;
             compressedLength = flushableBytes;
-            out.setBytes(idx + HEADER_LENGTH, buffer, 0, flushableBytes);
+            out.setBytes(idx + HEADER_LENGTH, buffer, buffer.readerIndex(), flushableBytes);
         } else {
             blockType = BLOCK_TYPE_COMPRESSED;
         }
@@ -295,11 +352,57 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         out.setIntLE(idx + DECOMPRESSED_LENGTH_OFFSET, flushableBytes);
         out.setIntLE(idx + CHECKSUM_OFFSET, check);
         out.writerIndex(idx + HEADER_LENGTH + compressedLength);
-        buffer.clear();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (blockQueue == null || finished || !acceptOutboundMessage(msg)) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+
+        final ByteBuf in = (ByteBuf) msg;
+        try {
+            while (in.isReadable()) {
+                final ByteBuf buffer = this.buffer;
+                in.readBytes(buffer, Math.min(in.readableBytes(), buffer.writableBytes()));
+                if (!buffer.isWritable()) {
+                    submitBufferedData(ctx);
+                }
+            }
+        } finally {
+            in.release();
+        }
+        blockQueue.addPromise(promise);
+    }
+
+    /**
+     * Hands the buffered data over to the {@link #blockQueue} and replaces the {@link #buffer}.
+     */
+    private void submitBufferedData(ChannelHandlerContext ctx) {
+        final ByteBuf buffer = this.buffer;
+        if (!buffer.isReadable()) {
+            return;
+        }
+        final int bufSize = compressor.maxCompressedLength(buffer.readableBytes()) + HEADER_LENGTH;
+        if (bufSize > maxEncodeSize) {
+            throw new EncoderException(String.format("requested encode buffer size (%d bytes) exceeds the maximum " +
+                                                     "allowable size (%d bytes)", bufSize, maxEncodeSize));
+        }
+        final ParallelBlock block = new ParallelBlock(buffer, checksum(buffer));
+        this.buffer = ctx.alloc().heapBuffer(blockSize, blockSize);
+        blockQueue.submit(block);
     }
 
     @Override
     public void flush(final ChannelHandlerContext ctx) throws Exception {
+        if (blockQueue != null) {
+            if (!finished) {
+                submitBufferedData(ctx);
+            }
+            blockQueue.flush();
+            return;
+        }
         if (buffer != null && buffer.isReadable()) {
             final ByteBuf buf = allocateBuffer(ctx, Unpooled.EMPTY_BUFFER, isPreferDirect(), false);
             flushBufferedData(buf);
@@ -315,10 +418,26 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         }
         finished = true;
 
+        if (blockQueue != null) {
+            try {
+                submitBufferedData(ctx);
+            } catch (Throwable cause) {
+                promise.setFailure(cause);
+                return promise;
+            }
+            // The end block is written once all the blocks were written.
+            blockQueue.close(promise);
+            return promise;
+        }
+
         final ByteBuf footer = ctx.alloc().heapBuffer(
                 compressor.maxCompressedLength(buffer.readableBytes()) + HEADER_LENGTH);
         flushBufferedData(footer);
+        writeEndBlock(footer);
+        return ctx.writeAndFlush(footer, promise);
+    }
 
+    private void writeEndBlock(ByteBuf footer) {
         final int idx = footer.writerIndex();
         footer.setLong(idx, MAGIC_NUMBER);
         footer.setByte(idx + TOKEN_OFFSET, (byte) (BLOCK_TYPE_NON_COMPRESSED | compressionLevel));
@@ -327,8 +446,6 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         footer.setInt(idx + CHECKSUM_OFFSET, 0);
 
         footer.writerIndex(idx + HEADER_LENGTH);
-
-        return ctx.writeAndFlush(footer, promise);
     }
 
     /**
@@ -404,11 +521,18 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
         // Ensure we use a heap based ByteBuf.
         buffer = Unpooled.wrappedBuffer(new byte[blockSize]);
         buffer.clear();
+        if (executor != null) {
+            blockQueue = new BlockQueue(ctx);
+        }
     }
 
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
         super.handlerRemoved(ctx);
+        if (blockQueue != null) {
+            blockQueue.destroy();
+            blockQueue = null;
+        }
         if (buffer != null) {
             buffer.release();
             buffer = null;
@@ -418,4 +542,66 @@ public class Lz4FrameEncoder extends MessageToByteEncoder<ByteBuf> {
     final ByteBuf getBackingBuffer() {
         return buffer;
     }
+
+    /**
+     * A block which is compressed on the {@link #executor}. The checksum is calculated on the event loop as the
+     * {@link #checksum} is not thread-safe.
+     */
+    private static final class ParallelBlock {
+        final ByteBuf buffer;
+        final int check;
+
+        ParallelBlock(ByteBuf buffer, int check) {
+            this.buffer = buffer;
+            this.check = check;
+        }
+    }
+
+    private final class BlockQueue extends ParallelCompressionQueue<ParallelBlock, ByteBuf> {
+        private final ChannelHandlerContext ctx;
+
+        BlockQueue(ChannelHandlerContext ctx) {
+            super(ctx, executor, maxPendingBlocks);
+            this.ctx = ctx;
+        }
+
+        @Override
+        protected ByteBuf compress(ParallelBlock block) {
+            final int bufSize = compressor.maxCompressedLength(block.buffer.readableBytes()) + HEADER_LENGTH;
+            final ByteBuf out = isPreferDirect() ? ctx.alloc().ioBuffer(bufSize, bufSize)
+                    : ctx.alloc().heapBuffer(bufSize, bufSize);
+            boolean success = false;
+            try {
+                compressBlock(block.buffer, block.check, out);
+                success = true;
+            } finally {
+                if (!success) {
+                    out.release();
+                }
+            }
+            return out;
+        }
+
+        @Override
+        protected ByteBuf output(ByteBuf compressed) {
+            return compressed;
+        }
+
+        @Override
+        protected ByteBuf trailer() {
+            final ByteBuf footer = ctx.alloc().heapBuffer(HEADER_LENGTH);
+            writeEndBlock(footer);
+            return footer;
+        }
+
+        @Override
+        protected void release(ParallelBlock block) {
+            block.buffer.release();
+        }
+
+        @Override
+        protected void releaseCompressed(ByteBuf compressed) {
+            compressed.release();
+        }
+    }
 }
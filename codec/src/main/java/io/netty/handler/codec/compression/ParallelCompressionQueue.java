@@ -0,0 +1,435 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Compresses the independent blocks of a block based encoder on the threads of an {@link Executor}, so the
+ * expensive part of the compression does not run on the event loop of the channel.
+ * <p>
+ * The compressed blocks are written in the order in which they were submitted, followed by the trailer of the
+ * stream once {@link #close(ChannelPromise)} was called. Like with a synchronous encoder the promise of a written
+ * message is notified once the blocks that were submitted before it was encoded were written, and a flush is
+ * deferred until all the blocks that were submitted before it were written.
+ * <p>
+ * At most {@code maxPendingBlocks} blocks are compressed or wait for their predecessors at any time, further blocks
+ * are queued until a slot becomes free. As long as the limit is reached the channel is marked as not writable
+ * through a user defined writability flag, so producers that respect {@link io.netty.channel.Channel#isWritable()}
+ * stop queueing more data.
+ * <p>
+ * All methods except {@link #compress(Object)} must be called from the event loop of the channel.
+ *
+ * @param <B> the type of the uncompressed blocks
+ * @param <R> the type of the compressed blocks
+ */
+abstract class ParallelCompressionQueue<B, R> {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ParallelCompressionQueue.class);
+
+    /**
+     * The index of the user defined writability flag, the traffic shaping handlers use the indices 1 to 3.
+     */
+    private static final int WRITABILITY_INDEX = 4;
+
+    private final ChannelHandlerContext ctx;
+    private final Executor executor;
+    private final int maxPendingBlocks;
+
+    /**
+     * All blocks that were submitted but not written yet, in submission order.
+     */
+    private final ArrayDeque<Block> blocks = new ArrayDeque<Block>();
+
+    /**
+     * The blocks that were submitted but were not handed to the {@link #executor} yet.
+     */
+    private final ArrayDeque<Block> queuedBlocks = new ArrayDeque<Block>();
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * The number of blocks which were handed to the {@link #executor} but not written yet.
+     */
+    private int startedBlocks;
+
+    /**
+     * The thread which hands the blocks to the {@link #executor}, blocks which are compressed on it are written
+     * right away.
+     */
+    private volatile Thread submitter;
+    private boolean draining;
+    private boolean unwritable;
+    private ChannelPromise closePromise;
+    private Throwable failure;
+
+    ParallelCompressionQueue(ChannelHandlerContext ctx, Executor executor, int maxPendingBlocks) {
+        this.ctx = ctx;
+        this.executor = executor;
+        this.maxPendingBlocks = maxPendingBlocks;
+    }
+
+    static int checkMaxPendingBlocks(int maxPendingBlocks) {
+        return ObjectUtil.checkPositive(maxPendingBlocks, "maxPendingBlocks");
+    }
+
+    /**
+     * Compresses the given block, called from a thread of the {@link Executor}.
+     */
+    protected abstract R compress(B block) throws Exception;
+
+    /**
+     * Returns the buffer to write for the given compressed block and takes over its ownership, so the compressed
+     * block must be released by this method. The blocks are passed in submission order on the event loop.
+     */
+    protected abstract ByteBuf output(R compressed) throws Exception;
+
+    /**
+     * Returns the buffer which finishes the stream once all the blocks were written.
+     */
+    protected abstract ByteBuf trailer() throws Exception;
+
+    /**
+     * Releases a block which will not be compressed.
+     */
+    protected abstract void release(B block);
+
+    /**
+     * Releases a compressed block which will not be written.
+     */
+    protected abstract void releaseCompressed(R compressed);
+
+    /**
+     * Submits a block for compression.
+     */
+    final void submit(B block) {
+        if (failure != null) {
+            release(block);
+            return;
+        }
+        Block b = new Block(block);
+        blocks.add(b);
+        queuedBlocks.add(b);
+        startBlocks();
+        updateWritability();
+    }
+
+    /**
+     * Adds the promise of a message which was handed to the encoder, it is notified once all the blocks that were
+     * submitted so far were written.
+     */
+    final void addPromise(ChannelPromise promise) {
+        if (failure != null) {
+            promise.tryFailure(failure);
+        } else if (!blocks.isEmpty()) {
+            blocks.peekLast().addPromise(promise);
+        } else {
+            ctx.write(Unpooled.EMPTY_BUFFER, promise);
+        }
+    }
+
+    /**
+     * Flushes the channel once all the blocks that were submitted so far were written.
+     */
+    final void flush() {
+        if (blocks.isEmpty()) {
+            ctx.flush();
+        } else {
+            blocks.peekLast().flush = true;
+        }
+    }
+
+    /**
+     * Writes and flushes the trailer of the stream once all the blocks that were submitted so far were written.
+     */
+    final void close(ChannelPromise promise) {
+        if (failure != null) {
+            promise.tryFailure(failure);
+            return;
+        }
+        closePromise = promise;
+        if (blocks.isEmpty()) {
+            writeTrailer();
+        }
+    }
+
+    /**
+     * Releases all the blocks which were not written and fails the promises that were not notified yet. Must be
+     * called when the encoder is removed from the pipeline.
+     */
+    final void destroy() {
+        fail(new ClosedChannelException());
+    }
+
+    /**
+     * Hands queued blocks to the {@link #executor} as long as the limit is not reached.
+     *
+     * @return {@code true} if any block was started
+     */
+    private boolean startBlocks() {
+        boolean started = false;
+        submitter = Thread.currentThread();
+        while (startedBlocks < maxPendingBlocks) {
+            Block block = queuedBlocks.poll();
+            if (block == null) {
+                break;
+            }
+            startedBlocks++;
+            started = true;
+            try {
+                executor.execute(block);
+            } catch (RejectedExecutionException e) {
+                // Fall back to compress on the event loop.
+                block.run();
+            }
+        }
+        return started;
+    }
+
+    private void drain() {
+        if (draining) {
+            // Blocks which were compressed on the event loop while draining are written by the outer call.
+            return;
+        }
+        draining = true;
+        try {
+            for (;;) {
+                if (!writeHead() && (failure != null || !startBlocks())) {
+                    break;
+                }
+            }
+        } finally {
+            draining = false;
+        }
+        updateWritability();
+        if (blocks.isEmpty() && closePromise != null) {
+            writeTrailer();
+        }
+    }
+
+    /**
+     * Writes the first block if it was compressed already.
+     *
+     * @return {@code true} if the block was written
+     */
+    private boolean writeHead() {
+        Block block = blocks.peek();
+        if (block == null || failure != null) {
+            return false;
+        }
+        R compressed;
+        Throwable cause;
+        synchronized (block) {
+            if (!block.done) {
+                return false;
+            }
+            compressed = block.compressed;
+            cause = block.cause;
+            block.compressed = null;
+        }
+        blocks.poll();
+        startedBlocks--;
+
+        ByteBuf out = null;
+        if (cause == null) {
+            try {
+                out = output(compressed);
+            } catch (Throwable t) {
+                cause = t;
+            }
+        }
+        if (cause != null) {
+            block.failPromises(cause);
+            fail(cause);
+            ctx.fireExceptionCaught(cause instanceof CompressionException ? cause : new CompressionException(cause));
+            return false;
+        }
+        if (block.promises == null) {
+            ctx.write(out);
+        } else {
+            ctx.write(out, ctx.newPromise().addListener(new ChannelPromiseNotifier(block.promises)));
+        }
+        if (block.flush) {
+            ctx.flush();
+        }
+        return true;
+    }
+
+    private void writeTrailer() {
+        ChannelPromise promise = closePromise;
+        closePromise = null;
+        ByteBuf trailer;
+        try {
+            trailer = trailer();
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+            return;
+        }
+        ctx.writeAndFlush(trailer, promise);
+    }
+
+    private void fail(Throwable cause) {
+        if (failure != null) {
+            return;
+        }
+        failure = cause;
+        for (;;) {
+            Block block = blocks.poll();
+            if (block == null) {
+                break;
+            }
+            block.cancel();
+            block.failPromises(cause);
+        }
+        queuedBlocks.clear();
+        if (closePromise != null) {
+            closePromise.tryFailure(cause);
+            closePromise = null;
+        }
+        updateWritability();
+    }
+
+    private void updateWritability() {
+        ChannelOutboundBuffer buffer = ctx.channel().unsafe().outboundBuffer();
+        if (buffer == null) {
+            return;
+        }
+        // Use some hysteresis so the writability does not flip with every block.
+        int pending = blocks.size();
+        if (!unwritable && pending >= maxPendingBlocks && failure == null) {
+            unwritable = true;
+            buffer.setUserDefinedWritability(WRITABILITY_INDEX, false);
+        } else if (unwritable && (pending <= maxPendingBlocks >>> 1 || failure != null)) {
+            unwritable = false;
+            buffer.setUserDefinedWritability(WRITABILITY_INDEX, true);
+        }
+    }
+
+    private final class Block implements Runnable {
+        private B block;
+        private ChannelPromise[] promises;
+        private boolean flush;
+
+        // Guarded by this.
+        private boolean started;
+        private boolean done;
+        private boolean cancelled;
+        private R compressed;
+        private Throwable cause;
+
+        Block(B block) {
+            this.block = block;
+        }
+
+        void addPromise(ChannelPromise promise) {
+            if (promises == null) {
+                promises = new ChannelPromise[] { promise };
+            } else {
+                ChannelPromise[] newPromises = new ChannelPromise[promises.length + 1];
+                System.arraycopy(promises, 0, newPromises, 0, promises.length);
+                newPromises[promises.length] = promise;
+                promises = newPromises;
+            }
+        }
+
+        void failPromises(Throwable cause) {
+            if (promises != null) {
+                for (ChannelPromise promise : promises) {
+                    promise.tryFailure(cause);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            B block;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                started = true;
+                block = this.block;
+                this.block = null;
+            }
+            R compressed = null;
+            Throwable cause = null;
+            try {
+                compressed = compress(block);
+            } catch (Throwable t) {
+                cause = t;
+            } finally {
+                release(block);
+            }
+            synchronized (this) {
+                if (cancelled) {
+                    if (compressed != null) {
+                        releaseCompressed(compressed);
+                    }
+                    return;
+                }
+                this.compressed = compressed;
+                this.cause = cause;
+                done = true;
+            }
+            if (Thread.currentThread() == submitter) {
+                drain();
+                return;
+            }
+            try {
+                ctx.executor().execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                // The event loop was shut down, the block is released once the encoder is removed.
+                logger.debug("Failed to schedule the write of a compressed block.", e);
+            }
+        }
+
+        void cancel() {
+            B block;
+            R compressed;
+            synchronized (this) {
+                cancelled = true;
+                block = started ? null : this.block;
+                compressed = this.compressed;
+                this.block = null;
+                this.compressed = null;
+            }
+            if (block != null) {
+                release(block);
+            }
+            if (compressed != null) {
+                releaseCompressed(compressed);
+            }
+        }
+    }
+}
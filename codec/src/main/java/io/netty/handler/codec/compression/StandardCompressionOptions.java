@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+/**
+ * Factory for the {@link CompressionOptions} of the compression formats supported by Netty.
+ */
+public final class StandardCompressionOptions {
+
+    private static final int DEFAULT_ZLIB_COMPRESSION_LEVEL = 6;
+    private static final int DEFAULT_ZLIB_WINDOW_BITS = 15;
+    private static final int DEFAULT_ZLIB_MEM_LEVEL = 8;
+
+    private StandardCompressionOptions() { }
+
+    /**
+     * Default {@link GzipOptions}: compression level {@code 6}, window bits {@code 15} and memory level {@code 8}.
+     */
+    public static GzipOptions gzip() {
+        return gzip(DEFAULT_ZLIB_COMPRESSION_LEVEL, DEFAULT_ZLIB_WINDOW_BITS, DEFAULT_ZLIB_MEM_LEVEL);
+    }
+
+    /**
+     * Create a new {@link GzipOptions}.
+     *
+     * @param compressionLevel {@code 1} yields the fastest compression and {@code 9} yields the best compression.
+     *                         {@code 0} means no compression.
+     * @param windowBits       the base two logarithm of the size of the history buffer, {@code 9} to {@code 15}
+     * @param memLevel         how much memory should be allocated for the internal compression state,
+     *                         {@code 1} to {@code 9}
+     */
+    public static GzipOptions gzip(int compressionLevel, int windowBits, int memLevel) {
+        return new GzipOptions(compressionLevel, windowBits, memLevel);
+    }
+
+    /**
+     * Default {@link DeflateOptions}: compression level {@code 6}, window bits {@code 15} and memory level {@code 8}.
+     */
+    public static DeflateOptions deflate() {
+        return deflate(DEFAULT_ZLIB_COMPRESSION_LEVEL, DEFAULT_ZLIB_WINDOW_BITS, DEFAULT_ZLIB_MEM_LEVEL);
+    }
+
+    /**
+     * Create a new {@link DeflateOptions}.
+     *
+     * @param compressionLevel {@code 1} yields the fastest compression and {@code 9} yields the best compression.
+     *                         {@code 0} means no compression.
+     * @param windowBits       the base two logarithm of the size of the history buffer, {@code 9} to {@code 15}
+     * @param memLevel         how much memory should be allocated for the internal compression state,
+     *                         {@code 1} to {@code 9}
+     */
+    public static DeflateOptions deflate(int compressionLevel, int windowBits, int memLevel) {
+        return new DeflateOptions(compressionLevel, windowBits, memLevel);
+    }
+
+    /**
+     * Default {@link ZstdOptions}: compression level {@code 3}, block size 64 KB and no dictionary.
+     */
+    public static ZstdOptions zstd() {
+        return zstd(ZstdConstants.DEFAULT_COMPRESSION_LEVEL, ZstdConstants.DEFAULT_BLOCK_SIZE, null);
+    }
+
+    /**
+     * Create a new {@link ZstdOptions}.
+     *
+     * @param compressionLevel {@code 1} yields the fastest compression and {@code 22} yields the best compression
+     * @param blockSize        the size of the chunks in which data is passed to zstd, must be >= 1 KB and <= 32 MB
+     * @param dictionary       the pre-trained dictionary to use, or {@code null} to use none. The remote peer must
+     *                         use the same dictionary to decompress the data.
+     */
+    public static ZstdOptions zstd(int compressionLevel, int blockSize, ZstdDictionary dictionary) {
+        return new ZstdOptions(compressionLevel, blockSize, dictionary);
+    }
+
+    /**
+     * Default {@link BrotliOptions}: quality {@code 4} and window {@code 22}.
+     */
+    public static BrotliOptions brotli() {
+        return brotli(BrotliConstants.DEFAULT_QUALITY, BrotliConstants.DEFAULT_WINDOW);
+    }
+
+    /**
+     * Create a new {@link BrotliOptions}. Use {@link BrotliOptions#withContentType(String, int, int)} to apply
+     * different settings depending on the type of the content.
+     *
+     * @param quality {@code 0} yields the fastest compression and {@code 11} yields the best compression
+     * @param window  the base two logarithm of the size of the sliding window, {@code 10} to {@code 24}
+     */
+    public static BrotliOptions brotli(int quality, int window) {
+        return new BrotliOptions(quality, window);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+final class ZstdConstants {
+
+    /**
+     * Default compression level, which is a good trade-off between the compression ratio and speed.
+     */
+    static final int DEFAULT_COMPRESSION_LEVEL = 3;
+
+    /**
+     * Compression levels.
+     */
+    static final int MIN_COMPRESSION_LEVEL = 1;
+    static final int MAX_COMPRESSION_LEVEL = 22;
+
+    /**
+     * Sizes of the chunks in which data is passed to and taken from zstd.
+     */
+    static final int MIN_BLOCK_SIZE = 1 << 10;   // 1 KB
+    static final int MAX_BLOCK_SIZE = 1 << 25;   // 32 MB
+    static final int DEFAULT_BLOCK_SIZE = 1 << 16;  // 64 KB
+
+    /**
+     * Default maximum size of a buffer that holds compressed data.
+     */
+    static final int DEFAULT_MAX_ENCODE_SIZE = Integer.MAX_VALUE;
+
+    private ZstdConstants() { }
+}
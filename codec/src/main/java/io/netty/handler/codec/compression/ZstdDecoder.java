@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static io.netty.handler.codec.compression.ZstdConstants.DEFAULT_BLOCK_SIZE;
+
+/**
+ * Decompresses a {@link ByteBuf} encoded with the <a href="https://facebook.github.io/zstd/">Zstandard</a> format.
+ * <p>
+ * The data is decompressed as it arrives, so the content of a frame is passed on before the whole frame was
+ * received. Multiple consecutive frames are supported.
+ * <p>
+ * This decoder requires the <a href="https://github.com/luben/zstd-jni">zstd-jni</a> library, see
+ * {@link Zstd#isAvailable()}.
+ */
+public final class ZstdDecoder extends ByteToMessageDecoder {
+
+    private final int blockSize;
+    private final ZstdDictionary dictionary;
+
+    /**
+     * The zstd decompression context, which holds the state of the current frame.
+     */
+    private ZstdDecompressCtx decompressCtx;
+
+    /**
+     * zstd-jni only works with direct buffers, heap buffers are copied into this buffer in chunks of
+     * {@link #blockSize} bytes.
+     */
+    private ByteBuf directBuffer;
+
+    private boolean corrupted;
+
+    /**
+     * Creates a new zstd decoder which produces buffers of up to 64 KB.
+     */
+    public ZstdDecoder() {
+        this(null);
+    }
+
+    /**
+     * Creates a new zstd decoder which uses the specified dictionary and produces buffers of up to 64 KB.
+     *
+     * @param dictionary the pre-trained dictionary the data was compressed with, or {@code null} to use none. A
+     *                   {@link ZstdDictionary} is thread-safe and should be shared by all decoders.
+     */
+    public ZstdDecoder(ZstdDictionary dictionary) {
+        this(DEFAULT_BLOCK_SIZE, dictionary);
+    }
+
+    /**
+     * Creates a new zstd decoder which uses the specified dictionary.
+     *
+     * @param blockSize  the maximum size of the decompressed buffers that are produced, must be >= 1 KB and <= 32 MB
+     * @param dictionary the pre-trained dictionary the data was compressed with, or {@code null} to use none. A
+     *                   {@link ZstdDictionary} is thread-safe and should be shared by all decoders.
+     */
+    public ZstdDecoder(int blockSize, ZstdDictionary dictionary) {
+        Zstd.ensureAvailability();
+        this.blockSize = ZstdOptions.checkBlockSize(blockSize);
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (corrupted) {
+            in.skipBytes(in.readableBytes());
+            return;
+        }
+        try {
+            if (in.isDirect() && in.nioBufferCount() == 1) {
+                decompress(ctx, in, out);
+                return;
+            }
+            ByteBuf directBuffer = this.directBuffer;
+            if (directBuffer == null) {
+                directBuffer = this.directBuffer = ctx.alloc().directBuffer(blockSize, blockSize);
+            }
+            do {
+                directBuffer.clear();
+                in.readBytes(directBuffer, Math.min(in.readableBytes(), blockSize));
+                decompress(ctx, directBuffer, out);
+            } while (in.isReadable());
+        } catch (ZstdException e) {
+            corrupted = true;
+            throw new DecompressionException(e);
+        }
+    }
+
+    private void decompress(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        ByteBuffer src = in.internalNioBuffer(in.readerIndex(), in.readableBytes());
+        int srcStart = src.position();
+        try {
+            for (;;) {
+                ByteBuf uncompressed = ctx.alloc().directBuffer(blockSize, blockSize);
+                boolean full;
+                try {
+                    ByteBuffer dst = uncompressed.internalNioBuffer(0, blockSize);
+                    int dstStart = dst.position();
+                    decompressCtx.decompressDirectByteBufferStream(dst, src);
+                    uncompressed.writerIndex(dst.position() - dstStart);
+                    full = !dst.hasRemaining();
+                } catch (ZstdException e) {
+                    uncompressed.release();
+                    throw e;
+                }
+                if (uncompressed.isReadable()) {
+                    out.add(uncompressed);
+                } else {
+                    uncompressed.release();
+                }
+                // If the output buffer was filled zstd may still hold decompressed data, otherwise all the input
+                // was consumed.
+                if (!full && !src.hasRemaining()) {
+                    break;
+                }
+            }
+        } finally {
+            in.skipBytes(src.position() - srcStart);
+        }
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        decompressCtx = new ZstdDecompressCtx();
+        if (dictionary != null) {
+            decompressCtx.loadDict(dictionary.decompressDictionary());
+        }
+        super.handlerAdded(ctx);
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        try {
+            if (decompressCtx != null) {
+                decompressCtx.close();
+                decompressCtx = null;
+            }
+            if (directBuffer != null) {
+                directBuffer.release();
+                directBuffer = null;
+            }
+        } finally {
+            super.handlerRemoved0(ctx);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static io.netty.handler.codec.compression.ZstdConstants.MAX_COMPRESSION_LEVEL;
+
+/**
+ * A pre-trained <a href="https://facebook.github.io/zstd/">Zstandard</a> dictionary, which improves the compression
+ * ratio of small messages. The remote peer must use the same dictionary to decompress the data.
+ * <p>
+ * The native dictionaries are created on first use, once per compression level, and are shared by all
+ * {@link ZstdEncoder}s and {@link ZstdDecoder}s using this instance, so it should be shared as well. This class is
+ * thread-safe.
+ */
+public final class ZstdDictionary {
+
+    private final byte[] dictionary;
+    private final AtomicReferenceArray<ZstdDictCompress> compressDictionaries =
+            new AtomicReferenceArray<ZstdDictCompress>(MAX_COMPRESSION_LEVEL + 1);
+    private volatile ZstdDictDecompress decompressDictionary;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param dictionary the content of the dictionary, for example created via {@code zstd --train}
+     */
+    public ZstdDictionary(byte[] dictionary) {
+        ObjectUtil.checkNotNull(dictionary, "dictionary");
+        ObjectUtil.checkPositive(dictionary.length, "dictionary.length");
+        this.dictionary = dictionary.clone();
+    }
+
+    /**
+     * Returns the dictionary used to compress with the given compression level.
+     */
+    ZstdDictCompress compressDictionary(int compressionLevel) {
+        ZstdDictCompress compressDictionary = compressDictionaries.get(compressionLevel);
+        if (compressDictionary == null) {
+            compressDictionary = new ZstdDictCompress(dictionary, compressionLevel);
+            if (!compressDictionaries.compareAndSet(compressionLevel, null, compressDictionary)) {
+                // Created concurrently by another thread, the native memory of ours is freed once it is collected.
+                compressDictionary = compressDictionaries.get(compressionLevel);
+            }
+        }
+        return compressDictionary;
+    }
+
+    /**
+     * Returns the dictionary used to decompress.
+     */
+    ZstdDictDecompress decompressDictionary() {
+        ZstdDictDecompress decompressDictionary = this.decompressDictionary;
+        if (decompressDictionary == null) {
+            // Creating it twice is harmless.
+            this.decompressDictionary = decompressDictionary = new ZstdDictDecompress(dictionary);
+        }
+        return decompressDictionary;
+    }
+}
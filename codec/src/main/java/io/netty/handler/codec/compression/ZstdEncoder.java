@@ -0,0 +1,331 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.github.luben.zstd.EndDirective;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ChannelPromiseNotifier;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.ObjectUtil;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.handler.codec.compression.ZstdConstants.DEFAULT_BLOCK_SIZE;
+import static io.netty.handler.codec.compression.ZstdConstants.DEFAULT_COMPRESSION_LEVEL;
+import static io.netty.handler.codec.compression.ZstdConstants.DEFAULT_MAX_ENCODE_SIZE;
+
+/**
+ * Compresses a {@link ByteBuf} using the <a href="https://facebook.github.io/zstd/">Zstandard</a> format.
+ * <p>
+ * All data written to the channel is compressed as one streaming zstd frame, so matches are found across message
+ * boundaries. Every {@link ChannelHandlerContext#flush()} flushes the data compressed so far, so the remote peer is
+ * able to decompress everything that was flushed without waiting for the end of the frame. The frame is finished
+ * once {@link #close()} is called or the channel is closed.
+ * <p>
+ * A pre-trained dictionary can be used to improve the compression ratio of small messages. The
+ * {@link ZstdDecoder} on the remote peer must use the same dictionary.
+ * <p>
+ * This encoder requires the <a href="https://github.com/luben/zstd-jni">zstd-jni</a> library, see
+ * {@link Zstd#isAvailable()}.
+ */
+public final class ZstdEncoder extends MessageToByteEncoder<ByteBuf> {
+
+    private final int compressionLevel;
+    private final int blockSize;
+    private final int maxEncodeSize;
+    private final ZstdDictionary dictionary;
+
+    /**
+     * The zstd compression context, which holds the state of the current frame.
+     */
+    private ZstdCompressCtx compressCtx;
+
+    /**
+     * zstd-jni only works with direct buffers, heap buffers are copied into this buffer in chunks of
+     * {@link #blockSize} bytes.
+     */
+    private ByteBuf directBuffer;
+
+    /**
+     * Indicates if data was compressed since the last flush.
+     */
+    private boolean pendingFlush;
+
+    /**
+     * Indicates if the compressed stream has been finished.
+     */
+    private volatile boolean finished;
+
+    /**
+     * Used to interact with its {@link ChannelPipeline} and other handlers.
+     */
+    private volatile ChannelHandlerContext ctx;
+
+    /**
+     * Creates a new zstd encoder with the default compression level ({@code 3}) and block size (64 KB).
+     */
+    public ZstdEncoder() {
+        this(DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Creates a new zstd encoder with the specified compression level and the default block size (64 KB).
+     *
+     * @param compressionLevel {@code 1} yields the fastest compression and {@code 22} yields the best compression
+     */
+    public ZstdEncoder(int compressionLevel) {
+        this(compressionLevel, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new zstd encoder with the specified compression level and block size.
+     *
+     * @param compressionLevel {@code 1} yields the fastest compression and {@code 22} yields the best compression
+     * @param blockSize        the size of the chunks in which data is passed to zstd, must be >= 1 KB and <= 32 MB
+     */
+    public ZstdEncoder(int compressionLevel, int blockSize) {
+        this(compressionLevel, blockSize, null);
+    }
+
+    /**
+     * Creates a new zstd encoder which uses the specified dictionary.
+     *
+     * @param compressionLevel {@code 1} yields the fastest compression and {@code 22} yields the best compression
+     * @param blockSize        the size of the chunks in which data is passed to zstd, must be >= 1 KB and <= 32 MB
+     * @param dictionary       the pre-trained dictionary to use, or {@code null} to use none. A
+     *                         {@link ZstdDictionary} is thread-safe and should be shared by all encoders.
+     */
+    public ZstdEncoder(int compressionLevel, int blockSize, ZstdDictionary dictionary) {
+        this(compressionLevel, blockSize, DEFAULT_MAX_ENCODE_SIZE, dictionary);
+    }
+
+    /**
+     * Creates a new zstd encoder which uses the specified dictionary.
+     *
+     * @param compressionLevel {@code 1} yields the fastest compression and {@code 22} yields the best compression
+     * @param blockSize        the size of the chunks in which data is passed to zstd, must be >= 1 KB and <= 32 MB
+     * @param maxEncodeSize    the maximum size for an encode (compressed) buffer
+     * @param dictionary       the pre-trained dictionary to use, or {@code null} to use none. A
+     *                         {@link ZstdDictionary} is thread-safe and should be shared by all encoders.
+     */
+    public ZstdEncoder(int compressionLevel, int blockSize, int maxEncodeSize, ZstdDictionary dictionary) {
+        super(true);
+        Zstd.ensureAvailability();
+        this.compressionLevel = ZstdOptions.checkCompressionLevel(compressionLevel);
+        this.blockSize = ZstdOptions.checkBlockSize(blockSize);
+        this.maxEncodeSize = ObjectUtil.checkPositive(maxEncodeSize, "maxEncodeSize");
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        long bound = com.github.luben.zstd.Zstd.compressBound(msg.readableBytes());
+        if (bound > maxEncodeSize) {
+            throw new EncoderException(String.format("requested encode buffer size (%d bytes) exceeds the maximum " +
+                                                     "allowable size (%d bytes)", bound, maxEncodeSize));
+        }
+        // zstd-jni can only write to direct buffers.
+        return ctx.alloc().directBuffer((int) bound);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
+        if (finished) {
+            out.writeBytes(in);
+            return;
+        }
+        if (in.isReadable()) {
+            compress(in, out, EndDirective.CONTINUE);
+            pendingFlush = true;
+        }
+    }
+
+    private void compress(ByteBuf in, ByteBuf out, EndDirective directive) {
+        if (in.isDirect() && in.nioBufferCount() == 1) {
+            compressDirect(in, out, directive);
+            return;
+        }
+        ByteBuf directBuffer = this.directBuffer;
+        if (directBuffer == null) {
+            directBuffer = this.directBuffer = ctx.alloc().directBuffer(blockSize, blockSize);
+        }
+        do {
+            directBuffer.clear();
+            in.readBytes(directBuffer, Math.min(in.readableBytes(), blockSize));
+            compressDirect(directBuffer, out, in.isReadable() ? EndDirective.CONTINUE : directive);
+        } while (in.isReadable());
+    }
+
+    private void compressDirect(ByteBuf in, ByteBuf out, EndDirective directive) {
+        ByteBuffer src = in.internalNioBuffer(in.readerIndex(), in.readableBytes());
+        int srcStart = src.position();
+        try {
+            for (;;) {
+                long bound = com.github.luben.zstd.Zstd.compressBound(src.remaining());
+                out.ensureWritable((int) Math.min(blockSize, bound));
+                int writerIndex = out.writerIndex();
+                ByteBuffer dst = out.internalNioBuffer(writerIndex, out.writableBytes());
+                int dstStart = dst.position();
+                boolean done = compressCtx.compressDirectByteBufferStream(dst, src, directive);
+                out.writerIndex(writerIndex + dst.position() - dstStart);
+                // When continuing the frame zstd may keep data in its internal buffers, so we are done as soon as
+                // all the input was consumed. Otherwise we need to wait until zstd has written everything.
+                if (directive == EndDirective.CONTINUE ? !src.hasRemaining() : done) {
+                    break;
+                }
+            }
+        } catch (ZstdException e) {
+            throw new CompressionException(e);
+        }
+        in.skipBytes(src.position() - srcStart);
+    }
+
+    @Override
+    public void flush(final ChannelHandlerContext ctx) throws Exception {
+        if (pendingFlush && !finished) {
+            pendingFlush = false;
+            ByteBuf buf = ctx.alloc().directBuffer(blockSize);
+            try {
+                compress(Unpooled.EMPTY_BUFFER, buf, EndDirective.FLUSH);
+            } catch (Throwable cause) {
+                buf.release();
+                throw new EncoderException(cause);
+            }
+            ctx.write(buf);
+        }
+        ctx.flush();
+    }
+
+    private ChannelFuture finishEncode(final ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (finished) {
+            promise.setSuccess();
+            return promise;
+        }
+        finished = true;
+        pendingFlush = false;
+
+        final ByteBuf footer = ctx.alloc().directBuffer(blockSize);
+        try {
+            compress(Unpooled.EMPTY_BUFFER, footer, EndDirective.END);
+        } catch (Throwable cause) {
+            footer.release();
+            promise.setFailure(cause);
+            return promise;
+        }
+        return ctx.writeAndFlush(footer, promise);
+    }
+
+    /**
+     * Returns {@code true} if and only if the compressed stream has been finished.
+     */
+    public boolean isClosed() {
+        return finished;
+    }
+
+    /**
+     * Close this {@link ZstdEncoder} and so finish the encoding.
+     *
+     * The returned {@link ChannelFuture} will be notified once the operation completes.
+     */
+    public ChannelFuture close() {
+        return close(ctx().newPromise());
+    }
+
+    /**
+     * Close this {@link ZstdEncoder} and so finish the encoding.
+     * The given {@link ChannelFuture} will be notified once the operation
+     * completes and will also be returned.
+     */
+    public ChannelFuture close(final ChannelPromise promise) {
+        ChannelHandlerContext ctx = ctx();
+        EventExecutor executor = ctx.executor();
+        if (executor.inEventLoop()) {
+            return finishEncode(ctx, promise);
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ChannelFuture f = finishEncode(ctx(), promise);
+                    f.addListener(new ChannelPromiseNotifier(promise));
+                }
+            });
+            return promise;
+        }
+    }
+
+    @Override
+    public void close(final ChannelHandlerContext ctx, final ChannelPromise promise) throws Exception {
+        ChannelFuture f = finishEncode(ctx, ctx.newPromise());
+        f.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                ctx.close(promise);
+            }
+        });
+
+        if (!f.isDone()) {
+            // Ensure the channel is closed even if the write operation completes in time.
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ctx.close(promise);
+                }
+            }, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    private ChannelHandlerContext ctx() {
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx == null) {
+            throw new IllegalStateException("not added to a pipeline");
+        }
+        return ctx;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        compressCtx = new ZstdCompressCtx();
+        compressCtx.setLevel(compressionLevel);
+        if (dictionary != null) {
+            compressCtx.loadDict(dictionary.compressDictionary(compressionLevel));
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        if (compressCtx != null) {
+            compressCtx.close();
+            compressCtx = null;
+        }
+        if (directBuffer != null) {
+            directBuffer.release();
+            directBuffer = null;
+        }
+    }
+}
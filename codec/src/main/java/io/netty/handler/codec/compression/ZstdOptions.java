@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import static io.netty.handler.codec.compression.ZstdConstants.MAX_BLOCK_SIZE;
+import static io.netty.handler.codec.compression.ZstdConstants.MAX_COMPRESSION_LEVEL;
+import static io.netty.handler.codec.compression.ZstdConstants.MIN_BLOCK_SIZE;
+import static io.netty.handler.codec.compression.ZstdConstants.MIN_COMPRESSION_LEVEL;
+
+/**
+ * {@link CompressionOptions} for the <a href="https://facebook.github.io/zstd/">Zstandard</a> format, see
+ * {@link StandardCompressionOptions#zstd()}.
+ */
+public final class ZstdOptions implements CompressionOptions {
+
+    private final int compressionLevel;
+    private final int blockSize;
+    private final ZstdDictionary dictionary;
+
+    ZstdOptions(int compressionLevel, int blockSize, ZstdDictionary dictionary) {
+        this.compressionLevel = checkCompressionLevel(compressionLevel);
+        this.blockSize = checkBlockSize(blockSize);
+        this.dictionary = dictionary;
+    }
+
+    public int compressionLevel() {
+        return compressionLevel;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns the pre-trained dictionary to use, or {@code null} if none is used.
+     */
+    public ZstdDictionary dictionary() {
+        return dictionary;
+    }
+
+    static int checkCompressionLevel(int compressionLevel) {
+        if (compressionLevel < MIN_COMPRESSION_LEVEL || compressionLevel > MAX_COMPRESSION_LEVEL) {
+            throw new IllegalArgumentException(String.format(
+                    "compressionLevel: %d (expected: %d-%d)",
+                    compressionLevel, MIN_COMPRESSION_LEVEL, MAX_COMPRESSION_LEVEL));
+        }
+        return compressionLevel;
+    }
+
+    static int checkBlockSize(int blockSize) {
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "blockSize: %d (expected: %d-%d)", blockSize, MIN_BLOCK_SIZE, MAX_BLOCK_SIZE));
+        }
+        return blockSize;
+    }
+}
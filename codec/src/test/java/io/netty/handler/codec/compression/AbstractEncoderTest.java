@@ -18,6 +18,7 @@ package io.netty.handler.codec.compression;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.After;
 import org.junit.Before;
@@ -27,7 +28,10 @@ import org.junit.experimental.theories.Theories;
 import org.junit.experimental.theories.Theory;
 import org.junit.runner.RunWith;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(Theories.class)
@@ -114,6 +118,41 @@ public abstract class AbstractEncoderTest extends AbstractCompressionTest {
         data.release();
     }
 
+    /**
+     * Tests an encoder which compresses its blocks on the given {@link ThreadPoolExecutor}, the data must span more
+     * blocks than the encoder may compress at the same time.
+     */
+    protected void testParallelCompression(ThreadPoolExecutor executor, final ByteBuf data) throws Exception {
+        final int dataLength = data.readableBytes();
+        ChannelFuture writeFuture = channel.writeAndFlush(data.retain());
+        // The compressed blocks are written from the event loop, which did not run yet.
+        assertFalse(channel.isWritable());
+
+        awaitIdle(executor);
+        ChannelFuture closeFuture = channel.close();
+        while (!closeFuture.isDone()) {
+            awaitIdle(executor);
+            channel.runPendingTasks();
+        }
+        assertTrue(writeFuture.isSuccess());
+        assertTrue(closeFuture.isSuccess());
+
+        ByteBuf decompressed = readDecompressed(dataLength);
+        assertEquals(data.resetReaderIndex(), decompressed);
+
+        decompressed.release();
+        data.release();
+    }
+
+    /**
+     * The {@link EmbeddedChannel} must not run its tasks while other threads schedule tasks on it.
+     */
+    private static void awaitIdle(ThreadPoolExecutor executor) throws InterruptedException {
+        while (executor.getCompletedTaskCount() < executor.getTaskCount()) {
+            Thread.sleep(1);
+        }
+    }
+
     protected ByteBuf readDecompressed(final int dataLength) throws Exception {
         CompositeByteBuf compressed = Unpooled.compositeBuffer();
         ByteBuf msg;
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BrotliIntegrationTest extends AbstractIntegrationTest {
+
+    private static final byte[] DATA = ("Netty is an asynchronous event-driven network application framework " +
+            "for rapid development of maintainable high performance protocol servers & clients.")
+            .getBytes(CharsetUtil.UTF_8);
+
+    @BeforeClass
+    public static void ensureAvailability() {
+        Assume.assumeTrue(Brotli.isAvailable());
+    }
+
+    @Override
+    protected EmbeddedChannel createEncoder() {
+        return new EmbeddedChannel(new BrotliEncoder());
+    }
+
+    @Override
+    protected EmbeddedChannel createDecoder() {
+        return new EmbeddedChannel(new BrotliDecoder());
+    }
+
+    @Test
+    public void testQualityAndWindow() throws Exception {
+        encoder.close();
+        encoder = new EmbeddedChannel(new BrotliEncoder(StandardCompressionOptions.brotli(11, 10)));
+        testIdentity(DATA);
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        // Everything that was flushed can be decompressed before the stream was finished.
+        for (int i = 0; i < 3; i++) {
+            ByteBuf data = Unpooled.wrappedBuffer(DATA);
+            assertTrue(encoder.writeOutbound(data.retain()));
+            decoder.writeInbound(readAll(encoder, true));
+            ByteBuf decompressed = readAll(decoder, false);
+            assertEquals(data.resetReaderIndex(), decompressed);
+            data.release();
+            decompressed.release();
+        }
+    }
+
+    private static ByteBuf readAll(EmbeddedChannel channel, boolean outbound) {
+        CompositeByteBuf buf = Unpooled.compositeBuffer();
+        ByteBuf msg;
+        while ((msg = outbound ? channel.<ByteBuf>readOutbound() : channel.<ByteBuf>readInbound()) != null) {
+            buf.addComponent(true, msg);
+        }
+        return buf;
+    }
+}
@@ -20,8 +20,11 @@ import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.junit.Test;
 
 import java.io.InputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import static io.netty.handler.codec.compression.Bzip2Constants.*;
 import static org.junit.Assert.*;
@@ -33,6 +36,18 @@ public class Bzip2EncoderTest extends AbstractEncoderTest {
         channel = new EmbeddedChannel(new Bzip2Encoder(MIN_BLOCK_SIZE));
     }
 
+    @Test
+    public void testParallelCompression() throws Exception {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+        try {
+            channel.finishAndReleaseAll();
+            channel = new EmbeddedChannel(new Bzip2Encoder(MIN_BLOCK_SIZE, executor, 2));
+            testParallelCompression(executor, Unpooled.wrappedBuffer(BYTES_LARGE));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Override
     protected ByteBuf decompress(ByteBuf compressed, int originalLength) throws Exception {
         InputStream is = new ByteBufInputStream(compressed, true);
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.ImmediateExecutor;
+import org.junit.Test;
+
+import static io.netty.handler.codec.compression.Bzip2Constants.BASE_BLOCK_SIZE;
+import static io.netty.handler.codec.compression.Bzip2Constants.MIN_BLOCK_SIZE;
+
+public class Bzip2ParallelIntegrationTest extends AbstractIntegrationTest {
+
+    @Override
+    protected EmbeddedChannel createEncoder() {
+        return new EmbeddedChannel(new Bzip2Encoder(MIN_BLOCK_SIZE, ImmediateExecutor.INSTANCE, 2));
+    }
+
+    @Override
+    protected EmbeddedChannel createDecoder() {
+        return new EmbeddedChannel(new Bzip2Decoder());
+    }
+
+    @Test
+    public void testMultipleBlocks() throws Exception {
+        // The blocks end at different bit offsets, so they need to be shifted when they are appended to the stream.
+        final byte[] data = new byte[MIN_BLOCK_SIZE * BASE_BLOCK_SIZE * 5 + 1234];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) rand.nextInt(i % 7 + 2);
+        }
+        testIdentity(data);
+    }
+}
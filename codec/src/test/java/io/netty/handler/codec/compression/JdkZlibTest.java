@@ -20,12 +20,17 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
 import org.apache.commons.compress.utils.IOUtils;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import static org.junit.Assert.*;
 
@@ -90,4 +95,77 @@ public class JdkZlibTest extends ZlibTest {
             chDecoderGZip.close();
         }
     }
+
+    @Test
+    public void testDirectBuffers() {
+        EmbeddedChannel chEncoder = new EmbeddedChannel(createEncoder(ZlibWrapper.GZIP));
+        EmbeddedChannel chDecoder = new EmbeddedChannel(createDecoder(ZlibWrapper.GZIP));
+        byte[] bytes = "Netty is an asynchronous event-driven network application framework"
+                .getBytes(CharsetUtil.UTF_8);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(chEncoder.writeOutbound(Unpooled.directBuffer(bytes.length).writeBytes(bytes)));
+                ByteBuf compressed = chEncoder.readOutbound();
+                assertEquals(JdkZlibUtil.isByteBufferSupported(), compressed.isDirect());
+
+                assertTrue(chDecoder.writeInbound(compressed));
+                ByteBuf decompressed = chDecoder.readInbound();
+                assertEquals(JdkZlibUtil.isByteBufferSupported(), decompressed.isDirect());
+                assertEquals(Unpooled.wrappedBuffer(bytes), decompressed);
+                decompressed.release();
+            }
+        } finally {
+            dispose(chEncoder);
+            dispose(chDecoder);
+        }
+    }
+
+    @Test
+    public void testCloseAfterRemoval() {
+        JdkZlibEncoder encoder = new JdkZlibEncoder(ZlibWrapper.GZIP);
+        EmbeddedChannel chEncoder = new EmbeddedChannel(encoder);
+        chEncoder.pipeline().remove(encoder);
+
+        assertTrue(encoder.close().isSuccess());
+        assertTrue(encoder.isClosed());
+        assertFalse(chEncoder.finish());
+    }
+
+    @Test
+    public void testPooledPerThread() throws Throwable {
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread thread = new FastThreadLocalThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Deflater deflater = JdkZlibUtil.newDeflater(6, true);
+                    JdkZlibUtil.release(deflater, 6, true);
+                    assertSame(deflater, JdkZlibUtil.newDeflater(6, true));
+                    assertNotSame(deflater, JdkZlibUtil.newDeflater(6, false));
+
+                    Inflater inflater = JdkZlibUtil.newInflater(false);
+                    JdkZlibUtil.release(inflater, false);
+                    assertSame(inflater, JdkZlibUtil.newInflater(false));
+                } catch (Throwable cause) {
+                    error.set(cause);
+                } finally {
+                    FastThreadLocal.removeAll();
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        if (error.get() != null) {
+            throw error.get();
+        }
+    }
+
+    @Test
+    public void testNotPooledOnOtherThreads() {
+        Inflater inflater = JdkZlibUtil.newInflater(true);
+        JdkZlibUtil.release(inflater, true);
+        Inflater other = JdkZlibUtil.newInflater(true);
+        assertNotSame(inflater, other);
+        other.end();
+    }
 }
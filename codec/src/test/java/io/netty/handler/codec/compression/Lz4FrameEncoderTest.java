@@ -44,6 +44,8 @@ import org.mockito.MockitoAnnotations;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.Checksum;
 
@@ -212,6 +214,20 @@ public class Lz4FrameEncoderTest extends AbstractEncoderTest {
         Assert.assertFalse(channel.releaseInbound());
     }
 
+    @Test
+    public void testParallelCompression() throws Exception {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+        try {
+            channel.finishAndReleaseAll();
+            Checksum checksum = XXHashFactory.fastestInstance().newStreamingHash32(DEFAULT_SEED).asChecksum();
+            channel = new EmbeddedChannel(new Lz4FrameEncoder(LZ4Factory.fastestInstance(), false, 1024, checksum,
+                    Lz4FrameEncoder.DEFAULT_MAX_ENCODE_SIZE, executor, 4));
+            testParallelCompression(executor, Unpooled.wrappedBuffer(BYTES_LARGE));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testAllocatingAroundBlockSize() {
         int blockSize = 100;
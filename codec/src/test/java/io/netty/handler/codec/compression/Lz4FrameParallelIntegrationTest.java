@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.ImmediateExecutor;
+import net.jpountz.lz4.LZ4Factory;
+
+import static io.netty.handler.codec.compression.Lz4Constants.DEFAULT_SEED;
+
+public class Lz4FrameParallelIntegrationTest extends AbstractIntegrationTest {
+
+    @Override
+    protected EmbeddedChannel createEncoder() {
+        return new EmbeddedChannel(new Lz4FrameEncoder(LZ4Factory.fastestInstance(), false, 1024,
+                new Lz4XXHash32(DEFAULT_SEED), Lz4FrameEncoder.DEFAULT_MAX_ENCODE_SIZE, ImmediateExecutor.INSTANCE, 4));
+    }
+
+    @Override
+    protected EmbeddedChannel createDecoder() {
+        return new EmbeddedChannel(new Lz4FrameDecoder());
+    }
+}
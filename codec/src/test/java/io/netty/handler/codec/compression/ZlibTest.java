@@ -201,7 +201,7 @@ public abstract class ZlibTest {
         }
     }
 
-    private static void dispose(EmbeddedChannel ch) {
+    static void dispose(EmbeddedChannel ch) {
         if (ch.finish()) {
             for (;;) {
                 Object msg = ch.readInbound();
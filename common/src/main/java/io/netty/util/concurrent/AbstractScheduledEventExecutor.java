@@ -38,6 +38,7 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
             };
 
     PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue;
+    private boolean timingWheel;
 
     protected AbstractScheduledEventExecutor() {
     }
@@ -70,14 +71,51 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
 
     PriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue() {
         if (scheduledTaskQueue == null) {
-            scheduledTaskQueue = new DefaultPriorityQueue<ScheduledFutureTask<?>>(
-                    SCHEDULED_FUTURE_TASK_COMPARATOR,
-                    // Use same initial capacity as java.util.PriorityQueue
-                    11);
+            if (timingWheel) {
+                scheduledTaskQueue = new TimingWheelScheduledTaskQueue(SCHEDULED_FUTURE_TASK_COMPARATOR, nanoTime());
+            } else {
+                scheduledTaskQueue = new DefaultPriorityQueue<ScheduledFutureTask<?>>(
+                        SCHEDULED_FUTURE_TASK_COMPARATOR,
+                        // Use same initial capacity as java.util.PriorityQueue
+                        11);
+            }
         }
         return scheduledTaskQueue;
     }
 
+    /**
+     * Sets if the scheduled tasks are stored in a hierarchical timing wheel instead of a binary heap. The timing
+     * wheel adds and cancels tasks that are not due within the next millisecond in {@code O(1)} instead of
+     * {@code O(log n)}, which pays off when a lot of timeouts are scheduled and cancelled. Already scheduled tasks
+     * are moved to the new data structure.
+     *
+     * This method MUST be called only when {@link #inEventLoop()} is {@code true}.
+     */
+    final void setTimingWheel(boolean timingWheel) {
+        assert inEventLoop();
+        if (this.timingWheel == timingWheel) {
+            return;
+        }
+        this.timingWheel = timingWheel;
+        PriorityQueue<ScheduledFutureTask<?>> oldQueue = scheduledTaskQueue;
+        scheduledTaskQueue = null;
+        if (!isNullOrEmpty(oldQueue)) {
+            ScheduledFutureTask<?>[] scheduledTasks = oldQueue.toArray(new ScheduledFutureTask<?>[0]);
+            oldQueue.clear();
+            PriorityQueue<ScheduledFutureTask<?>> newQueue = scheduledTaskQueue();
+            for (ScheduledFutureTask<?> task: scheduledTasks) {
+                newQueue.add(task);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the scheduled tasks are stored in a hierarchical timing wheel.
+     */
+    final boolean isTimingWheel() {
+        return timingWheel;
+    }
+
     private static boolean isNullOrEmpty(Queue<ScheduledFutureTask<?>> queue) {
         return queue == null || queue.isEmpty();
     }
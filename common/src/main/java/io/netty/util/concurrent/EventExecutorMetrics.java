@@ -0,0 +1,240 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runtime metrics of a {@link SingleThreadEventExecutor}, enabled via
+ * {@link SingleThreadEventExecutor#enableMetrics()}.
+ * <p>
+ * Recording the metrics does not allocate and all values can be read from any thread without synchronizing with the
+ * {@link EventExecutor}. The values of different metrics are not updated atomically with each other, so a reader may
+ * observe a snapshot which is slightly inconsistent.
+ */
+@UnstableApi
+public final class EventExecutorMetrics {
+
+    // Release a task queue wait probe whose task was never seen by the executor, for example because it was removed.
+    private static final long PROBE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Histogram loopWaitTime = new Histogram();
+    private final Histogram loopIoTime = new Histogram();
+    private final Histogram loopTaskTime = new Histogram();
+    private final Histogram taskQueueWaitTime = new Histogram();
+    private final Histogram taskExecutionTime = new Histogram();
+    private final Histogram scheduledTaskLateness = new Histogram();
+    private final LongCounter wakeups = PlatformDependent.newLongCounter();
+    private volatile long truncatedTaskRuns;
+
+    // The task whose time spent in the task queue is measured, at most one task is measured at a time.
+    private final AtomicLong probeSubmitTime = new AtomicLong();
+    private volatile Runnable probeTask;
+
+    EventExecutorMetrics() { }
+
+    /**
+     * Time spent per event loop iteration waiting for I/O events or tasks, for example in {@code select()}.
+     * Only recorded by {@link EventExecutor}s that process I/O.
+     */
+    public Histogram loopWaitTime() {
+        return loopWaitTime;
+    }
+
+    /**
+     * Time spent per event loop iteration processing I/O events. Only recorded by {@link EventExecutor}s that
+     * process I/O.
+     */
+    public Histogram loopIoTime() {
+        return loopIoTime;
+    }
+
+    /**
+     * Time spent per event loop iteration running tasks. Only recorded by {@link EventExecutor}s that process I/O.
+     */
+    public Histogram loopTaskTime() {
+        return loopTaskTime;
+    }
+
+    /**
+     * Time tasks spent in the task queue before they were executed. To keep the overhead low only one task at a
+     * time is measured, so this is a sample of all the executed tasks.
+     */
+    public Histogram taskQueueWaitTime() {
+        return taskQueueWaitTime;
+    }
+
+    /**
+     * Time it took to execute each task.
+     */
+    public Histogram taskExecutionTime() {
+        return taskExecutionTime;
+    }
+
+    /**
+     * Time between the deadline of each scheduled task and the time it was actually executed.
+     */
+    public Histogram scheduledTaskLateness() {
+        return scheduledTaskLateness;
+    }
+
+    /**
+     * The number of times the {@link EventExecutor} was woken up by another thread, for example via
+     * {@code Selector.wakeup()} or by writing to an {@code eventfd}.
+     */
+    public long wakeups() {
+        return wakeups.value();
+    }
+
+    /**
+     * The number of times tasks were left in the task queue because the time the {@link EventExecutor} is allowed
+     * to spend on tasks per event loop iteration, for example as configured via {@code ioRatio}, was exceeded.
+     */
+    public long truncatedTaskRuns() {
+        return truncatedTaskRuns;
+    }
+
+    void loopIteration(long waitNanos, long ioNanos, long taskNanos) {
+        loopWaitTime.record(waitNanos);
+        loopIoTime.record(ioNanos);
+        loopTaskTime.record(taskNanos);
+    }
+
+    void wakeup() {
+        wakeups.increment();
+    }
+
+    void truncatedTaskRun() {
+        // Only updated by the EventExecutor thread.
+        truncatedTaskRuns++;
+    }
+
+    void taskSubmitted(Runnable task) {
+        if (probeSubmitTime.get() != 0) {
+            // Another task is measured already.
+            return;
+        }
+        long now = System.nanoTime();
+        if (probeSubmitTime.compareAndSet(0, now)) {
+            // Set the task before it is added to the task queue, so it is visible once the task is executed.
+            probeTask = task;
+        }
+    }
+
+    void taskStarted(Runnable task, long startTime) {
+        if (task == probeTask) {
+            taskQueueWaitTime.record(startTime - probeSubmitTime.get());
+            releaseProbe();
+        }
+        if (task instanceof ScheduledFutureTask) {
+            long lateness = startTime - ScheduledFutureTask.initialNanoTime() - ((ScheduledFutureTask<?>) task)
+                    .deadlineNanos();
+            scheduledTaskLateness.record(lateness);
+        }
+    }
+
+    void taskCompleted(long executionNanos) {
+        taskExecutionTime.record(executionNanos);
+    }
+
+    /**
+     * Called once all tasks were taken from the task queue.
+     */
+    void taskQueueDrained(long now) {
+        long submitTime = probeSubmitTime.get();
+        if (submitTime != 0 && now - submitTime > PROBE_TIMEOUT_NANOS) {
+            releaseProbe();
+        }
+    }
+
+    private void releaseProbe() {
+        probeTask = null;
+        probeSubmitTime.set(0);
+    }
+
+    /**
+     * A histogram of durations with exponentially growing buckets. Bucket {@code 0} counts all durations shorter
+     * than {@code 1024} nanoseconds, and each following bucket has twice the upper bound of the previous one.
+     * <p>
+     * The histogram is only updated by the {@link EventExecutor} thread and can be read from any thread.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 24;
+        private static final int FIRST_BUCKET_SHIFT = 10;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private volatile long totalCount;
+        private volatile long totalNanos;
+
+        Histogram() { }
+
+        /**
+         * The number of buckets.
+         */
+        public int buckets() {
+            return BUCKETS;
+        }
+
+        /**
+         * The exclusive upper bound of the given bucket in nanoseconds, or {@link Long#MAX_VALUE} for the last
+         * bucket.
+         */
+        public long upperBoundNanos(int bucket) {
+            if (bucket < 0 || bucket >= BUCKETS) {
+                throw new IndexOutOfBoundsException("bucket: " + bucket + " (expected: 0-" + (BUCKETS - 1) + ')');
+            }
+            return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << (FIRST_BUCKET_SHIFT + bucket);
+        }
+
+        /**
+         * The number of recorded durations that fall into the given bucket.
+         */
+        public long count(int bucket) {
+            return counts.get(bucket);
+        }
+
+        /**
+         * The number of recorded durations.
+         */
+        public long totalCount() {
+            return totalCount;
+        }
+
+        /**
+         * The sum of all recorded durations in nanoseconds.
+         */
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos >>> FIRST_BUCKET_SHIFT));
+            // Only the EventExecutor thread updates the histogram, so there is no need for an atomic increment.
+            counts.lazySet(bucket, counts.get(bucket) + 1);
+            totalCount++;
+            totalNanos += nanos;
+        }
+    }
+}
@@ -104,6 +104,8 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
 
     private final Promise<?> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
 
+    private volatile EventExecutorMetrics metrics;
+
     /**
      * Create a new instance
      *
@@ -340,7 +342,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             return false;
         }
         do {
-            safeExecute(scheduledTask);
+            runTask(scheduledTask);
         } while ((scheduledTask = pollScheduledTask(nanoTime)) != null);
         return true;
     }
@@ -388,6 +390,10 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         if (isShutdown()) {
             reject();
         }
+        EventExecutorMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.taskSubmitted(task);
+        }
         return taskQueue.offer(task);
     }
 
@@ -421,6 +427,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         if (ranAtLeastOne) {
             lastExecutionTime = ScheduledFutureTask.nanoTime();
         }
+        taskQueueDrained();
         afterRunningAllTasks();
         return ranAtLeastOne;
     }
@@ -464,7 +471,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             return false;
         }
         for (; ; ) {
-            safeExecute(task);
+            runTask(task);
             task = pollTaskFrom(taskQueue);
             if (task == null) {
                 return true;
@@ -484,11 +491,11 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             return false;
         }
         int remaining = Math.min(maxPendingTasks, taskQueue.size());
-        safeExecute(task);
+        runTask(task);
         // Use taskQueue.poll() directly rather than pollTaskFrom() since the latter may
         // silently consume more than one item from the queue (skips over WAKEUP_TASK instances)
         while (remaining-- > 0 && (task = taskQueue.poll()) != null) {
-            safeExecute(task);
+            runTask(task);
         }
         return true;
     }
@@ -509,7 +516,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         long runTasks = 0;
         long lastExecutionTime;
         for (; ; ) {
-            safeExecute(task);
+            runTask(task);
 
             runTasks++;
 
@@ -518,6 +525,10 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             if ((runTasks & 0x3F) == 0) {
                 lastExecutionTime = ScheduledFutureTask.nanoTime();
                 if (lastExecutionTime >= deadline) {
+                    EventExecutorMetrics metrics = this.metrics;
+                    if (metrics != null) {
+                        metrics.truncatedTaskRun();
+                    }
                     break;
                 }
             }
@@ -525,6 +536,7 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
             task = pollTask();
             if (task == null) {
                 lastExecutionTime = ScheduledFutureTask.nanoTime();
+                taskQueueDrained();
                 break;
             }
         }
@@ -534,6 +546,111 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         return true;
     }
 
+    private void runTask(Runnable task) {
+        final EventExecutorMetrics metrics = this.metrics;
+        if (metrics == null) {
+            safeExecute(task);
+            return;
+        }
+        final long startTime = System.nanoTime();
+        metrics.taskStarted(task, startTime);
+        safeExecute(task);
+        metrics.taskCompleted(System.nanoTime() - startTime);
+    }
+
+    private void taskQueueDrained() {
+        final EventExecutorMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.taskQueueDrained(System.nanoTime());
+        }
+    }
+
+    /**
+     * Sets if the scheduled tasks of this {@link EventExecutor} are stored in a hierarchical timing wheel instead of
+     * a binary heap. The timing wheel schedules and cancels tasks that are not due within the next millisecond in
+     * {@code O(1)} instead of {@code O(log n)}, which is useful if a lot of timeouts are scheduled, for example by
+     * an {@code IdleStateHandler} per connection. Already scheduled tasks are moved to the new data structure.
+     */
+    @UnstableApi
+    public void setTimingWheelScheduler(final boolean enabled) {
+        if (inEventLoop()) {
+            setTimingWheel(enabled);
+        } else {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    setTimingWheel(enabled);
+                }
+            });
+        }
+    }
+
+    /**
+     * Enables the recording of {@link EventExecutorMetrics} for this {@link EventExecutor} if it is not enabled yet
+     * and returns them.
+     */
+    @UnstableApi
+    public final EventExecutorMetrics enableMetrics() {
+        EventExecutorMetrics metrics = this.metrics;
+        if (metrics == null) {
+            synchronized (this) {
+                metrics = this.metrics;
+                if (metrics == null) {
+                    this.metrics = metrics = new EventExecutorMetrics();
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the {@link EventExecutorMetrics} of this {@link EventExecutor} or {@code null} if they were not
+     * enabled via {@link #enableMetrics()}.
+     */
+    @UnstableApi
+    public final EventExecutorMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the current {@link System#nanoTime()} if {@link EventExecutorMetrics} are enabled and {@code 0}
+     * otherwise. Sub-classes pass the returned value to {@link #recordLoopIteration(long, long, long)} at the end of
+     * the event loop iteration.
+     */
+    @UnstableApi
+    protected final long loopIterationStartTime() {
+        return metrics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the phases of an event loop iteration in the {@link EventExecutorMetrics} if they are enabled. All
+     * times were obtained via {@link System#nanoTime()}, the iteration ends when this method is called.
+     *
+     * @param loopStartTime the value returned by {@link #loopIterationStartTime()} at the start of the iteration.
+     * @param ioStartTime   the time the processing of the I/O events started, which is also the end of the wait.
+     * @param ioEndTime     the time the processing of the I/O events ended, which is also the start of running the
+     *                      tasks.
+     */
+    @UnstableApi
+    protected final void recordLoopIteration(long loopStartTime, long ioStartTime, long ioEndTime) {
+        EventExecutorMetrics metrics = this.metrics;
+        if (metrics != null && loopStartTime != 0) {
+            metrics.loopIteration(ioStartTime - loopStartTime, ioEndTime - ioStartTime, System.nanoTime() - ioEndTime);
+        }
+    }
+
+    /**
+     * Records that this {@link EventExecutor} was woken up by another thread in the {@link EventExecutorMetrics} if
+     * they are enabled.
+     */
+    @UnstableApi
+    protected final void recordWakeup() {
+        EventExecutorMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.wakeup();
+        }
+    }
+
     /**
      * Invoked before returning from {@link #runAllTasks()} and {@link #runAllTasks(long)}.
      */
@@ -908,6 +1025,60 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         }
     }
 
+    /**
+     * Execute all the given tasks in the iteration order of the {@link Collection}. Compared to calling
+     * {@link #execute(Runnable)} for each task, the thread of this {@link EventExecutor} is woken up at most once.
+     * <p>
+     * If one of the tasks is rejected, the tasks before it were already added and will be executed while the
+     * remaining tasks are not added.
+     */
+    @UnstableApi
+    public void executeAll(Collection<? extends Runnable> tasks) {
+        if (tasks == null) {
+            throw new NullPointerException("tasks");
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        boolean inEventLoop = inEventLoop();
+        boolean wakeup = false;
+        try {
+            for (Runnable task: tasks) {
+                addTask(task);
+                if (!wakeup && !addTaskWakesUp && wakesUpForTask(task)) {
+                    wakeup = true;
+                }
+            }
+        } finally {
+            // Make sure the tasks that were added are executed even if one of the tasks was rejected.
+            if (!inEventLoop) {
+                startThread();
+            }
+            if (wakeup) {
+                wakeup(inEventLoop);
+            }
+        }
+
+        if (!inEventLoop && isShutdown()) {
+            boolean reject = false;
+            try {
+                for (Runnable task: tasks) {
+                    if (removeTask(task)) {
+                        reject = true;
+                    }
+                }
+            } catch (UnsupportedOperationException e) {
+                // The task queue does not support removal so the best thing we can do is to just move on and
+                // hope we will be able to pick-up the tasks before its completely terminated.
+                // In worst case we will log on termination.
+            }
+            if (reject) {
+                reject();
+            }
+        }
+    }
+
     @Override
     public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
         throwIfInEventLoop("invokeAny");
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.DefaultPriorityQueue;
+import io.netty.util.internal.PriorityQueue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import static io.netty.util.internal.PriorityQueueNode.INDEX_NOT_IN_QUEUE;
+
+/**
+ * {@link PriorityQueue} for {@link ScheduledFutureTask}s which is backed by a hierarchical timing wheel, so adding
+ * and removing a task that is not due soon is {@code O(1)}.
+ * <p>
+ * The time is divided into ticks of {@code 2^20} nanoseconds (~1ms). All tasks that are due up to and including the
+ * current tick of the wheel (the cursor) are kept in a binary heap, so the head of the queue is always the task with
+ * the earliest deadline, exactly as with {@link DefaultPriorityQueue}. All other tasks are kept in the slots of the
+ * wheel. The level of the wheel a task is stored in is determined by the highest bit in which its tick differs from
+ * the cursor, so every task on a level is due after every task on the levels below it. Once the heap is empty the
+ * cursor is moved to the first tick of the earliest occupied slot and the tasks of that slot are distributed to the
+ * heap and the lower levels. This way each task is moved at most once per level.
+ * <p>
+ * This class is not thread-safe and must only be used by the {@link EventExecutor} that owns it.
+ */
+final class TimingWheelScheduledTaskQueue extends AbstractQueue<ScheduledFutureTask<?>>
+        implements PriorityQueue<ScheduledFutureTask<?>> {
+
+    static final int NOT_IN_WHEEL = -1;
+
+    private static final int TICK_SHIFT = 20;
+    private static final int LEVEL_BITS = 6;
+    private static final int SLOTS = 1 << LEVEL_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+    // Tasks which are too far in the future for the wheel, these are unordered.
+    private static final int OVERFLOW_SLOT = LEVELS * SLOTS;
+
+    private final DefaultPriorityQueue<ScheduledFutureTask<?>> heap;
+    private final ScheduledFutureTask<?>[] slots = new ScheduledFutureTask<?>[OVERFLOW_SLOT + 1];
+    private final long[] occupied = new long[LEVELS];
+    private long cursor;
+    private int wheelSize;
+
+    TimingWheelScheduledTaskQueue(Comparator<ScheduledFutureTask<?>> comparator, long nanoTime) {
+        heap = new DefaultPriorityQueue<ScheduledFutureTask<?>>(comparator, 11);
+        cursor = tick(nanoTime);
+    }
+
+    private static long tick(long deadlineNanos) {
+        return deadlineNanos >> TICK_SHIFT;
+    }
+
+    @Override
+    public boolean offer(ScheduledFutureTask<?> task) {
+        if (task.wheelSlot != NOT_IN_WHEEL || task.priorityQueueIndex(heap) != INDEX_NOT_IN_QUEUE) {
+            throw new IllegalArgumentException("task is already queued: " + task);
+        }
+        place(task);
+        return true;
+    }
+
+    private void place(ScheduledFutureTask<?> task) {
+        long tick = tick(task.deadlineNanos());
+        if (tick <= cursor) {
+            heap.offer(task);
+            return;
+        }
+        int level = (63 - Long.numberOfLeadingZeros(tick ^ cursor)) / LEVEL_BITS;
+        if (level >= LEVELS) {
+            link(task, OVERFLOW_SLOT);
+        } else {
+            link(task, level * SLOTS + ((int) (tick >>> (level * LEVEL_BITS)) & SLOT_MASK));
+        }
+    }
+
+    private void link(ScheduledFutureTask<?> task, int slot) {
+        ScheduledFutureTask<?> head = slots[slot];
+        task.wheelSlot = slot;
+        task.wheelPrev = null;
+        task.wheelNext = head;
+        if (head != null) {
+            head.wheelPrev = task;
+        }
+        slots[slot] = task;
+        if (slot != OVERFLOW_SLOT) {
+            occupied[slot >>> LEVEL_BITS] |= 1L << (slot & SLOT_MASK);
+        }
+        wheelSize++;
+    }
+
+    private void unlink(ScheduledFutureTask<?> task) {
+        int slot = task.wheelSlot;
+        ScheduledFutureTask<?> prev = task.wheelPrev;
+        ScheduledFutureTask<?> next = task.wheelNext;
+        if (prev == null) {
+            slots[slot] = next;
+            if (next == null && slot != OVERFLOW_SLOT) {
+                occupied[slot >>> LEVEL_BITS] &= ~(1L << (slot & SLOT_MASK));
+            }
+        } else {
+            prev.wheelNext = next;
+        }
+        if (next != null) {
+            next.wheelPrev = prev;
+        }
+        resetWheelState(task);
+        wheelSize--;
+    }
+
+    private static void resetWheelState(ScheduledFutureTask<?> task) {
+        task.wheelSlot = NOT_IN_WHEEL;
+        task.wheelPrev = null;
+        task.wheelNext = null;
+    }
+
+    /**
+     * Move the cursor to the first tick of the earliest occupied slot and distribute its tasks.
+     */
+    private void advance() {
+        assert heap.isEmpty() && wheelSize != 0;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = level * LEVEL_BITS;
+            int current = (int) (cursor >>> shift) & SLOT_MASK;
+            long candidates = current == SLOT_MASK ? 0 : occupied[level] & (-1L << (current + 1));
+            if (candidates != 0) {
+                int slot = Long.numberOfTrailingZeros(candidates);
+                cursor = (cursor & (-1L << (shift + LEVEL_BITS))) | ((long) slot << shift);
+                redistribute(level * SLOTS + slot);
+                return;
+            }
+        }
+
+        long minTick = Long.MAX_VALUE;
+        for (ScheduledFutureTask<?> task = slots[OVERFLOW_SLOT]; task != null; task = task.wheelNext) {
+            minTick = Math.min(minTick, tick(task.deadlineNanos()));
+        }
+        cursor = minTick;
+        redistribute(OVERFLOW_SLOT);
+    }
+
+    private void redistribute(int slot) {
+        ScheduledFutureTask<?> task = slots[slot];
+        slots[slot] = null;
+        if (slot != OVERFLOW_SLOT) {
+            occupied[slot >>> LEVEL_BITS] &= ~(1L << (slot & SLOT_MASK));
+        }
+        while (task != null) {
+            ScheduledFutureTask<?> next = task.wheelNext;
+            resetWheelState(task);
+            wheelSize--;
+            place(task);
+            task = next;
+        }
+    }
+
+    @Override
+    public ScheduledFutureTask<?> peek() {
+        ScheduledFutureTask<?> task = heap.peek();
+        while (task == null && wheelSize != 0) {
+            advance();
+            task = heap.peek();
+        }
+        return task;
+    }
+
+    @Override
+    public ScheduledFutureTask<?> poll() {
+        return peek() == null ? null : heap.poll();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof ScheduledFutureTask && removeTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean removeTyped(ScheduledFutureTask<?> task) {
+        if (task.wheelSlot != NOT_IN_WHEEL) {
+            unlink(task);
+            return true;
+        }
+        return heap.removeTyped(task);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof ScheduledFutureTask && containsTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean containsTyped(ScheduledFutureTask<?> task) {
+        return task.wheelSlot != NOT_IN_WHEEL || heap.containsTyped(task);
+    }
+
+    @Override
+    public void priorityChanged(ScheduledFutureTask<?> task) {
+        if (task.wheelSlot != NOT_IN_WHEEL) {
+            unlink(task);
+            place(task);
+        } else {
+            heap.priorityChanged(task);
+        }
+    }
+
+    @Override
+    public int size() {
+        return heap.size() + wheelSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return wheelSize == 0 && heap.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        heap.clear();
+        for (ScheduledFutureTask<?> head : slots) {
+            for (ScheduledFutureTask<?> task = head; task != null;) {
+                ScheduledFutureTask<?> next = task.wheelNext;
+                resetWheelState(task);
+                task = next;
+            }
+        }
+        clearWheel();
+    }
+
+    @Override
+    public void clearIgnoringIndexes() {
+        heap.clearIgnoringIndexes();
+        clearWheel();
+    }
+
+    private void clearWheel() {
+        Arrays.fill(slots, null);
+        Arrays.fill(occupied, 0);
+        wheelSize = 0;
+    }
+
+    @Override
+    public Iterator<ScheduledFutureTask<?>> iterator() {
+        List<ScheduledFutureTask<?>> tasks = new ArrayList<ScheduledFutureTask<?>>(size());
+        for (ScheduledFutureTask<?> task : heap) {
+            tasks.add(task);
+        }
+        for (ScheduledFutureTask<?> head : slots) {
+            for (ScheduledFutureTask<?> task = head; task != null; task = task.wheelNext) {
+                tasks.add(task);
+            }
+        }
+        return Collections.unmodifiableList(tasks).iterator();
+    }
+}
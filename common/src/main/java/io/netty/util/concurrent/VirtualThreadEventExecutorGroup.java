@@ -0,0 +1,379 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EventExecutorGroup} which runs the tasks of each {@link EventExecutor} on virtual threads, so blocking
+ * handlers can be offloaded from the {@code EventLoop} without limiting the concurrency to a fixed
+ * number of platform threads.
+ * <p>
+ * Every call to {@link #next()} returns a new {@link OrderedEventExecutor}. When this group is used to add handlers
+ * to a {@code ChannelPipeline}, each channel therefore gets its own executor: the handler invocations of a channel
+ * are executed one after the other in the order they were submitted, exactly as with a
+ * {@link DefaultEventExecutorGroup}, while different channels never wait for each other. An executor only holds on to
+ * a thread while it has tasks to run or scheduled tasks to wait for.
+ * <p>
+ * Virtual threads are only available on Java 21 and later. The support is detected at runtime, so use
+ * {@link #isAvailable()} before creating an instance via {@link #VirtualThreadEventExecutorGroup()}.
+ */
+@UnstableApi
+public final class VirtualThreadEventExecutorGroup extends AbstractEventExecutorGroup {
+    private static final InternalLogger logger =
+            InternalLoggerFactory.getInstance(VirtualThreadEventExecutorGroup.class);
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Throwable UNAVAILABILITY_CAUSE;
+
+    private static final Runnable WAKEUP_TASK = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP, only used to wake up an executor that waits for its scheduled tasks.
+        }
+    };
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Throwable cause = null;
+        try {
+            // Use reflection so this class can still be compiled and loaded with older Java versions.
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+            // Java 19 and 20 only support virtual threads as preview feature, in this case ofVirtual() throws.
+            newVirtualThreadFactory(ofVirtual, builderName, builderFactory, "probe");
+        } catch (Throwable t) {
+            ofVirtual = null;
+            builderName = null;
+            builderFactory = null;
+            cause = t;
+            logger.debug("Virtual threads: unavailable", t);
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        UNAVAILABILITY_CAUSE = cause;
+    }
+
+    private final Executor executor;
+    private final Promise<?> terminationFuture = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+    // The number of executors that have tasks to run or scheduled tasks to wait for.
+    private final AtomicInteger activeExecutors = new AtomicInteger();
+    // Executors which currently wait for their next scheduled task and need to be woken up on shutdown.
+    private final Set<VirtualThreadOrderedEventExecutor> waitingExecutors =
+            Collections.newSetFromMap(PlatformDependent.<VirtualThreadOrderedEventExecutor, Boolean>
+                    newConcurrentHashMap());
+    private volatile boolean shuttingDown;
+
+    /**
+     * Returns {@code true} if and only if virtual threads can be used.
+     */
+    public static boolean isAvailable() {
+        return UNAVAILABILITY_CAUSE == null;
+    }
+
+    /**
+     * Ensure that virtual threads can be used.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    public static void ensureAvailability() {
+        if (UNAVAILABILITY_CAUSE != null) {
+            throw new UnsupportedOperationException("failed to create virtual threads", UNAVAILABILITY_CAUSE);
+        }
+    }
+
+    /**
+     * Returns the cause of unavailability of virtual threads, or {@code null} if they are available.
+     */
+    public static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    /**
+     * Create a new instance which names its virtual threads after this class.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    public VirtualThreadEventExecutorGroup() {
+        this(DefaultThreadFactory.toPoolName(VirtualThreadEventExecutorGroup.class));
+    }
+
+    /**
+     * Create a new instance which names its virtual threads {@code poolName-<n>}.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    public VirtualThreadEventExecutorGroup(String poolName) {
+        this(newVirtualThreadFactory(ObjectUtil.checkNotNull(poolName, "poolName")));
+    }
+
+    /**
+     * Create a new instance which uses the given {@link ThreadFactory} to create a thread whenever an
+     * {@link EventExecutor} has tasks to run. The {@link ThreadFactory} is expected to create virtual threads, as
+     * threads are not reused.
+     */
+    public VirtualThreadEventExecutorGroup(ThreadFactory threadFactory) {
+        executor = new ThreadPerTaskExecutor(ObjectUtil.checkNotNull(threadFactory, "threadFactory"));
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(String poolName) {
+        ensureAvailability();
+        try {
+            return newVirtualThreadFactory(OF_VIRTUAL, BUILDER_NAME, BUILDER_FACTORY, poolName + '-');
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("failed to create virtual threads", e);
+        }
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(
+            Method ofVirtual, Method builderName, Method builderFactory, String prefix) throws Exception {
+        Object builder = ofVirtual.invoke(null);
+        builder = builderName.invoke(builder, prefix, 0L);
+        return (ThreadFactory) builderFactory.invoke(builder);
+    }
+
+    /**
+     * Returns a new {@link OrderedEventExecutor}.
+     */
+    @Override
+    public EventExecutor next() {
+        return new VirtualThreadOrderedEventExecutor(this);
+    }
+
+    /**
+     * Returns an empty {@link Iterator}, as the {@link EventExecutor}s of this group are created on demand.
+     */
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return Collections.<EventExecutor>emptyList().iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    /**
+     * Shut down this group. Tasks that were already submitted are still executed, while scheduled tasks are
+     * cancelled. The quiet period is not supported by this implementation and therefore ignored.
+     */
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        if (!shuttingDown) {
+            shuttingDown = true;
+            for (VirtualThreadOrderedEventExecutor executor : waitingExecutors) {
+                executor.tasks.offer(WAKEUP_TASK);
+            }
+            if (activeExecutors.get() == 0) {
+                terminationFuture.trySuccess(null);
+            }
+        }
+        return terminationFuture;
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return terminationFuture;
+    }
+
+    @Override
+    @Deprecated
+    public void shutdown() {
+        shutdownGracefully();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shuttingDown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationFuture.isDone();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationFuture.await(timeout, unit);
+    }
+
+    private void executorActive() {
+        activeExecutors.incrementAndGet();
+    }
+
+    private void executorInactive() {
+        if (activeExecutors.decrementAndGet() == 0 && shuttingDown) {
+            terminationFuture.trySuccess(null);
+        }
+    }
+
+    private static final class VirtualThreadOrderedEventExecutor extends AbstractScheduledEventExecutor
+            implements Runnable, OrderedEventExecutor {
+        private static final int NONE = 0;
+        private static final int RUNNING = 1;
+
+        private final VirtualThreadEventExecutorGroup group;
+        private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+        private final AtomicInteger state = new AtomicInteger();
+        // The thread that currently runs the tasks of this executor.
+        private volatile Thread thread;
+
+        VirtualThreadOrderedEventExecutor(VirtualThreadEventExecutorGroup group) {
+            super(group);
+            this.group = group;
+        }
+
+        @Override
+        public void run() {
+            // Deliberately not registered in the ThreadExecutorMap: this would make the PooledByteBufAllocator create
+            // a thread cache for every virtual thread.
+            thread = Thread.currentThread();
+            for (;;) {
+                Runnable task;
+                long deadline = nanoTime();
+                while ((task = pollScheduledTask(deadline)) != null) {
+                    safeExecute(task);
+                }
+                task = tasks.poll();
+                if (task != null) {
+                    safeExecute(task);
+                    continue;
+                }
+
+                long delay = nextScheduledTaskNano();
+                if (delay > 0) {
+                    waitForTask(delay);
+                    continue;
+                }
+                if (delay == 0) {
+                    continue;
+                }
+
+                thread = null;
+                state.set(NONE);
+                // Check the queue one more time as a task may have been added before the state was set to NONE,
+                // without the producer submitting this executor again. See NonStickyEventExecutorGroup.
+                if (tasks.peek() == null || !state.compareAndSet(NONE, RUNNING)) {
+                    group.executorInactive();
+                    return;
+                }
+                thread = Thread.currentThread();
+            }
+        }
+
+        private void waitForTask(long delay) {
+            group.waitingExecutors.add(this);
+            try {
+                if (group.isShuttingDown()) {
+                    cancelScheduledTasks();
+                    return;
+                }
+                Runnable task = tasks.poll(delay, TimeUnit.NANOSECONDS);
+                if (task != null) {
+                    safeExecute(task);
+                }
+            } catch (InterruptedException ignore) {
+                // Just check the queues again.
+            } finally {
+                group.waitingExecutors.remove(this);
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return thread == this.thread;
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return group.isShuttingDown();
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            return group.shutdownGracefully(quietPeriod, timeout, unit);
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return group.terminationFuture();
+        }
+
+        @Override
+        @Deprecated
+        public void shutdown() {
+            group.shutdownGracefully();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return group.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return group.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return group.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            ObjectUtil.checkNotNull(command, "command");
+            if (group.isShuttingDown()) {
+                throw new RejectedExecutionException("event executor terminated");
+            }
+            tasks.offer(command);
+            if (state.compareAndSet(NONE, RUNNING)) {
+                group.executorActive();
+                try {
+                    group.executor.execute(this);
+                } catch (Throwable e) {
+                    tasks.remove(command);
+                    state.set(NONE);
+                    group.executorInactive();
+                    PlatformDependent.throwException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Maps direct memory with control over the page size and the NUMA node that backs it. Native transports register an
+ * implementation once their library was loaded.
+ */
+public abstract class DirectMemoryMapper {
+
+    private static volatile DirectMemoryMapper mapper;
+
+    /**
+     * Returns the registered {@link DirectMemoryMapper} or {@code null} if none is available.
+     */
+    public static DirectMemoryMapper get() {
+        return mapper;
+    }
+
+    /**
+     * Register the {@link DirectMemoryMapper} to use.
+     */
+    public static void register(DirectMemoryMapper mapper) {
+        DirectMemoryMapper.mapper = ObjectUtil.checkNotNull(mapper, "mapper");
+    }
+
+    /**
+     * Map a new direct {@link ByteBuffer} of the given capacity which must be released via {@link #unmap(ByteBuffer)}.
+     * The memory is not tracked by {@link PlatformDependent#usedDirectMemory()}.
+     *
+     * @param capacity  the capacity of the buffer.
+     * @param hugePages {@code true} if the memory should be aligned to and backed by transparent huge pages.
+     * @param numaNode  the NUMA node whose memory should back the buffer or {@code -1} to use the default policy.
+     * @throws OutOfMemoryError if the memory could not be mapped.
+     */
+    public abstract ByteBuffer map(int capacity, boolean hugePages, int numaNode);
+
+    /**
+     * Unmap a {@link ByteBuffer} returned by {@link #map(int, boolean, int)}. It must not be used afterwards.
+     */
+    public abstract void unmap(ByteBuffer buffer);
+
+    /**
+     * Returns the number of NUMA nodes of the machine, which is {@code 1} if unknown.
+     */
+    public abstract int numaNodes();
+
+    /**
+     * Returns the NUMA node the current thread is running on or {@code -1} if unknown.
+     */
+    public abstract int currentNumaNode();
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+/**
+ * Gives the physical memory behind a range of direct memory back to the operating system without unmapping it, so
+ * the range can still be used later on. Native transports register an implementation once their library was loaded.
+ */
+public abstract class DirectMemoryPurger {
+
+    private static volatile DirectMemoryPurger purger;
+
+    /**
+     * Returns the registered {@link DirectMemoryPurger} or {@code null} if none is available.
+     */
+    public static DirectMemoryPurger get() {
+        return purger;
+    }
+
+    /**
+     * Register the {@link DirectMemoryPurger} to use.
+     */
+    public static void register(DirectMemoryPurger purger) {
+        DirectMemoryPurger.purger = ObjectUtil.checkNotNull(purger, "purger");
+    }
+
+    /**
+     * Purge all pages that are fully contained in the given range of memory. The content of the range is undefined
+     * after this call until it is written again.
+     *
+     * @return the number of bytes that were purged, which only covers whole pages, or {@code 0} if nothing was purged.
+     */
+    public abstract long purge(long address, long length);
+}
@@ -498,6 +498,14 @@ public final class PlatformDependent {
         return PlatformDependent0.getLong(address);
     }
 
+    /**
+     * Reads the {@code int} at the given memory address with volatile semantics. This is needed when the memory is
+     * shared with another thread or the kernel, like the head and tail of a ring that is mapped into memory.
+     */
+    public static int getIntVolatile(long address) {
+        return PlatformDependent0.getIntVolatile(address);
+    }
+
     public static byte getByte(byte[] data, int index) {
         return PlatformDependent0.getByte(data, index);
     }
@@ -626,6 +634,14 @@ public final class PlatformDependent {
         PlatformDependent0.putLong(address, value);
     }
 
+    /**
+     * Writes the {@code int} to the given memory address with release semantics, so all previous stores are visible
+     * before the new value is.
+     */
+    public static void putIntOrdered(long address, int newValue) {
+        PlatformDependent0.putIntOrdered(address, newValue);
+    }
+
     public static void putByte(byte[] data, int index, byte value) {
         PlatformDependent0.putByte(data, index, value);
     }
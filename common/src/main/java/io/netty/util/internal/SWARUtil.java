@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.internal;
+
+/**
+ * Utility methods to process the 8 bytes of a {@code long} at once (SIMD within a register).
+ */
+public final class SWARUtil {
+
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private SWARUtil() { }
+
+    /**
+     * Returns a pattern to search for the given byte via {@link #applyPattern(long, long)}, which is the byte
+     * repeated 8 times.
+     */
+    public static long compilePattern(byte byteToFind) {
+        return (byteToFind & 0xFFL) * 0x101010101010101L;
+    }
+
+    /**
+     * Returns a word which has the highest bit of every byte set for which the same byte of {@code word} is equal to
+     * the byte {@code pattern} was compiled for, and no other bits set.
+     */
+    public static long applyPattern(long word, long pattern) {
+        long input = word ^ pattern;
+        long tmp = (input & LOW_SEVEN_BITS) + LOW_SEVEN_BITS;
+        return ~(tmp | input | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * Returns the index of the first matching byte in a non-zero result of {@link #applyPattern(long, long)}.
+     *
+     * @param isBigEndian {@code true} if the word was read in big endian byte order, so the first byte is the most
+     *                    significant one.
+     */
+    public static int getIndex(long result, boolean isBigEndian) {
+        return isBigEndian ? Long.numberOfLeadingZeros(result) >>> 3 : Long.numberOfTrailingZeros(result) >>> 3;
+    }
+}
@@ -11,9 +11,10 @@ void convertSources(String templateDir, String outputDir) {
     String[] keyPrimitives = ["byte", "char", "short", "int", "long"]
     String[] keyObjects = ["Byte", "Character", "Short", "Integer", "Long"]
     String[] keyNumberMethod = ["byteValue", "charValue", "shortValue", "intValue", "longValue"]
+    String[] keyBufferMethod = ["", "Char", "Short", "Int", "Long"]
 
     keyPrimitives.eachWithIndex { keyPrimitive, i ->
-        convertTemplates templateDir, outputDir, keyPrimitive, keyObjects[i], keyNumberMethod[i]
+        convertTemplates templateDir, outputDir, keyPrimitive, keyObjects[i], keyNumberMethod[i], keyBufferMethod[i]
     }
 }
 
@@ -21,22 +22,32 @@ void convertTemplates(String templateDir,
                       String outputDir,
                       String keyPrimitive,
                       String keyObject,
-                      String keyNumberMethod) {
+                      String keyNumberMethod,
+                      String keyBufferMethod) {
     def keyName = keyPrimitive.capitalize()
-    def replaceFrom = "(^.*)K([^.]+)\\.template\$"
-    def replaceTo = "\\1" + keyName + "\\2.java"
     def hashCodeFn = keyPrimitive.equals("long") ? "(int) (key ^ (key >>> 32))" : "(int) key"
-    ant.copy(todir: outputDir) {
-        fileset(dir: templateDir) {
-            include(name: "**/*.template")
+    // Templates which use the primitive type for both the keys and the values are named KK, like KKHashMap.
+    [false, true].each { primitiveValues ->
+        def replaceFrom = primitiveValues ? "(^.*)KK([^.]+)\\.template\$" : "(^.*)K([^.]+)\\.template\$"
+        def replaceTo = "\\1" + keyName + (primitiveValues ? keyName : "") + "\\2.java"
+        ant.copy(todir: outputDir) {
+            fileset(dir: templateDir) {
+                if (primitiveValues) {
+                    include(name: "**/*KK*.template")
+                } else {
+                    include(name: "**/*.template")
+                    exclude(name: "**/*KK*.template")
+                }
+            }
+            filterset() {
+                filter(token: "K", value: keyName)
+                filter(token: "k", value: keyPrimitive)
+                filter(token: "O", value: keyObject)
+                filter(token: "KEY_NUMBER_METHOD", value: keyNumberMethod)
+                filter(token: "KEY_BUFFER_METHOD", value: keyBufferMethod)
+                filter(token: "HASH_CODE", value: hashCodeFn)
+            }
+            regexpmapper(from: replaceFrom, to: replaceTo)
         }
-        filterset() {
-            filter(token: "K", value: keyName)
-            filter(token: "k", value: keyPrimitive)
-            filter(token: "O", value: keyObject)
-            filter(token: "KEY_NUMBER_METHOD", value: keyNumberMethod)
-            filter(token: "HASH_CODE", value: hashCodeFn)
-        }
-        regexpmapper(from: replaceFrom, to: replaceTo)
     }
-}
\ No newline at end of file
+}
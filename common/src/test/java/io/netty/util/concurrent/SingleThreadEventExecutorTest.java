@@ -18,14 +18,18 @@ package io.netty.util.concurrent;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class SingleThreadEventExecutorTest {
@@ -170,4 +174,54 @@ public class SingleThreadEventExecutorTest {
             executor.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
         }
     }
+
+    @Test(timeout = 3000)
+    public void testExecuteAll() throws Exception {
+        final AtomicInteger wakeups = new AtomicInteger();
+        final SingleThreadEventExecutor executor = new SingleThreadEventExecutor(null,
+                Executors.defaultThreadFactory(), false) {
+            @Override
+            protected void run() {
+                while (!confirmShutdown()) {
+                    Runnable task = takeTask();
+                    if (task != null) {
+                        task.run();
+                    }
+                }
+            }
+
+            @Override
+            protected void wakeup(boolean inEventLoop) {
+                if (!inEventLoop) {
+                    wakeups.incrementAndGet();
+                }
+                super.wakeup(inEventLoop);
+            }
+        };
+        try {
+            final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+            final CountDownLatch latch = new CountDownLatch(100);
+            List<Runnable> tasks = new ArrayList<Runnable>();
+            for (int i = 0; i < 100; i++) {
+                final int id = i;
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        executed.add(id);
+                        latch.countDown();
+                    }
+                });
+            }
+            executor.executeAll(tasks);
+            latch.await();
+
+            Assert.assertEquals(1, wakeups.get());
+            Assert.assertEquals(100, executed.size());
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals(i, (int) executed.get(i));
+            }
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+        }
+    }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelScheduledTaskQueueTest {
+
+    private static final Comparator<ScheduledFutureTask<?>> COMPARATOR = new Comparator<ScheduledFutureTask<?>>() {
+        @Override
+        public int compare(ScheduledFutureTask<?> o1, ScheduledFutureTask<?> o2) {
+            return o1.compareTo(o2);
+        }
+    };
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    private static final DefaultEventExecutor EXECUTOR = new DefaultEventExecutor();
+
+    @AfterClass
+    public static void shutdown() {
+        EXECUTOR.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private static ScheduledFutureTask<Void> newTask(long deadlineNanos) {
+        return new ScheduledFutureTask<Void>(EXECUTOR, NOOP, null, deadlineNanos);
+    }
+
+    @Test
+    public void testPollOrder() {
+        Random random = new Random(42);
+        long now = TimeUnit.SECONDS.toNanos(10);
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, now);
+        List<ScheduledFutureTask<?>> expected = new ArrayList<ScheduledFutureTask<?>>();
+        for (int i = 0; i < 10000; i++) {
+            long deadline;
+            switch (i % 4) {
+                case 0:
+                    // Due in the current tick or already expired.
+                    deadline = now - random.nextInt(1 << 20);
+                    break;
+                case 1:
+                    deadline = now + random.nextInt(Integer.MAX_VALUE);
+                    break;
+                case 2:
+                    deadline = now + (random.nextLong() >>> 20);
+                    break;
+                default:
+                    // Too far in the future for the wheel.
+                    deadline = i % 8 == 3 ? Long.MAX_VALUE : Long.MAX_VALUE - random.nextInt(Integer.MAX_VALUE);
+                    break;
+            }
+            ScheduledFutureTask<?> task = newTask(deadline);
+            assertTrue(queue.offer(task));
+            expected.add(task);
+        }
+        assertEquals(expected.size(), queue.size());
+
+        // Remove some of the tasks, both from the heap and from the wheel.
+        Collections.shuffle(expected, random);
+        for (int i = 0; i < 2000; i++) {
+            ScheduledFutureTask<?> task = expected.remove(expected.size() - 1);
+            assertTrue(queue.containsTyped(task));
+            assertTrue(queue.removeTyped(task));
+            assertFalse(queue.containsTyped(task));
+            assertFalse(queue.removeTyped(task));
+        }
+        assertEquals(expected.size(), queue.size());
+
+        Collections.sort(expected, COMPARATOR);
+        for (ScheduledFutureTask<?> task : expected) {
+            assertSame(task, queue.peek());
+            assertSame(task, queue.poll());
+            assertFalse(queue.containsTyped(task));
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testAddWhileDraining() {
+        long now = 0;
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, now);
+        ScheduledFutureTask<?> far = newTask(TimeUnit.HOURS.toNanos(1));
+        ScheduledFutureTask<?> near = newTask(TimeUnit.MILLISECONDS.toNanos(5));
+        queue.offer(far);
+        queue.offer(near);
+        assertSame(near, queue.poll());
+
+        // The cursor moved forward, tasks that are added now must still be ordered correctly.
+        ScheduledFutureTask<?> expired = newTask(TimeUnit.MILLISECONDS.toNanos(1));
+        ScheduledFutureTask<?> middle = newTask(TimeUnit.MINUTES.toNanos(1));
+        queue.offer(middle);
+        queue.offer(expired);
+        assertSame(expired, queue.poll());
+        assertSame(middle, queue.poll());
+        assertSame(far, queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testClear() {
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, 0);
+        ScheduledFutureTask<?> inHeap = newTask(0);
+        ScheduledFutureTask<?> inWheel = newTask(TimeUnit.SECONDS.toNanos(1));
+        queue.offer(inHeap);
+        queue.offer(inWheel);
+        assertEquals(2, queue.size());
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.containsTyped(inHeap));
+        assertFalse(queue.containsTyped(inWheel));
+
+        // The tasks can be added again after they were cleared.
+        queue.offer(inWheel);
+        queue.offer(inHeap);
+        assertSame(inHeap, queue.poll());
+        assertSame(inWheel, queue.poll());
+    }
+
+    @Test(timeout = 5000)
+    public void testScheduleWithTimingWheel() throws Exception {
+        final DefaultEventExecutor executor = new DefaultEventExecutor();
+        try {
+            executor.setTimingWheelScheduler(true);
+            final BlockingQueue<Integer> executed = new LinkedBlockingQueue<Integer>();
+            ScheduledFuture<?> cancelled = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    executed.add(-1);
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+            for (int i = 3; i >= 0; i--) {
+                final int id = i;
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        executed.add(id);
+                    }
+                }, 10 + id * 20, TimeUnit.MILLISECONDS);
+            }
+            assertTrue(cancelled.cancel(false));
+            for (int i = 0; i < 4; i++) {
+                assertEquals(i, (int) executed.take());
+            }
+            assertNull(executed.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.PlatformDependent;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VirtualThreadEventExecutorGroupTest {
+
+    private static VirtualThreadEventExecutorGroup newGroup() {
+        // Use platform threads so the ordering guarantees are also tested on older Java versions.
+        return new VirtualThreadEventExecutorGroup(new DefaultThreadFactory(VirtualThreadEventExecutorGroupTest.class));
+    }
+
+    @Test
+    public void testAvailability() {
+        if (PlatformDependent.javaVersion() < 19) {
+            assertFalse(VirtualThreadEventExecutorGroup.isAvailable());
+            try {
+                new VirtualThreadEventExecutorGroup();
+                fail();
+            } catch (UnsupportedOperationException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testVirtualThreads() throws Exception {
+        Assume.assumeTrue(VirtualThreadEventExecutorGroup.isAvailable());
+        VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup("test");
+        try {
+            final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+            group.next().submit(new Runnable() {
+                @Override
+                public void run() {
+                    thread.set(Thread.currentThread());
+                }
+            }).sync();
+            assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread.get()));
+            assertTrue(thread.get().getName().startsWith("test-"));
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testOrdering() throws Exception {
+        VirtualThreadEventExecutorGroup group = newGroup();
+        try {
+            final EventExecutor executor = group.next();
+            assertTrue(executor instanceof OrderedEventExecutor);
+            assertNotSame(executor, group.next());
+            assertFalse(executor.inEventLoop());
+
+            final int tasks = 10000;
+            final List<Integer> executed = new ArrayList<Integer>();
+            final AtomicBoolean notInEventLoop = new AtomicBoolean();
+            final CountDownLatch latch = new CountDownLatch(tasks);
+            for (int i = 0; i < tasks; i++) {
+                final int id = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!executor.inEventLoop()) {
+                            notInEventLoop.set(true);
+                        }
+                        if (id % 1000 == 0) {
+                            // Simulate a blocking handler.
+                            try {
+                                Thread.sleep(1);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        executed.add(id);
+                        latch.countDown();
+                    }
+                });
+            }
+            latch.await();
+            assertFalse(notInEventLoop.get());
+            for (int i = 0; i < tasks; i++) {
+                assertEquals(i, (int) executed.get(i));
+            }
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSchedule() throws Exception {
+        VirtualThreadEventExecutorGroup group = newGroup();
+        try {
+            final EventExecutor executor = group.next();
+            final AtomicBoolean inEventLoop = new AtomicBoolean();
+            ScheduledFuture<?> future = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    inEventLoop.set(executor.inEventLoop());
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+            // A task that is submitted while waiting for the scheduled task must run first.
+            final CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+            latch.await();
+            assertFalse(future.isDone());
+            future.sync();
+            assertTrue(inEventLoop.get());
+        } finally {
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdownCancelsScheduledTasks() throws Exception {
+        VirtualThreadEventExecutorGroup group = newGroup();
+        EventExecutor executor = group.next();
+        ScheduledFuture<?> future = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }, 1, TimeUnit.HOURS);
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }).sync();
+
+        group.shutdownGracefully().sync();
+        assertTrue(group.isTerminated());
+        assertTrue(future.isCancelled());
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            });
+            fail();
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+    }
+}
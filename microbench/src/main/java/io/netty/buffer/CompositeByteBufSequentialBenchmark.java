@@ -28,6 +28,7 @@ import org.openjdk.jmh.annotations.Warmup;
 import static io.netty.buffer.Unpooled.EMPTY_BUFFER;
 import static io.netty.buffer.Unpooled.wrappedBuffer;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -98,6 +99,11 @@ public class CompositeByteBufSequentialBenchmark extends AbstractMicrobenchmark
         return 1;
     }
 
+    @Benchmark
+    public ByteBuffer[] nioBuffers() {
+        return buffer.nioBuffers(0, buffer.capacity());
+    }
+
     private static ByteBuf newBufferSmallChunks(int length) {
 
         List<ByteBuf> buffers = new ArrayList<ByteBuf>(((length + 1) / 45) * 19);
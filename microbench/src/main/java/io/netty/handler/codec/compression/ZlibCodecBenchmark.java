@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Compresses and decompresses direct buffers with the different zlib implementations.
+ * <p>
+ * {@code JDK_HEAP} copies the direct buffers to heap buffers first, which is what {@link JdkZlibEncoder} and
+ * {@link JdkZlibDecoder} do when {@link java.util.zip.Deflater} and {@link java.util.zip.Inflater} can not work on
+ * {@link java.nio.ByteBuffer}s, so it measures the cost of the copies. Each operation uses a new channel, like a
+ * response compressed by {@link io.netty.handler.codec.http.HttpContentCompressor} would, so the cost of obtaining
+ * the {@link java.util.zip.Deflater} or {@link java.util.zip.Inflater} is included as well.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ZlibCodecBenchmark extends AbstractMicrobenchmark {
+
+    public enum Implementation {
+        JDK,
+        JDK_HEAP,
+        JZLIB
+    }
+
+    @Param({ "JDK", "JDK_HEAP", "JZLIB" })
+    public Implementation implementation;
+
+    @Param({ "1024", "65536" })
+    public int size;
+
+    private ByteBuf uncompressed;
+    private ByteBuf compressed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        uncompressed = PooledByteBufAllocator.DEFAULT.directBuffer(size);
+        while (uncompressed.isWritable()) {
+            byte[] line = ("{\"id\":" + random.nextInt(100000) + ",\"name\":\"netty\",\"score\":" +
+                    random.nextDouble() + "}\n").getBytes(CharsetUtil.US_ASCII);
+            uncompressed.writeBytes(line, 0, Math.min(line.length, uncompressed.writableBytes()));
+        }
+        EmbeddedChannel channel = new EmbeddedChannel(newEncoder());
+        channel.writeOutbound(uncompressed.retainedDuplicate());
+        channel.finish();
+        compressed = PooledByteBufAllocator.DEFAULT.directBuffer();
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            compressed.writeBytes(buf);
+            buf.release();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        uncompressed.release();
+        compressed.release();
+    }
+
+    @Benchmark
+    public int compress() {
+        EmbeddedChannel channel = new EmbeddedChannel(newEncoder());
+        channel.writeOutbound(input(uncompressed));
+        channel.finish();
+        return releaseAll(channel, true);
+    }
+
+    @Benchmark
+    public int decompress() {
+        EmbeddedChannel channel = new EmbeddedChannel(newDecoder());
+        channel.writeInbound(input(compressed));
+        channel.finish();
+        return releaseAll(channel, false);
+    }
+
+    private ChannelHandler newEncoder() {
+        return implementation == Implementation.JZLIB ?
+                new JZlibEncoder(ZlibWrapper.GZIP) : new JdkZlibEncoder(ZlibWrapper.GZIP);
+    }
+
+    private ChannelHandler newDecoder() {
+        return implementation == Implementation.JZLIB ?
+                new JZlibDecoder(ZlibWrapper.GZIP) : new JdkZlibDecoder(ZlibWrapper.GZIP);
+    }
+
+    private ByteBuf input(ByteBuf buf) {
+        if (implementation == Implementation.JDK_HEAP) {
+            return PooledByteBufAllocator.DEFAULT.heapBuffer(buf.readableBytes()).writeBytes(buf, buf.readerIndex(),
+                    buf.readableBytes());
+        }
+        return buf.retainedDuplicate();
+    }
+
+    private static int releaseAll(EmbeddedChannel channel, boolean outbound) {
+        int bytes = 0;
+        for (;;) {
+            ByteBuf buf = outbound ? channel.<ByteBuf>readOutbound() : channel.<ByteBuf>readInbound();
+            if (buf == null) {
+                return bytes;
+            }
+            bytes += buf.readableBytes();
+            buf.release();
+        }
+    }
+}
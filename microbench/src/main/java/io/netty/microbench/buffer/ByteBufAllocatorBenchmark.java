@@ -20,10 +20,14 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 
 import java.util.Random;
 
@@ -33,9 +37,11 @@ import java.util.Random;
 @State(Scope.Benchmark)
 public class ByteBufAllocatorBenchmark extends AbstractMicrobenchmark {
 
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ByteBufAllocatorBenchmark.class);
+
     private static final ByteBufAllocator unpooledAllocator = new UnpooledByteBufAllocator(true);
-    private static final ByteBufAllocator pooledAllocator =
-            new PooledByteBufAllocator(true, 4, 4, 8192, 11, 0, 0, 0, true, 0); // Disable thread-local cache
+    private static final PooledByteBufAllocator pooledAllocator =
+            new PooledByteBufAllocator(true, 4, 4, 8192, 11, 0, 0, true, 0); // Disable thread-local cache
 
     private static final int MAX_LIVE_BUFFERS = 8192;
     private static final Random rand = new Random();
@@ -46,9 +52,36 @@ public class ByteBufAllocatorBenchmark extends AbstractMicrobenchmark {
     private static final ByteBuf[] defaultPooledHeapBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
     private static final ByteBuf[] defaultPooledDirectBuffers = new ByteBuf[MAX_LIVE_BUFFERS];
 
-    @Param({ "00000", "00256", "01024", "04096", "16384", "65536" })
+    @Param({ "00000", "00256", "01024", "04096", "09216", "16384", "65536" })
     public int size;
 
+    /**
+     * Reports how much memory the pooled allocator reserved compared to the capacity of the buffers that are still
+     * live, and then releases them so the next trial starts from an empty pool.
+     */
+    @TearDown(Level.Trial)
+    public void reportFragmentation() {
+        long usedHeap = pooledAllocator.metric().usedHeapMemory();
+        long usedDirect = pooledAllocator.metric().usedDirectMemory();
+        long liveHeap = releaseAll(pooledHeapBuffers);
+        long liveDirect = releaseAll(pooledDirectBuffers);
+        logger.info("size: {}, pooled heap used/live: {}/{}, pooled direct used/live: {}/{}",
+                size, usedHeap, liveHeap, usedDirect, liveDirect);
+    }
+
+    private static long releaseAll(ByteBuf[] buffers) {
+        long live = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuf buf = buffers[i];
+            if (buf != null) {
+                live += buf.capacity();
+                buf.release();
+                buffers[i] = null;
+            }
+        }
+        return live;
+    }
+
     @Benchmark
     public void unpooledHeapAllocAndFree() {
         int idx = rand.nextInt(unpooledHeapBuffers.length);
@@ -19,6 +19,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Measurement;
@@ -45,6 +46,11 @@ public class
     private StringBuilder utf8Sequence;
     private String utf8;
 
+    private ByteBuf headerHeapBuffer;
+    private ByteBuf headerDirectBuffer;
+    private ByteBuf headerDirectCopy;
+    private ByteBuf headerDelimiter;
+
     @Setup
     public void setup() {
         // Use buffer sizes that will also allow to write UTF-8 without grow the buffer
@@ -67,6 +73,18 @@ public class
 
         asciiBuffer = Unpooled.copiedBuffer(ascii, CharsetUtil.US_ASCII);
         utf8Buffer = Unpooled.copiedBuffer(utf8, CharsetUtil.UTF_8);
+
+        // Build a large header block which only has its first line break at the very end.
+        StringBuilder header = new StringBuilder(8192);
+        header.append("X-Large-Header: ");
+        while (header.length() < 8188) {
+            header.append((char) ('a' + header.length() % 26));
+        }
+        header.append("\r\n\r\n");
+        headerHeapBuffer = Unpooled.copiedBuffer(header, CharsetUtil.US_ASCII);
+        headerDirectBuffer = Unpooled.directBuffer(header.length()).writeBytes(headerHeapBuffer.duplicate());
+        headerDirectCopy = Unpooled.directBuffer(header.length()).writeBytes(headerHeapBuffer.duplicate());
+        headerDelimiter = Unpooled.copiedBuffer("\r\n\r\n", CharsetUtil.US_ASCII);
     }
 
     @TearDown
@@ -75,6 +93,10 @@ public class
         wrapped.release();
         asciiBuffer.release();
         utf8Buffer.release();
+        headerHeapBuffer.release();
+        headerDirectBuffer.release();
+        headerDirectCopy.release();
+        headerDelimiter.release();
     }
 
     @Benchmark
@@ -182,4 +204,44 @@ public class
     public String decodeStringUtf8() {
         return utf8Buffer.toString(CharsetUtil.UTF_8);
     }
+
+    @Benchmark
+    public int findCrlfHeap() {
+        return headerHeapBuffer.forEachByte(ByteProcessor.FIND_CRLF);
+    }
+
+    @Benchmark
+    public int findCrlfDirect() {
+        return headerDirectBuffer.forEachByte(ByteProcessor.FIND_CRLF);
+    }
+
+    @Benchmark
+    public int indexOfByteHeap() {
+        return headerHeapBuffer.indexOf(0, headerHeapBuffer.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int indexOfByteDirect() {
+        return headerDirectBuffer.indexOf(0, headerDirectBuffer.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int indexOfDelimiterHeap() {
+        return ByteBufUtil.indexOf(headerDelimiter, headerHeapBuffer);
+    }
+
+    @Benchmark
+    public int indexOfDelimiterDirect() {
+        return ByteBufUtil.indexOf(headerDelimiter, headerDirectBuffer);
+    }
+
+    @Benchmark
+    public boolean equalsHeapAndDirect() {
+        return ByteBufUtil.equals(headerHeapBuffer, headerDirectBuffer);
+    }
+
+    @Benchmark
+    public boolean equalsDirect() {
+        return ByteBufUtil.equals(headerDirectBuffer, headerDirectCopy);
+    }
 }
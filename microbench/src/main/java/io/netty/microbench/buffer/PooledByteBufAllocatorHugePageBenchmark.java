@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.kqueue.KQueue;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.internal.DirectMemoryMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads from random locations of a working set of pooled direct buffers, which is dominated by TLB misses and remote
+ * memory accesses. Compare this benchmark, which uses the default chunks, against {@link HugePageChunks}, ideally
+ * with {@code -prof perfnorm} to see the {@code dTLB-load-misses}.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class PooledByteBufAllocatorHugePageBenchmark extends AbstractMicrobenchmark {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int READS = 1024;
+
+    /**
+     * Uses chunks that are mapped with transparent huge pages and bound to the NUMA node of the benchmark thread.
+     */
+    @Fork(jvmArgsAppend = { "-Dio.netty.allocator.hugePageChunks=true", "-Dio.netty.allocator.numaAware=true" })
+    public static class HugePageChunks extends PooledByteBufAllocatorHugePageBenchmark {
+        @Override
+        protected void checkAllocator() {
+            if (DirectMemoryMapper.get() == null) {
+                throw new IllegalStateException("No native transport available to map the chunks");
+            }
+        }
+    }
+
+    @Param({ "64", "512" })
+    public int workingSetMiB;
+
+    private ByteBuf[] buffers;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        // Load the native transport which provides the DirectMemoryMapper.
+        if (!Epoll.isAvailable()) {
+            KQueue.isAvailable();
+        }
+        checkAllocator();
+
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true);
+        buffers = new ByteBuf[workingSetMiB * 1024 * 1024 / BUFFER_SIZE];
+        for (int i = 0; i < buffers.length; i++) {
+            // Touch all the memory so it is resident before measuring.
+            buffers[i] = allocator.directBuffer(BUFFER_SIZE, BUFFER_SIZE).writeZero(BUFFER_SIZE);
+        }
+        seed = System.nanoTime() | 1;
+    }
+
+    protected void checkAllocator() {
+        // NOOP
+    }
+
+    @TearDown
+    public void teardown() {
+        for (ByteBuf buffer : buffers) {
+            buffer.release();
+        }
+    }
+
+    @Benchmark
+    public long randomRead() {
+        ByteBuf[] buffers = this.buffers;
+        long x = seed;
+        long sum = 0;
+        for (int i = 0; i < READS; i++) {
+            // xorshift to pick a random buffer and offset.
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+            ByteBuf buffer = buffers[(int) ((x >>> 32) % buffers.length)];
+            sum += buffer.getLong((int) x & BUFFER_SIZE - 8);
+        }
+        seed = x;
+        return sum;
+    }
+}
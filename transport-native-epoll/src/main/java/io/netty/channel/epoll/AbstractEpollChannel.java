@@ -378,6 +378,11 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
         private final Runnable epollInReadyRunnable = new Runnable() {
             @Override
             public void run() {
+                if (!eventLoop().inEventLoop()) {
+                    // The Channel was migrated to another EventLoop in the meantime, which will notify us once
+                    // there is something to read.
+                    return;
+                }
                 epollInReadyRunnablePending = false;
                 epollInReady();
             }
@@ -515,6 +520,14 @@ abstract class AbstractEpollChannel extends AbstractChannel implements UnixChann
             }
         }
 
+        /**
+         * Called once a EPOLLERR event is ready to be processed, before {@link #epollOutReady()} and
+         * {@link #epollInReady()} are called.
+         */
+        void epollErrReady() {
+            // NOOP
+        }
+
         /**
          * Called once a EPOLLOUT event is ready to be processed
          */
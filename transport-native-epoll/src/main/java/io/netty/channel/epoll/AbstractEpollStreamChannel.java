@@ -31,12 +31,14 @@ import io.netty.channel.FileRegion;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.internal.ChannelUtils;
 import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.Buffer;
 import io.netty.channel.unix.FileDescriptor;
 import io.netty.channel.unix.IovArray;
 import io.netty.channel.unix.SocketWritableByteChannel;
 import io.netty.channel.unix.UnixChannelUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
@@ -47,7 +49,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritableByteChannel;
 import java.util.Queue;
-import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static io.netty.channel.internal.ChannelUtils.MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD;
 import static io.netty.channel.internal.ChannelUtils.WRITE_STATUS_SNDBUF_FULL;
@@ -61,6 +63,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ", " +
                     StringUtil.simpleClassName(DefaultFileRegion.class) + ')';
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractEpollStreamChannel.class);
+    // How long close() waits for the completion notifications of MSG_ZEROCOPY writes which are still pending.
+    private static final long ZERO_COPY_CLOSE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Math.max(0,
+            SystemPropertyUtil.getLong("io.netty.transport.zeroCopyCloseTimeoutMillis", 1000)));
 
     private final Runnable flushTask = new Runnable() {
         @Override
@@ -78,6 +83,14 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     private WritableByteChannel byteChannel;
 
+    // Set while this channel is the source of an EpollSpliceRelay, only accessed from the EventLoop.
+    EpollSpliceRelay.Direction spliceRelay;
+
+    // Lazy init these if we need to write with MSG_ZEROCOPY
+    private ZeroCopyCompletionQueue zeroCopyCompletions;
+    private SmallBuffersProcessor smallBuffersProcessor;
+    final EpollZeroCopyStats zeroCopyStats = new EpollZeroCopyStats();
+
     protected AbstractEpollStreamChannel(Channel parent, int fd) {
         this(parent, new LinuxSocket(fd));
     }
@@ -256,6 +269,14 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return 0;
         }
 
+        final int zeroCopyThreshold = zeroCopyWriteThreshold();
+        if (zeroCopyThreshold >= 0) {
+            if (isZeroCopyCandidate(buf, zeroCopyThreshold)) {
+                return writeBytesZeroCopy(in, buf);
+            }
+            zeroCopyStats.incrementCopyWrites();
+        }
+
         if (buf.hasMemoryAddress() || buf.nioBufferCount() == 1) {
             return doWriteBytes(in, buf);
         } else {
@@ -265,6 +286,90 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
     }
 
+    /**
+     * Write bytes form the given {@link ByteBuf} with {@code MSG_ZEROCOPY}. The {@link ByteBuf} is retained until the
+     * kernel notifies us via the error queue that the write was completed.
+     * @param in the collection which contains objects to write.
+     * @param buf the {@link ByteBuf} from which the bytes should be written
+     * @return The value that should be decremented from the write quantum which starts at
+     * {@link ChannelConfig#getWriteSpinCount()}. The typical use cases are as follows:
+     * <ul>
+     *     <li>1 - if a single call to write data was made to the OS</li>
+     *     <li>{@link ChannelUtils#WRITE_STATUS_SNDBUF_FULL} - if an attempt to write data was made to the OS, but
+     *     no data was accepted</li>
+     * </ul>
+     */
+    private int writeBytesZeroCopy(ChannelOutboundBuffer in, ByteBuf buf) throws Exception {
+        final long address;
+        final int pos;
+        final int limit;
+        if (buf.hasMemoryAddress()) {
+            address = buf.memoryAddress();
+            pos = buf.readerIndex();
+            limit = buf.writerIndex();
+        } else {
+            ByteBuffer nioBuf = buf.internalNioBuffer(buf.readerIndex(), buf.readableBytes());
+            address = Buffer.memoryAddress(nioBuf);
+            pos = nioBuf.position();
+            limit = nioBuf.limit();
+        }
+
+        final int localFlushedAmount = socket.sendZeroCopy(address, pos, limit);
+        if (localFlushedAmount > 0) {
+            ZeroCopyCompletionQueue completions = zeroCopyCompletions;
+            if (completions == null) {
+                zeroCopyCompletions = completions = new ZeroCopyCompletionQueue();
+            }
+            // Retain before removeBytes(...) as it will release the buffer once it was written completely.
+            completions.add(buf.retain());
+            zeroCopyStats.incrementZeroCopyWrites(localFlushedAmount);
+            in.removeBytes(localFlushedAmount);
+            return 1;
+        }
+        if (localFlushedAmount < 0) {
+            // The kernel was not able to pin the memory (ENOBUFS), fall back to copying.
+            zeroCopyStats.incrementCopyWrites();
+            return doWriteBytes(in, buf);
+        }
+        return WRITE_STATUS_SNDBUF_FULL;
+    }
+
+    /**
+     * Process all {@code MSG_ZEROCOPY} completion notifications from the error queue of the socket and release the
+     * {@link ByteBuf}s that are not referenced by the kernel anymore.
+     */
+    private void processZeroCopyCompletions() throws IOException {
+        final ZeroCopyCompletionQueue completions = zeroCopyCompletions;
+        final int[] completion = completions.completion;
+        for (;;) {
+            int res = socket.recvZeroCopyCompletion(completion);
+            if (res < 0) {
+                // The error queue is empty.
+                return;
+            }
+            if (res > 0) {
+                int completed = completions.complete(completion[0], completion[1]);
+                zeroCopyStats.incrementCompletedWrites(completed);
+                if (completion[2] != 0) {
+                    zeroCopyStats.incrementKernelCopiedWrites(completed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the minimum number of readable bytes a {@link ByteBuf} must have to be written with
+     * {@code MSG_ZEROCOPY} or {@code -1} if {@code MSG_ZEROCOPY} should not be used at all.
+     */
+    int zeroCopyWriteThreshold() {
+        return -1;
+    }
+
+    private static boolean isZeroCopyCandidate(ByteBuf buf, int zeroCopyThreshold) {
+        return buf.readableBytes() >= zeroCopyThreshold &&
+                (buf.hasMemoryAddress() || buf.isDirect() && buf.nioBufferCount() == 1);
+    }
+
     private void adjustMaxBytesPerGatheringWrite(long attempted, long written, long oldMaxBytesPerGatheringWrite) {
         // By default we track the SO_SNDBUF when ever it is explicitly set. However some OSes may dynamically change
         // SO_SNDBUF (and other characteristics that determine how much data can be written at once) so we should try
@@ -479,6 +584,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             }
             in.remove();
             return 1;
+        } else if (msg instanceof EpollSpliceRelay.SpliceOut) {
+            if (!((EpollSpliceRelay.SpliceOut) msg).spliceOut()) {
+                return WRITE_STATUS_SNDBUF_FULL;
+            }
+            in.remove();
+            return 1;
         } else {
             // Should never reach here.
             throw new Error();
@@ -503,7 +614,31 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         final long maxBytesPerGatheringWrite = config().getMaxBytesPerGatheringWrite();
         IovArray array = ((EpollEventLoop) eventLoop()).cleanIovArray();
         array.maxBytes(maxBytesPerGatheringWrite);
-        in.forEachFlushedMessage(array);
+
+        final int zeroCopyThreshold = zeroCopyWriteThreshold();
+        if (zeroCopyThreshold >= 0) {
+            ByteBuf buf = (ByteBuf) in.current();
+            if (isZeroCopyCandidate(buf, zeroCopyThreshold)) {
+                return writeBytes(in, buf);
+            }
+            // Only gather the buffers in front of the next buffer that should be written with MSG_ZEROCOPY.
+            SmallBuffersProcessor processor = smallBuffersProcessor;
+            if (processor == null) {
+                smallBuffersProcessor = processor = new SmallBuffersProcessor();
+            }
+            processor.array = array;
+            processor.zeroCopyThreshold = zeroCopyThreshold;
+            try {
+                in.forEachFlushedMessage(processor);
+            } finally {
+                processor.array = null;
+            }
+            if (array.count() >= 1) {
+                zeroCopyStats.incrementCopyWrites();
+            }
+        } else {
+            in.forEachFlushedMessage(array);
+        }
 
         if (array.count() >= 1) {
             return writeBytesMultiple(in, array);
@@ -520,7 +655,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf): buf;
         }
 
-        if (msg instanceof FileRegion || msg instanceof SpliceOutTask) {
+        if (msg instanceof FileRegion || msg instanceof SpliceOutTask || msg instanceof EpollSpliceRelay.SpliceOut) {
             return msg;
         }
 
@@ -587,26 +722,18 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     @Override
     public ChannelFuture shutdownInput(final ChannelPromise promise) {
-        Executor closeExecutor = ((EpollStreamUnsafe) unsafe()).prepareToClose();
-        if (closeExecutor != null) {
-            closeExecutor.execute(new Runnable() {
+        // Shutting down the input never blocks, so there is no need to use the executor of prepareToClose() which
+        // would also remove this channel from the EventLoop.
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            shutdownInput0(promise);
+        } else {
+            loop.execute(new Runnable() {
                 @Override
                 public void run() {
                     shutdownInput0(promise);
                 }
             });
-        } else {
-            EventLoop loop = eventLoop();
-            if (loop.inEventLoop()) {
-                shutdownInput0(promise);
-            } else {
-                loop.execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        shutdownInput0(promise);
-                    }
-                });
-            }
         }
         return promise;
     }
@@ -666,6 +793,8 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     @Override
     protected void doClose() throws Exception {
+        // The notifications can only be received as long as the socket is open.
+        awaitZeroCopyCompletions();
         try {
             // Calling super.doClose() first so spliceTo(...) will fail on next call.
             super.doClose();
@@ -673,6 +802,55 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             safeClosePipe(pipeIn);
             safeClosePipe(pipeOut);
             clearSpliceQueue();
+            abandonZeroCopyBuffers();
+        }
+    }
+
+    /**
+     * Returns {@code true} if there are {@code MSG_ZEROCOPY} writes whose buffers may still be referenced by the
+     * kernel. Must only be called from the {@link EventLoop}.
+     */
+    final boolean hasPendingZeroCopyWrites() {
+        ZeroCopyCompletionQueue completions = zeroCopyCompletions;
+        return completions != null && !completions.isEmpty();
+    }
+
+    /**
+     * Process the pending {@code MSG_ZEROCOPY} completion notifications. If this channel is closed outside of its
+     * {@link EventLoop}, which is the case if {@link #hasPendingZeroCopyWrites()} returned {@code true} before,
+     * wait up to {@code io.netty.transport.zeroCopyCloseTimeoutMillis} for the notifications of all writes.
+     */
+    private void awaitZeroCopyCompletions() {
+        if (!hasPendingZeroCopyWrites()) {
+            return;
+        }
+        final boolean wait = !eventLoop().inEventLoop();
+        final long deadline = System.nanoTime() + ZERO_COPY_CLOSE_TIMEOUT_NANOS;
+        try {
+            for (;;) {
+                processZeroCopyCompletions();
+                if (!hasPendingZeroCopyWrites() || !wait || deadline - System.nanoTime() <= 0) {
+                    return;
+                }
+                Thread.sleep(1);
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to read MSG_ZEROCOPY notifications", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void abandonZeroCopyBuffers() {
+        ZeroCopyCompletionQueue completions = zeroCopyCompletions;
+        if (completions != null && !completions.isEmpty()) {
+            // The socket is closed so we will not receive any more notifications. The kernel may still reference
+            // the memory of the pending writes, so their buffers must never be reused.
+            int pending = completions.abandonAll();
+            if (pending > 0) {
+                logger.debug("{} MSG_ZEROCOPY writes were still pending on close, their buffers are not released: {}",
+                        pending, this);
+            }
         }
     }
 
@@ -706,12 +884,6 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     }
 
     class EpollStreamUnsafe extends AbstractEpollUnsafe {
-        // Overridden here just to be able to access this method from AbstractEpollStreamChannel
-        @Override
-        protected Executor prepareToClose() {
-            return super.prepareToClose();
-        }
-
         private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause, boolean close,
                 EpollRecvByteAllocatorHandle allocHandle) {
             if (byteBuf != null) {
@@ -730,6 +902,18 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             }
         }
 
+        @Override
+        void epollErrReady() {
+            if (zeroCopyCompletions != null) {
+                try {
+                    processZeroCopyCompletions();
+                } catch (IOException e) {
+                    // Any error of the socket itself will be propagated by epollOutReady() / epollInReady().
+                    logger.debug("Failed to read MSG_ZEROCOPY notifications", e);
+                }
+            }
+        }
+
         @Override
         EpollRecvByteAllocatorHandle newEpollHandle(RecvByteBufAllocator.ExtendedHandle handle) {
             return new EpollRecvByteAllocatorStreamingHandle(handle);
@@ -742,6 +926,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                 clearEpollIn0();
                 return;
             }
+            final EpollSpliceRelay.Direction relay = spliceRelay;
+            if (relay != null) {
+                // The bytes are directly spliced to the other channel without passing them through the pipeline.
+                relay.spliceIn();
+                return;
+            }
             final EpollRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
             allocHandle.edgeTriggered(isFlagSet(Native.EPOLLET));
 
@@ -1024,6 +1214,23 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
     }
 
+    /**
+     * Gathers {@link ByteBuf}s into an {@link IovArray} but stops at the first {@link ByteBuf} that should be
+     * written with {@code MSG_ZEROCOPY}.
+     */
+    private static final class SmallBuffersProcessor implements ChannelOutboundBuffer.MessageProcessor {
+        IovArray array;
+        int zeroCopyThreshold;
+
+        @Override
+        public boolean processMessage(Object msg) throws Exception {
+            if (msg instanceof ByteBuf && isZeroCopyCandidate((ByteBuf) msg, zeroCopyThreshold)) {
+                return false;
+            }
+            return array.processMessage(msg);
+        }
+    }
+
     private final class EpollSocketWritableByteChannel extends SocketWritableByteChannel {
         EpollSocketWritableByteChannel() {
             super(socket);
@@ -25,6 +25,8 @@ import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.MaxMessagesRecvByteBufAllocator;
+import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramChannelConfig;
 import io.netty.channel.socket.DatagramPacket;
@@ -33,6 +35,7 @@ import io.netty.channel.unix.DatagramSocketAddress;
 import io.netty.channel.unix.Errors;
 import io.netty.channel.unix.Errors.NativeIoException;
 import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.Limits;
 import io.netty.channel.unix.Socket;
 import io.netty.channel.unix.UnixChannelUtil;
 import io.netty.util.ReferenceCountUtil;
@@ -47,6 +50,7 @@ import java.net.NetworkInterface;
 import java.net.PortUnreachableException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import static io.netty.channel.epoll.LinuxSocket.newSocketDgram;
 
@@ -65,6 +69,9 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
     private final EpollDatagramChannelConfig config;
     private volatile boolean connected;
+    // The buffers of scatteringRead(...) that were not filled by the last recvmmsg(...) call, which are re-used by the
+    // next one. Only accessed from the EventLoop.
+    private ByteBuf[] scatteringReadBuffers;
 
     /**
      * Create a new instance which selects the {@link InternetProtocolFamily} to use depending
@@ -309,8 +316,10 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             }
 
             try {
-                // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+
-                if (Native.IS_SUPPORTING_SENDMMSG && in.size() > 1) {
+                // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+. A
+                // SegmentedDatagramPacket always needs sendmmsg(...) as the segment size is passed as control message.
+                if (Native.IS_SUPPORTING_SENDMMSG &&
+                        (in.size() > 1 || msg instanceof SegmentedDatagramPacket)) {
                     NativeDatagramPacketArray array = cleanDatagramPacketArray();
                     array.add(in, isConnected());
                     int cnt = array.count();
@@ -415,6 +424,16 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
     @Override
     protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof SegmentedDatagramPacket) {
+            if (!Native.IS_SUPPORTING_SENDMMSG) {
+                throw new UnsupportedOperationException(
+                        "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+            }
+            SegmentedDatagramPacket packet = (SegmentedDatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return UnixChannelUtil.isBufferCopyNeededForWrite(content) ?
+                    packet.replace(newDirectBuffer(packet, content)) : msg;
+        }
         if (msg instanceof DatagramPacket) {
             DatagramPacket packet = (DatagramPacket) msg;
             ByteBuf content = packet.content();
@@ -468,6 +487,7 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
     protected void doClose() throws Exception {
         super.doClose();
         connected = false;
+        releaseScatteringReadBuffers();
     }
 
     final class EpollDatagramChannelUnsafe extends AbstractEpollUnsafe {
@@ -492,22 +512,25 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             try {
                 try {
                     boolean connected = isConnected();
+                    int datagramSize = config().getMaxDatagramPayloadSize();
+                    int numDatagram = datagramSize == 0 ? 1 : maxDatagramsPerRead(config);
+                    boolean gro = config().isUdpGro();
                     do {
-                        ByteBuf byteBuf = allocHandle.allocate(allocator);
                         final boolean read;
-                        int datagramSize = config().getMaxDatagramPayloadSize();
-                        int numDatagram = datagramSize == 0 ? 1 : byteBuf.writableBytes() / datagramSize;
-
                         try {
                             if (numDatagram <= 1) {
-                                if (connected) {
+                                ByteBuf byteBuf = allocHandle.allocate(allocator);
+                                if (gro) {
+                                    // Use recvmmsg(...) as we need the control message to split the datagrams.
+                                    read = segmentedRead(allocHandle, byteBuf, datagramSize);
+                                } else if (connected) {
                                     read = connectedRead(allocHandle, byteBuf, datagramSize);
                                 } else {
                                     read = read(allocHandle, byteBuf, datagramSize);
                                 }
                             } else {
                                 // Try to use scattering reads via recvmmsg(...) syscall.
-                                read = scatteringRead(allocHandle, byteBuf, datagramSize, numDatagram);
+                                read = scatteringRead(allocHandle, allocator, datagramSize, numDatagram);
                             }
                         } catch (NativeIoException e) {
                             if (connected) {
@@ -588,54 +611,143 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
         return e;
     }
 
-    private boolean scatteringRead(EpollRecvByteAllocatorHandle allocHandle,
-            ByteBuf byteBuf, int datagramSize, int numDatagram) throws IOException {
+    /**
+     * Returns the number of datagrams that may be received with one {@code recvmmsg(...)} call, which is bounded by
+     * {@link MaxMessagesRecvByteBufAllocator#maxMessagesPerRead()} and {@link Limits#UIO_MAX_IOV}.
+     */
+    private static int maxDatagramsPerRead(DatagramChannelConfig config) {
+        RecvByteBufAllocator allocator = config.getRecvByteBufAllocator();
+        int maxMessagesPerRead = allocator instanceof MaxMessagesRecvByteBufAllocator ?
+                ((MaxMessagesRecvByteBufAllocator) allocator).maxMessagesPerRead() : 1;
+        return Math.min(maxMessagesPerRead, Limits.UIO_MAX_IOV);
+    }
+
+    private boolean scatteringRead(EpollRecvByteAllocatorHandle allocHandle, ByteBufAllocator allocator,
+            int datagramSize, int numDatagram) throws IOException {
+        // Each datagram is received into its own buffer so a small datagram never keeps a bigger buffer alive. The
+        // buffers which are not filled are kept for the next read, so only the filled ones need to be allocated again.
+        ByteBuf[] buffers = scatteringReadBuffers(numDatagram);
         RecyclableArrayList bufferPackets = null;
+        boolean success = false;
         try {
-            int offset = byteBuf.writerIndex();
             NativeDatagramPacketArray array = cleanDatagramPacketArray();
-
-            for (int i = 0; i < numDatagram;  i++, offset += datagramSize) {
-                if (!array.addWritable(byteBuf, offset, datagramSize)) {
+            int numBuffers = 0;
+            while (numBuffers < numDatagram) {
+                ByteBuf byteBuf = buffers[numBuffers];
+                if (byteBuf == null || byteBuf.writableBytes() < datagramSize) {
+                    if (byteBuf != null) {
+                        byteBuf.release();
+                    }
+                    byteBuf = allocator.directBuffer(datagramSize);
+                    buffers[numBuffers] = byteBuf;
+                }
+                if (!array.addWritable(byteBuf, byteBuf.writerIndex(), datagramSize)) {
                     break;
                 }
+                numBuffers++;
             }
 
-            allocHandle.attemptedBytesRead(offset - byteBuf.writerIndex());
+            allocHandle.attemptedBytesRead(numBuffers * datagramSize);
 
             NativeDatagramPacketArray.NativeDatagramPacket[] packets = array.packets();
 
             int received = socket.recvmmsg(packets, 0, array.count());
             if (received == 0) {
                 allocHandle.lastBytesRead(-1);
+                success = true;
                 return false;
             }
-            int bytesReceived = received * datagramSize;
-            byteBuf.writerIndex(bytesReceived);
-            InetSocketAddress local = localAddress();
-            if (received == 1) {
-                // Single packet fast-path
-                DatagramPacket packet = packets[0].newDatagramPacket(byteBuf, local);
-                allocHandle.lastBytesRead(datagramSize);
-                allocHandle.incMessagesRead(1);
-                pipeline().fireChannelRead(packet);
-                byteBuf = null;
-                return true;
-            }
 
             // Its important that we process all received data out of the NativeDatagramPacketArray
             // before we call fireChannelRead(...). This is because the user may call flush()
             // in a channelRead(...) method and so may re-use the NativeDatagramPacketArray again.
-            bufferPackets = RecyclableArrayList.newInstance();
+            InetSocketAddress local = localAddress();
+            bufferPackets = RecyclableArrayList.newInstance(received);
+            int bytesReceived = 0;
             for (int i = 0; i < received; i++) {
-                DatagramPacket packet = packets[i].newDatagramPacket(byteBuf.readRetainedSlice(datagramSize), local);
-                bufferPackets.add(packet);
+                DatagramPacket packet = packets[i].newDatagramPacket(buffers[i], local);
+                buffers[i] = null;
+                bytesReceived += packet.content().readableBytes();
+                addDatagramPackets(packet, packets[i].segmentSize(), bufferPackets);
             }
+            success = true;
 
             allocHandle.lastBytesRead(bytesReceived);
-            allocHandle.incMessagesRead(received);
+            // Datagrams coalesced via UDP_GRO are split, so count the packets that are actually fired.
+            allocHandle.incMessagesRead(bufferPackets.size());
 
-            for (int i = 0; i < received; i++) {
+            for (int i = 0; i < bufferPackets.size(); i++) {
+                pipeline().fireChannelRead(bufferPackets.set(i, Unpooled.EMPTY_BUFFER));
+            }
+            bufferPackets.recycle();
+            bufferPackets = null;
+            return true;
+        } finally {
+            if (!success) {
+                releaseScatteringReadBuffers();
+            }
+            if (bufferPackets != null) {
+                for (int i = 0; i < bufferPackets.size(); i++) {
+                    ReferenceCountUtil.release(bufferPackets.get(i));
+                }
+                bufferPackets.recycle();
+            }
+        }
+    }
+
+    /**
+     * Returns the cached buffers of {@link #scatteringRead(EpollRecvByteAllocatorHandle, ByteBufAllocator, int, int)},
+     * which can hold at least {@code numDatagram} buffers.
+     */
+    private ByteBuf[] scatteringReadBuffers(int numDatagram) {
+        ByteBuf[] buffers = scatteringReadBuffers;
+        if (buffers == null || buffers.length < numDatagram) {
+            releaseScatteringReadBuffers();
+            buffers = scatteringReadBuffers = new ByteBuf[numDatagram];
+        }
+        return buffers;
+    }
+
+    private void releaseScatteringReadBuffers() {
+        ByteBuf[] buffers = scatteringReadBuffers;
+        if (buffers == null) {
+            return;
+        }
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != null) {
+                buffers[i].release();
+                buffers[i] = null;
+            }
+        }
+    }
+
+    private boolean segmentedRead(EpollRecvByteAllocatorHandle allocHandle, ByteBuf byteBuf, int maxDatagramPacketSize)
+            throws IOException {
+        RecyclableArrayList bufferPackets = null;
+        try {
+            int writable = maxDatagramPacketSize != 0 ? Math.min(byteBuf.writableBytes(), maxDatagramPacketSize)
+                    : byteBuf.writableBytes();
+            allocHandle.attemptedBytesRead(writable);
+
+            NativeDatagramPacketArray array = cleanDatagramPacketArray();
+            array.addWritable(byteBuf, byteBuf.writerIndex(), writable);
+            NativeDatagramPacketArray.NativeDatagramPacket[] packets = array.packets();
+
+            int received = socket.recvmmsg(packets, 0, array.count());
+            if (received == 0) {
+                allocHandle.lastBytesRead(-1);
+                return false;
+            }
+            DatagramPacket packet = packets[0].newDatagramPacket(byteBuf, localAddress());
+            byteBuf = null;
+            allocHandle.lastBytesRead(packet.content().readableBytes());
+
+            // Process everything before calling fireChannelRead(...) as the NativeDatagramPacketArray may be re-used.
+            bufferPackets = RecyclableArrayList.newInstance();
+            addDatagramPackets(packet, packets[0].segmentSize(), bufferPackets);
+            // Count each segment as the datagrams coalesced via UDP_GRO are fired one by one.
+            allocHandle.incMessagesRead(bufferPackets.size());
+            for (int i = 0; i < bufferPackets.size(); i++) {
                 pipeline().fireChannelRead(bufferPackets.set(i, Unpooled.EMPTY_BUFFER));
             }
             bufferPackets.recycle();
@@ -654,6 +766,26 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
         }
     }
 
+    /**
+     * Adds the given {@link DatagramPacket} to {@code out}. If it was coalesced via UDP_GRO it is split back into
+     * the original datagrams using retained slices of its content, so no data is copied.
+     */
+    private static void addDatagramPackets(DatagramPacket packet, int segmentSize, List<Object> out) {
+        ByteBuf content = packet.content();
+        if (segmentSize <= 0 || content.readableBytes() <= segmentSize) {
+            out.add(packet);
+            return;
+        }
+        try {
+            while (content.isReadable()) {
+                ByteBuf segment = content.readRetainedSlice(Math.min(content.readableBytes(), segmentSize));
+                out.add(new DatagramPacket(segment, packet.recipient(), packet.sender()));
+            }
+        } finally {
+            packet.release();
+        }
+    }
+
     private boolean read(EpollRecvByteAllocatorHandle allocHandle, ByteBuf byteBuf, int maxDatagramPacketSize)
             throws IOException {
         try {
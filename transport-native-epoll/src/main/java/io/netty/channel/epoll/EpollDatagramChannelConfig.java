@@ -35,6 +35,7 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
     private static final RecvByteBufAllocator DEFAULT_RCVBUF_ALLOCATOR = new FixedRecvByteBufAllocator(2048);
     private boolean activeOnOpen;
     private volatile int maxDatagramSize;
+    private volatile boolean gro;
 
     EpollDatagramChannelConfig(EpollDatagramChannel channel) {
         super(channel);
@@ -51,7 +52,8 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
                 ChannelOption.IP_MULTICAST_ADDR, ChannelOption.IP_MULTICAST_IF, ChannelOption.IP_MULTICAST_TTL,
                 ChannelOption.IP_TOS, ChannelOption.DATAGRAM_CHANNEL_ACTIVE_ON_REGISTRATION,
                 EpollChannelOption.SO_REUSEPORT, EpollChannelOption.IP_FREEBIND, EpollChannelOption.IP_TRANSPARENT,
-                EpollChannelOption.IP_RECVORIGDSTADDR, EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE);
+                EpollChannelOption.IP_RECVORIGDSTADDR, EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE,
+                EpollChannelOption.UDP_SEGMENT, EpollChannelOption.UDP_GRO);
     }
 
     @SuppressWarnings({ "unchecked", "deprecation" })
@@ -102,6 +104,12 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
         if (option == EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE) {
             return (T) Integer.valueOf(getMaxDatagramPayloadSize());
         }
+        if (option == EpollChannelOption.UDP_SEGMENT) {
+            return (T) Integer.valueOf(getUdpSegmentSize());
+        }
+        if (option == EpollChannelOption.UDP_GRO) {
+            return (T) Boolean.valueOf(isUdpGro());
+        }
         return super.getOption(option);
     }
 
@@ -140,6 +148,10 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
             setIpRecvOrigDestAddr((Boolean) value);
         } else if (option == EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE) {
             setMaxDatagramPayloadSize((Integer) value);
+        } else if (option == EpollChannelOption.UDP_SEGMENT) {
+            setUdpSegmentSize((Integer) value);
+        } else if (option == EpollChannelOption.UDP_GRO) {
+            setUdpGro((Boolean) value);
         } else {
             return super.setOption(option, value);
         }
@@ -511,7 +523,9 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
      * Set the maximum {@link io.netty.channel.socket.DatagramPacket} size. This will be used to determine if
      * {@code recvmmsg} should be used when reading from the underlying socket. When {@code recvmmsg} is used
      * we may be able to read multiple {@link io.netty.channel.socket.DatagramPacket}s with one syscall and so
-     * greatly improve the performance. This number will be used to slice {@link ByteBuf}s returned by the used
+     * greatly improve the performance. This number is used as the size of each {@link ByteBuf} that is allocated per
+     * datagram, while the number of datagrams read with one syscall is bounded by the
+     * {@link io.netty.channel.MaxMessagesRecvByteBufAllocator#maxMessagesPerRead()} of the used
      * {@link RecvByteBufAllocator}. You can use {@code 0} to disable the usage of recvmmsg, any other bigger value
      * will enable it.
      */
@@ -526,4 +540,55 @@ public final class EpollDatagramChannelConfig extends EpollChannelConfig impleme
     public int getMaxDatagramPayloadSize() {
         return maxDatagramSize;
     }
+
+    /**
+     * Set the segment size that is used by the kernel to split every payload that is bigger into multiple datagrams
+     * via <a href="https://man7.org/linux/man-pages/man7/udp.7.html">UDP_SEGMENT</a> (UDP GSO). Use {@code 0} to
+     * disable it, which is the default. A {@link SegmentedDatagramPacket} can be used to set the segment size per
+     * written packet instead.
+     */
+    public EpollDatagramChannelConfig setUdpSegmentSize(int segmentSize) {
+        try {
+            ((EpollDatagramChannel) channel).socket.setUdpSegment(segmentSize);
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns the segment size that is used for
+     * <a href="https://man7.org/linux/man-pages/man7/udp.7.html">UDP_SEGMENT</a> or {@code 0} if disabled.
+     */
+    public int getUdpSegmentSize() {
+        try {
+            return ((EpollDatagramChannel) channel).socket.getUdpSegment();
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Enable / disable <a href="https://man7.org/linux/man-pages/man7/udp.7.html">UDP_GRO</a>. When enabled the
+     * kernel may coalesce multiple datagrams of the same flow into one bigger buffer, which is split back into
+     * the original {@link io.netty.channel.socket.DatagramPacket}s before they are passed through the
+     * {@link io.netty.channel.ChannelPipeline}. The used {@link ByteBuf}s must be big enough to hold the coalesced
+     * datagrams (up to 64kb), otherwise they will be truncated. Default is disabled.
+     */
+    public EpollDatagramChannelConfig setUdpGro(boolean gro) {
+        try {
+            ((EpollDatagramChannel) channel).socket.setUdpGro(gro);
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+        this.gro = gro;
+        return this;
+    }
+
+    /**
+     * Returns {@code true} if <a href="https://man7.org/linux/man-pages/man7/udp.7.html">UDP_GRO</a> is enabled.
+     */
+    public boolean isUdpGro() {
+        return gro;
+    }
 }
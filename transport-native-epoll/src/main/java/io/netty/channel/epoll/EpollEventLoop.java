@@ -180,6 +180,7 @@ class EpollEventLoop extends SingleThreadEventLoop {
         if (!inEventLoop && WAKEN_UP_UPDATER.getAndSet(this, 1) == 0) {
             // write to the evfd which will then wake-up epoll_wait(...)
             Native.eventFdWrite(eventFd.intValue(), 1L);
+            recordWakeup();
         }
     }
 
@@ -288,6 +289,7 @@ class EpollEventLoop extends SingleThreadEventLoop {
     protected void run() {
         for (;;) {
             try {
+                final long loopStartTime = loopIterationStartTime();
                 int strategy = selectStrategy.calculateStrategy(selectNowSupplier, hasTasks());
                 switch (strategy) {
                     case SelectStrategy.CONTINUE:
@@ -304,31 +306,39 @@ class EpollEventLoop extends SingleThreadEventLoop {
                         if (!hasTasks()) {
                             strategy = epollWait();
                         }
+                        // We are awake again and will pick up all tasks that are submitted before we go to sleep
+                        // the next time, so there is no need for other threads to write to the eventfd until then.
+                        WAKEN_UP_UPDATER.lazySet(this, 1);
                         // fallthrough
                     default:
                 }
 
                 final int ioRatio = this.ioRatio;
+                final long ioStartTime = System.nanoTime();
                 if (ioRatio == 100) {
                     try {
                         if (strategy > 0) {
                             processReady(events, strategy);
                         }
                     } finally {
+                        final long ioEndTime = System.nanoTime();
+                        recordIoTime(ioStartTime, ioEndTime);
                         // Ensure we always run tasks.
                         runAllTasks();
+                        recordLoopIteration(loopStartTime, ioStartTime, ioEndTime);
                     }
                 } else {
-                    final long ioStartTime = System.nanoTime();
-
                     try {
                         if (strategy > 0) {
                             processReady(events, strategy);
                         }
                     } finally {
                         // Ensure we always run tasks.
-                        final long ioTime = System.nanoTime() - ioStartTime;
+                        final long ioEndTime = System.nanoTime();
+                        recordIoTime(ioStartTime, ioEndTime);
+                        final long ioTime = ioEndTime - ioStartTime;
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                        recordLoopIteration(loopStartTime, ioStartTime, ioEndTime);
                     }
                 }
                 if (allowGrowing && strategy == events.length()) {
@@ -409,6 +419,11 @@ class EpollEventLoop extends SingleThreadEventLoop {
                     // In either case epollOutReady() will do the correct thing (finish connecting, or fail
                     // the connection).
                     // See https://github.com/netty/netty/issues/3848
+                    if ((ev & Native.EPOLLERR) != 0) {
+                        // Give the channel the chance to drain its error queue (for example MSG_ZEROCOPY
+                        // notifications).
+                        unsafe.epollErrReady();
+                    }
                     if ((ev & (Native.EPOLLERR | Native.EPOLLOUT)) != 0) {
                         // Force flush of data as the epoll is writable again
                         unsafe.epollOutReady();
@@ -21,9 +21,12 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.EventLoopTaskQueueFactory;
 import io.netty.channel.MultithreadEventLoopGroup;
 import io.netty.channel.SelectStrategyFactory;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.EventExecutorChooserFactory;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.UnstableApi;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
@@ -136,6 +139,17 @@ public final class EpollEventLoopGroup extends MultithreadEventLoopGroup {
         }
     }
 
+    /**
+     * Sets if the child event loops store their scheduled tasks in a hierarchical timing wheel instead of a binary
+     * heap, see {@link SingleThreadEventExecutor#setTimingWheelScheduler(boolean)}.
+     */
+    @UnstableApi
+    public void setTimingWheelScheduler(boolean enabled) {
+        for (EventExecutor e: this) {
+            ((EpollEventLoop) e).setTimingWheelScheduler(enabled);
+        }
+    }
+
     @Override
     protected EventLoop newChild(Executor executor, Object... args) throws Exception {
         EventLoopTaskQueueFactory queueFactory = args.length == 4 ? (EventLoopTaskQueueFactory) args[3] : null;
@@ -85,6 +85,19 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
         }
     }
 
+    /**
+     * Returns the statistics about {@code MSG_ZEROCOPY} writes of this channel.
+     * See {@link EpollSocketChannelConfig#setSoZeroCopy(boolean)}.
+     */
+    public EpollZeroCopyStats zeroCopyStats() {
+        return zeroCopyStats;
+    }
+
+    @Override
+    int zeroCopyWriteThreshold() {
+        return config.isSoZeroCopy() ? config.getZeroCopyWriteThreshold() : -1;
+    }
+
     @Override
     public InetSocketAddress remoteAddress() {
         return (InetSocketAddress) super.remoteAddress();
@@ -116,10 +129,10 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
             try {
                 // Check isOpen() first as otherwise it will throw a RuntimeException
                 // when call getSoLinger() as the fd is not valid anymore.
-                if (isOpen() && config().getSoLinger() > 0) {
+                if (isOpen() && (config().getSoLinger() > 0 || hasPendingZeroCopyWrites())) {
                     // We need to cancel this key of the channel so we may not end up in a eventloop spin
                     // because we try to read or write until the actual close happens which may be later due
-                    // SO_LINGER handling.
+                    // SO_LINGER handling or waiting for the notifications of pending MSG_ZEROCOPY writes.
                     // See https://github.com/netty/netty/issues/4449
                     ((EpollEventLoop) eventLoop()).remove(EpollSocketChannel.this);
                     return GlobalEventExecutor.INSTANCE;
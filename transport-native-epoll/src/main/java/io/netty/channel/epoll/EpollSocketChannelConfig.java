@@ -36,9 +36,15 @@ import static io.netty.channel.ChannelOption.SO_RCVBUF;
 import static io.netty.channel.ChannelOption.SO_REUSEADDR;
 import static io.netty.channel.ChannelOption.SO_SNDBUF;
 import static io.netty.channel.ChannelOption.TCP_NODELAY;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 public final class EpollSocketChannelConfig extends EpollChannelConfig implements SocketChannelConfig {
+    // The kernel documentation states that MSG_ZEROCOPY is generally only effective for writes over around 10 KB.
+    private static final int DEFAULT_ZEROCOPY_WRITE_THRESHOLD = 10 * 1024;
+
     private volatile boolean allowHalfClosure;
+    private volatile boolean zeroCopy;
+    private volatile int zeroCopyWriteThreshold = DEFAULT_ZEROCOPY_WRITE_THRESHOLD;
 
     /**
      * Creates a new instance.
@@ -60,7 +66,8 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
                 ALLOW_HALF_CLOSURE, EpollChannelOption.TCP_CORK, EpollChannelOption.TCP_NOTSENT_LOWAT,
                 EpollChannelOption.TCP_KEEPCNT, EpollChannelOption.TCP_KEEPIDLE, EpollChannelOption.TCP_KEEPINTVL,
                 EpollChannelOption.TCP_MD5SIG, EpollChannelOption.TCP_QUICKACK, EpollChannelOption.IP_TRANSPARENT,
-                EpollChannelOption.TCP_FASTOPEN_CONNECT, EpollChannelOption.SO_BUSY_POLL);
+                EpollChannelOption.TCP_FASTOPEN_CONNECT, EpollChannelOption.SO_BUSY_POLL,
+                EpollChannelOption.SO_ZEROCOPY, EpollChannelOption.ZEROCOPY_WRITE_THRESHOLD);
     }
 
     @SuppressWarnings("unchecked")
@@ -120,6 +127,12 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         if (option == EpollChannelOption.SO_BUSY_POLL) {
             return (T) Integer.valueOf(getSoBusyPoll());
         }
+        if (option == EpollChannelOption.SO_ZEROCOPY) {
+            return (T) Boolean.valueOf(isSoZeroCopy());
+        }
+        if (option == EpollChannelOption.ZEROCOPY_WRITE_THRESHOLD) {
+            return (T) Integer.valueOf(getZeroCopyWriteThreshold());
+        }
         return super.getOption(option);
     }
 
@@ -167,6 +180,10 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
             setTcpFastOpenConnect((Boolean) value);
         } else if (option == EpollChannelOption.SO_BUSY_POLL) {
             setSoBusyPoll((Integer) value);
+        } else if (option == EpollChannelOption.SO_ZEROCOPY) {
+            setSoZeroCopy((Boolean) value);
+        } else if (option == EpollChannelOption.ZEROCOPY_WRITE_THRESHOLD) {
+            setZeroCopyWriteThreshold((Integer) value);
         } else {
             return super.setOption(option, value);
         }
@@ -259,6 +276,22 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         }
     }
 
+    /**
+     * Returns {@code true} if {@code SO_ZEROCOPY} is enabled on the socket and so large writes are done with
+     * {@code MSG_ZEROCOPY}.
+     */
+    public boolean isSoZeroCopy() {
+        return zeroCopy;
+    }
+
+    /**
+     * Returns the minimum number of readable bytes a direct {@link io.netty.buffer.ByteBuf} must have to be written
+     * with {@code MSG_ZEROCOPY} if {@link #isSoZeroCopy()} is {@code true}.
+     */
+    public int getZeroCopyWriteThreshold() {
+        return zeroCopyWriteThreshold;
+    }
+
     /**
      * Get the {@code TCP_NOTSENT_LOWAT} option on the socket. See {@code man 7 tcp} for more details.
      * @return value is a uint32_t
@@ -406,6 +439,35 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         }
     }
 
+    /**
+     * Set the {@code SO_ZEROCOPY} option on the socket. If enabled direct buffers with at least
+     * {@link #getZeroCopyWriteThreshold()} readable bytes are written with {@code MSG_ZEROCOPY}. These buffers are
+     * retained until the kernel signals that it does not reference their memory anymore, so they must not be
+     * modified after they were written. See
+     * <a href="https://www.kernel.org/doc/html/latest/networking/msg_zerocopy.html">MSG_ZEROCOPY</a> for more details.
+     */
+    public EpollSocketChannelConfig setSoZeroCopy(boolean zeroCopy) {
+        if (zeroCopy && !Native.IS_SUPPORTING_MSG_ZEROCOPY) {
+            throw new ChannelException("MSG_ZEROCOPY is not supported by the kernel");
+        }
+        try {
+            ((EpollSocketChannel) channel).socket.setZeroCopy(zeroCopy);
+            this.zeroCopy = zeroCopy;
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Set the minimum number of readable bytes a direct {@link io.netty.buffer.ByteBuf} must have to be written with
+     * {@code MSG_ZEROCOPY}. Smaller writes are copied into the kernel as usual.
+     */
+    public EpollSocketChannelConfig setZeroCopyWriteThreshold(int zeroCopyWriteThreshold) {
+        this.zeroCopyWriteThreshold = checkPositiveOrZero(zeroCopyWriteThreshold, "zeroCopyWriteThreshold");
+        return this;
+    }
+
     /**
      * Set the {@code TCP_NOTSENT_LOWAT} option on the socket. See {@code man 7 tcp} for more details.
      * @param tcpNotSentLowAt is a uint32_t
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+
+import static io.netty.channel.unix.FileDescriptor.pipe;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Relays the bytes between two {@link AbstractEpollStreamChannel}s via {@code splice(2)}, so the data is moved
+ * from socket to pipe to socket without ever being copied into user-space.
+ * <p>
+ * While the relay is running the data read from one channel is not passed through its {@link ChannelPipeline} but
+ * directly spliced to the other channel. Writes done via the {@link ChannelPipeline} of a channel are still
+ * supported and are ordered correctly with the relayed bytes. At most one pipe worth of data is buffered per
+ * direction: reading from a channel is suspended until everything that was read was written to the other channel,
+ * which will only happen once the other channel is writable again. The end of the stream of one channel is
+ * propagated by shutting down the output of the other channel. Once both directions reached the end of the stream
+ * or one of the channels was closed both channels are closed.
+ * <p>
+ * If a handler needs to inspect the data again, {@link #stop()} can be used to fall back to the normal
+ * {@link ChannelPipeline} processing.
+ * <p>
+ * Please note:
+ * <ul>
+ *   <li>both channels need to be registered to the same {@link EventLoop}, otherwise an
+ *   {@link IllegalArgumentException} is thrown.</li>
+ *   <li>{@link EpollChannelConfig#getEpollMode()} must be {@link EpollMode#LEVEL_TRIGGERED} for both channels.</li>
+ *   <li>reading is controlled by the relay while it is running, regardless of
+ *   {@link io.netty.channel.ChannelConfig#isAutoRead()}.</li>
+ * </ul>
+ */
+public final class EpollSpliceRelay {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollSpliceRelay.class);
+
+    // The default capacity of a pipe on linux.
+    private static final int PIPE_CAPACITY = 65536;
+
+    private final Direction firstToSecond;
+    private final Direction secondToFirst;
+    private boolean stopped;
+
+    private EpollSpliceRelay(AbstractEpollStreamChannel first, AbstractEpollStreamChannel second) {
+        firstToSecond = new Direction(first, second);
+        secondToFirst = new Direction(second, first);
+    }
+
+    /**
+     * Start relaying the bytes between {@code first} and {@code second}.
+     */
+    public static EpollSpliceRelay start(AbstractEpollStreamChannel first, AbstractEpollStreamChannel second) {
+        checkNotNull(first, "first");
+        checkNotNull(second, "second");
+        if (first == second) {
+            throw new IllegalArgumentException("Can not relay a channel to itself.");
+        }
+        if (first.eventLoop() != second.eventLoop()) {
+            throw new IllegalArgumentException("EventLoops are not the same.");
+        }
+        if (first.config().getEpollMode() != EpollMode.LEVEL_TRIGGERED
+                || second.config().getEpollMode() != EpollMode.LEVEL_TRIGGERED) {
+            throw new IllegalStateException(
+                    "EpollSpliceRelay supported only when using " + EpollMode.LEVEL_TRIGGERED);
+        }
+        final EpollSpliceRelay relay = new EpollSpliceRelay(first, second);
+        EventLoop loop = first.eventLoop();
+        if (loop.inEventLoop()) {
+            relay.start0();
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    relay.start0();
+                }
+            });
+        }
+        return relay;
+    }
+
+    /**
+     * Stop relaying. Bytes that were already read will still be written to the other channel, everything that is
+     * read after this call is passed through the {@link ChannelPipeline} again.
+     */
+    public void stop() {
+        EventLoop loop = firstToSecond.src.eventLoop();
+        if (loop.inEventLoop()) {
+            stop0();
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    stop0();
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the number of bytes that were relayed from {@code from} to the other channel.
+     */
+    public long transferred(AbstractEpollStreamChannel from) {
+        if (from == firstToSecond.src) {
+            return firstToSecond.transferred;
+        }
+        if (from == secondToFirst.src) {
+            return secondToFirst.transferred;
+        }
+        throw new IllegalArgumentException("Channel is not part of this relay: " + from);
+    }
+
+    private void start0() {
+        if (stopped) {
+            return;
+        }
+        if (!firstToSecond.src.isOpen() || !secondToFirst.src.isOpen()) {
+            closeAll();
+            return;
+        }
+        if (firstToSecond.src.spliceRelay != null || secondToFirst.src.spliceRelay != null) {
+            stopped = true;
+            throw new IllegalStateException("Channel is already part of another relay");
+        }
+        try {
+            firstToSecond.start();
+            secondToFirst.start();
+        } catch (Throwable cause) {
+            logger.debug("Failed to start the splice relay", cause);
+            closeAll();
+        }
+    }
+
+    private void stop0() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        firstToSecond.stop();
+        secondToFirst.stop();
+    }
+
+    private void closeAll() {
+        stop0();
+        firstToSecond.src.close();
+        secondToFirst.src.close();
+    }
+
+    private void directionDone() {
+        if (firstToSecond.done && secondToFirst.done) {
+            // Both sides signaled the end of the stream and everything was written.
+            closeAll();
+        }
+    }
+
+    /**
+     * Relays the bytes in one direction.
+     */
+    final class Direction implements ChannelFutureListener {
+        final AbstractEpollStreamChannel src;
+        final AbstractEpollStreamChannel dst;
+        private FileDescriptor pipeIn;
+        private FileDescriptor pipeOut;
+        // The number of bytes that are in the pipe and were not written to dst yet.
+        private int pending;
+        private boolean eof;
+        // Set once the end of the stream was propagated to dst.
+        private boolean done;
+        volatile long transferred;
+
+        Direction(AbstractEpollStreamChannel src, AbstractEpollStreamChannel dst) {
+            this.src = src;
+            this.dst = dst;
+        }
+
+        void start() throws IOException {
+            FileDescriptor[] pipe = pipe();
+            pipeIn = pipe[0];
+            pipeOut = pipe[1];
+            src.spliceRelay = this;
+            src.closeFuture().addListener(this);
+            src.setFlag(Native.EPOLLIN);
+        }
+
+        void stop() {
+            if (src.spliceRelay == this) {
+                src.spliceRelay = null;
+            }
+            src.closeFuture().removeListener(this);
+            if (pending == 0) {
+                closePipe();
+            }
+            if (!src.isOpen() || eof) {
+                return;
+            }
+            if (src.config().isAutoRead()) {
+                src.read();
+            } else {
+                src.clearEpollIn();
+            }
+        }
+
+        /**
+         * Called by the {@link EventLoop} once {@link #src} is readable.
+         */
+        void spliceIn() {
+            assert src.eventLoop().inEventLoop();
+            if (pending != 0 || eof) {
+                // Wait until all bytes were written to dst.
+                pauseReading();
+                return;
+            }
+            try {
+                int splicedIn = 0;
+                for (;;) {
+                    int res = Native.spliceOrEof(src.socket.intValue(), pipeOut.intValue(),
+                            PIPE_CAPACITY - splicedIn);
+                    if (res > 0) {
+                        splicedIn += res;
+                        if (splicedIn < PIPE_CAPACITY) {
+                            continue;
+                        }
+                    } else if (res < 0) {
+                        eof = true;
+                    }
+                    // Either the socket has no more data or the pipe is full.
+                    break;
+                }
+
+                if (splicedIn > 0) {
+                    pending = splicedIn;
+                    transferred += splicedIn;
+                    pauseReading();
+                    writeSpliceOut(splicedIn);
+                } else if (eof) {
+                    pauseReading();
+                    propagateEof();
+                }
+            } catch (Throwable cause) {
+                logger.debug("Failed to splice from {}", src, cause);
+                closeAll();
+            }
+        }
+
+        /**
+         * Use the outbound buffer of {@link #dst} so we keep the correct ordering with writes that are done via its
+         * {@link ChannelPipeline} and get notified once it is writable again.
+         */
+        private void writeSpliceOut(int len) {
+            ChannelPromise promise = dst.newPromise().addListener(this);
+            ChannelOutboundBuffer outboundBuffer = dst.unsafe().outboundBuffer();
+            if (outboundBuffer == null) {
+                // dst was closed.
+                promise.setFailure(new ClosedChannelException());
+                return;
+            }
+            // Add the message directly instead of via Unsafe.write(...), so it is accounted with the number of bytes
+            // in the pipe and not with the size the MessageSizeEstimator of dst returns for unknown messages. This
+            // keeps the writability of dst correct.
+            outboundBuffer.addMessage(new SpliceOut(this, len), len, promise);
+            dst.unsafe().flush();
+        }
+
+        int spliceOut(int len) throws IOException {
+            return Native.splice(pipeIn.intValue(), -1, dst.socket.intValue(), -1, len);
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            if (future == src.closeFuture()) {
+                // One of the channels was closed, close the other one as well.
+                closeAll();
+                return;
+            }
+            // The write of the spliced bytes to dst completed.
+            pending = 0;
+            if (!future.isSuccess()) {
+                closePipe();
+                closeAll();
+                return;
+            }
+            if (src.spliceRelay != this) {
+                // stop() was called while we still had bytes to write.
+                closePipe();
+            } else if (eof) {
+                propagateEof();
+            } else {
+                resumeReading();
+            }
+        }
+
+        private void propagateEof() {
+            done = true;
+            closePipe();
+            if (dst.isActive() && !dst.isOutputShutdown()) {
+                dst.shutdownOutput();
+            }
+            if (src.isOpen()) {
+                // Let the channel handle the end of the stream as usual, which either closes it or fires a
+                // ChannelInputShutdownEvent.
+                ((AbstractEpollChannel.AbstractEpollUnsafe) src.unsafe()).shutdownInput(false);
+            }
+            directionDone();
+        }
+
+        private void pauseReading() {
+            try {
+                src.clearFlag(Native.EPOLLIN);
+            } catch (IOException e) {
+                closeAll();
+            }
+        }
+
+        private void resumeReading() {
+            try {
+                src.setFlag(Native.EPOLLIN);
+            } catch (IOException e) {
+                closeAll();
+            }
+        }
+
+        private void closePipe() {
+            safeClose(pipeIn);
+            safeClose(pipeOut);
+            pipeIn = null;
+            pipeOut = null;
+        }
+    }
+
+    private static void safeClose(FileDescriptor fd) {
+        if (fd != null) {
+            try {
+                fd.close();
+            } catch (IOException e) {
+                logger.warn("Error while closing a pipe", e);
+            }
+        }
+    }
+
+    /**
+     * Written to the outbound buffer of the destination channel to splice the bytes that are in the pipe.
+     */
+    static final class SpliceOut {
+        private final Direction direction;
+        private int len;
+
+        SpliceOut(Direction direction, int len) {
+            this.direction = direction;
+            this.len = len;
+        }
+
+        /**
+         * Returns {@code true} once all bytes were written.
+         */
+        boolean spliceOut() throws IOException {
+            len -= direction.spliceOut(len);
+            return len == 0;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+/**
+ * Statistics about {@code MSG_ZEROCOPY} usage of an {@link EpollSocketChannel}.
+ *
+ * The counters are only updated by the {@link EpollEventLoop} of the channel but may be read from any thread.
+ */
+public final class EpollZeroCopyStats {
+
+    private volatile long zeroCopyWrites;
+    private volatile long zeroCopyBytes;
+    private volatile long copyWrites;
+    private volatile long kernelCopiedWrites;
+    private volatile long completedWrites;
+
+    EpollZeroCopyStats() { }
+
+    /**
+     * Returns the number of writes that were done with {@code MSG_ZEROCOPY}.
+     */
+    public long zeroCopyWrites() {
+        return zeroCopyWrites;
+    }
+
+    /**
+     * Returns the number of bytes that were written with {@code MSG_ZEROCOPY}.
+     */
+    public long zeroCopyBytes() {
+        return zeroCopyBytes;
+    }
+
+    /**
+     * Returns the number of writes that used the copying path while {@code MSG_ZEROCOPY} was enabled, either
+     * because the data was smaller than {@link EpollSocketChannelConfig#getZeroCopyWriteThreshold()} or because
+     * the kernel was not able to pin more memory.
+     */
+    public long copyWrites() {
+        return copyWrites;
+    }
+
+    /**
+     * Returns the number of {@code MSG_ZEROCOPY} writes for which the kernel reported that it copied the data
+     * anyway (for example because the route did not support scatter-gather).
+     */
+    public long kernelCopiedWrites() {
+        return kernelCopiedWrites;
+    }
+
+    /**
+     * Returns the number of {@code MSG_ZEROCOPY} writes which are still waiting for their completion notification.
+     * Until then the written buffers are retained. The buffers of writes which are still pending once the channel
+     * was closed are never released, as the kernel may still reference their memory.
+     */
+    public long pendingCompletions() {
+        return zeroCopyWrites - completedWrites;
+    }
+
+    void incrementZeroCopyWrites(int bytes) {
+        zeroCopyWrites++;
+        zeroCopyBytes += bytes;
+    }
+
+    void incrementCopyWrites() {
+        copyWrites++;
+    }
+
+    void incrementKernelCopiedWrites(int writes) {
+        kernelCopiedWrites += writes;
+    }
+
+    void incrementCompletedWrites(int writes) {
+        completedWrites += writes;
+    }
+
+    @Override
+    public String toString() {
+        return "EpollZeroCopyStats(zeroCopyWrites: " + zeroCopyWrites + ", zeroCopyBytes: " + zeroCopyBytes +
+                ", copyWrites: " + copyWrites + ", kernelCopiedWrites: " + kernelCopiedWrites +
+                ", pendingCompletions: " + pendingCompletions() + ')';
+    }
+}
@@ -215,6 +215,58 @@ final class LinuxSocket extends Socket {
         setIpRecvOrigDestAddr(intValue(), enabled ? 1 : 0);
     }
 
+    void setUdpSegment(int segmentSize) throws IOException {
+        setUdpSegment(intValue(), segmentSize);
+    }
+
+    void setUdpGro(boolean gro) throws IOException {
+        setUdpGro(intValue(), gro ? 1 : 0);
+    }
+
+    int getUdpSegment() throws IOException {
+        return getUdpSegment(intValue());
+    }
+
+    void setZeroCopy(boolean zeroCopy) throws IOException {
+        setZeroCopy(intValue(), zeroCopy ? 1 : 0);
+    }
+
+    boolean isZeroCopy() throws IOException {
+        return isZeroCopy(intValue()) != 0;
+    }
+
+    /**
+     * Send the bytes between {@code pos} and {@code limit} of the given memory address with {@code MSG_ZEROCOPY}.
+     * Returns {@code -1} if the kernel could not pin the pages ({@code ENOBUFS}), in which case the caller should
+     * fall back to a copying write.
+     */
+    int sendZeroCopy(long address, int pos, int limit) throws IOException {
+        int res = sendZeroCopy(intValue(), address, pos, limit);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == Native.ERRNO_ENOBUFS_NEGATIVE) {
+            return -1;
+        }
+        return ioResult("send", res);
+    }
+
+    /**
+     * Read the next {@code MSG_ZEROCOPY} completion notification from the error queue of the socket into
+     * {@code completion} (first id, last id, copied flag).
+     * Returns {@code 1} if a notification was read, {@code 0} if a message without notification was consumed
+     * and {@code -1} if the error queue is empty.
+     */
+    int recvZeroCopyCompletion(int[] completion) throws IOException {
+        int res = recvZeroCopyCompletion(intValue(), completion);
+        if (res >= 0) {
+            return res;
+        }
+        // Will throw if this is not EAGAIN.
+        ioResult("recvmsg", res);
+        return -1;
+    }
+
     int getTimeToLive() throws IOException {
         return getTimeToLive(intValue());
     }
@@ -367,6 +419,8 @@ final class LinuxSocket extends Socket {
     private static native int isIpFreeBind(int fd) throws IOException;
     private static native int isIpTransparent(int fd) throws IOException;
     private static native int isIpRecvOrigDestAddr(int fd) throws IOException;
+    private static native int getUdpSegment(int fd) throws IOException;
+    private static native int isZeroCopy(int fd) throws IOException;
     private static native void getTcpInfo(int fd, long[] array) throws IOException;
     private static native PeerCredentials getPeerCredentials(int fd) throws IOException;
     private static native int isTcpFastOpenConnect(int fd) throws IOException;
@@ -385,6 +439,11 @@ final class LinuxSocket extends Socket {
     private static native void setIpFreeBind(int fd, int freeBind) throws IOException;
     private static native void setIpTransparent(int fd, int transparent) throws IOException;
     private static native void setIpRecvOrigDestAddr(int fd, int transparent) throws IOException;
+    private static native void setUdpSegment(int fd, int segmentSize) throws IOException;
+    private static native void setUdpGro(int fd, int gro) throws IOException;
+    private static native void setZeroCopy(int fd, int zeroCopy) throws IOException;
+    private static native int sendZeroCopy(int fd, long address, int pos, int limit);
+    private static native int recvZeroCopyCompletion(int fd, int[] completion);
     private static native void setTcpMd5Sig(
             int fd, boolean ipv6, byte[] address, int scopeId, byte[] key) throws IOException;
     private static native void setInterface(
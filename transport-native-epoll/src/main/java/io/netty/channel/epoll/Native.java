@@ -15,6 +15,7 @@
  */
 package io.netty.channel.epoll;
 
+import io.netty.channel.unix.Buffer;
 import io.netty.channel.unix.FileDescriptor;
 import io.netty.channel.unix.Socket;
 import io.netty.util.internal.NativeLibraryLoader;
@@ -32,8 +33,11 @@ import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epolle
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollin;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollout;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.epollrdhup;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.errnoENOBUFS;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingMsgZeroCopy;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingSendmmsg;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingTcpFastopen;
+import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.isSupportingUdpSegment;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.kernelVersion;
 import static io.netty.channel.epoll.NativeStaticallyReferencedJniMethods.tcpMd5SigMaxKeyLen;
 import static io.netty.channel.unix.Errors.ioResult;
@@ -57,6 +61,7 @@ public final class Native {
             loadNativeLibrary();
         }
         Socket.initialize();
+        Buffer.initialize();
     }
 
     // EventLoop operations and constants
@@ -68,6 +73,9 @@ public final class Native {
 
     public static final boolean IS_SUPPORTING_SENDMMSG = isSupportingSendmmsg();
     public static final boolean IS_SUPPORTING_TCP_FASTOPEN = isSupportingTcpFastopen();
+    public static final boolean IS_SUPPORTING_UDP_SEGMENT = isSupportingUdpSegment();
+    public static final boolean IS_SUPPORTING_MSG_ZEROCOPY = isSupportingMsgZeroCopy();
+    static final int ERRNO_ENOBUFS_NEGATIVE = -errnoENOBUFS();
     public static final int TCP_MD5SIG_MAXKEYLEN = tcpMd5SigMaxKeyLen();
     public static final String KERNEL_VERSION = kernelVersion();
 
@@ -164,6 +172,22 @@ public final class Native {
         return ioResult("splice", res);
     }
 
+    /**
+     * Splice up to {@code len} bytes from {@code fd} to {@code fdOut} without using offsets.
+     * Returns the number of bytes spliced, {@code 0} if no bytes could be spliced without blocking or {@code -1} if
+     * the end of the stream was reached.
+     */
+    static int spliceOrEof(int fd, int fdOut, long len) throws IOException {
+        int res = splice0(fd, -1, fdOut, -1, len);
+        if (res > 0) {
+            return res;
+        }
+        if (res == 0) {
+            return -1;
+        }
+        return ioResult("splice", res);
+    }
+
     private static native int splice0(int fd, long offIn, int fdOut, long offOut, long len);
 
     @Deprecated
@@ -41,5 +41,8 @@ final class NativeStaticallyReferencedJniMethods {
     static native int uioMaxIov();
     static native boolean isSupportingSendmmsg();
     static native boolean isSupportingTcpFastopen();
+    static native boolean isSupportingUdpSegment();
+    static native boolean isSupportingMsgZeroCopy();
+    static native int errnoENOBUFS();
     static native String kernelVersion();
 }
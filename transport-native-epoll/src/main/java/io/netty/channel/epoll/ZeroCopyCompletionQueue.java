@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Keeps the {@link ByteBuf}s of {@code MSG_ZEROCOPY} writes alive until the kernel signals via the error queue of the
+ * socket that it no longer references their memory.
+ *
+ * The kernel assigns consecutive 32-bit ids (starting at 0) to every successful {@code MSG_ZEROCOPY} send call on a
+ * socket and reports completions as inclusive id ranges, so the id of a write is implied by its position in this
+ * queue. Not thread-safe, must only be used from the {@link EpollEventLoop}.
+ */
+final class ZeroCopyCompletionQueue {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Used to receive the notification from the native code: first id, last id and the copied flag.
+    final int[] completion = new int[3];
+
+    private ByteBuf[] buffers = new ByteBuf[INITIAL_CAPACITY];
+    private boolean[] completed = new boolean[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    // The id the kernel will assign to the next MSG_ZEROCOPY send.
+    private int nextId;
+
+    /**
+     * Add the (already retained) {@link ByteBuf} of a successful {@code MSG_ZEROCOPY} send.
+     */
+    void add(ByteBuf buf) {
+        if (size == buffers.length) {
+            grow();
+        }
+        int idx = (head + size) & (buffers.length - 1);
+        buffers[idx] = buf;
+        completed[idx] = false;
+        size++;
+        nextId++;
+    }
+
+    /**
+     * Mark the writes with ids in {@code [firstId, lastId]} as completed and release all buffers from the head of
+     * the queue that are completed. Returns the number of writes that were marked as completed.
+     */
+    int complete(int firstId, int lastId) {
+        final int headId = nextId - size;
+        // Ids are unsigned and may wrap so only work with the distance to the head.
+        int start = Math.max(firstId - headId, 0);
+        int end = Math.min(lastId - headId, size - 1);
+        int mask = buffers.length - 1;
+        int marked = 0;
+        for (int i = start; i <= end; i++) {
+            int idx = (head + i) & mask;
+            if (!completed[idx]) {
+                completed[idx] = true;
+                marked++;
+            }
+        }
+        while (size > 0 && completed[head]) {
+            buffers[head].release();
+            buffers[head] = null;
+            head = (head + 1) & mask;
+            size--;
+        }
+        return marked;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Empty the queue once the socket was closed and return how many writes were still pending. The buffers of
+     * completed writes are released. The buffers of pending writes are never released, as the kernel may still
+     * reference their memory and there is no way to find out when it is done with it after the socket was closed.
+     */
+    int abandonAll() {
+        int pending = 0;
+        int mask = buffers.length - 1;
+        while (size > 0) {
+            if (completed[head]) {
+                buffers[head].release();
+            } else {
+                pending++;
+            }
+            buffers[head] = null;
+            head = (head + 1) & mask;
+            size--;
+        }
+        return pending;
+    }
+
+    private void grow() {
+        int capacity = buffers.length;
+        ByteBuf[] newBuffers = new ByteBuf[capacity << 1];
+        boolean[] newCompleted = new boolean[capacity << 1];
+        for (int i = 0; i < size; i++) {
+            int idx = (head + i) & (capacity - 1);
+            newBuffers[i] = buffers[idx];
+            newCompleted[i] = completed[idx];
+        }
+        buffers = newBuffers;
+        completed = newCompleted;
+        head = 0;
+    }
+}
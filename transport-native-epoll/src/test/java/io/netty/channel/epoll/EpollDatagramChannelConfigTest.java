@@ -17,7 +17,9 @@ package io.netty.channel.epoll;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 public class EpollDatagramChannelConfigTest {
 
@@ -29,4 +31,16 @@ public class EpollDatagramChannelConfigTest {
         assertTrue(channel.config().getOption(EpollChannelOption.IP_FREEBIND));
         channel.fd().close();
     }
+
+    @Test
+    public void testUdpSegmentAndGro() throws Exception {
+        Epoll.ensureAvailability();
+        assumeTrue(SegmentedDatagramPacket.isSupported());
+        EpollDatagramChannel channel = new EpollDatagramChannel();
+        assertTrue(channel.config().setOption(EpollChannelOption.UDP_SEGMENT, 1000));
+        assertEquals(1000, (int) channel.config().getOption(EpollChannelOption.UDP_SEGMENT));
+        assertTrue(channel.config().setOption(EpollChannelOption.UDP_GRO, true));
+        assertTrue(channel.config().getOption(EpollChannelOption.UDP_GRO));
+        channel.fd().close();
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.testsuite.transport.TestsuitePermutation;
+import io.netty.testsuite.transport.socket.AbstractDatagramTest;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class EpollDatagramUdpSegmentTest extends AbstractDatagramTest {
+
+    @Override
+    protected List<TestsuitePermutation.BootstrapComboFactory<Bootstrap, Bootstrap>> newFactories() {
+        return EpollSocketTestPermutation.INSTANCE.epollOnlyDatagram(internetProtocolFamily());
+    }
+
+    @Test
+    public void testSegmentedWrite() throws Throwable {
+        run();
+    }
+
+    public void testSegmentedWrite(Bootstrap sb, Bootstrap cb) throws Throwable {
+        testSegmented(sb, cb, false);
+    }
+
+    @Test
+    public void testSegmentedWriteGroRead() throws Throwable {
+        run();
+    }
+
+    public void testSegmentedWriteGroRead(Bootstrap sb, Bootstrap cb) throws Throwable {
+        testSegmented(sb, cb, true);
+    }
+
+    private void testSegmented(Bootstrap sb, Bootstrap cb, boolean gro) throws Throwable {
+        assumeTrue(SegmentedDatagramPacket.isSupported());
+
+        final int segmentSize = 100;
+        final int numSegments = 8;
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            final CountDownLatch latch = new CountDownLatch(numSegments);
+            final AtomicReference<Throwable> errorRef = new AtomicReference<Throwable>();
+            sb.option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(64 * 1024));
+            sb.option(EpollChannelOption.UDP_GRO, gro);
+            sb.handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+                private byte expected;
+
+                @Override
+                protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket packet) {
+                    ByteBuf content = packet.content();
+                    assertEquals(segmentSize, content.readableBytes());
+                    for (int i = 0; i < content.readableBytes(); i++) {
+                        assertEquals(expected, content.getByte(content.readerIndex() + i));
+                    }
+                    expected++;
+                    latch.countDown();
+                }
+
+                @Override
+                public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                    errorRef.compareAndSet(null, cause);
+                }
+            });
+            cb.handler(new SimpleChannelInboundHandler<Object>() {
+                @Override
+                protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+                    // Nothing will be sent.
+                }
+            });
+
+            sc = sb.bind(newSocketAddress()).sync().channel();
+            cc = cb.bind(newSocketAddress()).sync().channel();
+
+            ByteBuf buffer = cc.alloc().directBuffer(segmentSize * numSegments);
+            for (int i = 0; i < numSegments; i++) {
+                for (int j = 0; j < segmentSize; j++) {
+                    buffer.writeByte(i);
+                }
+            }
+            cc.writeAndFlush(new SegmentedDatagramPacket(
+                    buffer, segmentSize, (InetSocketAddress) sc.localAddress())).sync();
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            Throwable error = errorRef.get();
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            if (cc != null) {
+                cc.close().sync();
+            }
+            if (sc != null) {
+                sc.close().sync();
+            }
+        }
+    }
+}
@@ -134,6 +134,18 @@ public class EpollSocketChannelConfigTest {
         assertTrue(ch.config().isTcpQuickAck());
     }
 
+    @Test
+    public void testSoZeroCopy() {
+        assumeTrue(Native.IS_SUPPORTING_MSG_ZEROCOPY);
+        ch.config().setSoZeroCopy(true);
+        assertTrue(ch.config().isSoZeroCopy());
+        assertEquals(1, ch.config().setZeroCopyWriteThreshold(1).getZeroCopyWriteThreshold());
+        assertEquals(1, ch.zeroCopyWriteThreshold());
+        ch.config().setSoZeroCopy(false);
+        assertFalse(ch.config().isSoZeroCopy());
+        assertEquals(-1, ch.zeroCopyWriteThreshold());
+    }
+
     @Test
     public void testSetOptionWhenClosed() {
         ch.close().syncUninterruptibly();
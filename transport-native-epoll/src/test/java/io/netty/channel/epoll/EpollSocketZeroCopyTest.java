@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.NetUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class EpollSocketZeroCopyTest {
+
+    private static EventLoopGroup group;
+
+    @BeforeClass
+    public static void beforeClass() {
+        group = new EpollEventLoopGroup(1);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 30000)
+    public void testZeroCopyWrite() throws Throwable {
+        assumeTrue(Native.IS_SUPPORTING_MSG_ZEROCOPY);
+
+        final int smallSize = 128;
+        final int largeSize = 1024 * 1024;
+        final int expectedBytes = smallSize + largeSize + smallSize;
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ByteBuf received = Unpooled.buffer(expectedBytes);
+        Channel sc = null;
+        Channel cc = null;
+        try {
+            sc = new ServerBootstrap().group(group)
+                    .channel(EpollServerSocketChannel.class)
+                    .childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                            received.writeBytes(msg);
+                            if (received.readableBytes() == expectedBytes) {
+                                latch.countDown();
+                            }
+                        }
+                    }).bind(new InetSocketAddress(NetUtil.LOCALHOST, 0)).syncUninterruptibly().channel();
+
+            cc = new Bootstrap().group(group)
+                    .channel(EpollSocketChannel.class)
+                    .option(EpollChannelOption.SO_ZEROCOPY, true)
+                    .option(EpollChannelOption.ZEROCOPY_WRITE_THRESHOLD, smallSize + 1)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(sc.localAddress()).syncUninterruptibly().channel();
+
+            ByteBuf small1 = cc.alloc().directBuffer(smallSize);
+            ByteBuf large = cc.alloc().directBuffer(largeSize);
+            ByteBuf small2 = cc.alloc().directBuffer(smallSize);
+            int value = 0;
+            for (ByteBuf buf : new ByteBuf[] { small1, large, small2 }) {
+                while (buf.isWritable()) {
+                    buf.writeByte(value++);
+                }
+            }
+
+            cc.write(small1);
+            cc.write(large);
+            cc.writeAndFlush(small2).syncUninterruptibly();
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < expectedBytes; i++) {
+                assertEquals((byte) i, received.getByte(i));
+            }
+
+            EpollZeroCopyStats stats = ((EpollSocketChannel) cc).zeroCopyStats();
+            assertTrue(stats.zeroCopyWrites() > 0);
+            assertEquals(largeSize, stats.zeroCopyBytes());
+            assertTrue(stats.copyWrites() >= 2);
+        } finally {
+            received.release();
+            if (cc != null) {
+                cc.close().syncUninterruptibly();
+            }
+            if (sc != null) {
+                sc.close().syncUninterruptibly();
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testCloseWithZeroCopyWritesInFlight() throws Throwable {
+        assumeTrue(Native.IS_SUPPORTING_MSG_ZEROCOPY);
+
+        Channel sc = null;
+        Channel cc = null;
+        ByteBuf buf = null;
+        try {
+            // The peer does not read, so the data which does not fit into its receive buffer is never acknowledged.
+            sc = new ServerBootstrap().group(group)
+                    .channel(EpollServerSocketChannel.class)
+                    .childOption(ChannelOption.AUTO_READ, false)
+                    .childOption(ChannelOption.SO_RCVBUF, 64 * 1024)
+                    .childHandler(new ChannelInboundHandlerAdapter())
+                    .bind(new InetSocketAddress(NetUtil.LOCALHOST, 0)).syncUninterruptibly().channel();
+
+            cc = new Bootstrap().group(group)
+                    .channel(EpollSocketChannel.class)
+                    .option(EpollChannelOption.SO_ZEROCOPY, true)
+                    .option(ChannelOption.SO_SNDBUF, 64 * 1024)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(sc.localAddress()).syncUninterruptibly().channel();
+
+            buf = Unpooled.directBuffer(16 * 1024 * 1024).writeZero(16 * 1024 * 1024);
+            ChannelFuture writeFuture = cc.writeAndFlush(buf.retain());
+            EpollZeroCopyStats stats = ((EpollSocketChannel) cc).zeroCopyStats();
+            while (stats.zeroCopyWrites() == 0) {
+                Thread.sleep(10);
+            }
+
+            cc.close().syncUninterruptibly();
+            // The write fails once the ChannelOutboundBuffer released the buffer.
+            assertFalse(writeFuture.awaitUninterruptibly().isSuccess());
+            assertTrue(stats.pendingCompletions() > 0);
+            // Besides our own reference only the pending writes may still reference the buffer.
+            assertEquals(1 + stats.pendingCompletions(), buf.refCnt());
+        } finally {
+            if (cc != null) {
+                cc.close().syncUninterruptibly();
+            }
+            if (sc != null) {
+                sc.close().syncUninterruptibly();
+            }
+            if (buf != null) {
+                // The socket is gone, so the kernel does not transmit the data anymore.
+                buf.release(buf.refCnt());
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.util.NetUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EpollSpliceRelayTest {
+
+    private static final Random random = new Random();
+    private static final byte[] data = new byte[1048576];
+
+    private static EventLoopGroup group;
+
+    static {
+        random.nextBytes(data);
+    }
+
+    @BeforeClass
+    public static void beforeClass() {
+        group = new EpollEventLoopGroup(1);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 30000)
+    public void testRelayWithHalfClosure() throws Throwable {
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final AtomicReference<EpollSpliceRelay> relayRef = new AtomicReference<EpollSpliceRelay>();
+        final AtomicReference<EpollSocketChannel> inboundRef = new AtomicReference<EpollSocketChannel>();
+
+        // Echo everything back and close once the input was shutdown.
+        final Channel sc = new ServerBootstrap().group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childOption(ChannelOption.ALLOW_HALF_CLOSURE, true)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.writeAndFlush(msg);
+                    }
+
+                    @Override
+                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                        if (evt instanceof ChannelInputShutdownEvent) {
+                            ctx.close();
+                        }
+                    }
+                }).bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Channel pc = new ServerBootstrap().group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childOption(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED)
+                .childOption(ChannelOption.ALLOW_HALF_CLOSURE, true)
+                .childOption(ChannelOption.AUTO_READ, false)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelActive(final ChannelHandlerContext ctx) {
+                        new Bootstrap().group(ctx.channel().eventLoop())
+                                .channel(EpollSocketChannel.class)
+                                .option(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED)
+                                .option(ChannelOption.ALLOW_HALF_CLOSURE, true)
+                                .option(ChannelOption.AUTO_READ, false)
+                                .handler(new ChannelInboundHandlerAdapter())
+                                .connect(sc.localAddress()).addListener(new ChannelFutureListener() {
+                                    @Override
+                                    public void operationComplete(ChannelFuture future) {
+                                        if (future.isSuccess()) {
+                                            inboundRef.set((EpollSocketChannel) ctx.channel());
+                                            relayRef.set(EpollSpliceRelay.start(
+                                                    (EpollSocketChannel) ctx.channel(),
+                                                    (EpollSocketChannel) future.channel()));
+                                        } else {
+                                            error.compareAndSet(null, future.cause());
+                                            ctx.close();
+                                        }
+                                    }
+                                });
+                    }
+
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                        error.compareAndSet(null, cause);
+                    }
+                }).bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        final ByteBuf received = Unpooled.buffer(data.length);
+        try {
+            Channel cc = new Bootstrap().group(group)
+                    .channel(EpollSocketChannel.class)
+                    .option(ChannelOption.ALLOW_HALF_CLOSURE, true)
+                    .handler(new SimpleChannelInboundHandler<ByteBuf>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                            received.writeBytes(msg);
+                        }
+
+                        @Override
+                        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                            if (evt instanceof ChannelInputShutdownEvent) {
+                                // The end of the stream of the backend was propagated through the relay.
+                                ctx.close();
+                            }
+                        }
+
+                        @Override
+                        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                            error.compareAndSet(null, cause);
+                        }
+                    }).connect(pc.localAddress()).syncUninterruptibly().channel();
+
+            for (int i = 0; i < data.length;) {
+                int length = Math.min(random.nextInt(1024 * 64), data.length - i);
+                cc.write(Unpooled.wrappedBuffer(data, i, length));
+                i += length;
+            }
+            cc.flush();
+            ((DuplexChannel) cc).shutdownOutput().syncUninterruptibly();
+
+            // The backend closes once it received everything, which is propagated back through the relay.
+            cc.closeFuture().syncUninterruptibly();
+
+            assertNull(error.get());
+            assertEquals(data.length, received.readableBytes());
+            byte[] bytes = new byte[data.length];
+            received.getBytes(0, bytes);
+            assertArrayEquals(data, bytes);
+            assertEquals(data.length, relayRef.get().transferred(inboundRef.get()));
+        } finally {
+            received.release();
+            sc.close().syncUninterruptibly();
+            pc.close().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testSplicedBytesCountAsPendingWriteBytes() throws Throwable {
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final AtomicReference<Channel> outboundRef = new AtomicReference<Channel>();
+
+        // The backend does not read, so the spliced bytes stay in the outbound buffer of the relay.
+        final Channel sc = new ServerBootstrap().group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childOption(ChannelOption.AUTO_READ, false)
+                .childOption(ChannelOption.SO_RCVBUF, 4096)
+                .childHandler(new ChannelInboundHandlerAdapter())
+                .bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Channel pc = new ServerBootstrap().group(group)
+                .channel(EpollServerSocketChannel.class)
+                .childOption(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED)
+                .childOption(ChannelOption.AUTO_READ, false)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelActive(final ChannelHandlerContext ctx) {
+                        new Bootstrap().group(ctx.channel().eventLoop())
+                                .channel(EpollSocketChannel.class)
+                                .option(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED)
+                                .option(ChannelOption.AUTO_READ, false)
+                                .option(ChannelOption.SO_SNDBUF, 4096)
+                                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(1024, 2048))
+                                .handler(new ChannelInboundHandlerAdapter())
+                                .connect(sc.localAddress()).addListener(new ChannelFutureListener() {
+                                    @Override
+                                    public void operationComplete(ChannelFuture future) {
+                                        if (future.isSuccess()) {
+                                            EpollSpliceRelay.start((EpollSocketChannel) ctx.channel(),
+                                                    (EpollSocketChannel) future.channel());
+                                            outboundRef.set(future.channel());
+                                        } else {
+                                            error.compareAndSet(null, future.cause());
+                                            ctx.close();
+                                        }
+                                    }
+                                });
+                    }
+
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                        error.compareAndSet(null, cause);
+                    }
+                }).bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Channel cc = null;
+        try {
+            cc = new Bootstrap().group(group)
+                    .channel(EpollSocketChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(pc.localAddress()).syncUninterruptibly().channel();
+            cc.writeAndFlush(Unpooled.wrappedBuffer(data));
+
+            // The pending bytes exceed the high water mark once the backend stopped accepting data.
+            for (;;) {
+                Channel outbound = outboundRef.get();
+                if (outbound != null && !outbound.isWritable()) {
+                    assertTrue(outbound.unsafe().outboundBuffer().totalPendingWriteBytes() > 2048);
+                    break;
+                }
+                Thread.sleep(10);
+            }
+            assertNull(error.get());
+        } finally {
+            if (cc != null) {
+                cc.close().syncUninterruptibly();
+            }
+            sc.close().syncUninterruptibly();
+            pc.close().syncUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ZeroCopyCompletionQueueTest {
+
+    @Test
+    public void testCompleteInOrder() {
+        ZeroCopyCompletionQueue queue = new ZeroCopyCompletionQueue();
+        ByteBuf[] buffers = newBuffers(3);
+        for (ByteBuf buf : buffers) {
+            queue.add(buf);
+        }
+        assertEquals(2, queue.complete(0, 1));
+        assertEquals(0, buffers[0].refCnt());
+        assertEquals(0, buffers[1].refCnt());
+        assertEquals(1, buffers[2].refCnt());
+        assertEquals(1, queue.complete(2, 2));
+        assertEquals(0, buffers[2].refCnt());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testCompleteOutOfOrder() {
+        ZeroCopyCompletionQueue queue = new ZeroCopyCompletionQueue();
+        ByteBuf[] buffers = newBuffers(3);
+        for (ByteBuf buf : buffers) {
+            queue.add(buf);
+        }
+        assertEquals(1, queue.complete(1, 1));
+        // The head was not completed yet so nothing can be released.
+        assertEquals(1, buffers[1].refCnt());
+        assertEquals(1, queue.complete(0, 0));
+        assertEquals(0, buffers[0].refCnt());
+        assertEquals(0, buffers[1].refCnt());
+        assertFalse(queue.isEmpty());
+        assertEquals(1, queue.complete(2, 2));
+        assertEquals(0, buffers[2].refCnt());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testAbandonAll() {
+        ZeroCopyCompletionQueue queue = new ZeroCopyCompletionQueue();
+        ByteBuf[] buffers = newBuffers(3);
+        for (ByteBuf buf : buffers) {
+            queue.add(buf);
+        }
+        assertEquals(1, queue.complete(1, 1));
+        assertEquals(2, queue.abandonAll());
+        assertTrue(queue.isEmpty());
+        // Only the buffer of the completed write is released as the kernel may still use the others.
+        assertEquals(1, buffers[0].refCnt());
+        assertEquals(0, buffers[1].refCnt());
+        assertEquals(1, buffers[2].refCnt());
+        buffers[0].release();
+        buffers[2].release();
+    }
+
+    @Test
+    public void testGrow() {
+        ZeroCopyCompletionQueue queue = new ZeroCopyCompletionQueue();
+        ByteBuf[] buffers = newBuffers(100);
+        for (int i = 0; i < 10; i++) {
+            queue.add(buffers[i]);
+        }
+        assertEquals(5, queue.complete(0, 4));
+        for (int i = 10; i < buffers.length; i++) {
+            queue.add(buffers[i]);
+        }
+        assertEquals(95, queue.complete(5, 99));
+        assertTrue(queue.isEmpty());
+        for (ByteBuf buf : buffers) {
+            assertEquals(0, buf.refCnt());
+        }
+    }
+
+    private static ByteBuf[] newBuffers(int num) {
+        ByteBuf[] buffers = new ByteBuf[num];
+        for (int i = 0; i < num; i++) {
+            buffers[i] = Unpooled.directBuffer(8);
+        }
+        return buffers;
+    }
+}
@@ -0,0 +1,777 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoop;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.Socket;
+import io.netty.channel.unix.UnixChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.channel.unix.UnixChannelUtil.computeRemoteAddr;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+abstract class AbstractIOUringChannel extends AbstractChannel implements UnixChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+    // Operations that are currently submitted to the ring for this channel.
+    static final int POLL_IN_SCHEDULED = 1;
+    static final int POLL_OUT_SCHEDULED = 1 << 1;
+    static final int RECV_SCHEDULED = 1 << 2;
+    static final int WRITE_SCHEDULED = 1 << 3;
+    static final int POLL_RDHUP_SCHEDULED = 1 << 4;
+
+    private static final short POLL_IN_DATA = 1;
+    private static final short POLL_OUT_DATA = 2;
+    private static final short POLL_RDHUP_DATA = 3;
+
+    final Socket socket;
+    /**
+     * The future of the current connection attempt.  If not null, subsequent
+     * connection attempts will fail.
+     */
+    private ChannelPromise connectPromise;
+    private ScheduledFuture<?> connectTimeoutFuture;
+    private SocketAddress requestedRemoteAddress;
+
+    private volatile SocketAddress local;
+    private volatile SocketAddress remote;
+
+    // Owned by the event loop this channel is registered with.
+    int id;
+    int ioState;
+    int inFlight;
+    boolean removePending;
+    boolean inputClosedSeenErrorOnRead;
+
+    protected volatile boolean active;
+
+    AbstractIOUringChannel(Channel parent, Socket fd, boolean active) {
+        super(parent);
+        socket = checkNotNull(fd, "fd");
+        this.active = active;
+        if (active) {
+            // Directly cache the remote and local addresses
+            // See https://github.com/netty/netty/issues/2359
+            local = fd.localAddress();
+            remote = fd.remoteAddress();
+        }
+    }
+
+    AbstractIOUringChannel(Channel parent, Socket fd, SocketAddress remote) {
+        super(parent);
+        socket = checkNotNull(fd, "fd");
+        active = true;
+        // Directly cache the remote and local addresses
+        // See https://github.com/netty/netty/issues/2359
+        this.remote = remote;
+        local = fd.localAddress();
+    }
+
+    static boolean isSoErrorZero(Socket fd) {
+        try {
+            return fd.getSoError() == 0;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public final FileDescriptor fd() {
+        return socket;
+    }
+
+    @Override
+    public abstract IOUringChannelConfig config();
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socket.isOpen();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof IOUringEventLoop;
+    }
+
+    final boolean isScheduled(int op) {
+        return (ioState & op) != 0;
+    }
+
+    final IOUringSubmissionQueue submissionQueue() {
+        return ((IOUringEventLoop) eventLoop()).ringBuffer().submissionQueue();
+    }
+
+    final long userData(byte op, short data) {
+        return UserData.encode(id, op, data);
+    }
+
+    /**
+     * Must be called for every submission made on behalf of this channel, so the event loop keeps routing completions
+     * to it until all of them arrived.
+     */
+    final void submitted(int op) {
+        ioState |= op;
+        inFlight++;
+    }
+
+    final void schedulePollIn() throws IOException {
+        if (!isScheduled(POLL_IN_SCHEDULED)) {
+            submissionQueue().addPollAdd(socket.intValue(), Native.POLLIN,
+                                         userData(Native.IORING_OP_POLL_ADD, POLL_IN_DATA));
+            submitted(POLL_IN_SCHEDULED);
+        }
+    }
+
+    final void schedulePollOut() throws IOException {
+        if (!isScheduled(POLL_OUT_SCHEDULED)) {
+            submissionQueue().addPollAdd(socket.intValue(), Native.POLLOUT,
+                                         userData(Native.IORING_OP_POLL_ADD, POLL_OUT_DATA));
+            submitted(POLL_OUT_SCHEDULED);
+        }
+    }
+
+    final void schedulePollRdHup() throws IOException {
+        if (!isScheduled(POLL_RDHUP_SCHEDULED)) {
+            submissionQueue().addPollAdd(socket.intValue(), Native.POLLRDHUP,
+                                         userData(Native.IORING_OP_POLL_ADD, POLL_RDHUP_DATA));
+            submitted(POLL_RDHUP_SCHEDULED);
+        }
+    }
+
+    final void cancel(byte op, short data) {
+        try {
+            submissionQueue().addCancel(userData(op, data), userData(Native.IORING_OP_ASYNC_CANCEL, (short) 0));
+        } catch (IOException e) {
+            // The operation will still complete once the file descriptor is closed.
+        }
+    }
+
+    final void cancelPollIn() {
+        if (isScheduled(POLL_IN_SCHEDULED)) {
+            cancel(Native.IORING_OP_POLL_ADD, POLL_IN_DATA);
+        }
+    }
+
+    /**
+     * Cancel everything that is still in flight for this channel. The completions still arrive and are used to release
+     * the resources that were handed to the kernel.
+     */
+    void cancelPendingOperations() {
+        cancelPollIn();
+        if (isScheduled(POLL_OUT_SCHEDULED)) {
+            cancel(Native.IORING_OP_POLL_ADD, POLL_OUT_DATA);
+        }
+        if (isScheduled(POLL_RDHUP_SCHEDULED)) {
+            cancel(Native.IORING_OP_POLL_ADD, POLL_RDHUP_DATA);
+        }
+    }
+
+    /**
+     * Called once the channel is registered and active, by default nothing is done.
+     */
+    void activated() throws IOException {
+        // NOOP
+    }
+
+    /**
+     * Release native resources once no operation references them anymore.
+     */
+    void releaseResources() {
+        // NOOP
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        active = false;
+        // Even if we allow half closed sockets we should give up on reading. Otherwise we may allow a read attempt on a
+        // socket which has not even been connected yet. This has been observed to block during unit tests.
+        inputClosedSeenErrorOnRead = true;
+        try {
+            ChannelPromise promise = connectPromise;
+            if (promise != null) {
+                // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+                promise.tryFailure(new ClosedChannelException());
+                connectPromise = null;
+            }
+
+            ScheduledFuture<?> future = connectTimeoutFuture;
+            if (future != null) {
+                future.cancel(false);
+                connectTimeoutFuture = null;
+            }
+
+            if (isRegistered()) {
+                EventLoop loop = eventLoop();
+                if (loop.inEventLoop()) {
+                    cancelPendingOperations();
+                    // Queued operations only refer to the file descriptor by its number, so they need to reach the
+                    // kernel before it is closed and the number is reused by another socket.
+                    submissionQueue().submit();
+                } else {
+                    loop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            cancelPendingOperations();
+                        }
+                    });
+                }
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected void doRegister() throws Exception {
+        ((IOUringEventLoop) eventLoop()).add(this);
+        if (isActive()) {
+            activated();
+        }
+    }
+
+    @Override
+    protected void doDeregister() throws Exception {
+        if (isOpen()) {
+            // Operations that are still in flight must not complete once we are registered somewhere else.
+            cancelPendingOperations();
+        }
+        ((IOUringEventLoop) eventLoop()).remove(this);
+    }
+
+    @Override
+    protected final void doBeginRead() throws Exception {
+        // Channel.read() or ChannelHandlerContext.read() was called
+        final AbstractIOUringUnsafe unsafe = (AbstractIOUringUnsafe) unsafe();
+        unsafe.readPending = true;
+        unsafe.scheduleRead();
+    }
+
+    final boolean shouldBreakIOUringInReady(ChannelConfig config) {
+        return socket.isInputShutdown() && (inputClosedSeenErrorOnRead || !isAllowHalfClosure(config));
+    }
+
+    private static boolean isAllowHalfClosure(ChannelConfig config) {
+        return config instanceof SocketChannelConfig &&
+                ((SocketChannelConfig) config).isAllowHalfClosure();
+    }
+
+    final void clearReadScheduled() {
+        // Only clear if registered with an EventLoop as otherwise there is nothing scheduled
+        if (isRegistered()) {
+            final EventLoop loop = eventLoop();
+            final AbstractIOUringUnsafe unsafe = (AbstractIOUringUnsafe) unsafe();
+            if (loop.inEventLoop()) {
+                unsafe.clearReadScheduled0();
+            } else {
+                // schedule a task to cancel the read as it is not safe to touch the ring directly
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!unsafe.readPending && !config().isAutoRead()) {
+                            // Still no read triggered so clear it now
+                            unsafe.clearReadScheduled0();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    protected abstract AbstractIOUringUnsafe newUnsafe();
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the original one.
+     */
+    protected final ByteBuf newDirectBuffer(ByteBuf buf) {
+        return newDirectBuffer(buf, buf);
+    }
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the specified holder.
+     * The caller must ensure that the holder releases the original {@link ByteBuf} when the holder is released by
+     * this method.
+     */
+    protected final ByteBuf newDirectBuffer(Object holder, ByteBuf buf) {
+        final int readableBytes = buf.readableBytes();
+        if (readableBytes == 0) {
+            ReferenceCountUtil.release(holder);
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        final ByteBufAllocator alloc = alloc();
+        if (alloc.isDirectBufferPooled()) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        final ByteBuf directBuf = ByteBufUtil.threadLocalDirectBuffer();
+        if (directBuf == null) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        directBuf.writeBytes(buf, buf.readerIndex(), readableBytes);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    private static ByteBuf newDirectBuffer0(Object holder, ByteBuf buf, ByteBufAllocator alloc, int capacity) {
+        final ByteBuf directBuf = alloc.directBuffer(capacity);
+        directBuf.writeBytes(buf, buf.readerIndex(), capacity);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    protected static void checkResolvable(InetSocketAddress addr) {
+        if (addr.isUnresolved()) {
+            throw new UnresolvedAddressException();
+        }
+    }
+
+    abstract class AbstractIOUringUnsafe extends AbstractUnsafe {
+        boolean readPending;
+        private IOUringRecvByteAllocatorHandle allocHandle;
+
+        /**
+         * Submit whatever is needed to be notified about inbound data once a read was requested.
+         */
+        void scheduleRead() throws IOException {
+            if (isActive() && !shouldBreakIOUringInReady(config())) {
+                schedulePollIn();
+            }
+        }
+
+        /**
+         * Called once the socket became readable.
+         */
+        abstract void pollInReady();
+
+        /**
+         * Called for the completion of an operation that is specific to the channel type.
+         */
+        void completed(byte op, int res) {
+            throw new IllegalStateException("unexpected completion of op " + op + ": " + res);
+        }
+
+        /**
+         * Dispatches a completion of the ring to this channel.
+         */
+        final void handle(byte op, int res, short data) {
+            inFlight--;
+            if (op == Native.IORING_OP_POLL_ADD) {
+                if (data == POLL_IN_DATA) {
+                    ioState &= ~POLL_IN_SCHEDULED;
+                    if (res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                        readCancelled();
+                    } else if (isOpen()) {
+                        pollInReady();
+                    }
+                } else if (data == POLL_OUT_DATA) {
+                    ioState &= ~POLL_OUT_SCHEDULED;
+                    if (res != Native.ERRNO_ECANCELED_NEGATIVE && isOpen()) {
+                        pollOutReady();
+                    }
+                } else {
+                    ioState &= ~POLL_RDHUP_SCHEDULED;
+                    if (res != Native.ERRNO_ECANCELED_NEGATIVE && isOpen()) {
+                        pollRdHupReady();
+                    }
+                }
+            } else {
+                completed(op, res);
+            }
+        }
+
+        /**
+         * Called once a read operation was cancelled. If a read was requested in the meantime it is rescheduled.
+         */
+        final void readCancelled() {
+            if (readPending && isOpen() && isRegistered()) {
+                try {
+                    scheduleRead();
+                } catch (IOException e) {
+                    pipeline().fireExceptionCaught(e);
+                    close(voidPromise());
+                }
+            }
+        }
+
+        /**
+         * Called once the peer shut down its output. Pending data is read even if auto read is off, so the end of the
+         * input is detected.
+         */
+        final void pollRdHupReady() {
+            recvBufAllocHandle().receivedRdHup();
+            if (isActive()) {
+                try {
+                    scheduleRead();
+                } catch (IOException e) {
+                    pipeline().fireExceptionCaught(e);
+                    close(voidPromise());
+                }
+            } else {
+                // Just to be safe make sure the input marked as closed.
+                shutdownInput(true);
+            }
+        }
+
+        final void readFinally(ChannelConfig config) {
+            if (readPending || config.isAutoRead() || recvBufAllocHandle().isReceivedRdHup()) {
+                // Either the user called read() while we were delivering the data or channelReadComplete() did not
+                // trigger a new read yet, make sure we will be notified about more data.
+                try {
+                    scheduleRead();
+                } catch (IOException e) {
+                    pipeline().fireExceptionCaught(e);
+                    close(voidPromise());
+                }
+            }
+        }
+
+        void clearReadScheduled0() {
+            assert eventLoop().inEventLoop();
+            readPending = false;
+            cancelPollIn();
+        }
+
+        /**
+         * Shutdown the input side of the channel.
+         */
+        void shutdownInput(boolean rdHup) {
+            if (!socket.isInputShutdown()) {
+                if (isAllowHalfClosure(config())) {
+                    try {
+                        socket.shutdown(true, false);
+                    } catch (IOException ignored) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                        fireEventAndClose(ChannelInputShutdownEvent.INSTANCE);
+                        return;
+                    } catch (NotYetConnectedException ignore) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                    }
+                    clearReadScheduled0();
+                    pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+                } else {
+                    close(voidPromise());
+                }
+            } else if (!rdHup) {
+                inputClosedSeenErrorOnRead = true;
+                pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+            }
+        }
+
+        private void fireEventAndClose(Object evt) {
+            pipeline().fireUserEventTriggered(evt);
+            close(voidPromise());
+        }
+
+        @Override
+        public IOUringRecvByteAllocatorHandle recvBufAllocHandle() {
+            if (allocHandle == null) {
+                allocHandle = new IOUringRecvByteAllocatorHandle(
+                        (RecvByteBufAllocator.ExtendedHandle) super.recvBufAllocHandle());
+            }
+            return allocHandle;
+        }
+
+        @Override
+        protected final void flush0() {
+            // Flush immediately only when there's no pending write, otherwise the completion of that write will
+            // trigger the next one.
+            if (!isScheduled(POLL_OUT_SCHEDULED | WRITE_SCHEDULED)) {
+                super.flush0();
+            }
+        }
+
+        /**
+         * Flush the outbound buffer even if the last flush stopped because the socket was not writable.
+         */
+        final void forceFlush() {
+            super.flush0();
+        }
+
+        /**
+         * Called once the socket became writable.
+         */
+        final void pollOutReady() {
+            if (connectPromise != null) {
+                // pending connect which is now complete so handle it.
+                finishConnect();
+            } else if (!socket.isOutputShutdown()) {
+                // directly call super.flush0() to force a flush now
+                super.flush0();
+            }
+        }
+
+        @Override
+        public void connect(
+                final SocketAddress remoteAddress, final SocketAddress localAddress, final ChannelPromise promise) {
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+
+            try {
+                if (connectPromise != null) {
+                    throw new ConnectionPendingException();
+                }
+
+                boolean wasActive = isActive();
+                if (doConnect(remoteAddress, localAddress)) {
+                    fulfillConnectPromise(promise, wasActive);
+                } else {
+                    connectPromise = promise;
+                    requestedRemoteAddress = remoteAddress;
+
+                    // Schedule connect timeout.
+                    int connectTimeoutMillis = config().getConnectTimeoutMillis();
+                    if (connectTimeoutMillis > 0) {
+                        connectTimeoutFuture = eventLoop().schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                ChannelPromise connectPromise = AbstractIOUringChannel.this.connectPromise;
+                                ConnectTimeoutException cause =
+                                        new ConnectTimeoutException("connection timed out: " + remoteAddress);
+                                if (connectPromise != null && connectPromise.tryFailure(cause)) {
+                                    close(voidPromise());
+                                }
+                            }
+                        }, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+                    }
+
+                    promise.addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) throws Exception {
+                            if (future.isCancelled()) {
+                                if (connectTimeoutFuture != null) {
+                                    connectTimeoutFuture.cancel(false);
+                                }
+                                connectPromise = null;
+                                close(voidPromise());
+                            }
+                        }
+                    });
+                }
+            } catch (Throwable t) {
+                closeIfClosed();
+                promise.tryFailure(annotateConnectException(t, remoteAddress));
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, boolean wasActive) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+            active = true;
+            try {
+                activated();
+            } catch (IOException e) {
+                fulfillConnectPromise(promise, e);
+                return;
+            }
+
+            // Get the state as trySuccess() may trigger an ChannelFutureListener that will close the Channel.
+            // We still need to ensure we call fireChannelActive() in this case.
+            boolean active = isActive();
+
+            // trySuccess() will return false if a user cancelled the connection attempt.
+            boolean promiseSet = promise.trySuccess();
+
+            // Regardless if the connection attempt was cancelled, channelActive() event should be triggered,
+            // because what happened is what happened.
+            if (!wasActive && active) {
+                pipeline().fireChannelActive();
+            }
+
+            // If a user cancelled the connection attempt, close the channel, which is followed by channelInactive().
+            if (!promiseSet) {
+                close(voidPromise());
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, Throwable cause) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+
+            // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+            promise.tryFailure(cause);
+            closeIfClosed();
+        }
+
+        private void finishConnect() {
+            // Note this method is invoked by the event loop only if the connection attempt was
+            // neither cancelled nor timed out.
+
+            assert eventLoop().inEventLoop();
+
+            boolean connectStillInProgress = false;
+            try {
+                boolean wasActive = isActive();
+                if (!doFinishConnect()) {
+                    connectStillInProgress = true;
+                    return;
+                }
+                fulfillConnectPromise(connectPromise, wasActive);
+            } catch (Throwable t) {
+                fulfillConnectPromise(connectPromise, annotateConnectException(t, requestedRemoteAddress));
+            } finally {
+                if (!connectStillInProgress) {
+                    // Check for null as the connectTimeoutFuture is only created if a connectTimeoutMillis > 0 is used
+                    // See https://github.com/netty/netty/issues/1770
+                    if (connectTimeoutFuture != null) {
+                        connectTimeoutFuture.cancel(false);
+                    }
+                    connectPromise = null;
+                }
+            }
+        }
+
+        /**
+         * Finish the connect
+         */
+        private boolean doFinishConnect() throws Exception {
+            if (socket.finishConnect()) {
+                if (requestedRemoteAddress instanceof InetSocketAddress) {
+                    remote = computeRemoteAddr((InetSocketAddress) requestedRemoteAddress, socket.remoteAddress());
+                }
+                requestedRemoteAddress = null;
+
+                return true;
+            }
+            schedulePollOut();
+            return false;
+        }
+    }
+
+    @Override
+    protected void doBind(SocketAddress local) throws Exception {
+        if (local instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) local);
+        }
+        socket.bind(local);
+        this.local = socket.localAddress();
+    }
+
+    /**
+     * Connect to the remote peer
+     */
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (localAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) localAddress);
+        }
+
+        InetSocketAddress remoteSocketAddr = remoteAddress instanceof InetSocketAddress
+                ? (InetSocketAddress) remoteAddress : null;
+        if (remoteSocketAddr != null) {
+            checkResolvable(remoteSocketAddr);
+        }
+
+        if (remote != null) {
+            // Check if already connected before trying to connect. This is needed as connect(...) will not return -1
+            // and set errno to EISCONN if a previous connect(...) attempt was setting errno to EINPROGRESS and finished
+            // later.
+            throw new AlreadyConnectedException();
+        }
+
+        if (localAddress != null) {
+            socket.bind(localAddress);
+        }
+
+        boolean connected = doConnect0(remoteAddress);
+        if (connected) {
+            remote = remoteSocketAddr == null ?
+                    remoteAddress : computeRemoteAddr(remoteSocketAddr, socket.remoteAddress());
+        }
+        // We always need to set the localAddress even if not connected yet as the bind already took place.
+        //
+        // See https://github.com/netty/netty/issues/3463
+        local = socket.localAddress();
+        return connected;
+    }
+
+    private boolean doConnect0(SocketAddress remote) throws Exception {
+        boolean success = false;
+        try {
+            boolean connected = socket.connect(remote);
+            if (!connected) {
+                schedulePollOut();
+            }
+            success = true;
+            return connected;
+        } finally {
+            if (!success) {
+                doClose();
+            }
+        }
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return local;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return remote;
+    }
+}
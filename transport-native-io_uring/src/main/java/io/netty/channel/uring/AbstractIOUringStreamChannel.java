@@ -0,0 +1,631 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelOutboundBuffer.MessageProcessor;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.FileRegion;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.Socket;
+import io.netty.channel.unix.SocketWritableByteChannel;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERRNO_ECONNRESET_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERRNO_EPIPE_NEGATIVE;
+
+/**
+ * Base class for stream channels that receive and send through completion based {@code IORING_OP_RECV},
+ * {@code IORING_OP_SEND} and {@code IORING_OP_SENDMSG} operations, so the data is copied by the kernel as soon as it
+ * is available without another round trip through user space.
+ */
+public abstract class AbstractIOUringStreamChannel extends AbstractIOUringChannel implements DuplexChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ", " +
+                    StringUtil.simpleClassName(FileRegion.class) + ')';
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringStreamChannel.class);
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            // Calling flush0 directly to ensure we not try to flush messages that were added via write(...) in the
+            // meantime.
+            ((AbstractIOUringUnsafe) unsafe()).flush0();
+        }
+    };
+
+    // The buffer the kernel currently receives into.
+    private ByteBuf readBuffer;
+    // Buffers the kernel currently sends from, they are retained so closing the channel can not free them too early.
+    private final List<ByteBuf> writeBuffers = new ArrayList<ByteBuf>(4);
+    private int writeError;
+    private IovArray iovArray;
+    private long msgHdrAddress;
+    private SocketWritableByteChannel byteChannel;
+
+    AbstractIOUringStreamChannel(Channel parent, Socket fd) {
+        this(parent, fd, isSoErrorZero(fd));
+    }
+
+    AbstractIOUringStreamChannel(Channel parent, Socket fd, boolean active) {
+        super(parent, fd, active);
+    }
+
+    AbstractIOUringStreamChannel(Channel parent, Socket fd, SocketAddress remote) {
+        super(parent, fd, remote);
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringStreamUnsafe();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        if (writeError != 0) {
+            int err = writeError;
+            writeError = 0;
+            if (err == ERRNO_EPIPE_NEGATIVE || err == ERRNO_ECONNRESET_NEGATIVE) {
+                throw Errors.newConnectionResetException("send", err);
+            }
+            throw Errors.newIOException("send", err);
+        }
+        if (isScheduled(WRITE_SCHEDULED | POLL_OUT_SCHEDULED)) {
+            return;
+        }
+
+        int writeSpinCount = config().getWriteSpinCount();
+        do {
+            final int msgCount = in.size();
+            if (msgCount == 0) {
+                // Wrote all messages.
+                return;
+            }
+            Object msg = in.current();
+            if (msg instanceof ByteBuf) {
+                ByteBuf buf = (ByteBuf) msg;
+                if (msgCount == 1 && buf.hasMemoryAddress()) {
+                    if (!buf.isReadable()) {
+                        in.remove();
+                        continue;
+                    }
+                    submitSend(buf);
+                    return;
+                }
+                if (submitSendmsg(in)) {
+                    return;
+                }
+            } else if (msg instanceof FileRegion) {
+                // There is no completion based operation for arbitrary FileRegion implementations, so these are
+                // written directly and we wait for the socket to become writable if the send buffer is full.
+                if (!writeFileRegion(in, (FileRegion) msg)) {
+                    schedulePollOut();
+                    return;
+                }
+                writeSpinCount--;
+            } else {
+                // Should never reach here.
+                throw new Error();
+            }
+        } while (writeSpinCount > 0);
+
+        // We used our writeSpin quantum, and should try to write again later.
+        eventLoop().execute(flushTask);
+    }
+
+    private void submitSend(ByteBuf buf) throws IOException {
+        submissionQueue().addSend(socket.intValue(), buf.memoryAddress() + buf.readerIndex(), buf.readableBytes(),
+                                  0, userData(Native.IORING_OP_SEND, (short) 0));
+        writeBuffers.add(buf.retain());
+        submitted(WRITE_SCHEDULED);
+        submitWrite();
+    }
+
+    /**
+     * Submits a gathering write of all flushed buffers, returns {@code false} if there was nothing to write.
+     */
+    private boolean submitSendmsg(ChannelOutboundBuffer in) throws Exception {
+        final IovArray array = iovArray();
+        array.maxBytes(config().getMaxBytesPerGatheringWrite());
+        final List<ByteBuf> buffers = writeBuffers;
+        in.forEachFlushedMessage(new MessageProcessor() {
+            @Override
+            public boolean processMessage(Object msg) {
+                if (!(msg instanceof ByteBuf)) {
+                    return false;
+                }
+                ByteBuf buf = (ByteBuf) msg;
+                // Retain before adding as a partial add of a composite buffer still hands its memory to the kernel.
+                buffers.add(buf.retain());
+                return array.add(buf, buf.readerIndex(), buf.readableBytes());
+            }
+        });
+        if (array.count() == 0) {
+            releaseWriteBuffers();
+            // Only empty buffers are left, remove them.
+            in.removeBytes(0);
+            return false;
+        }
+        PlatformDependent.putLong(msgHdrAddress + Native.MSGHDR_IOV_FIELD, array.memoryAddress(0));
+        PlatformDependent.putLong(msgHdrAddress + Native.MSGHDR_IOVLEN_FIELD, array.count());
+        submissionQueue().addSendmsg(socket.intValue(), msgHdrAddress, 0,
+                                     userData(Native.IORING_OP_SENDMSG, (short) 0));
+        submitted(WRITE_SCHEDULED);
+        submitWrite();
+        return true;
+    }
+
+    private void submitWrite() throws IOException {
+        // A flush is expected to hand the data to the kernel right away, handlers may block the event loop after
+        // flushing and the peer must still see the data. Reads and polls stay batched until the next loop iteration.
+        submissionQueue().submit();
+    }
+
+    private IovArray iovArray() {
+        if (iovArray == null) {
+            iovArray = new IovArray();
+            msgHdrAddress = PlatformDependent.allocateMemory(Native.MSGHDR_SIZE);
+            PlatformDependent.setMemory(msgHdrAddress, Native.MSGHDR_SIZE, (byte) 0);
+        } else {
+            iovArray.clear();
+        }
+        return iovArray;
+    }
+
+    private void releaseWriteBuffers() {
+        for (int i = 0; i < writeBuffers.size(); i++) {
+            writeBuffers.get(i).release();
+        }
+        writeBuffers.clear();
+    }
+
+    /**
+     * Returns {@code false} if the socket did not accept any data.
+     */
+    private boolean writeFileRegion(ChannelOutboundBuffer in, FileRegion region) throws Exception {
+        if (region.transferred() >= region.count()) {
+            in.remove();
+            return true;
+        }
+
+        if (byteChannel == null) {
+            byteChannel = new IOUringSocketWritableByteChannel();
+        }
+        final long flushedAmount = region.transferTo(byteChannel, region.transferred());
+        if (flushedAmount > 0) {
+            in.progress(flushedAmount);
+            if (region.transferred() >= region.count()) {
+                in.remove();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf): buf;
+        }
+
+        if (msg instanceof FileRegion) {
+            return msg;
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @Override
+    void cancelPendingOperations() {
+        super.cancelPendingOperations();
+        if (isScheduled(RECV_SCHEDULED)) {
+            cancel(Native.IORING_OP_RECV, (short) 0);
+        }
+        if (isScheduled(WRITE_SCHEDULED)) {
+            // We do not know which of the two was used, cancelling an operation that does not exist is harmless.
+            cancel(Native.IORING_OP_SEND, (short) 0);
+            cancel(Native.IORING_OP_SENDMSG, (short) 0);
+        }
+    }
+
+    @Override
+    void activated() throws IOException {
+        // Watch for the peer closing its output, even if nothing is read, so it is detected without auto read.
+        schedulePollRdHup();
+    }
+
+    @Override
+    void releaseResources() {
+        if (iovArray != null) {
+            iovArray.release();
+            iovArray = null;
+            PlatformDependent.freeMemory(msgHdrAddress);
+            msgHdrAddress = 0;
+        }
+    }
+
+    @Override
+    protected final void doShutdownOutput() throws Exception {
+        socket.shutdown(false, true);
+    }
+
+    private void shutdownInput0(final ChannelPromise promise) {
+        try {
+            socket.shutdown(true, false);
+            promise.setSuccess();
+        } catch (Throwable cause) {
+            promise.setFailure(cause);
+        }
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return socket.isOutputShutdown();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return socket.isInputShutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return socket.isShutdown();
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput() {
+        return shutdownOutput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+                }
+            });
+        }
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdownInput() {
+        return shutdownInput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownInput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            shutdownInput0(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    shutdownInput0(promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdown() {
+        return shutdown(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdown(final ChannelPromise promise) {
+        ChannelFuture shutdownOutputFuture = shutdownOutput();
+        if (shutdownOutputFuture.isDone()) {
+            shutdownOutputDone(shutdownOutputFuture, promise);
+        } else {
+            shutdownOutputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture shutdownOutputFuture) throws Exception {
+                    shutdownOutputDone(shutdownOutputFuture, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void shutdownOutputDone(final ChannelFuture shutdownOutputFuture, final ChannelPromise promise) {
+        ChannelFuture shutdownInputFuture = shutdownInput();
+        if (shutdownInputFuture.isDone()) {
+            shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+        } else {
+            shutdownInputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture shutdownInputFuture) throws Exception {
+                    shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+                }
+            });
+        }
+    }
+
+    private static void shutdownDone(ChannelFuture shutdownOutputFuture,
+                              ChannelFuture shutdownInputFuture,
+                              ChannelPromise promise) {
+        Throwable shutdownOutputCause = shutdownOutputFuture.cause();
+        Throwable shutdownInputCause = shutdownInputFuture.cause();
+        if (shutdownOutputCause != null) {
+            if (shutdownInputCause != null) {
+                logger.debug("Exception suppressed because a previous exception occurred.",
+                        shutdownInputCause);
+            }
+            promise.setFailure(shutdownOutputCause);
+        } else if (shutdownInputCause != null) {
+            promise.setFailure(shutdownInputCause);
+        } else {
+            promise.setSuccess();
+        }
+    }
+
+    class IOUringStreamUnsafe extends AbstractIOUringUnsafe {
+        // Number of reads that delivered data in the current read loop.
+        private int readsInBatch;
+
+        @Override
+        void scheduleRead() throws IOException {
+            if (isScheduled(RECV_SCHEDULED | POLL_IN_SCHEDULED) || !isActive()
+                    || shouldBreakIOUringInReady(config())) {
+                return;
+            }
+            IOUringRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
+            allocHandle.reset(config());
+            readsInBatch = 0;
+            // The first receive of a read loop waits inside the kernel until data arrives.
+            submitRecv(allocHandle, 0);
+        }
+
+        private void submitRecv(IOUringRecvByteAllocatorHandle allocHandle, int flags) throws IOException {
+            ByteBuf byteBuf = allocHandle.allocate(config().getAllocator());
+            allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+            try {
+                submissionQueue().addRecv(socket.intValue(), byteBuf.memoryAddress() + byteBuf.writerIndex(),
+                                          byteBuf.writableBytes(), flags, userData(Native.IORING_OP_RECV, (short) 0));
+            } catch (IOException e) {
+                byteBuf.release();
+                throw e;
+            }
+            readBuffer = byteBuf;
+            submitted(RECV_SCHEDULED);
+        }
+
+        @Override
+        void pollInReady() {
+            // Only used once the kernel refused to wait for data on a receive, try again now.
+            try {
+                scheduleRead();
+            } catch (IOException e) {
+                pipeline().fireExceptionCaught(e);
+                close(voidPromise());
+            }
+        }
+
+        @Override
+        void clearReadScheduled0() {
+            super.clearReadScheduled0();
+            if (isScheduled(RECV_SCHEDULED) && readsInBatch == 0 && !recvBufAllocHandle().isReceivedRdHup()) {
+                // Nothing was received yet, stop waiting for data.
+                cancel(Native.IORING_OP_RECV, (short) 0);
+            }
+        }
+
+        @Override
+        void completed(byte op, int res) {
+            switch (op) {
+                case Native.IORING_OP_RECV:
+                    recvCompleted(res);
+                    break;
+                case Native.IORING_OP_SEND:
+                case Native.IORING_OP_SENDMSG:
+                    writeCompleted(res);
+                    break;
+                default:
+                    super.completed(op, res);
+            }
+        }
+
+        private void recvCompleted(int res) {
+            ByteBuf byteBuf = readBuffer;
+            readBuffer = null;
+            if (!isOpen()) {
+                ioState &= ~RECV_SCHEDULED;
+                byteBuf.release();
+                return;
+            }
+
+            final ChannelConfig config = config();
+            if (shouldBreakIOUringInReady(config)) {
+                // The end of the input was already handled.
+                ioState &= ~RECV_SCHEDULED;
+                byteBuf.release();
+                clearReadScheduled0();
+                return;
+            }
+            final ChannelPipeline pipeline = pipeline();
+            final IOUringRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
+            if (res > 0) {
+                byteBuf.writerIndex(byteBuf.writerIndex() + res);
+                allocHandle.lastBytesRead(res);
+                allocHandle.incMessagesRead(1);
+                readsInBatch++;
+                readPending = false;
+                // RECV_SCHEDULED is still set so a read() triggered by the pipeline does not start another loop.
+                pipeline.fireChannelRead(byteBuf);
+
+                if (allocHandle.continueReading() && isActive() && !shouldBreakIOUringInReady(config)) {
+                    try {
+                        // Only pick up what is already there, the next loop waits for new data.
+                        submitRecv(allocHandle, Native.MSG_DONTWAIT);
+                        return;
+                    } catch (IOException e) {
+                        ioState &= ~RECV_SCHEDULED;
+                        handleReadException(pipeline, null, e, true, allocHandle);
+                        return;
+                    }
+                }
+                readComplete(config, allocHandle);
+                return;
+            }
+
+            byteBuf.release();
+            ioState &= ~RECV_SCHEDULED;
+            if (res == ERRNO_EAGAIN_NEGATIVE || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                if (readsInBatch > 0) {
+                    // Everything that was available was read.
+                    readComplete(config, allocHandle);
+                } else if (res == ERRNO_EAGAIN_NEGATIVE) {
+                    // The kernel did not wait for data, fall back to waiting for the socket to become readable.
+                    try {
+                        schedulePollIn();
+                    } catch (IOException e) {
+                        handleReadException(pipeline, null, e, true, allocHandle);
+                    }
+                } else {
+                    readCancelled();
+                }
+                return;
+            }
+
+            if (res == 0) {
+                // EOF, there is nothing left to read.
+                allocHandle.lastBytesRead(-1);
+                readsInBatch = 0;
+                allocHandle.readComplete();
+                pipeline.fireChannelReadComplete();
+                shutdownInput(false);
+                return;
+            }
+
+            IOException cause = res == ERRNO_ECONNRESET_NEGATIVE ?
+                    Errors.newConnectionResetException("recv", res) : Errors.newIOException("recv", res);
+            handleReadException(pipeline, null, cause, true, allocHandle);
+        }
+
+        private void readComplete(ChannelConfig config, IOUringRecvByteAllocatorHandle allocHandle) {
+            ioState &= ~RECV_SCHEDULED;
+            readsInBatch = 0;
+            allocHandle.readComplete();
+            pipeline().fireChannelReadComplete();
+            readFinally(config);
+        }
+
+        private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause, boolean close,
+                                         IOUringRecvByteAllocatorHandle allocHandle) {
+            if (byteBuf != null) {
+                if (byteBuf.isReadable()) {
+                    readPending = false;
+                    pipeline.fireChannelRead(byteBuf);
+                } else {
+                    byteBuf.release();
+                }
+            }
+            readsInBatch = 0;
+            allocHandle.readComplete();
+            pipeline.fireChannelReadComplete();
+            pipeline.fireExceptionCaught(cause);
+            if (close || cause instanceof IOException) {
+                shutdownInput(false);
+            }
+        }
+
+        private void writeCompleted(int res) {
+            ioState &= ~WRITE_SCHEDULED;
+            releaseWriteBuffers();
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (!isOpen() || !isRegistered() || in == null) {
+                return;
+            }
+            if (res >= 0) {
+                in.removeBytes(res);
+                if (res == 0) {
+                    // Nothing was accepted, wait until the socket is writable again.
+                    try {
+                        schedulePollOut();
+                        return;
+                    } catch (IOException e) {
+                        pipeline().fireExceptionCaught(e);
+                        close(voidPromise());
+                        return;
+                    }
+                }
+            } else if (res == ERRNO_EAGAIN_NEGATIVE) {
+                try {
+                    schedulePollOut();
+                } catch (IOException e) {
+                    pipeline().fireExceptionCaught(e);
+                    close(voidPromise());
+                }
+                return;
+            } else if (res != Native.ERRNO_ECANCELED_NEGATIVE) {
+                // Surface the error through the regular flush path so the outbound buffer is failed the same way as
+                // for all other transports.
+                writeError = res;
+            }
+            forceFlush();
+        }
+    }
+
+    private final class IOUringSocketWritableByteChannel extends SocketWritableByteChannel {
+        IOUringSocketWritableByteChannel() {
+            super(socket);
+        }
+
+        @Override
+        protected ByteBufAllocator alloc() {
+            return AbstractIOUringStreamChannel.this.alloc();
+        }
+    }
+}
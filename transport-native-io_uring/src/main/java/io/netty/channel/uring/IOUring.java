@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.ChannelException;
+import io.netty.channel.unix.Errors.NativeIoException;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+
+import java.util.Locale;
+
+/**
+ * Tells if {@code netty-transport-native-io_uring} is supported.
+ */
+public final class IOUring {
+
+    private static final Throwable UNAVAILABILITY_CAUSE;
+    private static final boolean UNSUPPORTED_BY_SYSTEM;
+
+    static {
+        Throwable cause = null;
+        boolean unsupportedBySystem = true;
+
+        if (SystemPropertyUtil.getBoolean("io.netty.transport.noNative", false)) {
+            cause = new UnsupportedOperationException(
+                    "Native transport was explicit disabled with -Dio.netty.transport.noNative=true");
+        } else if (!PlatformDependent.hasUnsafe()) {
+            cause = new UnsupportedOperationException(
+                    "io_uring transport requires sun.misc.Unsafe", PlatformDependent.getUnsafeUnavailabilityCause());
+        } else if (!SystemPropertyUtil.get("os.name", "").toLowerCase(Locale.UK).startsWith("linux")) {
+            cause = new UnsupportedOperationException("io_uring transport is only supported on Linux");
+        } else {
+            RingBuffer ringBuffer = null;
+            try {
+                ringBuffer = Native.createRingBuffer(8);
+                if (!ringBuffer.hasFeature(Native.IORING_FEAT_EXT_ARG | Native.IORING_FEAT_NODROP)) {
+                    cause = new UnsupportedOperationException(
+                            "io_uring transport requires Linux 5.11 or newer, running " + Native.KERNEL_VERSION);
+                }
+            } catch (Throwable t) {
+                cause = t;
+                unsupportedBySystem = isUnsupportedBySystem(t);
+            } finally {
+                if (ringBuffer != null) {
+                    try {
+                        ringBuffer.close();
+                    } catch (Exception ignore) {
+                        // ignore
+                    }
+                }
+            }
+        }
+
+        UNAVAILABILITY_CAUSE = cause;
+        UNSUPPORTED_BY_SYSTEM = cause != null && unsupportedBySystem;
+    }
+
+    private static boolean isUnsupportedBySystem(Throwable t) {
+        // The native library was loaded but io_uring_setup() failed, which it does with ENOSYS if the kernel was built
+        // without io_uring and with EPERM if io_uring was disabled, for example via the kernel.io_uring_disabled
+        // sysctl or a seccomp filter.
+        if (t instanceof ChannelException && t.getCause() instanceof NativeIoException) {
+            int err = ((NativeIoException) t.getCause()).expectedErr();
+            return err == Native.ERRNO_ENOSYS_NEGATIVE || err == Native.ERRNO_EPERM_NEGATIVE;
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if and only if {@code netty-transport-native-io_uring} is available.
+     */
+    public static boolean isAvailable() {
+        return UNAVAILABILITY_CAUSE == null;
+    }
+
+    /**
+     * Ensure that {@code netty-transport-native-io_uring} is available.
+     *
+     * @throws UnsatisfiedLinkError if unavailable
+     */
+    public static void ensureAvailability() {
+        if (UNAVAILABILITY_CAUSE != null) {
+            throw (Error) new UnsatisfiedLinkError(
+                    "failed to load the required native library").initCause(UNAVAILABILITY_CAUSE);
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code netty-transport-native-io_uring} is unavailable because this system does not
+     * support io_uring, like an older kernel, rather than because the native library could not be loaded or is
+     * broken.
+     */
+    static boolean isUnsupportedBySystem() {
+        return UNSUPPORTED_BY_SYSTEM;
+    }
+
+    /**
+     * Returns the cause of unavailability of {@code netty-transport-native-io_uring}.
+     *
+     * @return the cause if unavailable. {@code null} if available.
+     */
+    public static Throwable unavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+
+    private IOUring() {
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * The completion queue of an io_uring instance. Completions are consumed directly from the memory that is shared with
+ * the kernel.
+ */
+final class IOUringCompletionQueue {
+
+    /**
+     * Callback that is notified for each consumed completion.
+     */
+    interface CompletionCallback {
+        void handle(long userData, int res, int flags);
+    }
+
+    final long ringAddress;
+    final long ringSize;
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final long kOverflowAddress;
+    private final long completionQueueArrayAddress;
+    private final int ringMask;
+    private final int ringEntries;
+
+    // Only ever updated by the event loop so there is no need to read it back from the kernel.
+    private int head;
+
+    IOUringCompletionQueue(long ringAddress, long ringSize, long kHeadAddress, long kTailAddress,
+                           long kRingMaskAddress, long kRingEntriesAddress, long kOverflowAddress,
+                           long completionQueueArrayAddress) {
+        this.ringAddress = ringAddress;
+        this.ringSize = ringSize;
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.kOverflowAddress = kOverflowAddress;
+        this.completionQueueArrayAddress = completionQueueArrayAddress;
+        ringMask = PlatformDependent.getInt(kRingMaskAddress);
+        ringEntries = PlatformDependent.getInt(kRingEntriesAddress);
+        head = PlatformDependent.getInt(kHeadAddress);
+    }
+
+    /**
+     * Returns {@code true} if there are completions that were not consumed yet.
+     */
+    boolean hasCompletions() {
+        return head != PlatformDependent.getIntVolatile(kTailAddress);
+    }
+
+    /**
+     * Consumes all completions that are ready, including the ones that are posted while the callback runs, and
+     * returns how many were consumed.
+     */
+    int process(CompletionCallback callback) {
+        int tail = PlatformDependent.getIntVolatile(kTailAddress);
+        int processed = 0;
+        while (head != tail) {
+            long cqeAddress = completionQueueArrayAddress + (long) (head & ringMask) * Native.CQE_SIZE;
+            long userData = PlatformDependent.getLong(cqeAddress + Native.CQE_USER_DATA_FIELD);
+            int res = PlatformDependent.getInt(cqeAddress + Native.CQE_RES_FIELD);
+            int flags = PlatformDependent.getInt(cqeAddress + Native.CQE_FLAGS_FIELD);
+
+            // Hand the slot back to the kernel before running the callback, which may submit more work.
+            PlatformDependent.putIntOrdered(kHeadAddress, ++head);
+            processed++;
+
+            callback.handle(userData, res, flags);
+
+            if (head == tail) {
+                tail = PlatformDependent.getIntVolatile(kTailAddress);
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * Returns the number of completions the kernel had to drop or buffer because the ring was full.
+     */
+    int overflow() {
+        return PlatformDependent.getIntVolatile(kOverflowAddress);
+    }
+
+    int ringEntries() {
+        return ringEntries;
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopTaskQueueFactory;
+import io.netty.channel.SelectStrategy;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.uring.AbstractIOUringChannel.AbstractIOUringUnsafe;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.util.IntSupplier;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.RejectedExecutionHandler;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * {@link EventLoop} which uses io_uring under the covers. Only works on Linux!
+ * <p>
+ * All operations that are queued while running tasks and processing completions are submitted with a single
+ * {@code io_uring_enter} call, which also waits for the next completions.
+ */
+final class IOUringEventLoop extends SingleThreadEventLoop {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IOUringEventLoop.class);
+    private static final AtomicIntegerFieldUpdater<IOUringEventLoop> WAKEN_UP_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(IOUringEventLoop.class, "wakenUp");
+
+    // Id that is used for the read of the eventfd, channels use ids starting from 1.
+    private static final int EVENTFD_ID = 0;
+    private static final long EVENTFD_USER_DATA = UserData.encode(EVENTFD_ID, Native.IORING_OP_READ, (short) 0);
+    private static final long MAX_DRAIN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    static {
+        // Ensure JNI is initialized by the time this class is loaded by this time!
+        // We use unix-common methods in this class which are backed by JNI methods.
+        IOUring.ensureAvailability();
+    }
+
+    private final RingBuffer ringBuffer;
+    private final FileDescriptor eventFd;
+    private final long eventFdBuffer;
+    private final IntObjectMap<AbstractIOUringChannel> channels = new IntObjectHashMap<AbstractIOUringChannel>(4096);
+    private final IOUringCompletionQueue.CompletionCallback callback =
+            new IOUringCompletionQueue.CompletionCallback() {
+        @Override
+        public void handle(long userData, int res, int flags) {
+            handleCompletion(userData, res);
+        }
+    };
+    private final SelectStrategy selectStrategy;
+    private final IntSupplier submitNowSupplier = new IntSupplier() {
+        @Override
+        public int get() throws Exception {
+            return submitNow();
+        }
+    };
+    private boolean eventFdReadPending;
+    private int nextId = EVENTFD_ID + 1;
+
+    @SuppressWarnings("unused") // AtomicIntegerFieldUpdater
+    private volatile int wakenUp;
+    private volatile int ioRatio = 50;
+
+    IOUringEventLoop(EventLoopGroup parent, Executor executor, int ringSize, SelectStrategy strategy,
+                     RejectedExecutionHandler rejectedExecutionHandler, EventLoopTaskQueueFactory queueFactory) {
+        super(parent, executor, false, newTaskQueue(queueFactory), newTaskQueue(queueFactory),
+                rejectedExecutionHandler);
+        selectStrategy = ObjectUtil.checkNotNull(strategy, "strategy");
+        boolean success = false;
+        RingBuffer ringBuffer = null;
+        FileDescriptor eventFd = null;
+        try {
+            this.ringBuffer = ringBuffer =
+                    ringSize == 0 ? Native.createRingBuffer() : Native.createRingBuffer(ringSize);
+            this.eventFd = eventFd = Native.newBlockingEventFd();
+            eventFdBuffer = PlatformDependent.allocateMemory(8);
+            success = true;
+        } finally {
+            if (!success) {
+                if (ringBuffer != null) {
+                    ringBuffer.close();
+                }
+                if (eventFd != null) {
+                    try {
+                        eventFd.close();
+                    } catch (Exception e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+    }
+
+    private static Queue<Runnable> newTaskQueue(
+            EventLoopTaskQueueFactory queueFactory) {
+        if (queueFactory == null) {
+            return newTaskQueue0(DEFAULT_MAX_PENDING_TASKS);
+        }
+        return queueFactory.newTaskQueue(DEFAULT_MAX_PENDING_TASKS);
+    }
+
+    @Override
+    protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        return newTaskQueue0(maxPendingTasks);
+    }
+
+    private static Queue<Runnable> newTaskQueue0(int maxPendingTasks) {
+        // This event loop never calls takeTask()
+        return maxPendingTasks == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
+                : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
+    }
+
+    RingBuffer ringBuffer() {
+        return ringBuffer;
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && WAKEN_UP_UPDATER.getAndSet(this, 1) == 0) {
+            // write to the evfd which will then complete the pending read and so wake up io_uring_enter(...)
+            Native.eventFdWrite(eventFd.intValue(), 1L);
+        }
+    }
+
+    /**
+     * Register the given channel with this {@link EventLoop}.
+     */
+    void add(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        int id;
+        do {
+            id = nextId++;
+            if (nextId == Integer.MAX_VALUE) {
+                nextId = EVENTFD_ID + 1;
+            }
+            // Skip ids that are still in use, either by a registered channel or one that waits for completions.
+        } while (id == EVENTFD_ID || channels.containsKey(id));
+        ch.id = id;
+        ch.removePending = false;
+        channels.put(id, ch);
+    }
+
+    /**
+     * Deregister the given channel from this {@link EventLoop}. If operations are still in flight the channel stays
+     * mapped until their completions arrived.
+     */
+    void remove(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        if (ch.inFlight == 0) {
+            if (channels.get(ch.id) == ch) {
+                channels.remove(ch.id);
+            }
+            ch.releaseResources();
+        } else {
+            ch.removePending = true;
+        }
+    }
+
+    /**
+     * Returns the percentage of the desired amount of time spent for I/O in the event loop.
+     */
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * Sets the percentage of the desired amount of time spent for I/O in the event loop.  The default value is
+     * {@code 50}, which means the event loop will try to spend the same amount of time for I/O as for non-I/O tasks.
+     */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    @Override
+    public int registeredChannels() {
+        return channels.size();
+    }
+
+    private void submitEventFdReadIfNeeded() throws IOException {
+        if (!eventFdReadPending) {
+            ringBuffer.submissionQueue().addRead(eventFd.intValue(), eventFdBuffer, 8, EVENTFD_USER_DATA);
+            eventFdReadPending = true;
+        }
+    }
+
+    /**
+     * Submits everything that was queued without waiting and returns {@code 1} if completions are ready, {@code 0}
+     * otherwise.
+     */
+    private int submitNow() throws IOException {
+        ringBuffer.submissionQueue().submit();
+        return ringBuffer.completionQueue().hasCompletions() ? 1 : 0;
+    }
+
+    @Override
+    protected void run() {
+        final IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+        final IOUringCompletionQueue completionQueue = ringBuffer.completionQueue();
+        for (;;) {
+            try {
+                submitEventFdReadIfNeeded();
+                switch (selectStrategy.calculateStrategy(submitNowSupplier, hasTasks())) {
+                    case SelectStrategy.CONTINUE:
+                        continue;
+
+                    case SelectStrategy.BUSY_WAIT:
+                        // Never block in io_uring_enter(...), the completions are polled on every iteration.
+                        submissionQueue.submit();
+                        break;
+
+                    case SelectStrategy.SELECT:
+                        if (wakenUp == 1) {
+                            wakenUp = 0;
+                        }
+                        if (!hasTasks() && !completionQueue.hasCompletions()) {
+                            // Submit everything that was queued by the last iteration and wait for the next
+                            // completion, the timeout makes sure we wake up in time for the next scheduled task.
+                            submissionQueue.submitAndWait(delayNanos(System.nanoTime()));
+                        } else {
+                            submissionQueue.submit();
+                        }
+                        break;
+
+                    default:
+                        // The supplier already submitted everything that was queued.
+                }
+
+                final int ioRatio = this.ioRatio;
+                if (ioRatio == 100) {
+                    try {
+                        completionQueue.process(callback);
+                    } finally {
+                        // Ensure we always run tasks.
+                        runAllTasks();
+                    }
+                } else {
+                    final long ioStartTime = System.nanoTime();
+
+                    try {
+                        completionQueue.process(callback);
+                    } finally {
+                        // Ensure we always run tasks.
+                        final long ioTime = System.nanoTime() - ioStartTime;
+                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+            // Always handle shutdown even if the loop processing threw an exception.
+            try {
+                if (isShuttingDown()) {
+                    closeAll();
+                    if (confirmShutdown()) {
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+        }
+    }
+
+    private void handleCompletion(long userData, int res) {
+        int id = UserData.decodeId(userData);
+        byte op = UserData.decodeOp(userData);
+        if (op == Native.IORING_OP_ASYNC_CANCEL) {
+            // The outcome of the cancellation itself is not interesting, the cancelled operation completes as well.
+            return;
+        }
+        if (id == EVENTFD_ID) {
+            eventFdReadPending = false;
+            return;
+        }
+        AbstractIOUringChannel ch = channels.get(id);
+        if (ch == null) {
+            return;
+        }
+        try {
+            ((AbstractIOUringUnsafe) ch.unsafe()).handle(op, res, UserData.decodeData(userData));
+        } finally {
+            if (ch.removePending && ch.inFlight == 0) {
+                channels.remove(id);
+                ch.removePending = false;
+                ch.releaseResources();
+            }
+        }
+    }
+
+    /**
+     * Visible only for testing!
+     */
+    void handleLoopException(Throwable t) {
+        logger.warn("Unexpected exception in the io_uring event loop.", t);
+
+        // Prevent possible consecutive immediate failures that lead to
+        // excessive CPU consumption.
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            // Ignore.
+        }
+    }
+
+    private void closeAll() {
+        // Using the intermediate collection to prevent ConcurrentModificationException.
+        // In the `close()` method, the channel is deleted from `channels` map.
+        AbstractIOUringChannel[] localChannels = channels.values().toArray(new AbstractIOUringChannel[0]);
+
+        for (AbstractIOUringChannel ch: localChannels) {
+            ch.unsafe().close(ch.unsafe().voidPromise());
+        }
+    }
+
+    @Override
+    protected void cleanup() {
+        try {
+            // Give the kernel the chance to complete the cancellations of all closed channels, so the buffers that are
+            // still owned by the kernel are released.
+            long deadline = System.nanoTime() + MAX_DRAIN_NANOS;
+            IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+            IOUringCompletionQueue completionQueue = ringBuffer.completionQueue();
+            while (!channels.isEmpty()) {
+                long timeout = deadline - System.nanoTime();
+                if (timeout <= 0) {
+                    break;
+                }
+                submissionQueue.submitAndWait(Math.min(timeout, TimeUnit.MILLISECONDS.toNanos(10)));
+                completionQueue.process(callback);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to drain the io_uring completion queue.", e);
+        } finally {
+            ringBuffer.close();
+            try {
+                eventFd.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close the event fd.", e);
+            }
+            PlatformDependent.freeMemory(eventFdBuffer);
+        }
+    }
+}
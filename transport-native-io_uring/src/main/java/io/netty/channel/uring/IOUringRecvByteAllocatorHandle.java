@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.RecvByteBufAllocator.DelegatingHandle;
+import io.netty.channel.RecvByteBufAllocator.ExtendedHandle;
+import io.netty.channel.unix.PreferredDirectByteBufAllocator;
+import io.netty.util.UncheckedBooleanSupplier;
+
+final class IOUringRecvByteAllocatorHandle extends DelegatingHandle implements ExtendedHandle {
+    private final PreferredDirectByteBufAllocator preferredDirectByteBufAllocator =
+            new PreferredDirectByteBufAllocator();
+    private final UncheckedBooleanSupplier defaultMaybeMoreDataSupplier = new UncheckedBooleanSupplier() {
+        @Override
+        public boolean get() {
+            return maybeMoreDataToRead();
+        }
+    };
+    private boolean readUntilEmpty;
+    private boolean receivedRdHup;
+
+    IOUringRecvByteAllocatorHandle(ExtendedHandle handle) {
+        super(handle);
+    }
+
+    void receivedRdHup() {
+        receivedRdHup = true;
+    }
+
+    boolean isReceivedRdHup() {
+        return receivedRdHup;
+    }
+
+    /**
+     * Readiness based reads (accept and datagrams) keep reading until the socket reports that there is nothing left,
+     * while completion based reads only continue if the last read filled the whole buffer.
+     */
+    void readUntilEmpty(boolean readUntilEmpty) {
+        this.readUntilEmpty = readUntilEmpty;
+    }
+
+    boolean maybeMoreDataToRead() {
+        return readUntilEmpty ? lastBytesRead() > 0 : lastBytesRead() == attemptedBytesRead();
+    }
+
+    @Override
+    public ByteBuf allocate(ByteBufAllocator alloc) {
+        // We need to ensure we always allocate a direct ByteBuf as the kernel writes into it directly.
+        preferredDirectByteBufAllocator.updateAllocator(alloc);
+        return delegate().allocate(preferredDirectByteBufAllocator);
+    }
+
+    @Override
+    public boolean continueReading(UncheckedBooleanSupplier maybeMoreDataSupplier) {
+        return ((ExtendedHandle) delegate()).continueReading(maybeMoreDataSupplier);
+    }
+
+    @Override
+    public boolean continueReading() {
+        // We must override the supplier which determines if there maybe more data to read.
+        return continueReading(defaultMaybeMoreDataSupplier);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
+import static io.netty.channel.unix.Errors.newIOException;
+
+/**
+ * The submission queue of an io_uring instance. Entries are written directly into the memory that is shared with the
+ * kernel and are only handed over once {@link #submit()} or {@link #submitAndWait(long)} is called, so everything that
+ * is queued during one event loop iteration is submitted with a single syscall.
+ */
+final class IOUringSubmissionQueue {
+
+    final long ringAddress;
+    final long ringSize;
+    final long submissionQueueArrayAddress;
+    final long submissionQueueArraySize;
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final int ringMask;
+    private final int ringEntries;
+    private final int ringFd;
+
+    // Our view of the ring, the tail is only published to the kernel when submitting.
+    private int head;
+    private int tail;
+
+    IOUringSubmissionQueue(long ringAddress, long ringSize, long kHeadAddress, long kTailAddress,
+                           long kRingMaskAddress, long kRingEntriesAddress, long kFlagsAddress, long kArrayAddress,
+                           long submissionQueueArrayAddress, long submissionQueueArraySize, int ringFd) {
+        this.ringAddress = ringAddress;
+        this.ringSize = ringSize;
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.submissionQueueArrayAddress = submissionQueueArrayAddress;
+        this.submissionQueueArraySize = submissionQueueArraySize;
+        this.ringFd = ringFd;
+        ringMask = PlatformDependent.getInt(kRingMaskAddress);
+        ringEntries = PlatformDependent.getInt(kRingEntriesAddress);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        tail = PlatformDependent.getInt(kTailAddress);
+
+        // The indirection array is never reordered, so slot i always refers to submission queue entry i.
+        for (int i = 0; i < ringEntries; i++) {
+            PlatformDependent.putInt(kArrayAddress + 4L * i, i);
+        }
+    }
+
+    void addNop(long userData) throws IOException {
+        enqueue(Native.IORING_OP_NOP, -1, 0, 0, 0, 0, userData);
+    }
+
+    void addRead(int fd, long bufferAddress, int length, long userData) throws IOException {
+        enqueue(Native.IORING_OP_READ, fd, bufferAddress, length, 0, 0, userData);
+    }
+
+    void addRecv(int fd, long bufferAddress, int length, int msgFlags, long userData) throws IOException {
+        enqueue(Native.IORING_OP_RECV, fd, bufferAddress, length, 0, msgFlags, userData);
+    }
+
+    void addSend(int fd, long bufferAddress, int length, int msgFlags, long userData) throws IOException {
+        enqueue(Native.IORING_OP_SEND, fd, bufferAddress, length, 0, msgFlags, userData);
+    }
+
+    void addSendmsg(int fd, long msgHdrAddress, int msgFlags, long userData) throws IOException {
+        enqueue(Native.IORING_OP_SENDMSG, fd, msgHdrAddress, 1, 0, msgFlags, userData);
+    }
+
+    void addPollAdd(int fd, int pollMask, long userData) throws IOException {
+        if (PlatformDependent.BIG_ENDIAN_NATIVE_ORDER) {
+            // The kernel reads poll32_events with its 16-bit halves swapped on big endian.
+            pollMask = pollMask << 16 | pollMask >>> 16;
+        }
+        enqueue(Native.IORING_OP_POLL_ADD, fd, 0, 0, 0, pollMask, userData);
+    }
+
+    void addCancel(long targetUserData, long userData) throws IOException {
+        enqueue(Native.IORING_OP_ASYNC_CANCEL, -1, targetUserData, 0, 0, 0, userData);
+    }
+
+    private void enqueue(byte op, int fd, long address, int length, long offset, int opFlags, long userData)
+            throws IOException {
+        if (tail - head == ringEntries) {
+            head = PlatformDependent.getIntVolatile(kHeadAddress);
+            if (tail - head == ringEntries) {
+                // The ring is full, hand everything over to the kernel to make room.
+                submit();
+                if (tail - head == ringEntries) {
+                    throw new IOException("io_uring submission queue is full");
+                }
+            }
+        }
+
+        long sqe = submissionQueueArrayAddress + (long) (tail & ringMask) * Native.SQE_SIZE;
+        PlatformDependent.setMemory(sqe, Native.SQE_SIZE, (byte) 0);
+        PlatformDependent.putByte(sqe + Native.SQE_OP_CODE_FIELD, op);
+        PlatformDependent.putInt(sqe + Native.SQE_FD_FIELD, fd);
+        PlatformDependent.putLong(sqe + Native.SQE_OFFSET_FIELD, offset);
+        PlatformDependent.putLong(sqe + Native.SQE_ADDRESS_FIELD, address);
+        PlatformDependent.putInt(sqe + Native.SQE_LEN_FIELD, length);
+        PlatformDependent.putInt(sqe + Native.SQE_RW_FLAGS_FIELD, opFlags);
+        PlatformDependent.putLong(sqe + Native.SQE_USER_DATA_FIELD, userData);
+        tail++;
+    }
+
+    /**
+     * Returns the number of entries that were queued but not consumed by the kernel yet.
+     */
+    int pending() {
+        return tail - PlatformDependent.getIntVolatile(kHeadAddress);
+    }
+
+    /**
+     * Submits all queued entries without waiting for completions.
+     */
+    int submit() throws IOException {
+        int toSubmit = publish();
+        if (toSubmit == 0) {
+            return 0;
+        }
+        return enter(toSubmit, 0, -1);
+    }
+
+    /**
+     * Submits all queued entries and waits until at least one completion is ready or the timeout expires. A
+     * {@code timeoutNanos} smaller than {@code 0} waits without a timeout.
+     */
+    int submitAndWait(long timeoutNanos) throws IOException {
+        return enter(publish(), 1, timeoutNanos);
+    }
+
+    private int publish() {
+        PlatformDependent.putIntOrdered(kTailAddress, tail);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        return tail - head;
+    }
+
+    private int enter(int toSubmit, int minComplete, long timeoutNanos) throws IOException {
+        int ret = Native.ioUringEnter(ringFd, toSubmit, minComplete, 0, timeoutNanos);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        if (ret < 0) {
+            if (ret == Native.ERRNO_ETIME_NEGATIVE || ret == Native.ERRNO_EBUSY_NEGATIVE
+                    || ret == ERRNO_EAGAIN_NEGATIVE) {
+                // Either the timeout expired or the kernel asks us to reap completions first, the unconsumed
+                // entries stay in the ring and will be submitted again with the next call.
+                return 0;
+            }
+            throw newIOException("io_uring_enter", ret);
+        }
+        return ret;
+    }
+
+    int ringEntries() {
+        return ringEntries;
+    }
+}
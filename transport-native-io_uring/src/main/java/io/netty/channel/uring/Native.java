@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.ChannelException;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.Socket;
+import io.netty.util.internal.NativeLibraryLoader;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.Locale;
+
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ealready;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ebusy;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.ecanceled;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.enoent;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.enosys;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.eperm;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.etime;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.kernelVersion;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.msgDontwait;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollerr;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollhup;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollin;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollout;
+import static io.netty.channel.uring.NativeStaticallyReferencedJniMethods.pollrdhup;
+
+/**
+ * Native helper methods
+ * <p><strong>Internal usage only!</strong>
+ * <p>Static members which call JNI methods must be defined in {@link NativeStaticallyReferencedJniMethods}.
+ */
+final class Native {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Native.class);
+
+    static {
+        try {
+            // First, try calling a side-effect free JNI method to see if the library was already
+            // loaded by the application.
+            pollin();
+        } catch (UnsatisfiedLinkError ignore) {
+            // The library was not previously loaded, load it now.
+            loadNativeLibrary();
+        }
+        Socket.initialize();
+        Buffer.initialize();
+    }
+
+    static final int DEFAULT_RING_SIZE = Math.max(64, SystemPropertyUtil.getInt("io.netty.uring.ringSize", 4096));
+
+    static final int POLLIN = pollin();
+    static final int POLLOUT = pollout();
+    static final int POLLRDHUP = pollrdhup();
+    static final int POLLERR = pollerr();
+    static final int POLLHUP = pollhup();
+    static final int MSG_DONTWAIT = msgDontwait();
+    static final int ERRNO_ECANCELED_NEGATIVE = -ecanceled();
+    static final int ERRNO_ENOENT_NEGATIVE = -enoent();
+    static final int ERRNO_EALREADY_NEGATIVE = -ealready();
+    static final int ERRNO_EBUSY_NEGATIVE = -ebusy();
+    static final int ERRNO_ENOSYS_NEGATIVE = -enosys();
+    static final int ERRNO_EPERM_NEGATIVE = -eperm();
+    static final int ERRNO_ETIME_NEGATIVE = -etime();
+    static final String KERNEL_VERSION = kernelVersion();
+
+    // Opcodes, flags and struct layouts as defined by the io_uring ABI in linux/io_uring.h.
+    static final byte IORING_OP_NOP = 0;
+    static final byte IORING_OP_WRITEV = 2;
+    static final byte IORING_OP_POLL_ADD = 6;
+    static final byte IORING_OP_SENDMSG = 9;
+    static final byte IORING_OP_ASYNC_CANCEL = 14;
+    static final byte IORING_OP_READ = 22;
+    static final byte IORING_OP_SEND = 26;
+    static final byte IORING_OP_RECV = 27;
+
+    static final int IORING_FEAT_NODROP = 1 << 1;
+    static final int IORING_FEAT_EXT_ARG = 1 << 8;
+
+    static final int SQE_SIZE = 64;
+    static final int SQE_OP_CODE_FIELD = 0;
+    static final int SQE_FLAGS_FIELD = 1;
+    static final int SQE_IOPRIO_FIELD = 2;
+    static final int SQE_FD_FIELD = 4;
+    static final int SQE_OFFSET_FIELD = 8;
+    static final int SQE_ADDRESS_FIELD = 16;
+    static final int SQE_LEN_FIELD = 24;
+    static final int SQE_RW_FLAGS_FIELD = 28;
+    static final int SQE_USER_DATA_FIELD = 32;
+
+    static final int CQE_SIZE = 16;
+    static final int CQE_USER_DATA_FIELD = 0;
+    static final int CQE_RES_FIELD = 8;
+    static final int CQE_FLAGS_FIELD = 12;
+
+    // struct msghdr on LP64
+    static final int MSGHDR_SIZE = 56;
+    static final int MSGHDR_IOV_FIELD = 16;
+    static final int MSGHDR_IOVLEN_FIELD = 24;
+
+    static RingBuffer createRingBuffer() {
+        return createRingBuffer(DEFAULT_RING_SIZE);
+    }
+
+    static RingBuffer createRingBuffer(int entries) {
+        long[] values = ioUringSetup(entries);
+        if (values.length == 1) {
+            // io_uring_setup() failed and returned the negative errno.
+            throw new ChannelException(Errors.newIOException("io_uring_setup", (int) values[0]));
+        }
+        assert values.length == 20;
+        int ringFd = (int) values[0];
+        int features = (int) values[1];
+        IOUringSubmissionQueue submissionQueue = new IOUringSubmissionQueue(
+                values[2], values[3], values[4], values[5], values[6], values[7], values[8], values[9],
+                values[10], values[11], ringFd);
+        IOUringCompletionQueue completionQueue = new IOUringCompletionQueue(
+                values[12], values[13], values[14], values[15], values[16], values[17], values[18], values[19]);
+        return new RingBuffer(ringFd, features, submissionQueue, completionQueue);
+    }
+
+    static FileDescriptor newBlockingEventFd() {
+        return new FileDescriptor(eventFd());
+    }
+
+    /**
+     * Calls {@code io_uring_enter} and returns the number of consumed submissions or the negative errno.
+     * A {@code timeoutNanos} smaller than {@code 0} waits without a timeout.
+     */
+    static native int ioUringEnter(int ringFd, int toSubmit, int minComplete, int flags, long timeoutNanos);
+
+    static native void ioUringExit(long sqRingAddress, long sqRingSize, long cqRingAddress, long cqRingSize,
+                                   long sqesAddress, long sqesSize, int ringFd);
+
+    static native void eventFdWrite(int fd, long value);
+
+    private static native long[] ioUringSetup(int entries);
+    private static native int eventFd();
+
+    private static void loadNativeLibrary() {
+        String name = SystemPropertyUtil.get("os.name").toLowerCase(Locale.UK).trim();
+        if (!name.startsWith("linux")) {
+            throw new IllegalStateException("Only supported on Linux");
+        }
+        String staticLibName = "netty_transport_native_io_uring";
+        String sharedLibName = staticLibName + '_' + PlatformDependent.normalizedArch();
+        ClassLoader cl = PlatformDependent.getClassLoader(Native.class);
+        try {
+            NativeLibraryLoader.load(sharedLibName, cl);
+        } catch (UnsatisfiedLinkError e1) {
+            try {
+                NativeLibraryLoader.load(staticLibName, cl);
+                logger.debug("Failed to load {}", sharedLibName, e1);
+            } catch (UnsatisfiedLinkError e2) {
+                ThrowableUtil.addSuppressed(e1, e2);
+                throw e1;
+            }
+        }
+    }
+
+    private Native() {
+        // utility
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * The submission and completion queue of a single io_uring instance.
+ */
+final class RingBuffer {
+    private final int ringFd;
+    private final int features;
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+    private boolean closed;
+
+    RingBuffer(int ringFd, int features, IOUringSubmissionQueue submissionQueue,
+               IOUringCompletionQueue completionQueue) {
+        this.ringFd = ringFd;
+        this.features = features;
+        this.submissionQueue = submissionQueue;
+        this.completionQueue = completionQueue;
+    }
+
+    int fd() {
+        return ringFd;
+    }
+
+    boolean hasFeature(int feature) {
+        return (features & feature) == feature;
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return submissionQueue;
+    }
+
+    IOUringCompletionQueue completionQueue() {
+        return completionQueue;
+    }
+
+    /**
+     * Unmaps the rings and closes the io_uring file descriptor. Any operation that is still in flight is cancelled by
+     * the kernel.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Native.ioUringExit(submissionQueue.ringAddress, submissionQueue.ringSize,
+                           completionQueue.ringAddress, completionQueue.ringSize,
+                           submissionQueue.submissionQueueArrayAddress, submissionQueue.submissionQueueArraySize,
+                           ringFd);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * Encodes which channel and operation a submission belongs to into the 64-bit {@code user_data} that the kernel hands
+ * back with the completion. Channels are identified by an id that is unique within their event loop instead of the
+ * file descriptor, as the descriptor may already be reused while completions for a closed channel are outstanding.
+ */
+final class UserData {
+
+    private UserData() {
+        // utility
+    }
+
+    static long encode(int id, byte op, short data) {
+        return (long) id << 32 | (op & 0xFFL) << 16 | data & 0xFFFFL;
+    }
+
+    static int decodeId(long userData) {
+        return (int) (userData >>> 32);
+    }
+
+    static byte decodeOp(long userData) {
+        return (byte) (userData >>> 16);
+    }
+
+    static short decodeData(long userData) {
+        return (short) userData;
+    }
+}
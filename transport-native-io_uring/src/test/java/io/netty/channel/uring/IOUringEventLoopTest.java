@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.testsuite.transport.AbstractSingleThreadEventLoopTest;
+import io.netty.util.concurrent.Future;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+public class IOUringEventLoopTest extends AbstractSingleThreadEventLoopTest {
+
+    @BeforeClass
+    public static void loadJNI() {
+        assumeFalse(IOUring.isUnsupportedBySystem());
+        IOUring.ensureAvailability();
+    }
+
+    @Override
+    protected EventLoopGroup newEventLoopGroup() {
+        return new IOUringEventLoopGroup();
+    }
+
+    @Override
+    protected ServerSocketChannel newChannel() {
+        return new IOUringServerSocketChannel();
+    }
+
+    @Test
+    public void testScheduleBigDelayNotOverflow() {
+        EventLoopGroup group = new IOUringEventLoopGroup(1);
+
+        final EventLoop el = group.next();
+        Future<?> future = el.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        assertFalse(future.awaitUninterruptibly(1000));
+        assertTrue(future.cancel(true));
+        group.shutdownGracefully();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+public class IOUringTest {
+
+    @Test
+    public void testIsAvailable() {
+        // Not skipped, so a native library that can not be loaded fails the build, while the other tests are skipped
+        // if the system does not support io_uring.
+        assertTrue(String.valueOf(IOUring.unavailabilityCause()),
+                IOUring.isAvailable() || IOUring.isUnsupportedBySystem());
+    }
+
+    private static void assumeSupportedBySystem() {
+        assumeFalse(IOUring.isUnsupportedBySystem());
+        IOUring.ensureAvailability();
+    }
+
+    @Test(timeout = 5000)
+    public void testNopCompletion() throws Exception {
+        assumeSupportedBySystem();
+        RingBuffer ringBuffer = Native.createRingBuffer(8);
+        try {
+            IOUringSubmissionQueue submissionQueue = ringBuffer.submissionQueue();
+            IOUringCompletionQueue completionQueue = ringBuffer.completionQueue();
+            assertFalse(completionQueue.hasCompletions());
+
+            long userData = UserData.encode(1, Native.IORING_OP_NOP, (short) 3);
+            submissionQueue.addNop(userData);
+            assertEquals(1, submissionQueue.pending());
+            submissionQueue.submitAndWait(-1);
+            assertEquals(0, submissionQueue.pending());
+            assertTrue(completionQueue.hasCompletions());
+
+            final List<Long> completions = new ArrayList<Long>();
+            assertEquals(1, completionQueue.process(new IOUringCompletionQueue.CompletionCallback() {
+                @Override
+                public void handle(long userData, int res, int flags) {
+                    assertEquals(0, res);
+                    completions.add(userData);
+                }
+            }));
+            assertEquals(1, completions.size());
+            assertEquals(userData, (long) completions.get(0));
+            assertEquals(1, UserData.decodeId(userData));
+            assertEquals(Native.IORING_OP_NOP, UserData.decodeOp(userData));
+            assertEquals(3, UserData.decodeData(userData));
+            assertFalse(completionQueue.hasCompletions());
+        } finally {
+            ringBuffer.close();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testSubmitAndWaitTimeout() throws Exception {
+        assumeSupportedBySystem();
+        RingBuffer ringBuffer = Native.createRingBuffer(8);
+        try {
+            long start = System.nanoTime();
+            assertEquals(0, ringBuffer.submissionQueue().submitAndWait(TimeUnit.MILLISECONDS.toNanos(100)));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+            assertFalse(ringBuffer.completionQueue().hasCompletions());
+        } finally {
+            ringBuffer.close();
+        }
+    }
+}
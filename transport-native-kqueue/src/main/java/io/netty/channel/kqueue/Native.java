@@ -15,6 +15,7 @@
  */
 package io.netty.channel.kqueue;
 
+import io.netty.channel.unix.Buffer;
 import io.netty.channel.unix.FileDescriptor;
 import io.netty.channel.unix.Socket;
 import io.netty.util.internal.NativeLibraryLoader;
@@ -60,6 +61,7 @@ final class Native {
             loadNativeLibrary();
         }
         Socket.initialize();
+        Buffer.initialize();
     }
 
     static final short EV_ADD = evAdd();
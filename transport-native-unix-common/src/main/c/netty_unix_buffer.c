@@ -13,10 +13,33 @@
  * License for the specific language governing permissions and limitations
  * under the License.
  */
+#include <errno.h>
+#include <stdint.h>
+#include <sys/mman.h>
+#include <unistd.h>
+#ifdef __linux__
+#include <sys/syscall.h>
+#endif
+#include "netty_unix_errors.h"
 #include "netty_unix_jni.h"
 #include "netty_unix_util.h"
 #include "netty_unix_buffer.h"
 
+// MADV_DONTNEED releases the pages right away on Linux, while other platforms only do so with MADV_FREE.
+#if defined(MADV_FREE) && !defined(__linux__)
+#define NETTY_UNIX_MADV_PURGE MADV_FREE
+#else
+#define NETTY_UNIX_MADV_PURGE MADV_DONTNEED
+#endif
+
+// Size of the transparent huge pages on x86_64 and aarch64 with 4 KiB base pages.
+#define NETTY_UNIX_HUGE_PAGE_SIZE (2 * 1024 * 1024)
+
+// From numaif.h, which is only available if libnuma is installed.
+#define NETTY_UNIX_MPOL_PREFERRED 1
+
+static uintptr_t pageSize;
+
 // JNI Registered Methods Begin
 static jlong netty_unix_buffer_memoryAddress0(JNIEnv* env, jclass clazz, jobject buffer) {
     return (jlong) (*env)->GetDirectBufferAddress(env, buffer);
@@ -26,17 +49,98 @@ static jint netty_unix_buffer_addressSize0(JNIEnv* env, jclass clazz) {
    return (jint) sizeof(int*);
 }
 
+static jlong netty_unix_buffer_purge0(JNIEnv* env, jclass clazz, jlong address, jlong length) {
+    // Only purge the pages that are fully contained in the range.
+    uintptr_t start = ((uintptr_t) address + pageSize - 1) & ~(pageSize - 1);
+    uintptr_t end = ((uintptr_t) address + (uintptr_t) length) & ~(pageSize - 1);
+    if (end <= start) {
+        return 0;
+    }
+    if (madvise((void*) start, end - start, NETTY_UNIX_MADV_PURGE) != 0) {
+        return -errno;
+    }
+    return (jlong) (end - start);
+}
+
+static jobject netty_unix_buffer_map0(JNIEnv* env, jclass clazz, jint capacity, jboolean hugePages, jint numaNode) {
+    uintptr_t alignment = hugePages == JNI_TRUE && pageSize < NETTY_UNIX_HUGE_PAGE_SIZE ?
+            NETTY_UNIX_HUGE_PAGE_SIZE : pageSize;
+    uintptr_t size = ((uintptr_t) capacity + pageSize - 1) & ~(pageSize - 1);
+    // Map more than needed so the start can be aligned to the huge page size, the rest is unmapped again.
+    uintptr_t mapSize = size + alignment - pageSize;
+    void* mem = mmap(NULL, mapSize, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+    if (mem == MAP_FAILED) {
+        netty_unix_errors_throwOutOfMemoryError(env);
+        return NULL;
+    }
+    uintptr_t mapStart = (uintptr_t) mem;
+    uintptr_t start = (mapStart + alignment - 1) & ~(alignment - 1);
+    uintptr_t end = start + size;
+    if (start > mapStart) {
+        munmap(mem, start - mapStart);
+    }
+    if (mapStart + mapSize > end) {
+        munmap((void*) end, mapStart + mapSize - end);
+    }
+
+#ifdef MADV_HUGEPAGE
+    if (hugePages == JNI_TRUE) {
+        // Fails if transparent huge pages are disabled, in which case the chunk is just backed by normal pages.
+        madvise((void*) start, size, MADV_HUGEPAGE);
+    }
+#endif
+#if defined(__linux__) && defined(SYS_mbind)
+    if (numaNode >= 0 && numaNode < (jint) (sizeof(unsigned long) * 8)) {
+        unsigned long nodeMask = 1UL << numaNode;
+        // Only prefer the node so we do not fail once it is out of memory. Errors are ignored as the memory is usable
+        // even if it is not bound to the node, which may for example be forbidden in a container.
+        syscall(SYS_mbind, start, size, NETTY_UNIX_MPOL_PREFERRED, &nodeMask, sizeof(nodeMask) * 8 + 1, 0);
+    }
+#endif
+
+    jobject buffer = (*env)->NewDirectByteBuffer(env, (void*) start, (jlong) capacity);
+    if (buffer == NULL) {
+        munmap((void*) start, size);
+    }
+    return buffer;
+}
+
+static jint netty_unix_buffer_unmap0(JNIEnv* env, jclass clazz, jlong address, jint capacity) {
+    uintptr_t size = ((uintptr_t) capacity + pageSize - 1) & ~(pageSize - 1);
+    if (munmap((void*) (uintptr_t) address, size) != 0) {
+        return -errno;
+    }
+    return 0;
+}
+
+static jint netty_unix_buffer_currentNumaNode0(JNIEnv* env, jclass clazz) {
+#if defined(__linux__) && defined(SYS_getcpu)
+    unsigned int cpu;
+    unsigned int node;
+    if (syscall(SYS_getcpu, &cpu, &node, NULL) == 0) {
+        return (jint) node;
+    }
+#endif
+    return -1;
+}
+
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
 static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "memoryAddress0", "(Ljava/nio/ByteBuffer;)J", (void *) netty_unix_buffer_memoryAddress0 },
-  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 }
+  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 },
+  { "purge0", "(JJ)J", (void *) netty_unix_buffer_purge0 },
+  { "map0", "(IZI)Ljava/nio/ByteBuffer;", (void *) netty_unix_buffer_map0 },
+  { "unmap0", "(JI)I", (void *) netty_unix_buffer_unmap0 },
+  { "currentNumaNode0", "()I", (void *) netty_unix_buffer_currentNumaNode0 }
 };
 static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
 // JNI Method Registration Table End
 
 jint netty_unix_buffer_JNI_OnLoad(JNIEnv* env, const char* packagePrefix) {
+    pageSize = (uintptr_t) sysconf(_SC_PAGESIZE);
+
     // We must register the statically referenced methods first!
     if (netty_unix_util_register_natives(env,
             packagePrefix,
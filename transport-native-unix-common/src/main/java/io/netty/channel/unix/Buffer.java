@@ -15,17 +15,61 @@
  */
 package io.netty.channel.unix;
 
+import io.netty.util.internal.DirectMemoryMapper;
+import io.netty.util.internal.DirectMemoryPurger;
+import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.UnstableApi;
 
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @UnstableApi
 public final class Buffer {
 
+    private static final AtomicBoolean INITIALIZED = new AtomicBoolean();
+    private static final int NUMA_NODES = numaNodes0();
+
     private Buffer() { }
 
+    /**
+     * Must be called once the native library was loaded. Registers a {@link DirectMemoryPurger} which uses
+     * {@link #purge(long, long)} and a {@link DirectMemoryMapper} which uses {@link #map(int, boolean, int)}.
+     */
+    public static void initialize() {
+        if (INITIALIZED.compareAndSet(false, true)) {
+            DirectMemoryPurger.register(new DirectMemoryPurger() {
+                @Override
+                public long purge(long address, long length) {
+                    return Buffer.purge(address, length);
+                }
+            });
+            DirectMemoryMapper.register(new DirectMemoryMapper() {
+                @Override
+                public ByteBuffer map(int capacity, boolean hugePages, int numaNode) {
+                    return Buffer.map(capacity, hugePages, numaNode);
+                }
+
+                @Override
+                public void unmap(ByteBuffer buffer) {
+                    Buffer.unmap(buffer);
+                }
+
+                @Override
+                public int numaNodes() {
+                    return Buffer.numaNodes();
+                }
+
+                @Override
+                public int currentNumaNode() {
+                    return Buffer.currentNumaNode();
+                }
+            });
+        }
+    }
+
     /**
      * Free the direct {@link ByteBuffer}.
      */
@@ -62,6 +106,71 @@ public final class Buffer {
         return addressSize0();
     }
 
+    /**
+     * Gives the physical pages that are fully contained in the given range of memory back to the operating system.
+     * The range stays mapped and is backed by new pages once it is touched again.
+     *
+     * @return the number of bytes that were purged, or {@code 0} if no page was purged.
+     */
+    public static long purge(long address, long length) {
+        return Math.max(0, purge0(address, length));
+    }
+
+    /**
+     * Returns a new {@link ByteBuffer} which is backed by memory that is mapped via {@code mmap} and must be released
+     * via {@link #unmap(ByteBuffer)}.
+     *
+     * @param capacity  the capacity of the buffer.
+     * @param hugePages {@code true} if the memory should be aligned to and backed by transparent huge pages.
+     * @param numaNode  the NUMA node which should preferably back the memory or {@code -1} for the default policy.
+     */
+    public static ByteBuffer map(int capacity, boolean hugePages, int numaNode) {
+        ObjectUtil.checkPositive(capacity, "capacity");
+        return map0(capacity, hugePages, numaNode);
+    }
+
+    /**
+     * Unmap a {@link ByteBuffer} that was returned by {@link #map(int, boolean, int)}.
+     */
+    public static void unmap(ByteBuffer buffer) {
+        int res = unmap0(memoryAddress(buffer), buffer.capacity());
+        if (res < 0) {
+            throw new IllegalStateException(Errors.newIOException("munmap", res));
+        }
+    }
+
+    /**
+     * Returns the number of NUMA nodes of the machine, which is {@code 1} if unknown.
+     */
+    public static int numaNodes() {
+        return NUMA_NODES;
+    }
+
+    /**
+     * Returns the NUMA node the current thread is running on or {@code -1} if unknown.
+     */
+    public static int currentNumaNode() {
+        return currentNumaNode0();
+    }
+
+    private static int numaNodes0() {
+        String[] names = new File("/sys/devices/system/node").list();
+        int nodes = 0;
+        if (names != null) {
+            for (String name : names) {
+                if (name.matches("node[0-9]+")) {
+                    nodes++;
+                }
+            }
+        }
+        return Math.max(1, nodes);
+    }
+
+    private static native long purge0(long address, long length);
+    private static native ByteBuffer map0(int capacity, boolean hugePages, int numaNode);
+    private static native int unmap0(long address, int capacity);
+    private static native int currentNumaNode0();
+
     // If Unsafe can not be used we will need to do JNI calls.
     private static native int addressSize0();
     private static native long memoryAddress0(ByteBuffer buffer);
@@ -16,6 +16,7 @@
 package io.netty.channel.unix;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelOutboundBuffer.MessageProcessor;
 import io.netty.util.internal.PlatformDependent;
 
@@ -98,6 +99,8 @@ public final class IovArray implements MessageProcessor {
                 ByteBuffer nioBuffer = buf.internalNioBuffer(offset, len);
                 return add(Buffer.memoryAddress(nioBuffer) + nioBuffer.position(), len);
             }
+        } else if (buf instanceof CompositeByteBuf) {
+            return add((CompositeByteBuf) buf, offset, len);
         } else {
             ByteBuffer[] buffers = buf.nioBuffers(offset, len);
             for (ByteBuffer nioBuffer : buffers) {
@@ -111,6 +114,25 @@ public final class IovArray implements MessageProcessor {
         }
     }
 
+    private boolean add(CompositeByteBuf buf, int offset, int len) {
+        if (len == 0) {
+            return true;
+        }
+        // Add the components one by one instead of using nioBuffers(...). The internal components are cached by the
+        // CompositeByteBuf, so writing the same buffer again after a partial write does not allocate anything.
+        for (int i = buf.toComponentIndex(offset); len > 0; i++) {
+            ByteBuf component = buf.internalComponent(i);
+            int componentOffset = offset - buf.toByteIndex(i);
+            int componentLen = min(len, component.capacity() - componentOffset);
+            if (!add(component, componentOffset, componentLen)) {
+                return false;
+            }
+            offset += componentLen;
+            len -= componentLen;
+        }
+        return true;
+    }
+
     private boolean add(long addr, int len) {
         assert addr != 0;
 
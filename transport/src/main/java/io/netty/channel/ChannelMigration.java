@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.UnstableApi;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Utility methods to move an idle {@link Channel} from its current {@link EventLoop} to another one of the same
+ * type, for example to balance the load between the {@link EventLoop}s of an {@link EventLoopGroup}.
+ * <p>
+ * The migration is done by deregistering the {@link Channel} from its current {@link EventLoop} and registering it
+ * to the new one, so the {@link ChannelPipeline} sees a {@link ChannelInboundHandler#channelUnregistered} followed
+ * by a {@link ChannelInboundHandler#channelRegistered} event. All {@link ChannelHandler}s that were added without an
+ * explicit {@link io.netty.util.concurrent.EventExecutorGroup} are invoked by the new {@link EventLoop} once the
+ * {@link Channel} was registered to it. {@link ChannelHandler}s which scheduled tasks on
+ * {@link ChannelHandlerContext#executor()} need to cancel and re-schedule these on
+ * {@link ChannelInboundHandler#channelUnregistered} / {@link ChannelInboundHandler#channelRegistered}, as otherwise
+ * these tasks will still be executed by the old {@link EventLoop}.
+ * <p>
+ * If {@link ChannelConfig#isAutoRead()} is disabled, {@link Channel#read()} needs to be called again once the
+ * migration completed.
+ */
+@UnstableApi
+public final class ChannelMigration {
+
+    private ChannelMigration() { }
+
+    /**
+     * Returns {@code true} if the {@link Channel} is registered, active and has no outbound data pending, which
+     * means it can be migrated to another {@link EventLoop}. Should be called from the {@link EventLoop} of the
+     * {@link Channel}, otherwise the result may already be outdated once this method returns.
+     */
+    public static boolean isIdle(Channel channel) {
+        if (!channel.isRegistered() || !channel.isActive()) {
+            return false;
+        }
+        ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        return buffer != null && buffer.isEmpty();
+    }
+
+    /**
+     * Migrate the {@link Channel} to the least loaded {@link EventLoop} of the {@link EventLoopGroup} it is
+     * currently registered to, as determined by {@link LoadAwareEventLoopChooserFactory#load(EventExecutor)}.
+     * If the current {@link EventLoop} is the least loaded one, the {@link Channel} stays where it is.
+     */
+    public static ChannelFuture migrateToLeastLoaded(Channel channel) {
+        checkNotNull(channel, "channel");
+        EventLoop current = channel.eventLoop();
+        EventLoopGroup group = current.parent();
+        EventLoop target = current;
+        if (group != null) {
+            long minLoad = LoadAwareEventLoopChooserFactory.load(current);
+            for (EventExecutor executor : group) {
+                if (executor == current || executor.getClass() != current.getClass()) {
+                    continue;
+                }
+                long load = LoadAwareEventLoopChooserFactory.load(executor);
+                if (load < minLoad) {
+                    minLoad = load;
+                    target = (EventLoop) executor;
+                }
+            }
+        }
+        return migrate(channel, target);
+    }
+
+    /**
+     * Migrate the {@link Channel} to the given {@link EventLoop}. The returned {@link ChannelFuture} is failed
+     * with an {@link IllegalStateException} if the {@link Channel} is not {@link #isIdle(Channel) idle}.
+     */
+    public static ChannelFuture migrate(final Channel channel, final EventLoop target) {
+        checkNotNull(channel, "channel");
+        checkNotNull(target, "target");
+        final ChannelPromise promise = channel.newPromise();
+        EventLoop current = channel.eventLoop();
+        if (current.inEventLoop()) {
+            migrate0(channel, target, promise);
+        } else {
+            current.execute(new Runnable() {
+                @Override
+                public void run() {
+                    migrate0(channel, target, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private static void migrate0(final Channel channel, final EventLoop target, final ChannelPromise promise) {
+        if (channel.eventLoop() == target) {
+            promise.setSuccess();
+            return;
+        }
+        if (channel.eventLoop().getClass() != target.getClass()) {
+            promise.setFailure(new IllegalArgumentException(
+                    "incompatible event loop type: " + target.getClass().getName()));
+            return;
+        }
+        if (!isIdle(channel)) {
+            promise.setFailure(new IllegalStateException("channel is not idle: " + channel));
+            return;
+        }
+        channel.deregister().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    promise.setFailure(future.cause());
+                    return;
+                }
+                if (!channel.isOpen()) {
+                    promise.setFailure(new IllegalStateException("channel was closed during migration: " + channel));
+                    return;
+                }
+                target.register(channel).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (future.isSuccess()) {
+                            // Writes that were issued while the Channel was not registered could not request to be
+                            // notified once the Channel is writable again, so try to flush these now.
+                            ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+                            if (buffer != null && !buffer.isEmpty()) {
+                                channel.unsafe().flush();
+                            }
+                            promise.setSuccess();
+                        } else {
+                            // The Channel is not registered to any EventLoop anymore, so there is nothing we can do.
+                            channel.unsafe().closeForcibly();
+                            promise.setFailure(future.cause());
+                        }
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Random;
+
+/**
+ * {@link EventExecutorChooserFactory} which chooses the least loaded {@link EventExecutor} out of two randomly
+ * picked ones. The load of an {@link EventExecutor} is the sum of its {@link SingleThreadEventLoop#ioLoad()} and
+ * its {@link SingleThreadEventExecutor#pendingTasks()}, both expressed in per mille of a fully loaded
+ * {@link EventExecutor} and weighted equally: spending all the time processing I/O counts as much as having
+ * {@code io.netty.eventLoop.fullLoadPendingTasks} (256 by default) pending tasks.
+ * <p>
+ * Using two random choices instead of always picking the least loaded {@link EventExecutor} prevents that a burst
+ * of new {@link Channel}s is registered to the same {@link EventLoop}, as the load only reflects the work done
+ * by {@link Channel}s that are already registered.
+ */
+@UnstableApi
+public final class LoadAwareEventLoopChooserFactory implements EventExecutorChooserFactory {
+
+    public static final LoadAwareEventLoopChooserFactory INSTANCE = new LoadAwareEventLoopChooserFactory();
+
+    // The number of pending tasks which counts as much load as an EventLoop which spends all its time on I/O.
+    static final int FULL_LOAD_PENDING_TASKS =
+            Math.max(1, SystemPropertyUtil.getInt("io.netty.eventLoop.fullLoadPendingTasks", 256));
+
+    private LoadAwareEventLoopChooserFactory() { }
+
+    @Override
+    public EventExecutorChooser newChooser(EventExecutor[] executors) {
+        if (executors.length == 1) {
+            return new SingleEventExecutorChooser(executors[0]);
+        }
+        return new TwoChoicesEventExecutorChooser(executors);
+    }
+
+    /**
+     * Returns the current load of the given {@link EventExecutor}, which is the per mille of time it spent
+     * processing I/O recently plus its number of pending tasks in per mille of
+     * {@code io.netty.eventLoop.fullLoadPendingTasks}. The load of the pending tasks is not capped, so the result may
+     * exceed {@code 2000}.
+     */
+    public static long load(EventExecutor executor) {
+        if (executor instanceof SingleThreadEventLoop) {
+            SingleThreadEventLoop loop = (SingleThreadEventLoop) executor;
+            return loop.ioLoad() + taskLoad(loop);
+        }
+        if (executor instanceof SingleThreadEventExecutor) {
+            return taskLoad((SingleThreadEventExecutor) executor);
+        }
+        return 0;
+    }
+
+    private static long taskLoad(SingleThreadEventExecutor executor) {
+        return executor.pendingTasks() * 1000L / FULL_LOAD_PENDING_TASKS;
+    }
+
+    private static final class SingleEventExecutorChooser implements EventExecutorChooser {
+        private final EventExecutor executor;
+
+        SingleEventExecutorChooser(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public EventExecutor next() {
+            return executor;
+        }
+    }
+
+    private static final class TwoChoicesEventExecutorChooser implements EventExecutorChooser {
+        private final EventExecutor[] executors;
+
+        TwoChoicesEventExecutorChooser(EventExecutor[] executors) {
+            this.executors = executors;
+        }
+
+        @Override
+        public EventExecutor next() {
+            Random random = PlatformDependent.threadLocalRandom();
+            int first = random.nextInt(executors.length);
+            int second = random.nextInt(executors.length - 1);
+            if (second >= first) {
+                second++;
+            }
+            EventExecutor a = executors[first];
+            EventExecutor b = executors[second];
+            return load(b) < load(a) ? b : a;
+        }
+    }
+}
@@ -25,6 +25,7 @@ import io.netty.util.internal.UnstableApi;
 import java.util.Queue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Abstract base class for {@link EventLoop}s that execute all its submitted tasks in a single thread.
@@ -35,8 +36,17 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
     protected static final int DEFAULT_MAX_PENDING_TASKS = Math.max(16,
             SystemPropertyUtil.getInt("io.netty.eventLoop.maxPendingTasks", Integer.MAX_VALUE));
 
+    private static final long IO_LOAD_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
     private final Queue<Runnable> tailTasks;
 
+    // Only accessed by the EventLoop thread.
+    private long ioTimeInWindow;
+    private long ioWindowStart = System.nanoTime();
+
+    private volatile int ioLoad;
+    private volatile long ioLoadUpdateTime = ioWindowStart;
+
     protected SingleThreadEventLoop(EventLoopGroup parent, ThreadFactory threadFactory, boolean addTaskWakesUp) {
         this(parent, threadFactory, addTaskWakesUp, DEFAULT_MAX_PENDING_TASKS, RejectedExecutionHandlers.reject());
     }
@@ -160,6 +170,39 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return -1;
     }
 
+    /**
+     * Returns the per mille (0 - 1000) of the time this {@link EventLoop} spent processing I/O recently, or
+     * {@code 0} if the implementation does not record its I/O time. The returned value is not guaranteed to be
+     * exact accurate and should be viewed as a best effort.
+     */
+    @UnstableApi
+    public int ioLoad() {
+        int load = ioLoad;
+        long sinceUpdate = System.nanoTime() - ioLoadUpdateTime;
+        if (sinceUpdate > IO_LOAD_WINDOW_NANOS) {
+            // The EventLoop did not finish an iteration for a while, which most of the time means it is blocked
+            // waiting for I/O. Let the load decay so we not keep reporting the load of the last busy period.
+            load = (int) (load * IO_LOAD_WINDOW_NANOS / sinceUpdate);
+        }
+        return load;
+    }
+
+    /**
+     * Records that the {@link EventLoop} processed I/O between {@code ioStartTime} and {@code ioEndTime}, both
+     * obtained via {@link System#nanoTime()}. Must be called from the {@link EventLoop} once per iteration.
+     */
+    protected final void recordIoTime(long ioStartTime, long ioEndTime) {
+        assert inEventLoop();
+        ioTimeInWindow += ioEndTime - ioStartTime;
+        long elapsed = ioEndTime - ioWindowStart;
+        if (elapsed >= IO_LOAD_WINDOW_NANOS) {
+            ioLoad = (int) Math.min(1000, ioTimeInWindow * 1000 / elapsed);
+            ioLoadUpdateTime = ioEndTime;
+            ioTimeInWindow = 0;
+            ioWindowStart = ioEndTime;
+        }
+    }
+
     /**
      * Marker interface for {@link Runnable} that will not trigger an {@link #wakeup(boolean)} in all cases.
      */
@@ -458,6 +458,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     protected void run() {
         for (; ; ) {
             try {
+                final long loopStartTime = loopIterationStartTime();
                 try {
                     switch (selectStrategy.calculateStrategy(selectNowSupplier, hasTasks())) {
                         case SelectStrategy.CONTINUE:
@@ -520,6 +521,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                  * 控制 processSelectedKeys() 和 runAllTasks() 执行事件时间
                  */
                 final int ioRatio = this.ioRatio;
+                final long ioStartTime = System.nanoTime();
                 if (ioRatio == 100) {
                     try {
                         /**
@@ -527,20 +529,25 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                          */
                         processSelectedKeys();
                     } finally {
+                        final long ioEndTime = System.nanoTime();
+                        recordIoTime(ioStartTime, ioEndTime);
                         // Ensure we always run tasks.
                         /**
                          * 处理外部线程扔到task队列上的任务
                          */
                         runAllTasks();
+                        recordLoopIteration(loopStartTime, ioStartTime, ioEndTime);
                     }
                 } else {
-                    final long ioStartTime = System.nanoTime();
                     try {
                         processSelectedKeys();
                     } finally {
                         // Ensure we always run tasks.
-                        final long ioTime = System.nanoTime() - ioStartTime;
+                        final long ioEndTime = System.nanoTime();
+                        recordIoTime(ioStartTime, ioEndTime);
+                        final long ioTime = ioEndTime - ioStartTime;
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                        recordLoopIteration(loopStartTime, ioStartTime, ioEndTime);
                     }
                 }
             } catch (Throwable t) {
@@ -798,6 +805,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     protected void wakeup(boolean inEventLoop) {
         if (!inEventLoop && wakenUp.compareAndSet(false, true)) {
             selector.wakeup();
+            recordWakeup();
         }
     }
 
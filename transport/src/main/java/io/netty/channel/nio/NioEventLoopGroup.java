@@ -25,6 +25,8 @@ import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.EventExecutorChooserFactory;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.UnstableApi;
 
 import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
@@ -121,6 +123,17 @@ public class NioEventLoopGroup extends MultithreadEventLoopGroup {
         }
     }
 
+    /**
+     * Sets if the child event loops store their scheduled tasks in a hierarchical timing wheel instead of a binary
+     * heap, see {@link SingleThreadEventExecutor#setTimingWheelScheduler(boolean)}.
+     */
+    @UnstableApi
+    public void setTimingWheelScheduler(boolean enabled) {
+        for (EventExecutor e: this) {
+            ((NioEventLoop) e).setTimingWheelScheduler(enabled);
+        }
+    }
+
     /**
      * Replaces the current {@link Selector}s of the child event loops with newly created {@link Selector}s to work
      * around the  infamous epoll 100% CPU bug.
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.CharsetUtil;
+import io.netty.util.NetUtil;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelMigrationTest {
+
+    private static NioEventLoopGroup group;
+
+    @BeforeClass
+    public static void beforeClass() {
+        group = new NioEventLoopGroup(2);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateIdleChannel() throws Exception {
+        Iterator<EventExecutor> loops = group.iterator();
+        EventLoop first = (EventLoop) loops.next();
+        EventLoop second = (EventLoop) loops.next();
+
+        final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+        final BlockingQueue<EventLoop> readLoops = new LinkedBlockingQueue<EventLoop>();
+        Channel sc = new ServerBootstrap().group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.writeAndFlush(msg);
+                    }
+                }).bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Channel cc = null;
+        try {
+            cc = new Bootstrap().group(first)
+                    .channel(NioSocketChannel.class)
+                    .handler(new SimpleChannelInboundHandler<ByteBuf>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                            readLoops.add(ctx.channel().eventLoop());
+                            assertTrue(ctx.executor().inEventLoop());
+                            received.add(msg.toString(CharsetUtil.US_ASCII));
+                        }
+                    }).connect(sc.localAddress()).syncUninterruptibly().channel();
+            assertSame(first, cc.eventLoop());
+
+            cc.writeAndFlush(Unpooled.copiedBuffer("a", CharsetUtil.US_ASCII)).syncUninterruptibly();
+            assertEquals("a", received.take());
+            assertSame(first, readLoops.take());
+
+            ChannelMigration.migrate(cc, second).syncUninterruptibly();
+            assertSame(second, cc.eventLoop());
+            assertTrue(cc.isRegistered());
+            assertTrue(cc.isActive());
+
+            cc.writeAndFlush(Unpooled.copiedBuffer("b", CharsetUtil.US_ASCII)).syncUninterruptibly();
+            assertEquals("b", received.take());
+            assertSame(second, readLoops.take());
+        } finally {
+            if (cc != null) {
+                cc.close().syncUninterruptibly();
+            }
+            sc.close().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateToSameEventLoop() throws Exception {
+        Channel sc = new ServerBootstrap().group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter())
+                .bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+        try {
+            EventLoop loop = sc.eventLoop();
+            assertTrue(ChannelMigration.migrate(sc, loop).syncUninterruptibly().isSuccess());
+            assertSame(loop, sc.eventLoop());
+        } finally {
+            sc.close().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrateIncompatibleEventLoop() throws Exception {
+        DefaultEventLoop other = new DefaultEventLoop();
+        Channel sc = new ServerBootstrap().group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter())
+                .bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+        try {
+            EventLoop loop = sc.eventLoop();
+            ChannelFuture future = ChannelMigration.migrate(sc, other).awaitUninterruptibly();
+            assertFalse(future.isSuccess());
+            assertTrue(future.cause() instanceof IllegalArgumentException);
+            assertSame(loop, sc.eventLoop());
+            assertTrue(sc.isRegistered());
+            assertNotSame(other, sc.eventLoop());
+        } finally {
+            sc.close().syncUninterruptibly();
+            other.shutdownGracefully();
+        }
+    }
+}
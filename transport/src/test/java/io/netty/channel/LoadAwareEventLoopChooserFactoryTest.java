@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory.EventExecutorChooser;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LoadAwareEventLoopChooserFactoryTest {
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    @Test
+    public void testSingleExecutor() {
+        DefaultEventLoop loop = new DefaultEventLoop();
+        try {
+            EventExecutorChooser chooser =
+                    LoadAwareEventLoopChooserFactory.INSTANCE.newChooser(new EventExecutor[] { loop });
+            for (int i = 0; i < 10; i++) {
+                assertSame(loop, chooser.next());
+            }
+        } finally {
+            loop.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPrefersLessLoadedExecutor() throws Exception {
+        DefaultEventLoop busy = new DefaultEventLoop();
+        DefaultEventLoop idle = new DefaultEventLoop();
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            busy.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            for (int i = 0; i < 100; i++) {
+                busy.execute(NOOP);
+            }
+            // The pending tasks are expressed in per mille of FULL_LOAD_PENDING_TASKS.
+            int taskLoad = 1000 / LoadAwareEventLoopChooserFactory.FULL_LOAD_PENDING_TASKS;
+            assertEquals(100 * 1000 / LoadAwareEventLoopChooserFactory.FULL_LOAD_PENDING_TASKS,
+                    LoadAwareEventLoopChooserFactory.load(busy), taskLoad + 1);
+            assertEquals(0, LoadAwareEventLoopChooserFactory.load(idle));
+
+            EventExecutorChooser chooser =
+                    LoadAwareEventLoopChooserFactory.INSTANCE.newChooser(new EventExecutor[] { busy, idle });
+            for (int i = 0; i < 100; i++) {
+                assertSame(idle, chooser.next());
+            }
+        } finally {
+            latch.countDown();
+            busy.shutdownGracefully();
+            idle.shutdownGracefully();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPendingTasksNormalized() throws Exception {
+        DefaultEventLoop loop = new DefaultEventLoop();
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            final CountDownLatch started = new CountDownLatch(1);
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            started.await();
+            for (int i = 0; i < LoadAwareEventLoopChooserFactory.FULL_LOAD_PENDING_TASKS; i++) {
+                loop.execute(NOOP);
+            }
+            // As many pending tasks count as much as an EventLoop which spends all its time on I/O.
+            assertEquals(1000, LoadAwareEventLoopChooserFactory.load(loop));
+        } finally {
+            latch.countDown();
+            loop.shutdownGracefully();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.IntSupplier;
 import io.netty.util.concurrent.DefaultEventExecutorChooserFactory;
 import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorMetrics;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
 import io.netty.util.concurrent.ThreadPerTaskExecutor;
@@ -320,4 +321,49 @@ public class NioEventLoopTest extends AbstractEventLoopTest {
         }
     }
 
+    @Test(timeout = 10000)
+    public void testMetrics() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        final NioEventLoop loop = (NioEventLoop) group.next();
+        try {
+            assertNull(loop.metrics());
+            EventExecutorMetrics metrics = loop.enableMetrics();
+            assertSame(metrics, loop.enableMetrics());
+            assertSame(metrics, loop.metrics());
+
+            Runnable noop = new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            };
+            for (int i = 0; i < 10; i++) {
+                loop.submit(noop).syncUninterruptibly();
+                // Give the EventLoop the chance to block in select() again.
+                Thread.sleep(10);
+            }
+            loop.schedule(noop, 10, TimeUnit.MILLISECONDS).syncUninterruptibly();
+
+            // Make sure the current iteration was recorded.
+            loop.submit(noop).syncUninterruptibly();
+            Thread.sleep(10);
+
+            assertTrue(metrics.wakeups() > 0);
+            assertTrue(metrics.taskExecutionTime().totalCount() >= 12);
+            assertTrue(metrics.taskQueueWaitTime().totalCount() > 0);
+            assertEquals(1, metrics.scheduledTaskLateness().totalCount());
+            assertTrue(metrics.loopIoTime().totalCount() > 0);
+
+            EventExecutorMetrics.Histogram histogram = metrics.taskExecutionTime();
+            long count = 0;
+            for (int i = 0; i < histogram.buckets(); i++) {
+                count += histogram.count(i);
+            }
+            assertEquals(histogram.totalCount(), count);
+            assertEquals(1024, histogram.upperBoundNanos(0));
+            assertEquals(Long.MAX_VALUE, histogram.upperBoundNanos(histogram.buckets() - 1));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
 }